@@ -23,6 +23,7 @@ import lombok.Getter;
 import org.apache.pulsar.common.naming.TopicName;
 import org.apache.pulsar.opentelemetry.OpenTelemetryAttributes;
 import org.apache.pulsar.opentelemetry.OpenTelemetryAttributes.ManagedCursorOperationStatus;
+import org.apache.pulsar.opentelemetry.OpenTelemetryAttributes.ManagedCursorPrefetchStatus;
 
 @Getter
 public class ManagedCursorAttributes {
@@ -30,6 +31,8 @@ public class ManagedCursorAttributes {
     private final Attributes attributes;
     private final Attributes attributesOperationSucceed;
     private final Attributes attributesOperationFailure;
+    private final Attributes attributesPrefetchHit;
+    private final Attributes attributesPrefetchMiss;
 
     public ManagedCursorAttributes(ManagedCursor cursor) {
         var mlName = cursor.getManagedLedger().getName();
@@ -47,5 +50,13 @@ public class ManagedCursorAttributes {
                 .putAll(attributes)
                 .putAll(ManagedCursorOperationStatus.FAILURE.attributes)
                 .build();
+        attributesPrefetchHit = Attributes.builder()
+                .putAll(attributes)
+                .putAll(ManagedCursorPrefetchStatus.HIT.attributes)
+                .build();
+        attributesPrefetchMiss = Attributes.builder()
+                .putAll(attributes)
+                .putAll(ManagedCursorPrefetchStatus.MISS.attributes)
+                .build();
     }
 }
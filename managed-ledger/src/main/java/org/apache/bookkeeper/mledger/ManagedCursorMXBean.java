@@ -100,4 +100,33 @@ public interface ManagedCursorMXBean {
      */
     long getReadCursorLedgerSize();
 
+    /**
+     * Record whether a read of the cursor was served by the entries prefetched after the previous read.
+     *
+     * @param hit true if the read started at the prefetched position and the prefetched entries were still cached
+     */
+    void recordPrefetch(boolean hit);
+
+    /**
+     * Add the size of prefetched entries that have not been read by the cursor (in bytes).
+     *
+     * @param size Size of the prefetched data that was not read (in bytes)
+     */
+    void addPrefetchWastedSize(long size);
+
+    /**
+     * @return the number of reads served by prefetched entries
+     */
+    long getPrefetchHits();
+
+    /**
+     * @return the number of reads that could not be served by the prefetched entries
+     */
+    long getPrefetchMisses();
+
+    /**
+     * @return the size of prefetched data that was not read by the cursor (in bytes)
+     */
+    long getPrefetchWastedSize();
+
 }
@@ -36,6 +36,7 @@ import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenCursorCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.TerminateCallback;
 import org.apache.bookkeeper.mledger.intercept.ManagedLedgerInterceptor;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo.LedgerInfo;
+import org.apache.bookkeeper.mledger.util.Futures;
 import org.apache.pulsar.common.api.proto.CommandSubscribe.InitialPosition;
 import org.apache.pulsar.common.policies.data.ManagedLedgerInternalStats;
 
@@ -670,6 +671,14 @@ public interface ManagedLedger {
      */
     void trimConsumedLedgersInBackground(CompletableFuture<?> promise);
 
+    /**
+     * Trim consumed ledgers in background, possibly deferred and rate limited with the maintenance tasks of the other
+     * managed ledgers.
+     */
+    default void scheduleTrimConsumedLedgers() {
+        trimConsumedLedgersInBackground(Futures.NULL_PROMISE);
+    }
+
     /**
      * Rollover cursors in background if needed.
      */
@@ -66,6 +66,7 @@ public class ManagedLedgerConfig {
     private boolean autoSkipNonRecoverableData;
     private boolean ledgerForceRecovery;
     private boolean lazyCursorRecovery = false;
+    private boolean cursorRecoveryOnDemand = false;
     private long metadataOperationsTimeoutSeconds = 60;
     private long readEntryTimeoutSeconds = 120;
     private long addEntryTimeoutSeconds = 120;
@@ -87,6 +88,8 @@ public class ManagedLedgerConfig {
     private int minimumBacklogCursorsForCaching = 0;
     private int minimumBacklogEntriesForCaching = 1000;
     private int maxBacklogBetweenCursorsForCaching = 1000;
+    private int readAheadSharingMaxDistanceEntries = 0;
+    private int cursorPrefetchMaxEntries = 0;
     private boolean triggerOffloadOnTopicLoad = false;
     @Getter
     @Setter
@@ -96,6 +99,10 @@ public class ManagedLedgerConfig {
     private String shadowSourceName;
     @Getter
     private boolean persistIndividualAckAsLongArray;
+    @Getter
+    private boolean persistIndividualAckIncrementally;
+    @Getter
+    private int individualAckSnapshotInterval = 64;
 
     public boolean isCreateIfMissing() {
         return createIfMissing;
@@ -111,6 +118,30 @@ public class ManagedLedgerConfig {
         return this;
     }
 
+    /**
+     * Persist the individually deleted entries of the cursors as compressed bitmaps, writing only the ledgers updated
+     * since the last snapshot in the cursor ledger, and a full snapshot every
+     * {@link #getIndividualAckSnapshotInterval()} entries. It takes precedence over
+     * {@link #isPersistIndividualAckAsLongArray()} and requires {@link #isUnackedRangesOpenCacheSetEnabled()}.
+     *
+     * @param persistIndividualAckIncrementally whether to persist the individual acks incrementally
+     */
+    public ManagedLedgerConfig setPersistIndividualAckIncrementally(boolean persistIndividualAckIncrementally) {
+        this.persistIndividualAckIncrementally = persistIndividualAckIncrementally;
+        return this;
+    }
+
+    /**
+     * Set the number of incremental entries written in the cursor ledger between two snapshots of the individually
+     * deleted entries, when {@link #isPersistIndividualAckIncrementally()} is enabled.
+     *
+     * @param individualAckSnapshotInterval the number of incremental entries between two snapshots
+     */
+    public ManagedLedgerConfig setIndividualAckSnapshotInterval(int individualAckSnapshotInterval) {
+        this.individualAckSnapshotInterval = individualAckSnapshotInterval;
+        return this;
+    }
+
     /**
      * @return the lazyCursorRecovery
      */
@@ -130,6 +161,27 @@ public class ManagedLedgerConfig {
         return this;
     }
 
+    /**
+     * @return the cursorRecoveryOnDemand
+     */
+    public boolean isCursorRecoveryOnDemand() {
+        return cursorRecoveryOnDemand;
+    }
+
+    /**
+     * Whether to defer the lazy recovery of a cursor until it is opened, or until the positions of all the cursors
+     * are needed to trim the ledgers. It only applies when {@link #isLazyCursorRecovery()} is enabled and reduces the
+     * load of the metadata store and of the bookies when many topics with many inactive subscriptions are loaded.
+     * A cursor which is not recovered yet is not listed in the cursors of the managed ledger until it is opened, or
+     * until all the deferred cursors are recovered with {@code ManagedLedgerImpl#recoverDeferredCursors()}. Its name
+     * is returned by {@code ManagedLedgerImpl#getRecoveringCursorNames()} in the meantime.
+     * @param cursorRecoveryOnDemand if enable the recovery of the cursors on demand.
+     */
+    public ManagedLedgerConfig setCursorRecoveryOnDemand(boolean cursorRecoveryOnDemand) {
+        this.cursorRecoveryOnDemand = cursorRecoveryOnDemand;
+        return this;
+    }
+
     /**
      * @return the maxEntriesPerLedger
      */
@@ -791,6 +843,47 @@ public class ManagedLedgerConfig {
         this.maxBacklogBetweenCursorsForCaching = maxBacklogBetweenCursorsForCaching;
     }
 
+    /**
+     * Maximum distance, in entries, between the read positions of cursors sharing their backlog reads. When a cursor
+     * reads entries from BookKeeper while other cursors have their read position at most this many entries behind
+     * the read range, the entries are inserted in the cache so that the trailing cursors are served from the cache
+     * instead of reading the same entries again from the bookies. (Default = 0, read-ahead sharing is disabled)
+     *
+     * @return
+     */
+    public int getReadAheadSharingMaxDistanceEntries() {
+        return readAheadSharingMaxDistanceEntries;
+    }
+
+    /**
+     * Set the maximum distance, in entries, between the read positions of cursors sharing their backlog reads.
+     *
+     * @param readAheadSharingMaxDistanceEntries
+     */
+    public void setReadAheadSharingMaxDistanceEntries(int readAheadSharingMaxDistanceEntries) {
+        this.readAheadSharingMaxDistanceEntries = readAheadSharingMaxDistanceEntries;
+    }
+
+    /**
+     * Maximum number of entries prefetched in the cache after each read of a backlogged (inactive) cursor, so that
+     * the next read of the cursor is served from memory. The actual number of prefetched entries follows the size
+     * of the recent reads of the cursor. (Default = 0, prefetching is disabled)
+     *
+     * @return
+     */
+    public int getCursorPrefetchMaxEntries() {
+        return cursorPrefetchMaxEntries;
+    }
+
+    /**
+     * Set the maximum number of entries prefetched in the cache after each read of a backlogged cursor.
+     *
+     * @param cursorPrefetchMaxEntries
+     */
+    public void setCursorPrefetchMaxEntries(int cursorPrefetchMaxEntries) {
+        this.cursorPrefetchMaxEntries = cursorPrefetchMaxEntries;
+    }
+
     /**
      * Trigger offload on topic load.
      * @return
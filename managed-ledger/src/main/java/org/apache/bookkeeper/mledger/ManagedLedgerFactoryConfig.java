@@ -34,6 +34,57 @@ public class ManagedLedgerFactoryConfig {
 
     private long maxCacheSize = 128 * MB;
 
+    /**
+     * The entry cache implementation to use.
+     */
+    private EntryCacheType entryCacheType = EntryCacheType.RANGE;
+
+    /**
+     * Fraction of the cache size reserved to the admission window, when using {@link EntryCacheType#WINDOW_TINY_LFU}.
+     * All new entries are admitted in the window. Entries leaving the window are only kept if they are estimated to
+     * be more popular than the entries they would replace.
+     */
+    private double cacheAdmissionWindowRatio = 0.1;
+
+    /**
+     * Whether to store the cached entries in a primitive (ledgerId, entryId) open addressing hash table, with a
+     * per-ledger sorted array of entry ids for the range operations, instead of a concurrent skip list. This avoids
+     * allocating a skip list node and a wrapper object for each cached entry.
+     */
+    private boolean cacheLongPairStoreEnabled = false;
+
+    /**
+     * Maximum size of the local disk spill of the entries evicted from the cache. The evicted entries are written to
+     * memory-mapped segment files in {@link #cacheSpillDirectory} and read from there, instead of the bookies, when
+     * they are read again. 0 disables the spill.
+     */
+    private long cacheSpillMaxSize = 0;
+
+    /**
+     * Directory of the cache spill segment files. It must be set to enable the spill, and a relative path is resolved
+     * against the working directory of the process.
+     */
+    private String cacheSpillDirectory = null;
+
+    /**
+     * Maximum number of background maintenance tasks of the managed ledgers (trimming of the consumed ledgers and
+     * offloading) executed per second. The pending tasks are executed the ones which can
+     * reclaim the most bytes first. 0 executes the tasks right away.
+     */
+    private int maintenanceMaxTasksPerSecond = 0;
+
+    /**
+     * Maximum random delay added before executing each background maintenance task, when
+     * {@link #maintenanceMaxTasksPerSecond} is set, to spread the tasks dispatched together.
+     */
+    private long maintenanceMaxJitterMillis = 1000;
+
+    /**
+     * Maximum time a background maintenance task waits in the queue, when {@link #maintenanceMaxTasksPerSecond} is set,
+     * before it is executed ahead of the tasks which can reclaim more bytes. 0 disables it.
+     */
+    private long maintenanceMaxQueueTimeMillis = 60000;
+
     /**
      * The cache eviction watermark is the percentage of the cache size to reach when removing entries from the cache.
      */
@@ -120,6 +171,21 @@ public class ManagedLedgerFactoryConfig {
      */
     private long managedCursorInfoCompressionThresholdInBytes = 0;
 
+    /**
+     * Available entry cache implementations.
+     */
+    public enum EntryCacheType {
+        /**
+         * Evicts the oldest entries of the biggest caches when the cache is full.
+         */
+        RANGE,
+        /**
+         * Broker-wide W-TinyLFU admission and segmented LRU eviction. Entries read only once, such as the ones
+         * read by a catch-up reader, cannot evict entries that are read by multiple consumers.
+         */
+        WINDOW_TINY_LFU
+    }
+
     public MetadataCompressionConfig getCompressionConfigForManagedLedgerInfo() {
         return new MetadataCompressionConfig(managedLedgerInfoCompressionType,
                 managedLedgerInfoCompressionThresholdInBytes);
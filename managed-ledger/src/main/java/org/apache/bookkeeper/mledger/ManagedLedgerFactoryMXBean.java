@@ -106,4 +106,9 @@ public interface ManagedLedgerFactoryMXBean {
      * Current number of entries in the cache.
      */
     long getCacheEntriesCount();
+
+    /**
+     * Cumulative number of entries rejected by the cache admission policy.
+     */
+    long getCacheRejectedEntriesCount();
 }
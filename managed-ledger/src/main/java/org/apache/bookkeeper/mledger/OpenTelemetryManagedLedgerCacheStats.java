@@ -24,6 +24,7 @@ import io.opentelemetry.api.metrics.ObservableLongMeasurement;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
 import org.apache.bookkeeper.mledger.impl.cache.PooledByteBufAllocatorStats;
 import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheImpl;
+import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheManagerImpl;
 import org.apache.pulsar.opentelemetry.Constants;
 import org.apache.pulsar.opentelemetry.OpenTelemetryAttributes.CacheEntryStatus;
 import org.apache.pulsar.opentelemetry.OpenTelemetryAttributes.CacheOperationStatus;
@@ -42,7 +43,8 @@ public class OpenTelemetryManagedLedgerCacheStats implements AutoCloseable {
 
     // Replaces 'pulsar_ml_cache_entries',
     //          'pulsar_ml_cache_inserted_entries_total',
-    //          'pulsar_ml_cache_evicted_entries_total'
+    //          'pulsar_ml_cache_evicted_entries_total',
+    //          'pulsar_ml_cache_rejected_entries_total'
     public static final String CACHE_ENTRY_COUNTER = "pulsar.broker.managed_ledger.cache.entry.count";
     private final ObservableLongMeasurement cacheEntryCounter;
 
@@ -71,6 +73,17 @@ public class OpenTelemetryManagedLedgerCacheStats implements AutoCloseable {
             "pulsar.broker.managed_ledger.cache.pool.allocation.size";
     private final ObservableLongMeasurement cachePoolActiveAllocationSizeCounter;
 
+    public static final String CACHE_SPILL_ENTRY_COUNTER = "pulsar.broker.managed_ledger.cache.spill.entry.count";
+    private final ObservableLongMeasurement cacheSpillEntryCounter;
+
+    public static final String CACHE_SPILL_OPERATION_COUNTER =
+            "pulsar.broker.managed_ledger.cache.spill.operation.count";
+    private final ObservableLongMeasurement cacheSpillOperationCounter;
+
+    public static final String CACHE_SPILL_OPERATION_BYTES_COUNTER =
+            "pulsar.broker.managed_ledger.cache.spill.operation.size";
+    private final ObservableLongMeasurement cacheSpillOperationBytesCounter;
+
     private final BatchCallback batchCallback;
 
     public OpenTelemetryManagedLedgerCacheStats(OpenTelemetry openTelemetry, ManagedLedgerFactoryImpl factory) {
@@ -124,6 +137,23 @@ public class OpenTelemetryManagedLedgerCacheStats implements AutoCloseable {
                 .setDescription("The memory allocated in the direct arena.")
                 .buildObserver();
 
+        cacheSpillEntryCounter = meter
+                .upDownCounterBuilder(CACHE_SPILL_ENTRY_COUNTER)
+                .setUnit("{entry}")
+                .setDescription("The number of entries in the local disk spill of the entry cache.")
+                .buildObserver();
+
+        cacheSpillOperationCounter = meter
+                .counterBuilder(CACHE_SPILL_OPERATION_COUNTER)
+                .setUnit("{entry}")
+                .setDescription("The number of reads from the local disk spill of the entry cache.")
+                .buildObserver();
+
+        cacheSpillOperationBytesCounter = meter
+                .counterBuilder(CACHE_SPILL_OPERATION_BYTES_COUNTER)
+                .setUnit("{By}")
+                .setDescription("The byte amount of data read from the local disk spill of the entry cache.")
+                .buildObserver();
 
         batchCallback = meter.batchCallback(() -> recordMetrics(factory),
                 managedLedgerCounter,
@@ -133,7 +163,10 @@ public class OpenTelemetryManagedLedgerCacheStats implements AutoCloseable {
                 cacheOperationCounter,
                 cacheOperationBytesCounter,
                 cachePoolActiveAllocationCounter,
-                cachePoolActiveAllocationSizeCounter);
+                cachePoolActiveAllocationSizeCounter,
+                cacheSpillEntryCounter,
+                cacheSpillOperationCounter,
+                cacheSpillOperationBytesCounter);
     }
 
     @Override
@@ -153,6 +186,7 @@ public class OpenTelemetryManagedLedgerCacheStats implements AutoCloseable {
         cacheEntryCounter.record(entriesActive, CacheEntryStatus.ACTIVE.attributes);
         cacheEntryCounter.record(entriesIn, CacheEntryStatus.INSERTED.attributes);
         cacheEntryCounter.record(entriesOut, CacheEntryStatus.EVICTED.attributes);
+        cacheEntryCounter.record(stats.getCacheRejectedEntriesCount(), CacheEntryStatus.REJECTED.attributes);
         cacheSizeCounter.record(stats.getCacheUsedSize());
 
         cacheOperationCounter.record(stats.getCacheHitsTotal(), CacheOperationStatus.HIT.attributes);
@@ -168,5 +202,15 @@ public class OpenTelemetryManagedLedgerCacheStats implements AutoCloseable {
         cachePoolActiveAllocationSizeCounter.record(allocatorStats.totalAllocated,
                 PoolChunkAllocationType.ALLOCATED.attributes);
         cachePoolActiveAllocationSizeCounter.record(allocatorStats.totalUsed, PoolChunkAllocationType.USED.attributes);
+
+        if (factory.getEntryCacheManager() instanceof RangeEntryCacheManagerImpl cacheManager
+                && cacheManager.getSpillCache() != null) {
+            var spillCache = cacheManager.getSpillCache();
+            cacheSpillEntryCounter.record(spillCache.getNumberOfEntries(), CacheEntryStatus.ACTIVE.attributes);
+            cacheSpillEntryCounter.record(spillCache.getSpilledEntriesCount(), CacheEntryStatus.INSERTED.attributes);
+            cacheSpillOperationCounter.record(spillCache.getHitsCount(), CacheOperationStatus.HIT.attributes);
+            cacheSpillOperationBytesCounter.record(spillCache.getHitsSize(), CacheOperationStatus.HIT.attributes);
+            cacheSpillOperationCounter.record(spillCache.getMissesCount(), CacheOperationStatus.MISS.attributes);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import java.util.List;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedCursorMXBean;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheManager;
+import org.apache.bookkeeper.mledger.impl.cache.InflightReadsLimiter;
+import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheManagerImpl;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo.LedgerInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prefetches into the entry cache the entries following the last read of a backlogged cursor, so that the next read
+ * issued by the dispatcher is already in memory instead of waiting for the bookies.
+ *
+ * <p/>A cursor is considered backlogged when it is not active, since the broker deactivates the cursors whose backlog
+ * exceeds {@code managedLedgerCursorBackloggedThreshold}. The entries of active cursors are already kept in the cache
+ * when they are written. Since the entries below the slowest active cursor are invalidated, the prefetched entries are
+ * pinned in the managed ledger until the cursor reads them, or until it is closed. They can still be evicted when the
+ * cache is full or when they expire.
+ *
+ * <p/>The number of entries to prefetch follows the moving average of the number of entries returned by the recent
+ * reads of the cursor, which reflects how fast the consumers drain the backlog since the dispatchers size their reads
+ * on the available permits. It is capped by {@link ManagedLedgerConfig#getCursorPrefetchMaxEntries()} and the prefetch
+ * is skipped when the in-flight reads budget is running low, so that it does not delay the reads actually requested
+ * by the dispatchers.
+ */
+class CursorPrefetcher {
+
+    private static final double READ_SIZE_SMOOTHING_FACTOR = 0.25;
+
+    private final ManagedCursorImpl cursor;
+
+    // Guarded by this
+    private double averageReadEntries;
+    private double averageEntrySize;
+    private Position prefetchPosition;
+    private long prefetchedSize;
+    private boolean prefetchCompleted;
+    // Kept until the read following the prefetch completes, so that the entries are not invalidated before
+    private Position pinnedPosition;
+
+    CursorPrefetcher(ManagedCursorImpl cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Record whether the read starting at the given position is served from the cache by the last prefetch.
+     */
+    void onReadStarted(Position readPosition) {
+        long wastedSize = 0;
+        boolean hit;
+        synchronized (this) {
+            if (prefetchPosition == null) {
+                return;
+            }
+            // The cursor might have moved somewhere else (eg: rewind or seek), or the prefetched entries might have
+            // been evicted from the cache in the meantime
+            hit = prefetchCompleted && prefetchPosition.compareTo(readPosition) == 0
+                    && cursor.ledger.entryCache.isCached(readPosition);
+            if (prefetchCompleted && !hit) {
+                wastedSize = prefetchedSize;
+            }
+            clear();
+        }
+        ManagedCursorMXBean mbean = cursor.getStats();
+        mbean.recordPrefetch(hit);
+        if (wastedSize > 0) {
+            mbean.addPrefetchWastedSize(wastedSize);
+        }
+    }
+
+    /**
+     * Update the read statistics of the cursor and trigger the prefetch of the next entries, if needed.
+     *
+     * @param nextReadPosition the read position of the cursor after the read
+     * @param entries the entries returned by the read
+     */
+    void onReadCompleted(Position nextReadPosition, List<Entry> entries) {
+        ManagedLedgerImpl ledger = cursor.ledger;
+        unpin();
+        int maxEntries = ledger.getConfig().getCursorPrefetchMaxEntries();
+        int entriesCount = entries.size();
+        if (maxEntries <= 0 || entriesCount == 0) {
+            return;
+        }
+        long entriesSize = 0;
+        for (int i = 0; i < entriesCount; i++) {
+            entriesSize += entries.get(i).getLength();
+        }
+
+        int entriesToPrefetch;
+        long estimatedSize;
+        synchronized (this) {
+            if (averageReadEntries == 0) {
+                averageReadEntries = entriesCount;
+                averageEntrySize = (double) entriesSize / entriesCount;
+            } else {
+                averageReadEntries += READ_SIZE_SMOOTHING_FACTOR * (entriesCount - averageReadEntries);
+                averageEntrySize += READ_SIZE_SMOOTHING_FACTOR
+                        * ((double) entriesSize / entriesCount - averageEntrySize);
+            }
+            if (prefetchPosition != null) {
+                // There is already a prefetch in progress
+                return;
+            }
+            entriesToPrefetch = (int) Math.min(maxEntries, Math.ceil(averageReadEntries));
+            estimatedSize = (long) (entriesToPrefetch * averageEntrySize);
+        }
+
+        if (cursor.isClosed() || ledger.isCursorActive(cursor) || !cursor.hasMoreEntries()) {
+            return;
+        }
+
+        long ledgerId = nextReadPosition.getLedgerId();
+        long firstEntry = nextReadPosition.getEntryId();
+        long lastEntry = Math.min(firstEntry + entriesToPrefetch - 1, getLastEntryInLedger(ledger, ledgerId));
+        if (lastEntry < firstEntry || !hasEnoughReadsBudget(ledger, estimatedSize)) {
+            return;
+        }
+
+        Position position = PositionFactory.create(ledgerId, firstEntry);
+        synchronized (this) {
+            if (prefetchPosition != null || pinnedPosition != null) {
+                return;
+            }
+            prefetchPosition = position;
+            pinnedPosition = position;
+            ledger.pinPrefetchedEntries(position);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] [{}] Prefetching entries from ledger {} - first={} last={}", ledger.getName(),
+                    cursor.getName(), ledgerId, firstEntry, lastEntry);
+        }
+        ledger.getLedgerHandle(ledgerId).thenAccept(readHandle -> {
+            ledger.entryCache.asyncReadEntry(readHandle, firstEntry, lastEntry, true, new ReadEntriesCallback() {
+                @Override
+                public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                    long size = 0;
+                    for (Entry entry : entries) {
+                        size += entry.getLength();
+                        entry.release();
+                    }
+                    prefetchCompleted(position, size);
+                }
+
+                @Override
+                public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("[{}] [{}] Failed to prefetch entries from {}", ledger.getName(),
+                                cursor.getName(), position, exception);
+                    }
+                    prefetchFailed(position);
+                }
+            }, null);
+        }).exceptionally(ex -> {
+            prefetchFailed(position);
+            return null;
+        });
+    }
+
+    private synchronized void prefetchCompleted(Position position, long size) {
+        if (prefetchPosition == position) {
+            prefetchedSize = size;
+            prefetchCompleted = true;
+        }
+    }
+
+    private synchronized void prefetchFailed(Position position) {
+        if (prefetchPosition == position) {
+            clear();
+            unpin();
+        }
+    }
+
+    /**
+     * Release the prefetched entries when the cursor is closed.
+     */
+    synchronized void close() {
+        clear();
+        unpin();
+    }
+
+    private synchronized void unpin() {
+        if (pinnedPosition != null) {
+            cursor.ledger.unpinPrefetchedEntries(pinnedPosition);
+            pinnedPosition = null;
+        }
+    }
+
+    private void clear() {
+        prefetchPosition = null;
+        prefetchedSize = 0;
+        prefetchCompleted = false;
+    }
+
+    private static long getLastEntryInLedger(ManagedLedgerImpl ledger, long ledgerId) {
+        Position lastConfirmedEntry = ledger.getLastConfirmedEntry();
+        if (ledgerId == lastConfirmedEntry.getLedgerId()) {
+            return lastConfirmedEntry.getEntryId();
+        }
+        LedgerInfo ledgerInfo = ledger.getLedgersInfo().get(ledgerId);
+        return ledgerInfo != null ? ledgerInfo.getEntries() - 1 : -1;
+    }
+
+    private static boolean hasEnoughReadsBudget(ManagedLedgerImpl ledger, long estimatedSize) {
+        EntryCacheManager entryCacheManager = ledger.getFactory().getEntryCacheManager();
+        if (!(entryCacheManager instanceof RangeEntryCacheManagerImpl)) {
+            return false;
+        }
+        InflightReadsLimiter limiter = ((RangeEntryCacheManagerImpl) entryCacheManager).getInflightReadsLimiter();
+        // Keep at least half of the remaining budget for the reads requested by the dispatchers
+        return limiter.hasRemainingBytes(2 * estimatedSize);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CursorPrefetcher.class);
+}
@@ -24,6 +24,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCounted;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.apache.bookkeeper.client.api.LedgerEntry;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.Position;
@@ -41,6 +42,9 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
         }
     };
 
+    private static final AtomicReferenceFieldUpdater<EntryImpl, AttachedMetadata> ATTACHED_METADATA_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(EntryImpl.class, AttachedMetadata.class, "attachedMetadata");
+
     private final Handle<EntryImpl> recyclerHandle;
     private long timestamp;
     private long ledgerId;
@@ -50,6 +54,10 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
 
     private Runnable onDeallocate;
 
+    // Shared by an entry and all the copies created from it, so that the metadata parsed by one reader of a
+    // cached entry is reused by the others
+    private volatile AttachedMetadata attachedMetadata;
+
     public static EntryImpl create(LedgerEntry ledgerEntry) {
         EntryImpl entry = RECYCLER.get();
         entry.timestamp = System.nanoTime();
@@ -100,6 +108,7 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
         entry.ledgerId = other.ledgerId;
         entry.entryId = other.entryId;
         entry.data = other.data.retainedDuplicate();
+        entry.attachedMetadata = other.getOrCreateAttachedMetadata();
         entry.setRefCnt(1);
         return entry;
     }
@@ -124,6 +133,41 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
         }
     }
 
+    /**
+     * Share the metadata attached to the other entry with this entry. This is used when an entry is copied into the
+     * entry cache, so that the copies read from the cache reuse the metadata parsed for the original entry.
+     */
+    public void shareAttachedMetadata(EntryImpl other) {
+        this.attachedMetadata = other.getOrCreateAttachedMetadata();
+    }
+
+    /**
+     * Get the metadata that was attached to this entry, or to any entry it shares the attachment with.
+     *
+     * @return the attached metadata or null if no metadata was attached yet
+     */
+    public Object getAttachedMetadata() {
+        AttachedMetadata current = attachedMetadata;
+        return current != null ? current.metadata : null;
+    }
+
+    /**
+     * Attach the metadata parsed from the entry payload. The attached object is shared with the other copies of the
+     * entry and must not be modified afterwards.
+     */
+    public void setAttachedMetadata(Object metadata) {
+        getOrCreateAttachedMetadata().metadata = metadata;
+    }
+
+    private AttachedMetadata getOrCreateAttachedMetadata() {
+        AttachedMetadata current = attachedMetadata;
+        if (current == null) {
+            ATTACHED_METADATA_UPDATER.compareAndSet(this, null, new AttachedMetadata());
+            current = attachedMetadata;
+        }
+        return current;
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -205,6 +249,7 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
         ledgerId = -1;
         entryId = -1;
         position = null;
+        attachedMetadata = null;
         recyclerHandle.recycle(this);
     }
 
@@ -212,4 +257,8 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
     public boolean matchesKey(Position key) {
         return key.compareTo(ledgerId, entryId) == 0;
     }
+
+    private static final class AttachedMetadata {
+        volatile Object metadata;
+    }
 }
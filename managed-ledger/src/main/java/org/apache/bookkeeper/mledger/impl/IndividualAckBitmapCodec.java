@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.LedgerEntryBitmap;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+/**
+ * Encodes the individually deleted entries of a cursor as one run-length compressed roaring bitmap per ledger.
+ *
+ * <p/>Compared to the list of ranges or the raw long arrays of the {@link java.util.BitSet}s, long runs of deleted
+ * entries and sparse holes take a few bytes each, and the bitmaps of the ledgers can be persisted separately, which
+ * allows to only persist the ledgers that were updated since the last snapshot.
+ */
+final class IndividualAckBitmapCodec {
+
+    private static final LedgerEntryBitmap.Builder EMPTY = LedgerEntryBitmap.newBuilder().setBitmap(ByteString.EMPTY);
+
+    private IndividualAckBitmapCodec() {
+    }
+
+    /**
+     * Encode the ranges of the given ledgers. The ledgers that don't have any range are encoded with an empty bitmap.
+     *
+     * @param rangeSet the individually deleted entries
+     * @param ledgers the ledgers to encode, or null to encode all the ledgers of the range set
+     * @param maxRanges the maximum number of ranges to encode
+     * @param output the list the ledger bitmaps are added to
+     * @return false if not all the ranges have been encoded because of the maxRanges limit
+     */
+    static boolean encode(LongPairRangeSet<?> rangeSet, Roaring64Bitmap ledgers, int maxRanges,
+                          List<LedgerEntryBitmap> output) {
+        LedgerEntryBitmap.Builder builder = LedgerEntryBitmap.newBuilder();
+        RoaringBitmap bitmap = new RoaringBitmap();
+        long[] currentLedger = {-1};
+        int[] ranges = {0};
+        Roaring64Bitmap remainingLedgers = ledgers != null ? ledgers.clone() : null;
+        rangeSet.forEachRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
+            if (lowerKey != upperKey) {
+                throw new IllegalArgumentException("Range across ledgers " + lowerKey + ":" + lowerValue + " - "
+                        + upperKey + ":" + upperValue);
+            }
+            if (ledgers != null && !ledgers.contains(lowerKey)) {
+                return true;
+            }
+            if (++ranges[0] > maxRanges) {
+                return false;
+            }
+            if (lowerKey != currentLedger[0]) {
+                addBitmap(output, builder, currentLedger[0], bitmap);
+                currentLedger[0] = lowerKey;
+                bitmap.clear();
+            }
+            // The ranges are open on the lower endpoint
+            bitmap.add(lowerValue + 1, upperValue + 1);
+            if (remainingLedgers != null) {
+                remainingLedgers.removeLong(lowerKey);
+            }
+            return true;
+        });
+        addBitmap(output, builder, currentLedger[0], bitmap);
+
+        if (remainingLedgers != null && ranges[0] <= maxRanges) {
+            // Updated ledgers that no longer have individually deleted entries
+            remainingLedgers.forEach(ledgerId -> output.add(EMPTY.setLedgerId(ledgerId).build()));
+        }
+        return ranges[0] <= maxRanges;
+    }
+
+    private static void addBitmap(List<LedgerEntryBitmap> output, LedgerEntryBitmap.Builder builder, long ledgerId,
+                                  RoaringBitmap bitmap) {
+        if (ledgerId < 0) {
+            return;
+        }
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        output.add(builder.setLedgerId(ledgerId).setBitmap(ByteString.copyFrom(buffer.array())).build());
+    }
+
+    /**
+     * Add the entries of the ledger bitmaps to the range set.
+     *
+     * @param bitmaps the serialized bitmap of each ledger
+     * @param rangeSet the range set to update
+     */
+    static void decode(Map<Long, ByteString> bitmaps, LongPairRangeSet<?> rangeSet) throws IOException {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (Map.Entry<Long, ByteString> e : bitmaps.entrySet()) {
+            if (e.getValue().isEmpty()) {
+                continue;
+            }
+            long ledgerId = e.getKey();
+            bitmap.deserialize(e.getValue().asReadOnlyByteBuffer());
+            long start = bitmap.nextValue(0);
+            while (start >= 0) {
+                long end = bitmap.nextAbsentValue((int) start);
+                rangeSet.addOpenClosed(ledgerId, start - 1, ledgerId, end - 1);
+                if (end > Integer.MAX_VALUE) {
+                    break;
+                }
+                start = bitmap.nextValue((int) end);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import com.google.common.util.concurrent.RateLimiter;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.time.Clock;
 import java.util.ArrayDeque;
@@ -46,6 +47,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
@@ -95,6 +97,7 @@ import org.apache.bookkeeper.mledger.PositionFactory;
 import org.apache.bookkeeper.mledger.ScanOutcome;
 import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.LedgerEntryBitmap;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.LongListMap;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.LongProperty;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
@@ -113,6 +116,7 @@ import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPairConsum
 import org.apache.pulsar.common.util.collections.LongPairRangeSet.RangeBoundConsumer;
 import org.apache.pulsar.metadata.api.Stat;
 import org.jspecify.annotations.Nullable;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -221,6 +225,12 @@ public class ManagedCursorImpl implements ManagedCursor {
     private long entriesReadCount;
     private long entriesReadSize;
     private int individualDeletedMessagesSerializedSize;
+
+    // State of the incremental persistence of the individual acks, guarded by the lock
+    private long individualAckSnapshotLedgerId = -1;
+    private long individualAckSnapshotEntryId = -1;
+    private long individualAckSnapshotSequence = -1;
+    private int individualAckDeltasSinceSnapshot;
     private static final String COMPACTION_CURSOR_NAME = "__compaction";
     private volatile boolean cacheReadEntry = false;
 
@@ -298,6 +308,8 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     protected final ManagedCursorMXBean mbean;
 
+    final CursorPrefetcher prefetcher;
+
     private volatile ManagedCursorAttributes managedCursorAttributes;
     private static final AtomicReferenceFieldUpdater<ManagedCursorImpl, ManagedCursorAttributes> ATTRIBUTES_UPDATER =
             AtomicReferenceFieldUpdater.newUpdater(ManagedCursorImpl.class, ManagedCursorAttributes.class,
@@ -340,6 +352,7 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
         this.mbean = new ManagedCursorMXBeanImpl(this);
         this.ledgerForceRecovery = getConfig().isLedgerForceRecovery();
+        this.prefetcher = new CursorPrefetcher(this);
     }
 
     private void updateCursorLedgerStat(ManagedCursorInfo cursorInfo, Stat stat) {
@@ -607,24 +620,34 @@ public class ManagedCursorImpl implements ManagedCursor {
                     return;
                 }
 
-                Map<String, Long> recoveredProperties = Collections.emptyMap();
-                if (positionInfo.getPropertiesCount() > 0) {
-                    // Recover properties map
-                    recoveredProperties = new HashMap<>();
-                    for (int i = 0; i < positionInfo.getPropertiesCount(); i++) {
-                        LongProperty property = positionInfo.getProperties(i);
-                        recoveredProperties.put(property.getName(), property.getValue());
-                    }
+                if (!positionInfo.hasIndividualDeletedMessagesSnapshotEntryId()) {
+                    recoveredCursor(positionInfo, null, lh);
+                    callback.operationComplete();
+                    return;
                 }
 
-                Position position = PositionFactory.create(positionInfo.getLedgerId(), positionInfo.getEntryId());
-                recoverIndividualDeletedMessages(positionInfo);
-                if (getConfig().isDeletionAtBatchIndexLevelEnabled()
-                    && positionInfo.getBatchedEntryDeletionIndexInfoCount() > 0) {
-                    recoverBatchDeletedIndexes(positionInfo.getBatchedEntryDeletionIndexInfoList());
-                }
-                recoveredCursor(position, recoveredProperties, cursorProperties, lh);
-                callback.operationComplete();
+                // The individual acks are stored incrementally, read the snapshot they are based on
+                long snapshotEntryId = positionInfo.getIndividualDeletedMessagesSnapshotEntryId();
+                lh.asyncReadEntries(snapshotEntryId, snapshotEntryId, (rc2, lh2, seq2, ctx2) -> {
+                    if (rc2 != BKException.Code.OK) {
+                        log.warn("[{}] Error reading individual acks snapshot {} from metadata ledger {} for cursor"
+                                + " {}: {}", ledger.getName(), snapshotEntryId, ledgerId, name,
+                                BKException.getMessage(rc2));
+                        callback.operationFailed(createManagedLedgerException(rc2));
+                        return;
+                    }
+                    LedgerEntry snapshotEntry = seq2.nextElement();
+                    mbean.addReadCursorLedgerSize(snapshotEntry.getLength());
+                    PositionInfo snapshot;
+                    try {
+                        snapshot = PositionInfo.parseFrom(snapshotEntry.getEntry());
+                    } catch (InvalidProtocolBufferException e) {
+                        callback.operationFailed(new ManagedLedgerException(e));
+                        return;
+                    }
+                    recoveredCursor(positionInfo, snapshot, lh);
+                    callback.operationComplete();
+                }, null);
             }, null);
         };
         try {
@@ -637,6 +660,54 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    private void recoveredCursor(PositionInfo positionInfo, PositionInfo individualAckSnapshot, LedgerHandle lh) {
+        Map<String, Long> recoveredProperties = Collections.emptyMap();
+        if (positionInfo.getPropertiesCount() > 0) {
+            // Recover properties map
+            recoveredProperties = new HashMap<>();
+            for (int i = 0; i < positionInfo.getPropertiesCount(); i++) {
+                LongProperty property = positionInfo.getProperties(i);
+                recoveredProperties.put(property.getName(), property.getValue());
+            }
+        }
+
+        Position position = PositionFactory.create(positionInfo.getLedgerId(), positionInfo.getEntryId());
+        if (positionInfo.getIndividualDeletedMessageBitmapsCount() > 0 || individualAckSnapshot != null) {
+            recoverIndividualDeletedMessageBitmaps(position, positionInfo, individualAckSnapshot);
+        } else {
+            recoverIndividualDeletedMessages(positionInfo);
+        }
+        if (getConfig().isDeletionAtBatchIndexLevelEnabled()
+            && positionInfo.getBatchedEntryDeletionIndexInfoCount() > 0) {
+            recoverBatchDeletedIndexes(positionInfo.getBatchedEntryDeletionIndexInfoList());
+        }
+        recoveredCursor(position, recoveredProperties, cursorProperties, lh);
+    }
+
+    private void recoverIndividualDeletedMessageBitmaps(Position markDeletePosition, PositionInfo positionInfo,
+                                                        PositionInfo individualAckSnapshot) {
+        // The bitmaps of the ledgers updated since the snapshot replace the ones of the snapshot
+        Map<Long, ByteString> bitmaps = new TreeMap<>();
+        if (individualAckSnapshot != null) {
+            individualAckSnapshot.getIndividualDeletedMessageBitmapsList()
+                    .forEach(bitmap -> bitmaps.put(bitmap.getLedgerId(), bitmap.getBitmap()));
+        }
+        positionInfo.getIndividualDeletedMessageBitmapsList()
+                .forEach(bitmap -> bitmaps.put(bitmap.getLedgerId(), bitmap.getBitmap()));
+        lock.writeLock().lock();
+        try {
+            individualDeletedMessages.clear();
+            IndividualAckBitmapCodec.decode(bitmaps, individualDeletedMessages);
+            individualDeletedMessages.removeAtMost(markDeletePosition.getLedgerId(),
+                    markDeletePosition.getEntryId());
+        } catch (Exception e) {
+            log.warn("[{}]-{} Failed to recover individualDeletedMessages from serialized bitmaps", ledger.getName(),
+                    name, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     public void recoverIndividualDeletedMessages(PositionInfo positionInfo) {
         if (positionInfo.getIndividualDeletedMessagesCount() > 0) {
             recoverIndividualDeletedMessages(positionInfo.getIndividualDeletedMessagesList());
@@ -872,6 +943,7 @@ public class ManagedCursorImpl implements ManagedCursor {
         skipCondition = skipCondition == null ? this::isMessageDeleted : skipCondition.or(this::isMessageDeleted);
         OpReadEntry op =
                 OpReadEntry.create(this, readPosition, numOfEntriesToRead, callback, ctx, maxPosition, skipCondition);
+        prefetcher.onReadStarted(op.readPosition);
         ledger.asyncReadEntries(op);
     }
 
@@ -2859,6 +2931,7 @@ public class ManagedCursorImpl implements ManagedCursor {
             callback.closeComplete(ctx);
             return;
         }
+        prefetcher.close();
         persistPositionWhenClosing(lastMarkDeleteEntry.newPosition, lastMarkDeleteEntry.properties,
                 new AsyncCallbacks.CloseCallback(){
 
@@ -3167,50 +3240,53 @@ public class ManagedCursorImpl implements ManagedCursor {
     }
 
     private List<MLDataFormats.MessageRange> buildIndividualDeletedMessageRanges() {
+        // The ranges are serialized from a snapshot, so that the acks are not blocked in the meantime
+        LongPairRangeSet<Position> individualDeletedMessagesSnapshot;
         lock.writeLock().lock();
         try {
             if (individualDeletedMessages.isEmpty()) {
                 this.individualDeletedMessagesSerializedSize = 0;
                 return Collections.emptyList();
             }
+            individualDeletedMessagesSnapshot = individualDeletedMessages.snapshot();
+            individualDeletedMessages.resetDirtyKeys();
+        } finally {
+            lock.writeLock().unlock();
+        }
 
-            MLDataFormats.NestedPositionInfo.Builder nestedPositionBuilder = MLDataFormats.NestedPositionInfo
-                    .newBuilder();
+        MLDataFormats.NestedPositionInfo.Builder nestedPositionBuilder = MLDataFormats.NestedPositionInfo
+                .newBuilder();
 
-            MLDataFormats.MessageRange.Builder messageRangeBuilder = MLDataFormats.MessageRange
-                    .newBuilder();
+        MLDataFormats.MessageRange.Builder messageRangeBuilder = MLDataFormats.MessageRange
+                .newBuilder();
 
-            AtomicInteger acksSerializedSize = new AtomicInteger(0);
-            List<MessageRange> rangeList = new ArrayList<>();
+        AtomicInteger acksSerializedSize = new AtomicInteger(0);
+        List<MessageRange> rangeList = new ArrayList<>();
 
-            individualDeletedMessages.forEachRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
-                MLDataFormats.NestedPositionInfo lowerPosition = nestedPositionBuilder
-                        .setLedgerId(lowerKey)
-                        .setEntryId(lowerValue)
-                        .build();
+        individualDeletedMessagesSnapshot.forEachRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
+            MLDataFormats.NestedPositionInfo lowerPosition = nestedPositionBuilder
+                    .setLedgerId(lowerKey)
+                    .setEntryId(lowerValue)
+                    .build();
 
-                MLDataFormats.NestedPositionInfo upperPosition = nestedPositionBuilder
-                        .setLedgerId(upperKey)
-                        .setEntryId(upperValue)
-                        .build();
+            MLDataFormats.NestedPositionInfo upperPosition = nestedPositionBuilder
+                    .setLedgerId(upperKey)
+                    .setEntryId(upperValue)
+                    .build();
 
-                MessageRange messageRange = messageRangeBuilder
-                        .setLowerEndpoint(lowerPosition)
-                        .setUpperEndpoint(upperPosition)
-                        .build();
+            MessageRange messageRange = messageRangeBuilder
+                    .setLowerEndpoint(lowerPosition)
+                    .setUpperEndpoint(upperPosition)
+                    .build();
 
-                acksSerializedSize.addAndGet(messageRange.getSerializedSize());
-                rangeList.add(messageRange);
+            acksSerializedSize.addAndGet(messageRange.getSerializedSize());
+            rangeList.add(messageRange);
 
-                return rangeList.size() <= getConfig().getMaxUnackedRangesToPersist();
-            });
+            return rangeList.size() <= getConfig().getMaxUnackedRangesToPersist();
+        });
 
-            this.individualDeletedMessagesSerializedSize = acksSerializedSize.get();
-            individualDeletedMessages.resetDirtyKeys();
-            return rangeList;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        this.individualDeletedMessagesSerializedSize = acksSerializedSize.get();
+        return rangeList;
     }
 
     private List<MLDataFormats.BatchedEntryDeletionIndexInfo> buildBatchEntryDeletionIndexInfoList() {
@@ -3245,6 +3321,97 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    /**
+     * Add the individually deleted entries to the position info, as compressed bitmaps. A snapshot with all the ledgers
+     * is written in each new cursor ledger and every {@link ManagedLedgerConfig#getIndividualAckSnapshotInterval()}
+     * entries, the other entries only contain the ledgers updated since the last snapshot. When the bitmaps can't
+     * hold all the ranges, nothing is added and the ranges are persisted as a list, as without the bitmaps.
+     *
+     * @return the sequence number of the snapshot, or -1 if only the updated ledgers or no bitmaps were added
+     */
+    private long buildIndividualDeletedMessageBitmaps(LedgerHandle lh, Builder piBuilder) {
+        // The bitmaps are encoded from snapshots of the ranges, so that the acks are not blocked in the meantime
+        int maxRanges = getConfig().getMaxUnackedRangesToPersist();
+        List<LedgerEntryBitmap> bitmaps = new ArrayList<>();
+        LongPairRangeSet<Position> individualDeletedMessagesSnapshot = null;
+        Roaring64Bitmap updatedLedgers = null;
+        long snapshotEntryId = -1;
+        lock.writeLock().lock();
+        try {
+            if (individualAckSnapshotLedgerId == lh.getId()
+                    && individualAckDeltasSinceSnapshot < getConfig().getIndividualAckSnapshotInterval()) {
+                individualDeletedMessagesSnapshot = individualDeletedMessages.snapshot();
+                updatedLedgers = individualDeletedMessages.getUpdatedLedgers().clone();
+                snapshotEntryId = individualAckSnapshotEntryId;
+                individualAckDeltasSinceSnapshot++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (individualDeletedMessagesSnapshot != null && encodeIndividualDeletedMessageBitmaps(
+                individualDeletedMessagesSnapshot, updatedLedgers, maxRanges, bitmaps)) {
+            piBuilder.addAllIndividualDeletedMessageBitmaps(bitmaps)
+                    .setIndividualDeletedMessagesSnapshotEntryId(snapshotEntryId);
+            individualDeletedMessagesSerializedSize = getSerializedSize(bitmaps);
+            return -1;
+        }
+
+        long snapshotSequence;
+        lock.writeLock().lock();
+        try {
+            individualDeletedMessagesSnapshot = individualDeletedMessages.snapshot();
+            individualDeletedMessages.resetUpdatedLedgers();
+            // Until this snapshot is persisted, the next entries can't be based on it
+            individualAckSnapshotLedgerId = -1;
+            individualAckDeltasSinceSnapshot = 0;
+            snapshotSequence = ++individualAckSnapshotSequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        bitmaps.clear();
+        if (!encodeIndividualDeletedMessageBitmaps(individualDeletedMessagesSnapshot, null, maxRanges, bitmaps)) {
+            // A truncated snapshot would lose the acks of the ranges that don't fit. The next entries will try to
+            // build a new snapshot, since no delta can be based on this one.
+            return -1;
+        }
+        piBuilder.addAllIndividualDeletedMessageBitmaps(bitmaps);
+        individualDeletedMessagesSerializedSize = getSerializedSize(bitmaps);
+        return snapshotSequence;
+    }
+
+    private boolean encodeIndividualDeletedMessageBitmaps(LongPairRangeSet<Position> rangeSet,
+                                                          Roaring64Bitmap ledgers, int maxRanges,
+                                                          List<LedgerEntryBitmap> bitmaps) {
+        try {
+            return IndividualAckBitmapCodec.encode(rangeSet, ledgers, maxRanges, bitmaps);
+        } catch (IllegalArgumentException e) {
+            log.warn("[{}]-{} Failed to encode individualDeletedMessages as bitmaps, persisting them as ranges",
+                    ledger.getName(), name, e);
+            return false;
+        }
+    }
+
+    private static int getSerializedSize(List<LedgerEntryBitmap> bitmaps) {
+        int size = 0;
+        for (LedgerEntryBitmap bitmap : bitmaps) {
+            size += bitmap.getSerializedSize();
+        }
+        return size;
+    }
+
+    private void individualAckSnapshotPersisted(long snapshotSequence, long cursorLedgerId, long entryId) {
+        lock.writeLock().lock();
+        try {
+            // Ignore the snapshot if a more recent one has been built in the meantime
+            if (snapshotSequence == individualAckSnapshotSequence) {
+                individualAckSnapshotLedgerId = cursorLedgerId;
+                individualAckSnapshotEntryId = entryId;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     void persistPositionToLedger(final LedgerHandle lh, MarkDeleteEntry mdEntry, final VoidCallback callback) {
         Position position = mdEntry.newPosition;
         Builder piBuilder = PositionInfo.newBuilder().setLedgerId(position.getLedgerId())
@@ -3252,6 +3419,7 @@ public class ManagedCursorImpl implements ManagedCursor {
                 .addAllBatchedEntryDeletionIndexInfo(buildBatchEntryDeletionIndexInfoList())
                 .addAllProperties(buildPropertiesMap(mdEntry.properties));
 
+        long individualAckSnapshotSequence = -1;
         Map<Long, long[]> internalRanges = null;
         /**
          * Cursor will create the {@link #individualDeletedMessages} typed {@link LongPairRangeSet.DefaultRangeSet} if
@@ -3262,22 +3430,30 @@ public class ManagedCursorImpl implements ManagedCursor {
          * Do not enable the feature that https://github.com/apache/pulsar/pull/9292 introduced, to avoid serialization
          * and deserialization error.
          */
-        if (getConfig().isUnackedRangesOpenCacheSetEnabled() && getConfig().isPersistIndividualAckAsLongArray()) {
-            lock.readLock().lock();
+        if (getConfig().isUnackedRangesOpenCacheSetEnabled() && getConfig().isPersistIndividualAckIncrementally()) {
+            individualAckSnapshotSequence = buildIndividualDeletedMessageBitmaps(lh, piBuilder);
+        } else if (getConfig().isUnackedRangesOpenCacheSetEnabled()
+                && getConfig().isPersistIndividualAckAsLongArray()) {
+            LongPairRangeSet<Position> individualDeletedMessagesSnapshot;
+            lock.writeLock().lock();
             try {
-                internalRanges = individualDeletedMessages.toRanges(getConfig().getMaxUnackedRangesToPersist());
+                individualDeletedMessagesSnapshot = individualDeletedMessages.snapshot();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                internalRanges = individualDeletedMessagesSnapshot.toRanges(getConfig().getMaxUnackedRangesToPersist());
             } catch (Exception e) {
                 log.warn("[{}]-{} Failed to serialize individualDeletedMessages", ledger.getName(), name, e);
-            } finally {
-                lock.readLock().unlock();
             }
         }
         if (internalRanges != null && !internalRanges.isEmpty()) {
             piBuilder.addAllIndividualDeletedMessageRanges(buildLongPropertiesMap(internalRanges));
-        } else {
+        } else if (individualAckSnapshotSequence < 0 && !piBuilder.hasIndividualDeletedMessagesSnapshotEntryId()) {
             piBuilder.addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges());
         }
         PositionInfo pi = piBuilder.build();
+        final long snapshotSequence = individualAckSnapshotSequence;
 
         if (log.isDebugEnabled()) {
             log.debug("[{}] Cursor {} Appending to ledger={} position={}", ledger.getName(), name, lh.getId(),
@@ -3293,6 +3469,9 @@ public class ManagedCursorImpl implements ManagedCursor {
                             lh1.getId());
                 }
 
+                if (snapshotSequence >= 0) {
+                    individualAckSnapshotPersisted(snapshotSequence, lh1.getId(), entryId);
+                }
                 rolloverLedgerIfNeeded(lh1);
 
                 mbean.persistToLedger(true);
@@ -3526,6 +3705,7 @@ public class ManagedCursorImpl implements ManagedCursor {
     }
 
     void asyncDeleteCursorLedger() {
+        prefetcher.close();
         asyncDeleteCursorLedger(DEFAULT_LEDGER_DELETE_RETRIES);
     }
 
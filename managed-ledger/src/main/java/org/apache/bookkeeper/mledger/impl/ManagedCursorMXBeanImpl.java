@@ -34,6 +34,10 @@ public class ManagedCursorMXBeanImpl implements ManagedCursorMXBean {
     private final LongAdder writeCursorLedgerLogicalSize = new LongAdder();
     private final LongAdder readCursorLedgerSize = new LongAdder();
 
+    private final LongAdder prefetchHits = new LongAdder();
+    private final LongAdder prefetchMisses = new LongAdder();
+    private final LongAdder prefetchWastedSize = new LongAdder();
+
     private final ManagedCursor managedCursor;
 
     public ManagedCursorMXBeanImpl(ManagedCursor managedCursor) {
@@ -114,4 +118,33 @@ public class ManagedCursorMXBeanImpl implements ManagedCursorMXBean {
     public long getReadCursorLedgerSize() {
         return readCursorLedgerSize.longValue();
     }
+
+    @Override
+    public void recordPrefetch(boolean hit) {
+        if (hit) {
+            prefetchHits.increment();
+        } else {
+            prefetchMisses.increment();
+        }
+    }
+
+    @Override
+    public void addPrefetchWastedSize(long size) {
+        prefetchWastedSize.add(size);
+    }
+
+    @Override
+    public long getPrefetchHits() {
+        return prefetchHits.longValue();
+    }
+
+    @Override
+    public long getPrefetchMisses() {
+        return prefetchMisses.longValue();
+    }
+
+    @Override
+    public long getPrefetchWastedSize() {
+        return prefetchWastedSize.longValue();
+    }
 }
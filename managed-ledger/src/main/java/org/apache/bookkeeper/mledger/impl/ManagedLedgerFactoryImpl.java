@@ -19,7 +19,6 @@
 package org.apache.bookkeeper.mledger.impl;
 
 import static org.apache.bookkeeper.mledger.ManagedLedgerException.getManagedLedgerException;
-import static org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.NULL_OFFLOAD_PROMISE;
 import static org.apache.pulsar.common.util.Runnables.catchingAndLoggingThrowables;
 import com.google.common.base.Predicates;
 import com.google.common.collect.BoundType;
@@ -88,6 +87,7 @@ import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.State;
 import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
 import org.apache.bookkeeper.mledger.impl.cache.EntryCacheManager;
 import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheManagerImpl;
+import org.apache.bookkeeper.mledger.impl.cache.WindowTinyLfuEntryCacheManagerImpl;
 import org.apache.bookkeeper.mledger.offload.OffloadUtils;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.LongProperty;
@@ -127,6 +127,8 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
     protected final ConcurrentHashMap<String, PendingInitializeManagedLedger> pendingInitializeLedgers =
         new ConcurrentHashMap<>();
     private final EntryCacheManager entryCacheManager;
+    @Getter
+    private final ManagedLedgerMaintenanceScheduler maintenanceScheduler;
 
     private long lastStatTimestamp = System.nanoTime();
     private final ScheduledFuture<?> statsTask;
@@ -228,7 +230,14 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
                 compressionConfigForManagedCursorInfo);
         this.config = config;
         this.mbean = new ManagedLedgerFactoryMBeanImpl(this);
-        this.entryCacheManager = new RangeEntryCacheManagerImpl(this, scheduledExecutor, openTelemetry);
+        if (config.getEntryCacheType() == ManagedLedgerFactoryConfig.EntryCacheType.WINDOW_TINY_LFU) {
+            this.entryCacheManager = new WindowTinyLfuEntryCacheManagerImpl(this, scheduledExecutor, openTelemetry);
+        } else {
+            this.entryCacheManager = new RangeEntryCacheManagerImpl(this, scheduledExecutor, openTelemetry);
+        }
+        this.maintenanceScheduler = new ManagedLedgerMaintenanceScheduler(scheduledExecutor,
+                config.getMaintenanceMaxTasksPerSecond(), config.getMaintenanceMaxJitterMillis(),
+                config.getMaintenanceMaxQueueTimeMillis(), openTelemetry);
         this.statsTask = scheduledExecutor.scheduleWithFixedDelay(catchingAndLoggingThrowables(this::refreshStats),
                 0, config.getStatsPeriodSeconds(), TimeUnit.SECONDS);
         this.flushCursorsTask = scheduledExecutor.scheduleAtFixedRate(catchingAndLoggingThrowables(this::flushCursors),
@@ -430,7 +439,7 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
                                 newledger.maybeUpdateCursorBeforeTrimmingConsumedLedger();
                                 // May need to trigger offloading
                                 if (config.isTriggerOffloadOnTopicLoad()) {
-                                    newledger.maybeOffloadInBackground(NULL_OFFLOAD_PROMISE);
+                                    newledger.scheduleOffload();
                                 }
                             }
 
@@ -589,6 +598,7 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         statsTask.cancel(true);
         flushCursorsTask.cancel(true);
         cacheEvictionExecutor.shutdownNow();
+        maintenanceScheduler.close();
 
         List<String> ledgerNames = new ArrayList<>(this.ledgers.keySet());
         List<CompletableFuture<Void>> futures = new ArrayList<>(ledgerNames.size());
@@ -657,7 +667,7 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
                     openTelemetryManagedLedgerStats.close();
                     openTelemetryCacheStats.close();
                     scheduledExecutor.shutdownNow();
-                    entryCacheManager.clear();
+                    entryCacheManager.close();
                     if (bookkeeperFactory instanceof DefaultBkFactory defaultBkFactory) {
                         try {
                             defaultBkFactory.close();
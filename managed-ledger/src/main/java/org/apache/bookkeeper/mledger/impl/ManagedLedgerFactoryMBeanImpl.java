@@ -21,6 +21,8 @@ package org.apache.bookkeeper.mledger.impl;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactoryMXBean;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheManager;
+import org.apache.bookkeeper.mledger.impl.cache.WindowTinyLfuEntryCacheManagerImpl;
 import org.apache.pulsar.common.stats.Rate;
 
 @SuppressWarnings("checkstyle:javadoctype")
@@ -156,4 +158,13 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         return cacheEntryCount.sum();
     }
 
+    @Override
+    public long getCacheRejectedEntriesCount() {
+        EntryCacheManager entryCacheManager = factory.getEntryCacheManager();
+        if (entryCacheManager instanceof WindowTinyLfuEntryCacheManagerImpl) {
+            return ((WindowTinyLfuEntryCacheManagerImpl) entryCacheManager).getRejectedEntriesCount();
+        }
+        return 0;
+    }
+
 }
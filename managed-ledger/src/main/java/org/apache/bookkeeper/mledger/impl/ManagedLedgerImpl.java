@@ -65,6 +65,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -123,6 +125,7 @@ import org.apache.bookkeeper.mledger.PositionBound;
 import org.apache.bookkeeper.mledger.PositionFactory;
 import org.apache.bookkeeper.mledger.WaitingEntryCallBack;
 import org.apache.bookkeeper.mledger.impl.ManagedCursorImpl.VoidCallback;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerMaintenanceScheduler.TaskType;
 import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
 import org.apache.bookkeeper.mledger.impl.cache.EntryCache;
 import org.apache.bookkeeper.mledger.intercept.ManagedLedgerInterceptor;
@@ -210,6 +213,26 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
     // uninitialized cursor future from the 1st request
     final Map<String, CompletableFuture<ManagedCursor>> uninitializedCursors;
 
+    /**
+     * Cursors whose recovery is deferred until they are opened, or until the positions of all the cursors are needed,
+     * when {@link ManagedLedgerConfig#isCursorRecoveryOnDemand()} is enabled. They are also in
+     * {@link #uninitializedCursors} and are guarded by the same lock.
+     */
+    final Map<String, ManagedCursorImpl> deferredCursors = new HashMap<>();
+
+    // Read positions of the prefetches of the backlogged cursors which are not read yet, with their count
+    private final ConcurrentSkipListMap<Position, Integer> prefetchedPositions = new ConcurrentSkipListMap<>();
+
+    // Notified when a cursor whose recovery was lazy or deferred is recovered, with the lock of the managed ledger held
+    private volatile Consumer<ManagedCursor> lazyCursorRecoveryListener;
+
+    // Duration of the phases of the initialization of the managed ledger, -1 until they are completed
+    private long initializeStartTimeNanos;
+    @Getter
+    private volatile long ledgersRecoveryTimeNanos = -1;
+    @Getter
+    private volatile long cursorsRecoveryTimeNanos = -1;
+
     final EntryCache entryCache;
 
     private ScheduledFuture<?> timeoutTask;
@@ -393,6 +416,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
     synchronized void initialize(final ManagedLedgerInitializeLedgerCallback callback, final Object ctx) {
         log.info("Opening managed ledger {}", name);
+        initializeStartTimeNanos = System.nanoTime();
 
         // Fetch the list of existing ledgers in the managed ledger
         store.getManagedLedgerInfo(name, config.isCreateIfMissing(), config.getProperties(),
@@ -617,10 +641,24 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         }, ledgerMetadata);
     }
 
-    protected void initializeCursors(final ManagedLedgerInitializeLedgerCallback callback) {
+    protected void initializeCursors(final ManagedLedgerInitializeLedgerCallback initializeCallback) {
         if (log.isDebugEnabled()) {
             log.debug("[{}] initializing cursors", name);
         }
+        final long cursorsRecoveryStartTimeNanos = System.nanoTime();
+        ledgersRecoveryTimeNanos = cursorsRecoveryStartTimeNanos - initializeStartTimeNanos;
+        final ManagedLedgerInitializeLedgerCallback callback = new ManagedLedgerInitializeLedgerCallback() {
+            @Override
+            public void initializeComplete() {
+                cursorsRecoveryTimeNanos = System.nanoTime() - cursorsRecoveryStartTimeNanos;
+                initializeCallback.initializeComplete();
+            }
+
+            @Override
+            public void initializeFailed(ManagedLedgerException e) {
+                initializeCallback.initializeFailed(e);
+            }
+        };
         store.getCursors(name, new MetaStoreCallback<List<String>>() {
             @Override
             public void operationComplete(List<String> consumers, Stat s) {
@@ -667,35 +705,22 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                     }
                 } else {
                     // Lazily recover cursors by put them to uninitializedCursors map.
-                    for (final String cursorName : consumers) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("[{}] Recovering cursor {} lazily", name, cursorName);
-                        }
-                        final ManagedCursorImpl cursor;
-                        cursor = createCursor(ManagedLedgerImpl.this.bookKeeper, cursorName);
-                        CompletableFuture<ManagedCursor> cursorRecoveryFuture = new CompletableFuture<>();
-                        uninitializedCursors.put(cursorName, cursorRecoveryFuture);
-
-                        cursor.recover(new VoidCallback() {
-                            @Override
-                            public void operationComplete() {
-                                log.info("[{}] Lazy recovery for cursor {} completed. pos={} -- todo={}", name,
-                                        cursorName, cursor.getMarkDeletedPosition(), cursorCount.get() - 1);
-                                cursor.setActive();
-                                synchronized (ManagedLedgerImpl.this) {
-                                    addCursor(cursor);
-                                    uninitializedCursors.remove(cursor.getName()).complete(cursor);
-                                }
+                    synchronized (ManagedLedgerImpl.this) {
+                        for (final String cursorName : consumers) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("[{}] Recovering cursor {} lazily", name, cursorName);
                             }
-
-                            @Override
-                            public void operationFailed(ManagedLedgerException exception) {
-                                log.warn("[{}] Lazy recovery for cursor {} failed", name, cursorName, exception);
-                                synchronized (ManagedLedgerImpl.this) {
-                                    uninitializedCursors.remove(cursor.getName()).completeExceptionally(exception);
-                                }
+                            final ManagedCursorImpl cursor;
+                            cursor = createCursor(ManagedLedgerImpl.this.bookKeeper, cursorName);
+                            CompletableFuture<ManagedCursor> cursorRecoveryFuture = new CompletableFuture<>();
+                            uninitializedCursors.put(cursorName, cursorRecoveryFuture);
+                            if (config.isCursorRecoveryOnDemand()) {
+                                // Recovered when the cursor is opened, or when all the cursors are needed
+                                deferredCursors.put(cursorName, cursor);
+                            } else {
+                                recoverCursorLazily(cursor);
                             }
-                        });
+                        }
                     }
                     // Complete ledger recovery.
                     callback.initializeComplete();
@@ -710,6 +735,99 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         });
     }
 
+    private void recoverCursorLazily(ManagedCursorImpl cursor) {
+        cursor.recover(new VoidCallback() {
+            @Override
+            public void operationComplete() {
+                log.info("[{}] Lazy recovery for cursor {} completed. pos={}", name, cursor.getName(),
+                        cursor.getMarkDeletedPosition());
+                cursor.setActive();
+                synchronized (ManagedLedgerImpl.this) {
+                    addCursor(cursor);
+                    // The listener is notified before the cursor is no longer reported as being recovered
+                    Consumer<ManagedCursor> listener = lazyCursorRecoveryListener;
+                    if (listener != null) {
+                        try {
+                            listener.accept(cursor);
+                        } catch (Throwable t) {
+                            log.error("[{}] Failed to notify the recovery of cursor {}", name, cursor.getName(), t);
+                        }
+                    }
+                    uninitializedCursors.remove(cursor.getName()).complete(cursor);
+                }
+            }
+
+            @Override
+            public void operationFailed(ManagedLedgerException exception) {
+                log.warn("[{}] Lazy recovery for cursor {} failed", name, cursor.getName(), exception);
+                synchronized (ManagedLedgerImpl.this) {
+                    uninitializedCursors.remove(cursor.getName()).completeExceptionally(exception);
+                }
+            }
+        });
+    }
+
+    private synchronized void recoverDeferredCursor(String cursorName) {
+        ManagedCursorImpl cursor = deferredCursors.remove(cursorName);
+        if (cursor != null) {
+            log.info("[{}] Recovering cursor {} on demand", name, cursorName);
+            recoverCursorLazily(cursor);
+        }
+    }
+
+    /**
+     * Set the listener notified when a cursor whose recovery was lazy or deferred is recovered. Such a cursor is not
+     * returned by {@link #getCursors()} until then, see {@link #getRecoveringCursorNames()}. The listener is called
+     * with the lock of the managed ledger held and must not block.
+     */
+    public void setLazyCursorRecoveryListener(Consumer<ManagedCursor> listener) {
+        this.lazyCursorRecoveryListener = listener;
+    }
+
+    /**
+     * @return the names of the cursors that are being created or recovered, or whose recovery is deferred, and that
+     *         are not returned by {@link #getCursors()} yet
+     */
+    public synchronized List<String> getRecoveringCursorNames() {
+        return new ArrayList<>(uninitializedCursors.keySet());
+    }
+
+    /**
+     * Whether the cursor is being created or recovered, or its recovery is deferred.
+     */
+    public synchronized boolean isCursorRecovering(String cursorName) {
+        return uninitializedCursors.containsKey(cursorName);
+    }
+
+    /**
+     * Recover the cursors whose recovery is deferred and wait for the recovery of all the cursors, so that
+     * {@link #getCursors()} returns all the cursors of the managed ledger. It must be called before enumerating the
+     * cursors when all of them are needed and {@link ManagedLedgerConfig#isLazyCursorRecovery()} is enabled.
+     *
+     * @return a future completed when the cursors are recovered, or failed if one of them can't be recovered
+     */
+    public synchronized CompletableFuture<Void> recoverDeferredCursors() {
+        if (uninitializedCursors.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        new ArrayList<>(deferredCursors.keySet()).forEach(this::recoverDeferredCursor);
+        return FutureUtil.waitForAll(new ArrayList<>(uninitializedCursors.values()));
+    }
+
+    /**
+     * Wait for the recovery of all the cursors, starting the recovery of the deferred ones.
+     *
+     * @return a future completed when none of the cursors is being recovered, whether the recoveries failed or not
+     */
+    synchronized CompletableFuture<Void> waitForCursorsRecovery() {
+        if (uninitializedCursors.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        new ArrayList<>(deferredCursors.keySet()).forEach(this::recoverDeferredCursor);
+        return CompletableFuture.allOf(uninitializedCursors.values().toArray(new CompletableFuture[0]))
+                .handle((__, ex) -> null);
+    }
+
     private void addCursor(ManagedCursorImpl cursor) {
         Position positionForOrdering = null;
         if (cursor.isDurable()) {
@@ -994,6 +1112,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
             return;
         }
 
+        recoverDeferredCursor(cursorName);
         if (uninitializedCursors.containsKey(cursorName)) {
             uninitializedCursors.get(cursorName).thenAccept(cursor -> callback.openCursorComplete(cursor, ctx))
                     .exceptionally(ex -> {
@@ -1055,6 +1174,13 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
     @Override
     public synchronized void asyncDeleteCursor(final String consumerName, final DeleteCursorCallback callback,
             final Object ctx) {
+        if (uninitializedCursors.containsKey(consumerName)) {
+            // The cursor must be recovered before being deleted
+            recoverDeferredCursor(consumerName);
+            uninitializedCursors.get(consumerName)
+                    .whenComplete((__, ex) -> asyncDeleteCursor(consumerName, callback, ctx));
+            return;
+        }
         final ManagedCursorImpl cursor = (ManagedCursorImpl) cursors.get(consumerName);
         if (cursor == null) {
             callback.deleteCursorFailed(new ManagedLedgerException.CursorNotFoundException("ManagedCursor not found: "
@@ -1077,7 +1203,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                 cursors.removeCursor(consumerName);
                 deactivateCursorByName(consumerName);
 
-                trimConsumedLedgersInBackground();
+                scheduleTrimConsumedLedgers();
 
                 log.info("[{}] [{}] Deleted cursor", name, consumerName);
                 callback.deleteCursorComplete(ctx);
@@ -1584,6 +1710,10 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
     @Override
     public synchronized void asyncClose(final CloseCallback callback, final Object ctx) {
+        // The deferred cursors were never recovered, so there is nothing to close
+        deferredCursors.keySet().forEach(cursorName -> uninitializedCursors.remove(cursorName)
+                .completeExceptionally(new ManagedLedgerAlreadyClosedException("Managed ledger was closed")));
+        deferredCursors.clear();
         State state = STATE_UPDATER.get(this);
         if (state.isFenced()) {
             cancelScheduledTasks();
@@ -1875,9 +2005,9 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
             mbean.startDataLedgerDeleteOp();
         }
 
-        trimConsumedLedgersInBackground();
+        scheduleTrimConsumedLedgers();
 
-        maybeOffloadInBackground(NULL_OFFLOAD_PROMISE);
+        scheduleOffload();
 
         createLedgerAfterClosed();
     }
@@ -2278,6 +2408,8 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
     protected void asyncReadEntry(ReadHandle ledger, long firstEntry, long lastEntry, OpReadEntry opReadEntry,
             Object ctx) {
+        boolean shouldCacheEntry = opReadEntry.cursor.isCacheReadEntry()
+                || shouldShareReadEntries(opReadEntry.cursor, ledger.getId(), firstEntry, lastEntry);
         if (config.getReadEntryTimeoutSeconds() > 0) {
             // set readOpCount to uniquely validate if ReadEntryCallbackWrapper is already recycled
             long readOpCount = READ_OP_COUNT_UPDATER.incrementAndGet(this);
@@ -2285,14 +2417,48 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
             ReadEntryCallbackWrapper readCallback = ReadEntryCallbackWrapper.create(name, ledger.getId(), firstEntry,
                     opReadEntry, readOpCount, createdTime, ctx);
             lastReadCallback = readCallback;
-            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, opReadEntry.cursor.isCacheReadEntry(),
-                    readCallback, readOpCount);
+            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, shouldCacheEntry, readCallback, readOpCount);
         } else {
-            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, opReadEntry.cursor.isCacheReadEntry(), opReadEntry,
-                    ctx);
+            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, shouldCacheEntry, opReadEntry, ctx);
         }
     }
 
+    /**
+     * Check whether the entries about to be read by a cursor are going to be read shortly after by other cursors,
+     * because their read position is at most {@link ManagedLedgerConfig#getReadAheadSharingMaxDistanceEntries()}
+     * entries behind the read range. In that case, the entries read from BookKeeper are inserted in the cache and the
+     * trailing cursors are served from the cache, or join the pending read, instead of reading the same entries again
+     * from the bookies.
+     * <p>
+     * Only the active cursors are checked, since the inactive ones don't read, and none of them is checked when the
+     * slowest of them is already past the read range, which is the common case of a single backlogged cursor.
+     */
+    @VisibleForTesting
+    boolean shouldShareReadEntries(ManagedCursor reader, long ledgerId, long firstEntry, long lastEntry) {
+        int maxDistance = config.getReadAheadSharingMaxDistanceEntries();
+        if (maxDistance <= 0) {
+            return false;
+        }
+        // the active cursors are ordered by their read position, or by their mark delete position which isn't after
+        // their read position
+        Position slowestPosition = activeCursors.getSlowestReaderPosition();
+        if (slowestPosition == null || slowestPosition.getLedgerId() > ledgerId
+                || (slowestPosition.getLedgerId() == ledgerId && slowestPosition.getEntryId() > lastEntry)) {
+            return false;
+        }
+        for (ManagedCursor cursor : activeCursors) {
+            if (cursor == reader) {
+                continue;
+            }
+            Position readPosition = cursor.getReadPosition();
+            if (readPosition.getLedgerId() == ledgerId && readPosition.getEntryId() <= lastEntry
+                    && readPosition.getEntryId() >= firstEntry - maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     static final class ReadEntryCallbackWrapper implements ReadEntryCallback, ReadEntriesCallback {
 
         volatile ReadEntryCallback readEntryCallback;
@@ -2456,20 +2622,40 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
     // slowest reader position is earliest mark delete position when cacheEvictionByMarkDeletedPosition=true
     // it is the earliest read position when cacheEvictionByMarkDeletedPosition=false
+    // the entries prefetched for backlogged cursors are kept until they are read, see CursorPrefetcher
     private void invalidateEntriesUpToSlowestReaderPosition() {
         if (entryCache.getSize() <= 0) {
             return;
         }
+        Map.Entry<Position, Integer> firstPrefetchedEntry = prefetchedPositions.firstEntry();
+        Position firstPrefetchedPosition = firstPrefetchedEntry != null ? firstPrefetchedEntry.getKey() : null;
         if (!activeCursors.isEmpty()) {
             Position evictionPos = activeCursors.getSlowestReaderPosition();
             if (evictionPos != null) {
+                if (firstPrefetchedPosition != null && firstPrefetchedPosition.compareTo(evictionPos) < 0) {
+                    evictionPos = firstPrefetchedPosition;
+                }
                 entryCache.invalidateEntries(evictionPos);
             }
+        } else if (firstPrefetchedPosition != null) {
+            entryCache.invalidateEntries(firstPrefetchedPosition);
         } else {
             entryCache.clear();
         }
     }
 
+    /**
+     * Keep the cached entries from the given position until {@link #unpinPrefetchedEntries(Position)} is called, when
+     * invalidating the entries already read by the active cursors.
+     */
+    void pinPrefetchedEntries(Position position) {
+        prefetchedPositions.merge(position, 1, Integer::sum);
+    }
+
+    void unpinPrefetchedEntries(Position position) {
+        prefetchedPositions.computeIfPresent(position, (__, count) -> count > 1 ? count - 1 : null);
+    }
+
     void onCursorMarkDeletePositionUpdated(ManagedCursorImpl cursor, Position newPosition) {
         if (config.isCacheEvictionByMarkDeletedPosition()) {
             updateActiveCursor(cursor, newPosition);
@@ -2481,7 +2667,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         Pair<Position, Position> pair = cursors.cursorUpdated(cursor, newPosition);
         if (pair == null) {
             // Cursor has been removed in the meantime
-            trimConsumedLedgersInBackground();
+            scheduleTrimConsumedLedgers();
             return;
         }
 
@@ -2495,7 +2681,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
         // Only trigger a trimming when switching to the next ledger
         if (previousSlowestReader.getLedgerId() != newPosition.getLedgerId()) {
-            trimConsumedLedgersInBackground();
+            scheduleTrimConsumedLedgers();
         }
     }
 
@@ -2583,8 +2769,62 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         }
     }
 
-    private void trimConsumedLedgersInBackground() {
-        trimConsumedLedgersInBackground(Futures.NULL_PROMISE);
+    /**
+     * Trim the consumed ledgers in background, once the maintenance scheduler of the factory allows it.
+     */
+    @Override
+    public void scheduleTrimConsumedLedgers() {
+        scheduleMaintenance(TaskType.TRIM, this::getConsumedLedgersSize,
+                () -> trimConsumedLedgersInBackground(Futures.NULL_PROMISE));
+    }
+
+    /**
+     * Offload the ledgers in background if needed, once the maintenance scheduler of the factory allows it.
+     */
+    public void scheduleOffload() {
+        if (getOffloadPoliciesIfAppendable().isEmpty()) {
+            return;
+        }
+        scheduleMaintenance(TaskType.OFFLOAD, this::getNotOffloadedLedgersSize,
+                () -> maybeOffloadInBackground(NULL_OFFLOAD_PROMISE));
+    }
+
+    private void scheduleMaintenance(TaskType type, LongSupplier reclaimableBytes, Runnable task) {
+        factory.getMaintenanceScheduler().submit(this, type, reclaimableBytes, () -> {
+            State state = STATE_UPDATER.get(this);
+            if (state != State.Closed && !state.isFenced()) {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * @return the size of the ledgers before the ledger of the slowest durable cursor, which are consumed
+     */
+    long getConsumedLedgersSize() {
+        Position slowestReaderPosition = cursors.getSlowestReaderPosition();
+        if (slowestReaderPosition == null) {
+            return 0;
+        }
+        long size = 0;
+        for (LedgerInfo ledgerInfo : ledgers.headMap(slowestReaderPosition.getLedgerId(), false).values()) {
+            size += ledgerInfo.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of the closed ledgers which are not offloaded yet
+     */
+    long getNotOffloadedLedgersSize() {
+        long size = 0;
+        for (LedgerInfo ledgerInfo : ledgers.values()) {
+            if (ledgerInfo.getTimestamp() != 0L
+                    && !(ledgerInfo.hasOffloadContext() && ledgerInfo.getOffloadContext().getComplete())) {
+                size += ledgerInfo.getSize();
+            }
+        }
+        return size;
     }
 
     @Override
@@ -2792,6 +3032,13 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
             return;
         }
 
+        CompletableFuture<Void> cursorsRecovery = waitForCursorsRecovery();
+        if (!cursorsRecovery.isDone()) {
+            // The ledgers can't be trimmed before the positions of all the cursors are known
+            cursorsRecovery.whenComplete((__, ex) -> trimConsumedLedgersInBackground(isTruncate, promise));
+            return;
+        }
+
         // Ensure only one trimming operation is active
         if (!trimmerMutex.tryLock()) {
             scheduleDeferredTrimming(isTruncate, promise);
@@ -3009,9 +3256,8 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
     @Override
     public void rolloverCursorsInBackground() {
         if (cursors.hasDurableCursors()) {
-            executor.execute(() -> {
-                cursors.forEach(ManagedCursor::periodicRollover);
-            });
+            // Not queued in the maintenance scheduler, which prioritizes the tasks by the bytes they can reclaim
+            executor.execute(() -> cursors.forEach(ManagedCursor::periodicRollover));
         }
     }
 
@@ -3163,7 +3409,11 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
     }
 
     private void asyncDeleteInternal(final DeleteLedgerCallback callback, final Object ctx) {
+        // The cursors whose recovery is deferred are not in this.cursors yet
+        waitForCursorsRecovery().thenRun(() -> deleteAllCursors(callback, ctx));
+    }
 
+    private void deleteAllCursors(final DeleteLedgerCallback callback, final Object ctx) {
         List<ManagedCursor> cursors = Lists.newArrayList(this.cursors);
         if (cursors.isEmpty()) {
             // No cursors to delete, proceed with next step
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.apache.pulsar.common.util.Runnables.catchingAndLoggingThrowables;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.ObservableLongUpDownCounter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.apache.pulsar.common.stats.MetricsUtil;
+import org.apache.pulsar.opentelemetry.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Broker-wide scheduler of the background maintenance tasks of the managed ledgers which can reclaim storage: trimming
+ * of the consumed ledgers and offloading.
+ *
+ * <p>When many topics roll their ledgers at the same time, running these tasks right away causes bursts of metadata
+ * updates and of ledger deletions. When a rate is configured, the tasks are instead queued, coalesced per managed
+ * ledger, and executed at most at that rate, the ones which can reclaim the most bytes first, each one after a random
+ * jitter. A task which has been waiting for longer than the max queue time is executed before the others, so that the
+ * tasks of the small managed ledgers are not starved by the ones of the large managed ledgers. Without a rate, the
+ * tasks are executed right away.
+ */
+public class ManagedLedgerMaintenanceScheduler implements AutoCloseable {
+
+    public static final AttributeKey<String> MAINTENANCE_TASK_TYPE =
+            AttributeKey.stringKey("pulsar.managed_ledger.maintenance.task");
+    public enum TaskType {
+        TRIM,
+        OFFLOAD;
+        private final Attributes attributes = Attributes.of(MAINTENANCE_TASK_TYPE, name().toLowerCase());
+    }
+
+    public static final String QUEUE_SIZE_COUNTER = "pulsar.broker.managed_ledger.maintenance.queue.size";
+    private final ObservableLongUpDownCounter queueSizeCounter;
+
+    public static final String QUEUE_DURATION_METRIC_NAME = "pulsar.broker.managed_ledger.maintenance.queue.duration";
+    private final DoubleHistogram queueDuration;
+
+    private static final long DISPATCH_INTERVAL_MILLIS = 100;
+
+    private final ScheduledExecutorService scheduledExecutor;
+    private final int maxTasksPerSecond;
+    private final long maxJitterMillis;
+    private final long maxQueueTimeNanos;
+
+    // Guarded by this
+    // The queued tasks by priority
+    private final TreeSet<Task> queue = new TreeSet<>(Comparator.comparingLong((Task task) -> task.reclaimableBytes)
+            .reversed().thenComparingLong(task -> task.sequence));
+    // The queued tasks in submission order, the oldest first
+    private final Map<Task, Task> queuedTasks = new LinkedHashMap<>();
+    private long sequence;
+    private double availablePermits;
+    private long lastDispatchTimeNanos;
+
+    private final LongAdder executedTasks = new LongAdder();
+    private final ScheduledFuture<?> dispatchTask;
+
+    public ManagedLedgerMaintenanceScheduler(ScheduledExecutorService scheduledExecutor, int maxTasksPerSecond,
+                                             long maxJitterMillis, long maxQueueTimeMillis,
+                                             OpenTelemetry openTelemetry) {
+        this.scheduledExecutor = scheduledExecutor;
+        this.maxTasksPerSecond = maxTasksPerSecond;
+        this.maxJitterMillis = maxJitterMillis;
+        this.maxQueueTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueTimeMillis);
+        this.lastDispatchTimeNanos = System.nanoTime();
+        if (maxTasksPerSecond > 0) {
+            this.dispatchTask = scheduledExecutor.scheduleWithFixedDelay(catchingAndLoggingThrowables(this::dispatch),
+                    DISPATCH_INTERVAL_MILLIS, DISPATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            this.dispatchTask = null;
+        }
+
+        var meter = openTelemetry.getMeter(Constants.BROKER_INSTRUMENTATION_SCOPE_NAME);
+        queueSizeCounter = meter
+                .upDownCounterBuilder(QUEUE_SIZE_COUNTER)
+                .setUnit("{task}")
+                .setDescription("The number of managed ledger maintenance tasks waiting to be executed.")
+                .buildWithCallback(measurement -> measurement.record(getQueueSize()));
+        queueDuration = meter
+                .histogramBuilder(QUEUE_DURATION_METRIC_NAME)
+                .setUnit("s")
+                .setDescription("Time spent by the managed ledger maintenance tasks waiting to be executed.")
+                .build();
+    }
+
+    /**
+     * Submit a maintenance task of a managed ledger. A task of the same type is only queued once per managed ledger,
+     * and submitting it again while it is queued only updates its priority.
+     *
+     * @param managedLedger the managed ledger the task belongs to
+     * @param type the type of the task
+     * @param reclaimableBytes the estimated number of bytes the task can reclaim, used as priority. It is only
+     *                         computed when the task is queued
+     * @param runnable the task
+     */
+    public void submit(ManagedLedgerImpl managedLedger, TaskType type, LongSupplier reclaimableBytes,
+                       Runnable runnable) {
+        if (dispatchTask == null) {
+            executedTasks.increment();
+            runnable.run();
+            return;
+        }
+        long bytes = reclaimableBytes.getAsLong();
+        synchronized (this) {
+            Task task = new Task(managedLedger, type, bytes, runnable, sequence++);
+            Task queuedTask = queuedTasks.putIfAbsent(task, task);
+            if (queuedTask == null) {
+                queue.add(task);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Maintenance task {} is already queued, updating its priority from {} to {}",
+                            managedLedger.getName(), type, queuedTask.reclaimableBytes, bytes);
+                }
+                queue.remove(queuedTask);
+                queuedTask.reclaimableBytes = bytes;
+                queue.add(queuedTask);
+            }
+        }
+    }
+
+    private void dispatch() {
+        List<Task> tasks = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            availablePermits = Math.min(maxTasksPerSecond,
+                    availablePermits + maxTasksPerSecond * (now - lastDispatchTimeNanos) / 1e9);
+            lastDispatchTimeNanos = now;
+            while (availablePermits >= 1 && !queue.isEmpty()) {
+                tasks.add(pollNextTask(now));
+                availablePermits--;
+            }
+        }
+        for (Task task : tasks) {
+            long jitterMillis = maxJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(maxJitterMillis) : 0;
+            scheduledExecutor.schedule(catchingAndLoggingThrowables(() -> execute(task)), jitterMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Task pollNextTask(long now) {
+        Task task = queue.first();
+        if (maxQueueTimeNanos > 0) {
+            Task oldestTask = queuedTasks.keySet().iterator().next();
+            if (now - oldestTask.submitTimeNanos >= maxQueueTimeNanos) {
+                task = oldestTask;
+            }
+        }
+        queue.remove(task);
+        queuedTasks.remove(task);
+        return task;
+    }
+
+    private void execute(Task task) {
+        queueDuration.record(MetricsUtil.convertToSeconds(System.nanoTime() - task.submitTimeNanos,
+                TimeUnit.NANOSECONDS), task.type.attributes);
+        executedTasks.increment();
+        task.runnable.run();
+    }
+
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getExecutedTasksCount() {
+        return executedTasks.sum();
+    }
+
+    @Override
+    public void close() {
+        if (dispatchTask != null) {
+            dispatchTask.cancel(false);
+        }
+        synchronized (this) {
+            queue.clear();
+            queuedTasks.clear();
+        }
+        queueSizeCounter.close();
+    }
+
+    private static final class Task {
+        private final ManagedLedgerImpl managedLedger;
+        private final TaskType type;
+        private final Runnable runnable;
+        private final long sequence;
+        private final long submitTimeNanos = System.nanoTime();
+        // Updated when the task is submitted again, while it is not in the queue
+        private long reclaimableBytes;
+
+        Task(ManagedLedgerImpl managedLedger, TaskType type, long reclaimableBytes, Runnable runnable, long sequence) {
+            this.managedLedger = managedLedger;
+            this.type = type;
+            this.reclaimableBytes = reclaimableBytes;
+            this.runnable = runnable;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Task other && other.managedLedger == managedLedger && other.type == type;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(managedLedger) * 31 + type.hashCode();
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ManagedLedgerMaintenanceScheduler.class);
+}
@@ -113,6 +113,7 @@ public class NonDurableCursorImpl extends ManagedCursorImpl {
     @Override
     public void asyncClose(CloseCallback callback, Object ctx) {
         STATE_UPDATER.set(this, State.Closed);
+        prefetcher.close();
         callback.closeComplete(ctx);
     }
 
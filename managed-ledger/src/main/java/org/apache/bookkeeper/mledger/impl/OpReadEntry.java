@@ -177,7 +177,7 @@ class OpReadEntry implements ReadEntriesCallback {
             // The reading was already completed, release resources and trigger callback
             try {
                 cursor.readOperationCompleted();
-
+                cursor.prefetcher.onReadCompleted(nextReadPosition, entries);
             } finally {
                 cursor.ledger.getExecutor().execute(() -> {
                     callback.readEntriesComplete(entries, ctx);
@@ -55,6 +55,13 @@ public class OpenTelemetryManagedCursorStats implements AutoCloseable {
     public static final String INCOMING_BYTE_COUNTER = "pulsar.broker.managed_ledger.cursor.incoming.size";
     private final ObservableLongMeasurement incomingByteCounter;
 
+    public static final String PREFETCH_COUNTER = "pulsar.broker.managed_ledger.cursor.prefetch.count";
+    private final ObservableLongMeasurement prefetchCounter;
+
+    public static final String PREFETCH_WASTED_BYTE_COUNTER =
+            "pulsar.broker.managed_ledger.cursor.prefetch.wasted.size";
+    private final ObservableLongMeasurement prefetchWastedByteCounter;
+
     private final BatchCallback batchCallback;
 
     public OpenTelemetryManagedCursorStats(OpenTelemetry openTelemetry, ManagedLedgerFactoryImpl factory) {
@@ -96,6 +103,19 @@ public class OpenTelemetryManagedCursorStats implements AutoCloseable {
                 .setDescription("The total amount of data read from the ledger.")
                 .buildObserver();
 
+        prefetchCounter = meter
+                .counterBuilder(PREFETCH_COUNTER)
+                .setUnit("{operation}")
+                .setDescription("The number of cursor reads served, or not, by the entries prefetched after the "
+                        + "previous read.")
+                .buildObserver();
+
+        prefetchWastedByteCounter = meter
+                .counterBuilder(PREFETCH_WASTED_BYTE_COUNTER)
+                .setUnit("{By}")
+                .setDescription("The total amount of prefetched data that was not read by the cursor.")
+                .buildObserver();
+
         batchCallback = meter.batchCallback(() -> factory.getManagedLedgers()
                         .values()
                         .stream()
@@ -107,7 +127,9 @@ public class OpenTelemetryManagedCursorStats implements AutoCloseable {
                 nonContiguousMessageRangeCounter,
                 outgoingByteCounter,
                 outgoingByteLogicalCounter,
-                incomingByteCounter);
+                incomingByteCounter,
+                prefetchCounter,
+                prefetchWastedByteCounter);
     }
 
     @Override
@@ -133,5 +155,9 @@ public class OpenTelemetryManagedCursorStats implements AutoCloseable {
         outgoingByteCounter.record(stats.getWriteCursorLedgerSize(), attributes);
         outgoingByteLogicalCounter.record(stats.getWriteCursorLedgerLogicalSize(), attributes);
         incomingByteCounter.record(stats.getReadCursorLedgerSize(), attributes);
+
+        prefetchCounter.record(stats.getPrefetchHits(), cursorAttributesSet.getAttributesPrefetchHit());
+        prefetchCounter.record(stats.getPrefetchMisses(), cursorAttributesSet.getAttributesPrefetchMiss());
+        prefetchWastedByteCounter.record(stats.getPrefetchWastedSize(), attributes);
     }
 }
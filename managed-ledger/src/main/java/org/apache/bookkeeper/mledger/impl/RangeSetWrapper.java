@@ -27,6 +27,7 @@ import java.util.Map;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet;
 import org.apache.pulsar.common.util.collections.OpenLongPairRangeSet;
 import org.roaringbitmap.RoaringBitSet;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 
 /**
  * Wraps other Range classes, and adds LRU, marking dirty data and other features on this basis.
@@ -47,22 +48,39 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
             (LongPairConsumer<Long>) (key, value) -> key,
             (RangeBoundConsumer<Long>) key -> new LongPair(key, 0));
 
+    /**
+     * Ledgers whose ranges were updated since the last {@link #resetUpdatedLedgers()}, when the individual acks are
+     * persisted incrementally.
+     */
+    private final Roaring64Bitmap updatedLedgers;
+
     public RangeSetWrapper(LongPairConsumer<T> rangeConverter,
                            RangeBoundConsumer<T> rangeBoundConsumer,
                            ManagedCursorImpl managedCursor) {
         this(rangeConverter, rangeBoundConsumer, managedCursor.getConfig().isUnackedRangesOpenCacheSetEnabled(),
-                managedCursor.getConfig().isPersistentUnackedRangesWithMultipleEntriesEnabled());
+                managedCursor.getConfig().isPersistentUnackedRangesWithMultipleEntriesEnabled(),
+                managedCursor.getConfig().isPersistIndividualAckIncrementally());
     }
 
     public RangeSetWrapper(LongPairConsumer<T> rangeConverter,
                            RangeBoundConsumer<T> rangeBoundConsumer,
                            boolean unackedRangesOpenCacheSetEnabled,
                            boolean persistentUnackedRangesWithMultipleEntriesEnabled) {
+        this(rangeConverter, rangeBoundConsumer, unackedRangesOpenCacheSetEnabled,
+                persistentUnackedRangesWithMultipleEntriesEnabled, false);
+    }
+
+    public RangeSetWrapper(LongPairConsumer<T> rangeConverter,
+                           RangeBoundConsumer<T> rangeBoundConsumer,
+                           boolean unackedRangesOpenCacheSetEnabled,
+                           boolean persistentUnackedRangesWithMultipleEntriesEnabled,
+                           boolean trackUpdatedLedgers) {
         this.rangeConverter = rangeConverter;
         this.rangeSet = unackedRangesOpenCacheSetEnabled
                 ? new OpenLongPairRangeSet<>(rangeConverter, RoaringBitSet::new)
                 : new LongPairRangeSet.DefaultRangeSet<>(rangeConverter, rangeBoundConsumer);
         this.enableMultiEntry = persistentUnackedRangesWithMultipleEntriesEnabled;
+        this.updatedLedgers = trackUpdatedLedgers ? new Roaring64Bitmap() : null;
     }
 
     @Override
@@ -70,6 +88,9 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
         if (enableMultiEntry) {
             dirtyLedgers.addOpenClosed(lowerKey, 0, upperKey, 0);
         }
+        if (updatedLedgers != null) {
+            updatedLedgers.addRange(lowerKey, upperKey + 1);
+        }
         rangeSet.addOpenClosed(lowerKey, lowerValue, upperKey, upperValue);
     }
 
@@ -98,6 +119,13 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
 
     @Override
     public void clear() {
+        if (updatedLedgers != null) {
+            // The cleared ledgers must be persisted as updated
+            rangeSet.forEachRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
+                updatedLedgers.addRange(lowerKey, upperKey + 1);
+                return true;
+            });
+        }
         rangeSet.clear();
         dirtyLedgers.clear();
     }
@@ -161,6 +189,14 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
         return rangeSet.cardinality(lowerKey, lowerValue, upperKey, upperValue);
     }
 
+    /**
+     * Returns a snapshot of the ranges, without the dirty and updated ledgers tracked by this wrapper.
+     */
+    @Override
+    public LongPairRangeSet<T> snapshot() {
+        return rangeSet.snapshot();
+    }
+
     @VisibleForTesting
     void add(Range<LongPair> range) {
         if (!(rangeSet instanceof OpenLongPairRangeSet)) {
@@ -186,6 +222,19 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
         return dirtyLedgers.contains(ledgerId);
     }
 
+    /**
+     * @return the ledgers updated since the last {@link #resetUpdatedLedgers()}, or null if they are not tracked
+     */
+    public Roaring64Bitmap getUpdatedLedgers() {
+        return updatedLedgers;
+    }
+
+    public void resetUpdatedLedgers() {
+        if (updatedLedgers != null) {
+            updatedLedgers.clear();
+        }
+    }
+
     @Override
     public String toString() {
         return rangeSet.toString();
@@ -117,6 +117,15 @@ public interface EntryCache extends Comparable<EntryCache> {
      */
     void asyncReadEntry(ReadHandle lh, Position position, ReadEntryCallback callback, Object ctx);
 
+    /**
+     * Check whether the entry at the given position is stored in this cache.
+     *
+     * @param position
+     *            the position of the entry
+     * @return true if the entry is cached
+     */
+    boolean isCached(Position position);
+
     /**
      * Get the total size in bytes of all the entries stored in this cache.
      *
@@ -135,6 +135,11 @@ public class EntryCacheDisabled implements EntryCache {
                 }, ml.getExecutor());
     }
 
+    @Override
+    public boolean isCached(Position position) {
+        return false;
+    }
+
     @Override
     public long getSize() {
         return 0;
@@ -36,4 +36,11 @@ public interface EntryCacheManager {
     void updateCacheEvictionWatermark(double cacheEvictionWatermark);
 
     double getCacheEvictionWatermark();
+
+    /**
+     * Clear the caches and release the resources of the manager when the managed ledger factory is shut down.
+     */
+    default void close() {
+        clear();
+    }
 }
@@ -122,6 +122,14 @@ public class InflightReadsLimiter implements AutoCloseable {
         return remainingBytes;
     }
 
+    /**
+     * Check whether the given number of bytes is available without waiting, i.e. the limiter is disabled, or no
+     * acquisition is queued and enough bytes remain.
+     */
+    public synchronized boolean hasRemainingBytes(long bytes) {
+        return !enabled || (queuedHandles.isEmpty() && remainingBytes >= bytes);
+    }
+
     @Override
     public void close() {
         inflightReadsLimitCounter.close();
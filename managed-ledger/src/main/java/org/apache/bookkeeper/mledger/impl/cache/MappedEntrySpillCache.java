@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Second level cache that keeps the entries evicted from the {@link RangeEntryCacheImpl} caches in memory-mapped
+ * segment files on the local disk, so that they can be read again without going to the bookies.
+ *
+ * <p/>The space is split in fixed size segments that are filled in turn. When all the segments are full, the oldest
+ * one is reused and all the entries it contained are dropped, so the eviction is FIFO at segment granularity.
+ *
+ * <p/>Entries are appended under a global lock, while reads only share the lock of their segment with the other reads:
+ * the read of an entry is validated against the generation of its segment, which is incremented under the exclusive
+ * lock each time the segment is reused, or when it is unmapped on {@link #close()}.
+ */
+public class MappedEntrySpillCache {
+
+    static final String SEGMENT_FILE_PREFIX = "entry-cache-spill-";
+    private static final int MAX_SEGMENT_SIZE = 1024 * 1024 * 1024;
+    private static final int MIN_SEGMENTS = 4;
+
+    record SpillKey(String managedLedgerName, long ledgerId, long entryId) {
+    }
+
+    private record Location(Segment segment, long generation, int offset, int length) {
+    }
+
+    private static final class Segment {
+        private final MappedByteBuffer buffer;
+        private final StampedLock lock = new StampedLock();
+        private final List<SpillKey> keys = new ArrayList<>();
+        private volatile long generation;
+        private int writeOffset;
+
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final Segment[] segments;
+    private final int segmentSize;
+    // managed ledger name -> entries of the managed ledger
+    private final ConcurrentHashMap<String, ConcurrentHashMap<SpillKey, Location>> index = new ConcurrentHashMap<>();
+    private int currentSegment;
+    private boolean closed;
+
+    private final LongAdder spilledEntries = new LongAdder();
+    private final LongAdder spilledSize = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder hitsSize = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MappedEntrySpillCache(String directory, long maxSize) throws IOException {
+        checkArgument(maxSize > 0);
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) Math.min(MAX_SEGMENT_SIZE, Math.max(1, maxSize / MIN_SEGMENTS));
+        int numberOfSegments = (int) Math.max(1, maxSize / segmentSize);
+        this.segments = new Segment[numberOfSegments];
+
+        Files.createDirectories(this.directory);
+        for (int i = 0; i < numberOfSegments; i++) {
+            // Previous content of the segment files is discarded, since the index is not persisted
+            try (FileChannel channel = FileChannel.open(this.directory.resolve(SEGMENT_FILE_PREFIX + i),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                segments[i] = new Segment(channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            }
+        }
+
+        log.info("Initialized entry cache spill of {} Mb in {} with {} segments", maxSize / (1024 * 1024),
+                this.directory.toAbsolutePath(), numberOfSegments);
+    }
+
+    /**
+     * Copy an entry evicted from the cache of the given managed ledger into the spill segments.
+     *
+     * @return whether the entry was stored
+     */
+    public boolean spill(String managedLedgerName, EntryImpl entry) {
+        int length = entry.getLength();
+        if (length == 0 || length > segmentSize) {
+            return false;
+        }
+        SpillKey key = new SpillKey(managedLedgerName, entry.getLedgerId(), entry.getEntryId());
+        synchronized (this) {
+            ConcurrentHashMap<SpillKey, Location> entries = index.get(managedLedgerName);
+            if (closed || (entries != null && entries.containsKey(key))) {
+                return false;
+            }
+            Segment segment = segments[currentSegment];
+            if (segment.writeOffset + length > segmentSize) {
+                currentSegment = (currentSegment + 1) % segments.length;
+                segment = segments[currentSegment];
+                recycle(segment);
+            }
+            int offset = segment.writeOffset;
+            ByteBuf data = entry.getDataBuffer();
+            data.getBytes(data.readerIndex(), segment.buffer.slice(offset, length));
+            segment.writeOffset += length;
+            segment.keys.add(key);
+            index.computeIfAbsent(managedLedgerName, name -> new ConcurrentHashMap<>())
+                    .put(key, new Location(segment, segment.generation, offset, length));
+        }
+        spilledEntries.increment();
+        spilledSize.add(length);
+        return true;
+    }
+
+    private void recycle(Segment segment) {
+        long stamp = segment.lock.writeLock();
+        try {
+            segment.generation++;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+        for (SpillKey key : segment.keys) {
+            removeLocation(key, null);
+        }
+        segment.keys.clear();
+        segment.writeOffset = 0;
+    }
+
+    /**
+     * Remove the location of an entry from the index, or only the given location if it's not null.
+     */
+    private void removeLocation(SpillKey key, Location location) {
+        index.computeIfPresent(key.managedLedgerName(), (name, entries) -> {
+            if (location != null) {
+                entries.remove(key, location);
+            } else {
+                entries.remove(key);
+            }
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+
+    /**
+     * Read an entry from the spill segments.
+     *
+     * @return the entry, or null if it's not stored in the spill segments
+     */
+    public EntryImpl get(String managedLedgerName, long ledgerId, long entryId) {
+        ConcurrentHashMap<SpillKey, Location> entries = index.get(managedLedgerName);
+        SpillKey key = new SpillKey(managedLedgerName, ledgerId, entryId);
+        Location location = entries != null ? entries.get(key) : null;
+        if (location == null) {
+            misses.increment();
+            return null;
+        }
+
+        Segment segment = location.segment();
+        ByteBuf data;
+        long stamp = segment.lock.readLock();
+        try {
+            if (segment.generation != location.generation()) {
+                // The segment has been reused since the entry was written
+                removeLocation(key, location);
+                misses.increment();
+                return null;
+            }
+            data = RangeEntryCacheImpl.ALLOCATOR.directBuffer(location.length(), location.length());
+            data.writeBytes(segment.buffer.slice(location.offset(), location.length()));
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+        EntryImpl entry = EntryImpl.create(ledgerId, entryId, data);
+        data.release();
+        hits.increment();
+        hitsSize.add(location.length());
+        return entry;
+    }
+
+    /**
+     * Drop all the entries of the given managed ledger.
+     */
+    public void invalidate(String managedLedgerName) {
+        index.remove(managedLedgerName);
+    }
+
+    /**
+     * Drop all the entries.
+     */
+    public synchronized void clear() {
+        for (Segment segment : segments) {
+            recycle(segment);
+        }
+        index.clear();
+        currentSegment = 0;
+    }
+
+    /**
+     * Drop all the entries, unmap the segments and delete their files.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        index.clear();
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            long stamp = segment.lock.writeLock();
+            try {
+                // The reads in progress are done, and the next ones will see that the segment is gone
+                segment.generation++;
+                PlatformDependent.freeDirectBuffer(segment.buffer);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+            segment.keys.clear();
+            try {
+                Files.deleteIfExists(directory.resolve(SEGMENT_FILE_PREFIX + i));
+            } catch (IOException e) {
+                log.warn("Failed to delete the entry cache spill segment {} in {}", i, directory, e);
+            }
+        }
+    }
+
+    public long getSpilledEntriesCount() {
+        return spilledEntries.sum();
+    }
+
+    public long getSpilledSize() {
+        return spilledSize.sum();
+    }
+
+    public long getHitsCount() {
+        return hits.sum();
+    }
+
+    public long getHitsSize() {
+        return hitsSize.sum();
+    }
+
+    public long getMissesCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries currently stored in the spill segments
+     */
+    public long getNumberOfEntries() {
+        long numberOfEntries = 0;
+        for (ConcurrentHashMap<SpillKey, Location> entries : index.values()) {
+            numberOfEntries += entries.size();
+        }
+        return numberOfEntries;
+    }
+
+    @VisibleForTesting
+    int getNumberOfSegments() {
+        return segments.length;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MappedEntrySpillCache.class);
+}
@@ -27,6 +27,7 @@ import io.netty.buffer.PooledByteBufAllocator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -45,7 +46,9 @@ import org.apache.bookkeeper.mledger.PositionFactory;
 import org.apache.bookkeeper.mledger.impl.EntryImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
 import org.apache.bookkeeper.mledger.intercept.ManagedLedgerInterceptor;
+import org.apache.bookkeeper.mledger.util.LongPairRangeCache;
 import org.apache.bookkeeper.mledger.util.RangeCache;
+import org.apache.bookkeeper.mledger.util.RangeCacheStore;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,12 +65,13 @@ public class RangeEntryCacheImpl implements EntryCache {
     public static final int DEFAULT_ESTIMATED_ENTRY_SIZE = 10 * 1024;
     private static final boolean DEFAULT_CACHE_INDIVIDUAL_READ_ENTRY = false;
 
-    private final RangeEntryCacheManagerImpl manager;
+    final RangeEntryCacheManagerImpl manager;
     final ManagedLedgerImpl ml;
     private ManagedLedgerInterceptor interceptor;
-    private final RangeCache<Position, EntryImpl> entries;
-    private final boolean copyEntries;
-    private final PendingReadsManager pendingReadsManager;
+    private final RangeCacheStore<Position, EntryImpl> entries;
+    final boolean copyEntries;
+    final PendingReadsManager pendingReadsManager;
+    private final MappedEntrySpillCache spillCache;
 
     private static final double MB = 1024 * 1024;
 
@@ -75,12 +79,24 @@ public class RangeEntryCacheImpl implements EntryCache {
     private final LongAdder totalAddedEntriesCount = new LongAdder();
 
     public RangeEntryCacheImpl(RangeEntryCacheManagerImpl manager, ManagedLedgerImpl ml, boolean copyEntries) {
+        this(manager, ml, copyEntries, manager.isLongPairCacheStoreEnabled()
+                ? new LongPairRangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp)
+                : new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp));
+    }
+
+    /**
+     * @param entries the store of the cached entries, or null for a subclass which stores the entries itself and
+     *                overrides all the methods accessing them
+     */
+    RangeEntryCacheImpl(RangeEntryCacheManagerImpl manager, ManagedLedgerImpl ml, boolean copyEntries,
+                        RangeCacheStore<Position, EntryImpl> entries) {
         this.manager = manager;
         this.ml = ml;
         this.pendingReadsManager = new PendingReadsManager(this);
         this.interceptor = ml.getManagedLedgerInterceptor();
-        this.entries = new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        this.entries = entries;
         this.copyEntries = copyEntries;
+        this.spillCache = manager.getSpillCache();
 
         if (log.isDebugEnabled()) {
             log.debug("[{}] Initialized managed-ledger entry cache", ml.getName());
@@ -150,11 +166,10 @@ public class RangeEntryCacheImpl implements EntryCache {
         }
 
         EntryImpl cacheEntry = EntryImpl.create(position, cachedData);
+        cacheEntry.shareAttachedMetadata(entry);
         cachedData.release();
         if (entries.put(position, cacheEntry)) {
-            totalAddedEntriesSize.add(entryLength);
-            totalAddedEntriesCount.increment();
-            manager.entryAdded(entryLength);
+            entryAdded(entryLength);
             return true;
         } else {
             // entry was not inserted into cache, we need to discard it
@@ -163,7 +178,13 @@ public class RangeEntryCacheImpl implements EntryCache {
         }
     }
 
-    private ByteBuf copyEntry(EntryImpl entry) {
+    void entryAdded(int entryLength) {
+        totalAddedEntriesSize.add(entryLength);
+        totalAddedEntriesCount.increment();
+        manager.entryAdded(entryLength);
+    }
+
+    ByteBuf copyEntry(EntryImpl entry) {
         // Copy the entry into a buffer owned by the cache. The reason is that the incoming entry is retaining a buffer
         // from netty, usually allocated in 64Kb chunks. So if we just retain the entry without copying it, we might
         // retain actually the full 64Kb even for a small entry
@@ -375,17 +396,7 @@ public class RangeEntryCacheImpl implements EntryCache {
     void doAsyncReadEntriesByPosition(ReadHandle lh, Position firstPosition, Position lastPosition, int numberOfEntries,
                                       boolean shouldCacheEntry, final ReadEntriesCallback callback,
                                       Object ctx) {
-        Collection<EntryImpl> cachedEntries;
-        if (firstPosition.compareTo(lastPosition) == 0) {
-            EntryImpl cachedEntry = entries.get(firstPosition);
-            if (cachedEntry == null) {
-                cachedEntries = Collections.emptyList();
-            } else {
-                cachedEntries = Collections.singleton(cachedEntry);
-            }
-        } else {
-            cachedEntries = entries.getRange(firstPosition, lastPosition);
-        }
+        Collection<EntryImpl> cachedEntries = getCachedEntries(firstPosition, lastPosition);
 
         if (cachedEntries.size() == numberOfEntries) {
             long totalCachedSize = 0;
@@ -407,9 +418,15 @@ public class RangeEntryCacheImpl implements EntryCache {
             callback.readEntriesComplete(entriesToReturn, ctx);
 
         } else {
+            List<Entry> spilledEntries = spillCache != null
+                    ? getEntriesFromSpill(firstPosition, lastPosition, numberOfEntries, cachedEntries) : null;
             if (!cachedEntries.isEmpty()) {
                 cachedEntries.forEach(entry -> entry.release());
             }
+            if (spilledEntries != null) {
+                callback.readEntriesComplete(spilledEntries, ctx);
+                return;
+            }
 
             // Read all the entries from bookkeeper
             pendingReadsManager.readEntries(lh, firstPosition.getEntryId(), lastPosition.getEntryId(),
@@ -417,6 +434,65 @@ public class RangeEntryCacheImpl implements EntryCache {
         }
     }
 
+    /**
+     * Complete the entries found in cache with the entries stored in the spill.
+     *
+     * @return the entries of the range, or null if some of them are neither cached nor spilled
+     */
+    private List<Entry> getEntriesFromSpill(Position firstPosition, Position lastPosition, int numberOfEntries,
+                                            Collection<EntryImpl> cachedEntries) {
+        final List<Entry> entriesToReturn = new ArrayList<>(numberOfEntries);
+        Iterator<EntryImpl> cachedIterator = cachedEntries.iterator();
+        EntryImpl nextCached = cachedIterator.hasNext() ? cachedIterator.next() : null;
+        long cachedSize = 0;
+        for (long entryId = firstPosition.getEntryId(); entryId <= lastPosition.getEntryId(); entryId++) {
+            EntryImpl entry;
+            if (nextCached != null && nextCached.getEntryId() == entryId) {
+                entry = EntryImpl.create(nextCached);
+                cachedSize += entry.getLength();
+                nextCached = cachedIterator.hasNext() ? cachedIterator.next() : null;
+            } else {
+                entry = spillCache.get(ml.getName(), firstPosition.getLedgerId(), entryId);
+                if (entry == null) {
+                    entriesToReturn.forEach(Entry::release);
+                    return null;
+                }
+            }
+            entriesToReturn.add(entry);
+        }
+
+        // The reads of the spilled entries are counted by the spill itself
+        if (!cachedEntries.isEmpty()) {
+            manager.mlFactoryMBean.recordCacheHits(cachedEntries.size(), cachedSize);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Spill cache hit for {} entries in range {} to {}", ml.getName(), numberOfEntries,
+                    firstPosition, lastPosition);
+        }
+        return entriesToReturn;
+    }
+
+    /**
+     * Get the entries found in cache in the given range. The returned entries are retained and must be released by
+     * the caller.
+     *
+     * @param firstPosition the first position (inclusive)
+     * @param lastPosition the last position (inclusive)
+     * @return the cached entries, might be fewer than the requested range
+     */
+    Collection<EntryImpl> getCachedEntries(Position firstPosition, Position lastPosition) {
+        if (firstPosition.compareTo(lastPosition) == 0) {
+            EntryImpl cachedEntry = entries.get(firstPosition);
+            if (cachedEntry == null) {
+                return Collections.emptyList();
+            } else {
+                return Collections.singleton(cachedEntry);
+            }
+        } else {
+            return entries.getRange(firstPosition, lastPosition);
+        }
+    }
+
     @VisibleForTesting
     public long getEstimatedEntrySize(ReadHandle lh) {
         if (lh.getLength() == 0 || lh.getLastAddConfirmed() < 0) {
@@ -493,6 +569,11 @@ public class RangeEntryCacheImpl implements EntryCache {
         pendingReadsManager.clear();
     }
 
+    @Override
+    public boolean isCached(Position position) {
+        return entries.exists(position);
+    }
+
     @Override
     public long getSize() {
         return entries.getSize();
@@ -506,7 +587,9 @@ public class RangeEntryCacheImpl implements EntryCache {
     @Override
     public Pair<Integer, Long> evictEntries(long sizeToFree) {
         checkArgument(sizeToFree > 0);
-        Pair<Integer, Long> evicted = entries.evictLeastAccessedEntries(sizeToFree);
+        Pair<Integer, Long> evicted = spillCache != null
+                ? entries.evictLeastAccessedEntries(sizeToFree, entry -> spillCache.spill(ml.getName(), entry))
+                : entries.evictLeastAccessedEntries(sizeToFree);
         int evictedEntries = evicted.getLeft();
         long evictedSize = evicted.getRight();
         if (log.isDebugEnabled()) {
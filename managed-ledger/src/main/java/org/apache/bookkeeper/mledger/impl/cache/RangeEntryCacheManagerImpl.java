@@ -21,6 +21,7 @@ package org.apache.bookkeeper.mledger.impl.cache;
 import com.google.common.collect.Lists;
 import io.netty.buffer.ByteBuf;
 import io.opentelemetry.api.OpenTelemetry;
+import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -36,6 +37,7 @@ import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryMBeanImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
 import org.apache.bookkeeper.mledger.intercept.ManagedLedgerInterceptor;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +56,7 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
     private final ManagedLedgerFactoryImpl mlFactory;
     protected final ManagedLedgerFactoryMBeanImpl mlFactoryMBean;
     private final InflightReadsLimiter inflightReadsLimiter;
+    private final MappedEntrySpillCache spillCache;
 
     protected static final double MB = 1024 * 1024;
     private static final double evictionTriggerThresholdPercent = 0.98;
@@ -72,17 +75,35 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
         this.evictionPolicy = new EntryCacheDefaultEvictionPolicy();
         this.mlFactory = factory;
         this.mlFactoryMBean = factory.getMbean();
+        this.spillCache = createSpillCache(config);
 
         log.info("Initialized managed-ledger entry cache of {} Mb", maxSize / MB);
     }
 
+    private static MappedEntrySpillCache createSpillCache(ManagedLedgerFactoryConfig config) {
+        if (config.getCacheSpillMaxSize() <= 0) {
+            return null;
+        }
+        if (StringUtils.isBlank(config.getCacheSpillDirectory())) {
+            log.error("The entry cache spill is enabled without a directory, continuing without it");
+            return null;
+        }
+        try {
+            return new MappedEntrySpillCache(config.getCacheSpillDirectory(), config.getCacheSpillMaxSize());
+        } catch (IOException e) {
+            log.error("Failed to initialize the entry cache spill in {}, continuing without it",
+                    config.getCacheSpillDirectory(), e);
+            return null;
+        }
+    }
+
     public EntryCache getEntryCache(ManagedLedgerImpl ml) {
         if (maxSize == 0) {
             // Cache is disabled
             return new EntryCacheDisabled(ml);
         }
 
-        EntryCache newEntryCache = new RangeEntryCacheImpl(this, ml, mlFactory.getConfig().isCopyEntriesInCache());
+        EntryCache newEntryCache = newEntryCache(ml, mlFactory.getConfig().isCopyEntriesInCache());
         EntryCache currentEntryCache = caches.putIfAbsent(ml.getName(), newEntryCache);
         if (currentEntryCache != null) {
             return currentEntryCache;
@@ -91,6 +112,21 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
         }
     }
 
+    protected EntryCache newEntryCache(ManagedLedgerImpl ml, boolean copyEntries) {
+        return new RangeEntryCacheImpl(this, ml, copyEntries);
+    }
+
+    boolean isLongPairCacheStoreEnabled() {
+        return mlFactory.getConfig().isCacheLongPairStoreEnabled();
+    }
+
+    /**
+     * @return the spill of the evicted entries, or null if it's disabled
+     */
+    public MappedEntrySpillCache getSpillCache() {
+        return spillCache;
+    }
+
     @Override
     public void updateCacheSizeAndThreshold(long maxSize) {
         this.maxSize = maxSize;
@@ -111,6 +147,9 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
 
         long size = entryCache.getSize();
         entryCache.clear();
+        if (spillCache != null) {
+            spillCache.invalidate(name);
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("Removed cache for {} - Size: {} -- Current Size: {}", name, size / MB, currentSize.get() / MB);
@@ -176,6 +215,17 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
     @Override
     public void clear() {
         caches.values().forEach(EntryCache::clear);
+        if (spillCache != null) {
+            spillCache.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        caches.values().forEach(EntryCache::clear);
+        if (spillCache != null) {
+            spillCache.close();
+        }
     }
 
     public static Entry create(long ledgerId, long entryId, ByteBuf data) {
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.cache.WindowTinyLfuPolicy.Node;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry cache whose admission and eviction are driven by the broker-wide {@link WindowTinyLfuPolicy}, instead of
+ * the size based eviction of the biggest caches done by {@link EntryCacheDefaultEvictionPolicy}.
+ *
+ * <p/>Reads, read-ahead and pending reads handling are inherited from {@link RangeEntryCacheImpl}. Only the
+ * storage of the entries is different.
+ */
+public class WindowTinyLfuEntryCacheImpl extends RangeEntryCacheImpl {
+
+    private final WindowTinyLfuPolicy policy;
+    private final ConcurrentNavigableMap<Position, Node> entries = new ConcurrentSkipListMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final long nameHash;
+
+    public WindowTinyLfuEntryCacheImpl(RangeEntryCacheManagerImpl manager, ManagedLedgerImpl ml, boolean copyEntries,
+                                       WindowTinyLfuPolicy policy) {
+        super(manager, ml, copyEntries, null);
+        this.policy = policy;
+        this.nameHash = ml.getName().hashCode();
+    }
+
+    @Override
+    public boolean insert(EntryImpl entry) {
+        Position position = entry.getPosition();
+        if (!manager.hasSpaceInCache()) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Skipping cache while doing eviction: {} - size: {}", ml.getName(), position,
+                        entry.getLength());
+            }
+            return false;
+        }
+
+        if (entries.containsKey(position)) {
+            return false;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Adding entry to cache: {} - size: {}", ml.getName(), position, entry.getLength());
+        }
+
+        ByteBuf cachedData;
+        if (copyEntries) {
+            cachedData = copyEntry(entry);
+            if (cachedData == null) {
+                return false;
+            }
+        } else {
+            // Use retain here to have the same counter increase as in the copy entry scenario
+            cachedData = entry.getDataBuffer().retain();
+        }
+
+        EntryImpl cacheEntry = EntryImpl.create(position, cachedData);
+        cacheEntry.shareAttachedMetadata(entry);
+        cachedData.release();
+        Node node = new Node(this, position, cacheEntry, hash(position));
+        if (entries.putIfAbsent(position, node) != null) {
+            // entry was not inserted into cache, we need to discard it
+            cacheEntry.release();
+            return false;
+        }
+        size.addAndGet(node.size);
+        entryAdded(cacheEntry.getLength());
+
+        List<Node> evicted = policy.add(node);
+        if (!evicted.isEmpty()) {
+            removeEvicted(evicted);
+            manager.mlFactoryMBean.recordCacheEviction();
+        }
+        return node.queue != WindowTinyLfuPolicy.REMOVED;
+    }
+
+    /**
+     * Remove from their owner caches the nodes that were evicted or rejected by the policy.
+     */
+    static void removeEvicted(List<Node> evicted) {
+        for (Node node : evicted) {
+            node.owner.removeEvictedNode(node);
+        }
+    }
+
+    private void removeEvictedNode(Node node) {
+        // When the removal fails, the entry was already invalidated and released by another thread
+        if (entries.remove(node.position, node)) {
+            size.addAndGet(-node.size);
+            spill(node.value);
+            node.value.release();
+            manager.entriesRemoved(node.size, 1);
+        }
+    }
+
+    @Override
+    Collection<EntryImpl> getCachedEntries(Position firstPosition, Position lastPosition) {
+        if (firstPosition.compareTo(lastPosition) == 0) {
+            EntryImpl value = getRetainedValue(entries.get(firstPosition));
+            return value != null ? Collections.singleton(value) : Collections.emptyList();
+        }
+
+        List<EntryImpl> values = new ArrayList<>();
+        for (Node node : entries.subMap(firstPosition, true, lastPosition, true).values()) {
+            EntryImpl value = getRetainedValue(node);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @apiNote the returned value must be released if it's not null
+     */
+    private EntryImpl getRetainedValue(Node node) {
+        if (node == null) {
+            return null;
+        }
+        EntryImpl value = node.value;
+        try {
+            value.retain();
+        } catch (IllegalReferenceCountException e) {
+            // Value was already deallocated
+            return null;
+        }
+        // The cache should be holding one reference and a new reference was just added. The instance might also have
+        // been recycled and reused for another entry.
+        if (value.refCnt() > 1 && value.matchesKey(node.position)) {
+            policy.recordAccess(node);
+            return value;
+        } else {
+            value.release();
+            return null;
+        }
+    }
+
+    @Override
+    public void invalidateEntries(final Position lastPosition) {
+        final Position firstPosition = PositionFactory.create(-1, 0);
+
+        if (firstPosition.compareTo(lastPosition) > 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Attempted to invalidate entries in an invalid range : {} ~ {}",
+                        firstPosition, lastPosition);
+            }
+            return;
+        }
+
+        Pair<Integer, Long> removed = removeNodes(entries.headMap(lastPosition, false).values(), Long.MAX_VALUE);
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Invalidated entries up to {} - Entries removed: {} - Size removed: {}", ml.getName(),
+                    lastPosition, removed.getLeft(), removed.getRight());
+        }
+    }
+
+    @Override
+    public void invalidateAllEntries(long ledgerId) {
+        final Position firstPosition = PositionFactory.create(ledgerId, 0);
+        final Position lastPosition = PositionFactory.create(ledgerId + 1, 0);
+
+        Pair<Integer, Long> removed = removeNodes(entries.subMap(firstPosition, true, lastPosition, false).values(),
+                Long.MAX_VALUE);
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Invalidated all entries on ledger {} - Entries removed: {} - Size removed: {}",
+                    ml.getName(), ledgerId, removed.getLeft(), removed.getRight());
+        }
+        pendingReadsManager.invalidateLedger(ledgerId);
+    }
+
+    @Override
+    public void clear() {
+        removeNodes(entries.values(), Long.MAX_VALUE);
+        pendingReadsManager.clear();
+    }
+
+    @Override
+    public boolean isCached(Position position) {
+        return entries.containsKey(position);
+    }
+
+    @Override
+    public long getSize() {
+        return size.get();
+    }
+
+    @Override
+    public Pair<Integer, Long> evictEntries(long sizeToFree) {
+        checkArgument(sizeToFree > 0);
+        // The victims are selected by the policy, in the same order as the evictions done when entries are added
+        List<Node> removedNodes = new ArrayList<>();
+        long removedSize = 0;
+        for (Node node : policy.evict(this, sizeToFree)) {
+            if (entries.remove(node.position, node)) {
+                removedNodes.add(node);
+                removedSize += node.size;
+            }
+        }
+        Pair<Integer, Long> evicted = releaseRemovedNodes(removedNodes, removedSize, true);
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Doing cache eviction of at least {} bytes -- Deleted {} entries - Total size deleted: {}"
+                    + " -- Current Size: {}", ml.getName(), sizeToFree, evicted.getLeft(), evicted.getRight(),
+                    size.get());
+        }
+        return evicted;
+    }
+
+    @Override
+    public void invalidateEntriesBeforeTimestamp(long timestamp) {
+        removeNodes(entries.values(), timestamp);
+    }
+
+    /**
+     * Remove the nodes in iteration order, until a node more recent than {@code maxTimestamp} is found.
+     *
+     * @return a pair containing the number of removed entries and their total size
+     */
+    private Pair<Integer, Long> removeNodes(Collection<Node> nodes, long maxTimestamp) {
+        List<Node> removedNodes = new ArrayList<>();
+        long removedSize = 0;
+        for (Node node : nodes) {
+            if (maxTimestamp != Long.MAX_VALUE && node.timestamp > maxTimestamp) {
+                break;
+            }
+            if (entries.remove(node.position, node)) {
+                removedNodes.add(node);
+                removedSize += node.size;
+            }
+        }
+
+        policy.remove(removedNodes);
+        return releaseRemovedNodes(removedNodes, removedSize, false);
+    }
+
+    /**
+     * Release the entries of the removed nodes, copying them to the spill when {@code spill} is true.
+     *
+     * @return a pair containing the number of removed entries and their total size
+     */
+    private Pair<Integer, Long> releaseRemovedNodes(List<Node> removedNodes, long removedSize, boolean spill) {
+        for (Node node : removedNodes) {
+            if (spill) {
+                spill(node.value);
+            }
+            node.value.release();
+        }
+        size.addAndGet(-removedSize);
+        manager.entriesRemoved(removedSize, removedNodes.size());
+        return Pair.of(removedNodes.size(), removedSize);
+    }
+
+    private void spill(EntryImpl entry) {
+        MappedEntrySpillCache spillCache = manager.getSpillCache();
+        if (spillCache != null) {
+            spillCache.spill(ml.getName(), entry);
+        }
+    }
+
+    private long hash(Position position) {
+        long h = nameHash;
+        h = h * 31 + position.getLedgerId();
+        h = h * 31 + position.getEntryId();
+        return h;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(WindowTinyLfuEntryCacheImpl.class);
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import io.opentelemetry.api.OpenTelemetry;
+import java.util.List;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.cache.WindowTinyLfuPolicy.Node;
+
+/**
+ * Entry cache manager that shares a single {@link WindowTinyLfuPolicy} across all the managed ledgers, so that
+ * admission and eviction decisions are taken broker-wide, based on the estimated popularity of each entry.
+ */
+public class WindowTinyLfuEntryCacheManagerImpl extends RangeEntryCacheManagerImpl {
+
+    private final WindowTinyLfuPolicy policy;
+
+    public WindowTinyLfuEntryCacheManagerImpl(ManagedLedgerFactoryImpl factory, OrderedScheduler scheduledExecutor,
+                                              OpenTelemetry openTelemetry) {
+        super(factory, scheduledExecutor, openTelemetry);
+        this.policy = new WindowTinyLfuPolicy(getMaxSize(), factory.getConfig().getCacheAdmissionWindowRatio());
+    }
+
+    @Override
+    protected EntryCache newEntryCache(ManagedLedgerImpl ml, boolean copyEntries) {
+        return new WindowTinyLfuEntryCacheImpl(this, ml, copyEntries, policy);
+    }
+
+    /**
+     * The policy evicts the entries as they are added, without the background eviction of this manager. The cache
+     * has no space only while it's above its max size, because of concurrent insertions or of a reduced max size.
+     */
+    @Override
+    boolean hasSpaceInCache() {
+        return getSize() <= getMaxSize();
+    }
+
+    @Override
+    public void updateCacheSizeAndThreshold(long maxSize) {
+        super.updateCacheSizeAndThreshold(maxSize);
+        List<Node> evicted = policy.setMaxSize(maxSize);
+        WindowTinyLfuEntryCacheImpl.removeEvicted(evicted);
+    }
+
+    /**
+     * @return the number of entries moved from the window segment to the main segments of the cache
+     */
+    public long getAdmittedEntriesCount() {
+        return policy.getAdmittedEntriesCount();
+    }
+
+    /**
+     * @return the number of entries dropped by the admission policy because they were less popular than the entries
+     *         they would have replaced
+     */
+    public long getRejectedEntriesCount() {
+        return policy.getRejectedEntriesCount();
+    }
+}
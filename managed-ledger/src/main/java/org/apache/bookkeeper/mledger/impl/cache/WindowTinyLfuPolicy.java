@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.bookkeeper.mledger.util.FrequencySketch;
+
+/**
+ * Broker-wide W-TinyLFU admission and eviction policy for the entries of {@link WindowTinyLfuEntryCacheImpl}.
+ *
+ * <p/>The cache space is split in 3 segments:
+ * <ul>
+ *     <li><b>window</b>: every new entry is admitted here. It absorbs bursts of recently written entries, which
+ *     are going to be read by the tailing consumers.</li>
+ *     <li><b>probation</b>: entries leaving the window are only moved here if their estimated access frequency is
+ *     higher than the one of the entry that would be evicted to make room for them. Otherwise, the candidate is
+ *     rejected and dropped from the cache.</li>
+ *     <li><b>protected</b>: entries of the probation segment that got a cache hit are promoted here.</li>
+ * </ul>
+ *
+ * <p/>Entries read once by a catch-up reader have a low frequency and hence cannot push out entries that are
+ * shared by multiple readers, making the cache scan resistant.
+ *
+ * <p/>Cache hits never take the policy lock: they only bump the frequency sketch and flag the node as accessed.
+ * The promotion from probation to protected is done lazily, when the node is selected as eviction victim
+ * (second-chance).
+ */
+public class WindowTinyLfuPolicy {
+
+    private static final double PROTECTED_PERCENT = 0.8;
+
+    static final int NEW = 0;
+    static final int WINDOW = 1;
+    static final int PROBATION = 2;
+    static final int PROTECTED = 3;
+    static final int REMOVED = 4;
+
+    /**
+     * An entry tracked by the policy.
+     */
+    static final class Node {
+        final WindowTinyLfuEntryCacheImpl owner;
+        final Position position;
+        final EntryImpl value;
+        final long size;
+        final long timestamp;
+        final long hash;
+        volatile boolean accessed;
+
+        // Guarded by the policy lock
+        int queue = NEW;
+        Node prev;
+        Node next;
+
+        Node(WindowTinyLfuEntryCacheImpl owner, Position position, EntryImpl value, long hash) {
+            this.owner = owner;
+            this.position = position;
+            this.value = value;
+            this.size = value.getLength();
+            this.timestamp = value.getTimestamp();
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes, ordered from the least recently added to the most recently added.
+     */
+    private static final class NodeQueue {
+        Node head;
+        Node tail;
+        long size;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size += node.size;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size -= node.size;
+        }
+
+        void addFirst(Node node) {
+            node.prev = null;
+            node.next = head;
+            if (head == null) {
+                tail = node;
+            } else {
+                head.prev = node;
+            }
+            head = node;
+            size += node.size;
+        }
+
+        Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Replaced when the max size changes, read without the policy lock by the cache hits
+    private volatile FrequencySketch sketch;
+    private final double windowRatio;
+    private final NodeQueue window = new NodeQueue();
+    private final NodeQueue probation = new NodeQueue();
+    private final NodeQueue protectedQueue = new NodeQueue();
+
+    private long maxSize;
+    private long maxWindowSize;
+    private long maxProtectedSize;
+
+    private final LongAdder admittedEntries = new LongAdder();
+    private final LongAdder rejectedEntries = new LongAdder();
+
+    public WindowTinyLfuPolicy(long maxSize, double windowRatio) {
+        checkArgument(windowRatio > 0 && windowRatio < 1, "windowRatio must be in the (0, 1) range");
+        this.windowRatio = windowRatio;
+        this.sketch = new FrequencySketch(expectedEntries(maxSize));
+        setSegmentSizes(maxSize);
+    }
+
+    private static int expectedEntries(long maxSize) {
+        return (int) Math.min(Integer.MAX_VALUE,
+                Math.max(1, maxSize / RangeEntryCacheImpl.DEFAULT_ESTIMATED_ENTRY_SIZE));
+    }
+
+    private void setSegmentSizes(long maxSize) {
+        this.maxSize = maxSize;
+        this.maxWindowSize = (long) (maxSize * windowRatio);
+        this.maxProtectedSize = (long) ((maxSize - maxWindowSize) * PROTECTED_PERCENT);
+    }
+
+    /**
+     * Record a cache hit on the node.
+     */
+    void recordAccess(Node node) {
+        node.accessed = true;
+        sketch.increment(node.hash);
+    }
+
+    /**
+     * Add a new node to the window segment.
+     *
+     * @return the nodes that have been evicted or rejected to make room for the new node. They have already been
+     *         unlinked from the policy and the caller is responsible for removing them from their owner.
+     */
+    List<Node> add(Node node) {
+        sketch.increment(node.hash);
+        List<Node> evicted = null;
+        lock.lock();
+        try {
+            if (node.queue != NEW) {
+                // The node was already removed from its cache before being linked
+                return Collections.emptyList();
+            }
+            if (node.size > maxSize) {
+                node.queue = REMOVED;
+                rejectedEntries.increment();
+                return Collections.singletonList(node);
+            }
+            window.addLast(node);
+            node.queue = WINDOW;
+
+            while (window.size > maxWindowSize) {
+                Node candidate = window.pollFirst();
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                admit(candidate, evicted);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return evicted != null ? evicted : Collections.emptyList();
+    }
+
+    /**
+     * Update the total size of the cache, evicting the nodes that do not fit anymore.
+     *
+     * @return the evicted nodes
+     */
+    List<Node> setMaxSize(long maxSize) {
+        List<Node> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            if (expectedEntries(maxSize) != expectedEntries(this.maxSize)) {
+                // Size the sketch for the new number of entries. The frequencies recorded so far are lost.
+                sketch = new FrequencySketch(expectedEntries(maxSize));
+            }
+            setSegmentSizes(maxSize);
+            while (window.size > maxWindowSize) {
+                admit(window.pollFirst(), evicted);
+            }
+            long maxMainSize = maxSize - maxWindowSize;
+            while (probation.size + protectedQueue.size > maxMainSize) {
+                Node victim = nextVictim();
+                if (victim == null) {
+                    break;
+                }
+                unlink(victim);
+                evicted.add(victim);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return evicted;
+    }
+
+    /**
+     * Unlink the nodes of a cache in eviction order, until their total size reaches {@code sizeToFree}: the nodes of
+     * the probation segment first, then the ones of the protected segment and finally the ones of the window segment,
+     * from the least recently added to the most recently added in each segment.
+     *
+     * @return the unlinked nodes. The caller is responsible for removing them from their owner.
+     */
+    List<Node> evict(WindowTinyLfuEntryCacheImpl owner, long sizeToFree) {
+        List<Node> evicted = new ArrayList<>();
+        long evictedSize = 0;
+        lock.lock();
+        try {
+            for (NodeQueue segment : new NodeQueue[] {probation, protectedQueue, window}) {
+                Node node = segment.head;
+                while (node != null && evictedSize < sizeToFree) {
+                    Node next = node.next;
+                    if (node.owner == owner) {
+                        unlink(node);
+                        evicted.add(node);
+                        evictedSize += node.size;
+                    }
+                    node = next;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return evicted;
+    }
+
+    /**
+     * Unlink nodes that have been removed from their cache (eg: invalidated or expired).
+     */
+    void remove(Collection<Node> nodes) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (Node node : nodes) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void admit(Node candidate, List<Node> evicted) {
+        long maxMainSize = maxSize - maxWindowSize;
+        int candidateFrequency = sketch.frequency(candidate.hash);
+        // All the victims needed to make room for the candidate are selected before evicting any of them, so that
+        // nothing is evicted when the candidate is rejected
+        List<Node> victims = null;
+        while (probation.size + protectedQueue.size + candidate.size > maxMainSize) {
+            Node victim = nextVictim();
+            // Ties are rejected, so that the entries of a scan can't replace each other in the main segments
+            if (victim == null || candidateFrequency <= sketch.frequency(victim.hash)) {
+                if (victims != null) {
+                    // Put the victims back at the head of their segment, in their original order
+                    for (int i = victims.size() - 1; i >= 0; i--) {
+                        Node node = victims.get(i);
+                        segment(node).addFirst(node);
+                    }
+                }
+                reject(candidate, evicted);
+                return;
+            }
+            segment(victim).remove(victim);
+            if (victims == null) {
+                victims = new ArrayList<>();
+            }
+            victims.add(victim);
+        }
+        if (victims != null) {
+            for (Node victim : victims) {
+                victim.queue = REMOVED;
+                evicted.add(victim);
+            }
+        }
+        probation.addLast(candidate);
+        candidate.queue = PROBATION;
+        admittedEntries.increment();
+    }
+
+    private void reject(Node candidate, List<Node> evicted) {
+        candidate.queue = REMOVED;
+        rejectedEntries.increment();
+        evicted.add(candidate);
+    }
+
+    /**
+     * Find the next eviction victim, giving a second chance to the nodes that were accessed since they were
+     * added to their segment. Accessed probation nodes are promoted to the protected segment, demoting the
+     * oldest protected nodes back to probation if needed.
+     */
+    private Node nextVictim() {
+        while (true) {
+            Node victim = probation.head;
+            if (victim == null) {
+                victim = protectedQueue.head;
+                if (victim == null) {
+                    return null;
+                }
+                if (victim.accessed && protectedQueue.head != protectedQueue.tail) {
+                    victim.accessed = false;
+                    protectedQueue.remove(victim);
+                    protectedQueue.addLast(victim);
+                    continue;
+                }
+                return victim;
+            }
+
+            if (!victim.accessed) {
+                return victim;
+            }
+
+            victim.accessed = false;
+            probation.remove(victim);
+            protectedQueue.addLast(victim);
+            victim.queue = PROTECTED;
+            while (protectedQueue.size > maxProtectedSize && protectedQueue.head != victim) {
+                Node demoted = protectedQueue.pollFirst();
+                demoted.accessed = false;
+                probation.addLast(demoted);
+                demoted.queue = PROBATION;
+            }
+        }
+    }
+
+    private void unlink(Node node) {
+        NodeQueue segment = segment(node);
+        if (segment != null) {
+            segment.remove(node);
+        }
+        node.queue = REMOVED;
+    }
+
+    private NodeQueue segment(Node node) {
+        switch (node.queue) {
+        case WINDOW:
+            return window;
+        case PROBATION:
+            return probation;
+        case PROTECTED:
+            return protectedQueue;
+        default:
+            return null;
+        }
+    }
+
+    public long getAdmittedEntriesCount() {
+        return admittedEntries.sum();
+    }
+
+    public long getRejectedEntriesCount() {
+        return rejectedEntries.sum();
+    }
+
+    @VisibleForTesting
+    long getWindowSize() {
+        lock.lock();
+        try {
+            return window.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @VisibleForTesting
+    long getProbationSize() {
+        lock.lock();
+        try {
+            return probation.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @VisibleForTesting
+    long getProtectedSize() {
+        lock.lock();
+        try {
+            return protectedQueue.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
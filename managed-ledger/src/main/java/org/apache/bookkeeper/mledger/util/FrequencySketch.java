@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A probabilistic multiset used to estimate the popularity of a key within a time window, as described in the
+ * TinyLFU paper. The sketch is a 4-bit Count-Min sketch: each key maps to 4 counters (one per row), and the
+ * estimated frequency is the minimum among them. Counters saturate at 15.
+ *
+ * <p/>To keep the estimation fresh, all the counters are halved once the number of recorded increments reaches
+ * the sample size (10 times the expected number of keys). This "aging" lets the frequency of keys that used to be
+ * popular decay over time.
+ *
+ * <p/>The sketch is safe for concurrent use. Updates are done with CAS operations on the packed counters; a reset
+ * running concurrently with increments might lose a few of them, which is acceptable for a frequency estimation.
+ */
+public class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAXIMUM_TABLE_SIZE = 1 << 30;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Create a sketch sized to track the frequency of approximately {@code expectedKeys} distinct keys.
+     *
+     * @param expectedKeys
+     *            the expected number of distinct keys tracked in the time window
+     */
+    public FrequencySketch(int expectedKeys) {
+        checkArgument(expectedKeys > 0, "expectedKeys must be positive");
+        int tableSize = ceilingPowerOfTwo(Math.min(Math.max(expectedKeys, 16), MAXIMUM_TABLE_SIZE));
+        this.table = new AtomicLongArray(tableSize);
+        this.tableMask = tableSize - 1;
+        this.sampleSize = (int) Math.min(10L * tableSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the estimated number of occurrences of a key, up to a maximum of 15.
+     *
+     * @param hash
+     *            the hash of the key
+     * @return the estimated frequency of the key
+     */
+    public int frequency(long hash) {
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long word = table.get(indexOf(hash, i));
+            int offset = counterOffset(hash, i);
+            frequency = Math.min(frequency, (int) ((word >>> offset) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Increment the popularity of a key, if it's not already saturated. When the number of recorded increments
+     * reaches the sample size, all the counters are halved.
+     *
+     * @param hash
+     *            the hash of the key
+     */
+    public void increment(long hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(indexOf(hash, i), counterOffset(hash, i));
+        }
+        if (added && size.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @return the number of increments recorded since the last reset
+     */
+    public int getSampleCount() {
+        return size.get();
+    }
+
+    private boolean incrementAt(int index, int offset) {
+        long mask = 0xfL << offset;
+        while (true) {
+            long word = table.get(index);
+            if ((word & mask) == mask) {
+                // Counter is already saturated
+                return false;
+            }
+            if (table.compareAndSet(index, word, word + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    private void reset() {
+        int count = size.get();
+        if (count < sampleSize || !size.compareAndSet(count, count / 2)) {
+            // Another thread already took care of the reset
+            return;
+        }
+        for (int i = 0; i < table.length(); i++) {
+            long word;
+            do {
+                word = table.get(i);
+            } while (!table.compareAndSet(i, word, (word >>> 1) & RESET_MASK));
+        }
+    }
+
+    private int indexOf(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int counterOffset(long hash, int row) {
+        // Each 64 bits word holds 16 counters, use 2 bits of the hash per row to pick one of 4 counters of the row
+        int item = (int) (spread(hash) >>> (row << 1)) & 3;
+        return ((row << 2) + item) << 2;
+    }
+
+    private static long spread(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
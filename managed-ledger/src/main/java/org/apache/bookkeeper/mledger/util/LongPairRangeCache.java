@@ -0,0 +1,649 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import io.netty.util.IllegalReferenceCountException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.bookkeeper.mledger.util.RangeCache.TimestampExtractor;
+import org.apache.bookkeeper.mledger.util.RangeCache.ValueWithKeyValidation;
+import org.apache.bookkeeper.mledger.util.RangeCache.Weighter;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Alternative to {@link RangeCache} for values keyed by (ledgerId, entryId) positions.
+ *
+ * <p/>Instead of a {@link java.util.concurrent.ConcurrentSkipListMap}, which allocates a node, index nodes and a
+ * value wrapper per cached entry, the values are stored in an open addressing hash table with linear probing, where
+ * the (ledgerId, entryId) keys are stored as primitive longs. Range operations use a per-ledger sorted array of the
+ * cached entry ids. Since entries are mostly inserted in order and removed from the head, both the insertion and the
+ * removal are amortized O(1) on this array.
+ *
+ * <p/>No objects are allocated per cached entry, besides the value itself. Mutations are guarded by a
+ * {@link StampedLock}, while lookups of a single key are done with optimistic reads.
+ *
+ * <p/>As with {@link RangeCache}, the values are reference counted: the cache holds one reference for each value
+ * stored and the values returned by {@link #get(Position)} and {@link #getRange(Position, Position)} are retained
+ * and must be released by the caller.
+ *
+ * @param <Value>
+ *            Cache value
+ */
+@Slf4j
+public class LongPairRangeCache<Value extends ValueWithKeyValidation<Position>>
+        implements RangeCacheStore<Position, Value> {
+
+    private static final long EMPTY_KEY = -1L;
+    private static final long DELETED_KEY = -2L;
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 256;
+    private static final float FILL_FACTOR = 0.66f;
+    private static final int INITIAL_LEDGER_INDEX_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private final Weighter<Value> weighter;
+    private final TimestampExtractor<Value> timestampExtractor;
+    private final int initialCapacity;
+
+    // Replaced as a whole on resize, so that an optimistic read always sees arrays of consistent lengths
+    private volatile Table table;
+    private int usedBuckets;
+    private int resizeThreshold;
+    private volatile int numberOfEntries;
+    private volatile long size;
+
+    // Sorted entry ids of the cached entries, for each ledger
+    private final NavigableMap<Long, LedgerIndex> ledgers = new TreeMap<>();
+
+    public LongPairRangeCache(Weighter<Value> weighter, TimestampExtractor<Value> timestampExtractor) {
+        this(weighter, timestampExtractor, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public LongPairRangeCache(Weighter<Value> weighter, TimestampExtractor<Value> timestampExtractor,
+                              int initialCapacity) {
+        checkArgument(initialCapacity > 0);
+        this.weighter = weighter;
+        this.timestampExtractor = timestampExtractor;
+        this.initialCapacity = alignToPowerOfTwo(initialCapacity);
+        allocateTable(this.initialCapacity);
+    }
+
+    /**
+     * Insert.
+     *
+     * @param key
+     * @param value ref counted value with at least 1 ref to pass on the cache
+     * @return whether the entry was inserted in the cache
+     */
+    @Override
+    public boolean put(Position key, Value value) {
+        // retain value so that it's not released before we put it in the cache and calculate the weight
+        value.retain();
+        try {
+            if (!value.matchesKey(key)) {
+                throw new IllegalArgumentException("Value '" + value + "' does not match key '" + key + "'");
+            }
+            long entrySize = weighter.getSize(value);
+            long timestamp = timestampExtractor.getTimestamp(value);
+            long ledgerId = key.getLedgerId();
+            long entryId = key.getEntryId();
+            checkArgument(ledgerId >= 0, "Invalid ledger id %s", ledgerId);
+
+            long stamp = lock.writeLock();
+            try {
+                if (findBucket(table.keys, ledgerId, entryId) >= 0) {
+                    return false;
+                }
+                insertInTable(ledgerId, entryId, value, entrySize, timestamp);
+                ledgers.computeIfAbsent(ledgerId, __ -> new LedgerIndex()).add(entryId);
+                size += entrySize;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            value.release();
+        }
+    }
+
+    @Override
+    public boolean exists(Position key) {
+        return key == null || getUnretained(key.getLedgerId(), key.getEntryId()) != null;
+    }
+
+    /**
+     * Get the value associated with the key and increment the reference count of it.
+     * The caller is responsible for releasing the reference.
+     */
+    @Override
+    public Value get(Position key) {
+        return getRetainedValueMatchingKey(key, getUnretained(key.getLedgerId(), key.getEntryId()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Value getUnretained(long ledgerId, long entryId) {
+        long stamp = lock.tryOptimisticRead();
+        Table table = this.table;
+        int bucket = findBucket(table.keys, ledgerId, entryId);
+        Object value = bucket >= 0 ? table.values[bucket >> 1] : null;
+        if (!lock.validate(stamp)) {
+            // Fallback to acquiring read lock
+            stamp = lock.readLock();
+            try {
+                table = this.table;
+                bucket = findBucket(table.keys, ledgerId, entryId);
+                value = bucket >= 0 ? table.values[bucket >> 1] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (Value) value;
+    }
+
+    /**
+     * @param first
+     *            the first key in the range
+     * @param last
+     *            the last key in the range (inclusive)
+     * @return a collections of the value found in cache
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<Value> getRange(Position first, Position last) {
+        if (last.getLedgerId() < first.getLedgerId()) {
+            return new ArrayList<>();
+        }
+        List<Position> foundKeys = new ArrayList<>();
+        List<Value> foundValues = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            for (Map.Entry<Long, LedgerIndex> e
+                    : ledgers.subMap(first.getLedgerId(), true, last.getLedgerId(), true).entrySet()) {
+                long ledgerId = e.getKey();
+                LedgerIndex index = e.getValue();
+                long fromEntryId = ledgerId == first.getLedgerId() ? first.getEntryId() : Long.MIN_VALUE;
+                long toEntryId = ledgerId == last.getLedgerId() ? last.getEntryId() : Long.MAX_VALUE;
+                for (int i = index.lowerBound(fromEntryId); i < index.tail; i++) {
+                    long entryId = index.entryIds[i];
+                    if (entryId > toEntryId) {
+                        break;
+                    }
+                    int bucket = findBucket(table.keys, ledgerId, entryId);
+                    if (bucket >= 0) {
+                        foundKeys.add(PositionFactory.create(ledgerId, entryId));
+                        foundValues.add((Value) table.values[bucket >> 1]);
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        List<Value> result = new ArrayList<>(foundValues.size());
+        for (int i = 0; i < foundValues.size(); i++) {
+            Value value = getRetainedValueMatchingKey(foundKeys.get(i), foundValues.get(i));
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    // validates that the value matches the key and that the value has not been recycled, since the value could be
+    // removed and released concurrently, after it was found in the table
+    /**
+     * @apiNote the returned value must be released if it's not null
+     */
+    private Value getRetainedValueMatchingKey(Position key, Value value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            value.retain();
+        } catch (IllegalReferenceCountException e) {
+            // Value was already deallocated
+            return null;
+        }
+        // there must be at least 2 references since the cache should be holding one reference and a new reference
+        // was just added in this method
+        if (value.refCnt() > 1 && value.matchesKey(key)) {
+            return value;
+        } else {
+            value.release();
+            return null;
+        }
+    }
+
+    /**
+     *
+     * @param first
+     * @param last
+     * @param lastInclusive
+     * @return an pair of ints, containing the number of removed entries and the total size
+     */
+    @Override
+    public Pair<Integer, Long> removeRange(Position first, Position last, boolean lastInclusive) {
+        if (log.isDebugEnabled()) {
+            log.debug("Removing entries in range [{}, {}], lastInclusive: {}", first, last, lastInclusive);
+        }
+        long firstLedgerId = Math.max(first.getLedgerId(), 0L);
+        if (last.getLedgerId() < firstLedgerId) {
+            return Pair.of(0, 0L);
+        }
+        List<Value> removedValues = new ArrayList<>();
+        long removedSize = 0;
+        long stamp = lock.writeLock();
+        try {
+            Iterator<Map.Entry<Long, LedgerIndex>> iterator =
+                    ledgers.subMap(firstLedgerId, true, last.getLedgerId(), true).entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, LedgerIndex> e = iterator.next();
+                long ledgerId = e.getKey();
+                LedgerIndex index = e.getValue();
+                long fromEntryId = ledgerId == first.getLedgerId() ? first.getEntryId() : Long.MIN_VALUE;
+                long toEntryId = ledgerId == last.getLedgerId()
+                        ? (lastInclusive ? last.getEntryId() : last.getEntryId() - 1) : Long.MAX_VALUE;
+                int from = index.lowerBound(fromEntryId);
+                int to = index.upperBound(toEntryId);
+                for (int i = from; i < to; i++) {
+                    removedSize += removeFromTable(ledgerId, index.entryIds[i], removedValues);
+                }
+                index.remove(from, to);
+                if (index.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+            size -= removedSize;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return releaseRemoved(removedValues, removedSize);
+    }
+
+    /**
+     *
+     * @param minSize
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    @Override
+    public Pair<Integer, Long> evictLeastAccessedEntries(long minSize) {
+        return evictLeastAccessedEntries(minSize, null);
+    }
+
+    @Override
+    public Pair<Integer, Long> evictLeastAccessedEntries(long minSize, Consumer<Value> evictionListener) {
+        if (log.isDebugEnabled()) {
+            log.debug("Evicting entries to reach a minimum size of {}", minSize);
+        }
+        checkArgument(minSize > 0);
+        return removeFromHead(minSize, Long.MAX_VALUE, evictionListener);
+    }
+
+    /**
+     *
+     * @param maxTimestamp the max timestamp of the entries to be evicted
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    @Override
+    public Pair<Integer, Long> evictLEntriesBeforeTimestamp(long maxTimestamp) {
+        if (log.isDebugEnabled()) {
+            log.debug("Evicting entries with timestamp <= {}", maxTimestamp);
+        }
+        return removeFromHead(Long.MAX_VALUE, maxTimestamp, null);
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     *
+     * @return size of removed entries
+     */
+    @Override
+    public Pair<Integer, Long> clear() {
+        if (log.isDebugEnabled()) {
+            log.debug("Clearing the cache with {} entries and size {}", numberOfEntries, size);
+        }
+        List<Value> removedValues = new ArrayList<>();
+        long removedSize = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (Object value : table.values) {
+                if (value != null) {
+                    removedValues.add(valueOf(value));
+                }
+            }
+            removedSize = size;
+            ledgers.clear();
+            allocateTable(initialCapacity);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return releaseRemoved(removedValues, removedSize);
+    }
+
+    private Pair<Integer, Long> removeFromHead(long minSize, long maxTimestamp, Consumer<Value> evictionListener) {
+        List<Value> removedValues = new ArrayList<>();
+        long removedSize = 0;
+        long stamp = lock.writeLock();
+        try {
+            Iterator<Map.Entry<Long, LedgerIndex>> iterator = ledgers.entrySet().iterator();
+            outer:
+            while (iterator.hasNext()) {
+                Map.Entry<Long, LedgerIndex> e = iterator.next();
+                long ledgerId = e.getKey();
+                LedgerIndex index = e.getValue();
+                int removed = 0;
+                for (int i = index.head; i < index.tail; i++) {
+                    if (removedSize >= minSize) {
+                        index.remove(index.head, index.head + removed);
+                        break outer;
+                    }
+                    int bucket = findBucket(table.keys, ledgerId, index.entryIds[i]);
+                    if (bucket >= 0 && table.timestamps[bucket >> 1] > maxTimestamp) {
+                        index.remove(index.head, index.head + removed);
+                        break outer;
+                    }
+                    removedSize += removeFromTable(ledgerId, index.entryIds[i], removedValues);
+                    removed++;
+                }
+                iterator.remove();
+            }
+            size -= removedSize;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (evictionListener != null) {
+            removedValues.forEach(evictionListener);
+        }
+        return releaseRemoved(removedValues, removedSize);
+    }
+
+    private Pair<Integer, Long> releaseRemoved(List<Value> removedValues, long removedSize) {
+        // Release the references held by the cache, outside of the lock
+        for (Value value : removedValues) {
+            value.release();
+        }
+        return Pair.of(removedValues.size(), removedSize);
+    }
+
+    /**
+     * Just for testing.
+     */
+    protected long getNumberOfEntries() {
+        return numberOfEntries;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    // Open addressing table, guarded by the write lock
+
+    private void allocateTable(int capacity) {
+        this.table = new Table(capacity);
+        this.usedBuckets = 0;
+        this.numberOfEntries = 0;
+        this.resizeThreshold = (int) (capacity * FILL_FACTOR);
+    }
+
+    /**
+     * @return the index of the bucket in the keys array, or -1 if the key is not present
+     */
+    private static int findBucket(long[] keys, long ledgerId, long entryId) {
+        int mask = keys.length - 1;
+        int bucket = (int) (hash(ledgerId, entryId) << 1) & mask;
+        for (int probes = 0; probes < keys.length; probes += 2) {
+            long storedLedgerId = keys[bucket];
+            if (storedLedgerId == ledgerId && keys[bucket + 1] == entryId) {
+                return bucket;
+            } else if (storedLedgerId == EMPTY_KEY) {
+                return -1;
+            }
+            bucket = (bucket + 2) & mask;
+        }
+        return -1;
+    }
+
+    private void insertInTable(long ledgerId, long entryId, Value value, long entrySize, long timestamp) {
+        Table table = this.table;
+        long[] keys = table.keys;
+        int mask = keys.length - 1;
+        int bucket = (int) (hash(ledgerId, entryId) << 1) & mask;
+        while (true) {
+            long storedLedgerId = keys[bucket];
+            if (storedLedgerId == EMPTY_KEY || storedLedgerId == DELETED_KEY) {
+                if (storedLedgerId == EMPTY_KEY) {
+                    ++usedBuckets;
+                }
+                int slot = bucket >> 1;
+                table.values[slot] = value;
+                table.sizes[slot] = entrySize;
+                table.timestamps[slot] = timestamp;
+                keys[bucket + 1] = entryId;
+                keys[bucket] = ledgerId;
+                numberOfEntries++;
+                break;
+            }
+            bucket = (bucket + 2) & mask;
+        }
+
+        if (usedBuckets > resizeThreshold) {
+            int capacity = table.values.length;
+            // Only expand if the table is actually full of live entries, otherwise rehash to drop the tombstones
+            rehash(numberOfEntries > capacity / 2 ? capacity * 2 : capacity);
+        }
+    }
+
+    /**
+     * @return the size of the removed entry, or 0 if not found
+     */
+    private long removeFromTable(long ledgerId, long entryId, List<Value> removedValues) {
+        Table table = this.table;
+        long[] keys = table.keys;
+        int bucket = findBucket(keys, ledgerId, entryId);
+        if (bucket < 0) {
+            return 0;
+        }
+        int slot = bucket >> 1;
+        removedValues.add(valueOf(table.values[slot]));
+        long entrySize = table.sizes[slot];
+        table.values[slot] = null;
+        numberOfEntries--;
+
+        int mask = keys.length - 1;
+        if (keys[(bucket + 2) & mask] == EMPTY_KEY) {
+            keys[bucket] = EMPTY_KEY;
+            keys[bucket + 1] = EMPTY_KEY;
+            --usedBuckets;
+            // Cleanup the preceding tombstones, which are not needed anymore to reach other keys
+            bucket = (bucket - 2) & mask;
+            while (keys[bucket] == DELETED_KEY) {
+                keys[bucket] = EMPTY_KEY;
+                keys[bucket + 1] = EMPTY_KEY;
+                --usedBuckets;
+                bucket = (bucket - 2) & mask;
+            }
+        } else {
+            keys[bucket] = DELETED_KEY;
+            keys[bucket + 1] = DELETED_KEY;
+        }
+        return entrySize;
+    }
+
+    private void rehash(int newCapacity) {
+        Table oldTable = this.table;
+        long[] oldKeys = oldTable.keys;
+        Table newTable = new Table(newCapacity);
+        long[] newKeys = newTable.keys;
+        int mask = newKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i += 2) {
+            long ledgerId = oldKeys[i];
+            if (ledgerId == EMPTY_KEY || ledgerId == DELETED_KEY) {
+                continue;
+            }
+            long entryId = oldKeys[i + 1];
+            int bucket = (int) (hash(ledgerId, entryId) << 1) & mask;
+            while (newKeys[bucket] != EMPTY_KEY) {
+                bucket = (bucket + 2) & mask;
+            }
+            newKeys[bucket] = ledgerId;
+            newKeys[bucket + 1] = entryId;
+            newTable.values[bucket >> 1] = oldTable.values[i >> 1];
+            newTable.sizes[bucket >> 1] = oldTable.sizes[i >> 1];
+            newTable.timestamps[bucket >> 1] = oldTable.timestamps[i >> 1];
+        }
+
+        this.table = newTable;
+        this.usedBuckets = numberOfEntries;
+        this.resizeThreshold = (int) (newCapacity * FILL_FACTOR);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Value valueOf(Object value) {
+        return (Value) value;
+    }
+
+    static long hash(long ledgerId, long entryId) {
+        long h = ledgerId * 0x9E3779B97F4A7C15L + entryId;
+        h ^= h >>> 32;
+        h *= 0xbf58476d1ce4e5b9L;
+        return h ^ (h >>> 29);
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+
+    /**
+     * The arrays of the open addressing table, which all have the capacity of the table.
+     */
+    private static final class Table {
+        // Each bucket takes 2 consecutive slots in the keys array: ledgerId, entryId
+        final long[] keys;
+        final Object[] values;
+        final long[] sizes;
+        final long[] timestamps;
+
+        Table(int capacity) {
+            keys = new long[capacity * 2];
+            Arrays.fill(keys, EMPTY_KEY);
+            values = new Object[capacity];
+            sizes = new long[capacity];
+            timestamps = new long[capacity];
+        }
+    }
+
+    /**
+     * Sorted array of the entry ids cached for a single ledger. The live entry ids are in the [head, tail) range.
+     */
+    private static final class LedgerIndex {
+        long[] entryIds = new long[INITIAL_LEDGER_INDEX_CAPACITY];
+        int head;
+        int tail;
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        void add(long entryId) {
+            if (tail == entryIds.length) {
+                makeRoom();
+            }
+            if (head == tail || entryIds[tail - 1] < entryId) {
+                // Common case: entries are appended in order
+                entryIds[tail++] = entryId;
+                return;
+            }
+            int idx = lowerBound(entryId);
+            System.arraycopy(entryIds, idx, entryIds, idx + 1, tail - idx);
+            entryIds[idx] = entryId;
+            tail++;
+        }
+
+        /**
+         * Remove the entry ids in the [from, to) index range.
+         */
+        void remove(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            if (from == head) {
+                head = to;
+            } else {
+                System.arraycopy(entryIds, to, entryIds, from, tail - to);
+                tail -= to - from;
+            }
+            if (head == tail) {
+                head = 0;
+                tail = 0;
+            }
+        }
+
+        /**
+         * @return the index of the first entry id that is >= the given entry id
+         */
+        int lowerBound(long entryId) {
+            int low = head;
+            int high = tail;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (entryIds[mid] < entryId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the index of the first entry id that is > the given entry id
+         */
+        int upperBound(long entryId) {
+            return entryId == Long.MAX_VALUE ? tail : lowerBound(entryId + 1);
+        }
+
+        private void makeRoom() {
+            int count = tail - head;
+            if (head > 0 && count <= entryIds.length / 2) {
+                // Reuse the space freed at the head
+                System.arraycopy(entryIds, head, entryIds, 0, count);
+            } else {
+                long[] newEntryIds = new long[entryIds.length * 2];
+                System.arraycopy(entryIds, head, newEntryIds, 0, count);
+                entryIds = newEntryIds;
+            }
+            head = 0;
+            tail = count;
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.util.RangeCache.ValueWithKeyValidation;
 import org.apache.commons.lang3.tuple.Pair;
@@ -52,7 +53,8 @@ import org.apache.commons.lang3.tuple.Pair;
  *            Cache value
  */
 @Slf4j
-public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyValidation<Key>> {
+public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyValidation<Key>>
+        implements RangeCacheStore<Key, Value> {
     public interface ValueWithKeyValidation<T> extends ReferenceCounted {
         boolean matchesKey(T key);
     }
@@ -241,6 +243,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
      * @param value ref counted value with at least 1 ref to pass on the cache
      * @return whether the entry was inserted in the cache
      */
+    @Override
     public boolean put(Key key, Value value) {
         // retain value so that it's not released before we put it in the cache and calculate the weight
         value.retain();
@@ -263,6 +266,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
         }
     }
 
+    @Override
     public boolean exists(Key key) {
         return key != null ? entries.containsKey(key) : true;
     }
@@ -271,6 +275,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
      * Get the value associated with the key and increment the reference count of it.
      * The caller is responsible for releasing the reference.
      */
+    @Override
     public Value get(Key key) {
         return getValueFromWrapper(key, entries.get(key));
     }
@@ -328,6 +333,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
      *            the last key in the range (inclusive)
      * @return a collections of the value found in cache
      */
+    @Override
     public Collection<Value> getRange(Key first, Key last) {
         List<Value> values = new ArrayList();
 
@@ -349,6 +355,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
      * @param lastInclusive
      * @return an pair of ints, containing the number of removed entries and the total size
      */
+    @Override
     public Pair<Integer, Long> removeRange(Key first, Key last, boolean lastInclusive) {
         if (log.isDebugEnabled()) {
             log.debug("Removing entries in range [{}, {}], lastInclusive: {}", first, last, lastInclusive);
@@ -368,11 +375,11 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
     }
 
     private RemoveEntryResult removeEntry(Map.Entry<Key, EntryWrapper<Key, Value>> entry, RemovalCounters counters) {
-        return removeEntry(entry, counters, x -> true);
+        return removeEntry(entry, counters, x -> true, null);
     }
 
     private RemoveEntryResult removeEntry(Map.Entry<Key, EntryWrapper<Key, Value>> entry, RemovalCounters counters,
-                                          Predicate<Value> removeCondition) {
+                                          Predicate<Value> removeCondition, Consumer<Value> removalListener) {
         Key key = entry.getKey();
         EntryWrapper<Key, Value> entryWrapper = entry.getValue();
         Value value = getValueMatchingEntry(entry);
@@ -389,6 +396,9 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
             boolean entryRemoved = entries.remove(key, entryWrapper);
             if (entryRemoved) {
                 counters.entryRemoved(entryWrapper.getSize());
+                if (removalListener != null) {
+                    removalListener.accept(value);
+                }
                 // check that the value hasn't been recycled in between
                 // there should be at least 2 references since this method adds one and the cache should have
                 // one reference. it is valid that the value contains references even after the key has been
@@ -423,7 +433,13 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
      * @param minSize
      * @return a pair containing the number of entries evicted and their total size
      */
+    @Override
     public Pair<Integer, Long> evictLeastAccessedEntries(long minSize) {
+        return evictLeastAccessedEntries(minSize, null);
+    }
+
+    @Override
+    public Pair<Integer, Long> evictLeastAccessedEntries(long minSize, Consumer<Value> evictionListener) {
         if (log.isDebugEnabled()) {
             log.debug("Evicting entries to reach a minimum size of {}", minSize);
         }
@@ -434,7 +450,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
             if (entry == null) {
                 break;
             }
-            removeEntry(entry, counters);
+            removeEntry(entry, counters, x -> true, evictionListener);
         }
         return handleRemovalResult(counters);
     }
@@ -444,6 +460,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
     * @param maxTimestamp the max timestamp of the entries to be evicted
     * @return the tota
     */
+   @Override
    public Pair<Integer, Long> evictLEntriesBeforeTimestamp(long maxTimestamp) {
        if (log.isDebugEnabled()) {
               log.debug("Evicting entries with timestamp <= {}", maxTimestamp);
@@ -454,7 +471,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
            if (entry == null) {
                break;
            }
-           if (removeEntry(entry, counters, value -> timestampExtractor.getTimestamp(value) <= maxTimestamp)
+           if (removeEntry(entry, counters, value -> timestampExtractor.getTimestamp(value) <= maxTimestamp, null)
                    == RemoveEntryResult.BREAK_LOOP) {
                break;
            }
@@ -469,6 +486,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
         return entries.size();
     }
 
+    @Override
     public long getSize() {
         return size.get();
     }
@@ -478,6 +496,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ValueWithKeyV
      *
      * @return size of removed entries
      */
+    @Override
     public Pair<Integer, Long> clear() {
         if (log.isDebugEnabled()) {
             log.debug("Clearing the cache with {} entries and size {}", entries.size(), size.get());
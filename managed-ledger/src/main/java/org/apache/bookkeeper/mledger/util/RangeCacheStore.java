@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * A cache of reference counted values where get() and delete() operations can be done over a range of keys.
+ *
+ * <p/>The cache holds one reference for each value stored. Values returned by {@link #get(Object)} and
+ * {@link #getRange(Object, Object)} are retained and must be released by the caller.
+ *
+ * @param <KeyT>
+ *            Cache key
+ * @param <ValueT>
+ *            Cache value
+ */
+public interface RangeCacheStore<KeyT, ValueT extends RangeCache.ValueWithKeyValidation<KeyT>> {
+
+    /**
+     * Insert.
+     *
+     * @param key
+     * @param value ref counted value with at least 1 ref to pass on the cache
+     * @return whether the entry was inserted in the cache
+     */
+    boolean put(KeyT key, ValueT value);
+
+    boolean exists(KeyT key);
+
+    /**
+     * Get the value associated with the key and increment the reference count of it.
+     * The caller is responsible for releasing the reference.
+     */
+    ValueT get(KeyT key);
+
+    /**
+     * @param first
+     *            the first key in the range
+     * @param last
+     *            the last key in the range (inclusive)
+     * @return a collections of the value found in cache
+     */
+    Collection<ValueT> getRange(KeyT first, KeyT last);
+
+    /**
+     * @return an pair of ints, containing the number of removed entries and the total size
+     */
+    Pair<Integer, Long> removeRange(KeyT first, KeyT last, boolean lastInclusive);
+
+    /**
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    Pair<Integer, Long> evictLeastAccessedEntries(long minSize);
+
+    /**
+     * Same as {@link #evictLeastAccessedEntries(long)}, passing each evicted value to the listener before the
+     * reference held by the cache is released. The listener must retain the value if it needs to keep it.
+     *
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    Pair<Integer, Long> evictLeastAccessedEntries(long minSize, Consumer<ValueT> evictionListener);
+
+    /**
+     * @param maxTimestamp the max timestamp of the entries to be evicted
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    Pair<Integer, Long> evictLEntriesBeforeTimestamp(long maxTimestamp);
+
+    long getSize();
+
+    /**
+     * Remove all the entries from the cache.
+     *
+     * @return size of removed entries
+     */
+    Pair<Integer, Long> clear();
+}
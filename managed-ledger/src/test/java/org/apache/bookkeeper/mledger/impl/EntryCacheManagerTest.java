@@ -20,16 +20,21 @@ package org.apache.bookkeeper.mledger.impl;
 
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -46,9 +51,14 @@ import org.apache.bookkeeper.mledger.PositionFactory;
 import org.apache.bookkeeper.mledger.impl.cache.EntryCache;
 import org.apache.bookkeeper.mledger.impl.cache.EntryCacheDisabled;
 import org.apache.bookkeeper.mledger.impl.cache.EntryCacheManager;
+import org.apache.bookkeeper.mledger.impl.cache.MappedEntrySpillCache;
+import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheManagerImpl;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
 import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.apache.commons.io.FileUtils;
+import org.awaitility.Awaitility;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 public class EntryCacheManagerTest extends MockedBookKeeperTestCase {
@@ -72,11 +82,17 @@ public class EntryCacheManagerTest extends MockedBookKeeperTestCase {
         when(ml2.getConfig()).thenReturn(new ManagedLedgerConfig());
     }
 
-    @Test
-    public void simple() throws Exception {
+    @DataProvider(name = "longPairStoreEnabled")
+    public static Object[][] longPairStoreEnabled() {
+        return new Object[][] { { false }, { true } };
+    }
+
+    @Test(dataProvider = "longPairStoreEnabled")
+    public void simple(boolean longPairStoreEnabled) throws Exception {
         ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
         config.setMaxCacheSize(10);
         config.setCacheEvictionWatermark(0.8);
+        config.setCacheLongPairStoreEnabled(longPairStoreEnabled);
 
         @Cleanup("shutdown")
         ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
@@ -346,12 +362,13 @@ public class EntryCacheManagerTest extends MockedBookKeeperTestCase {
         assertEquals(factory2.getMbean().getNumberOfCacheEvictions(), 0);
     }
 
-    @Test
-    public void verifyTimeBasedEviction() throws Exception {
+    @Test(dataProvider = "longPairStoreEnabled")
+    public void verifyTimeBasedEviction(boolean longPairStoreEnabled) throws Exception {
         ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
         config.setMaxCacheSize(1000);
         config.setCacheEvictionIntervalMs(10);
         config.setCacheEvictionTimeThresholdMillis(100);
+        config.setCacheLongPairStoreEnabled(longPairStoreEnabled);
 
         @Cleanup("shutdown")
         ManagedLedgerFactoryImpl factory = new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
@@ -414,4 +431,68 @@ public class EntryCacheManagerTest extends MockedBookKeeperTestCase {
         verify(lh).readUnconfirmedAsync(anyLong(), anyLong());
     }
 
+    @Test(dataProvider = "longPairStoreEnabled")
+    public void evictedEntriesAreReadFromSpill(boolean longPairStoreEnabled) throws Exception {
+        Path spillDirectory = Files.createTempDirectory("entry-cache-spill");
+        @Cleanup("run")
+        Runnable deleteSpillDirectory = () -> FileUtils.deleteQuietly(spillDirectory.toFile());
+
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setMaxCacheSize(10);
+        config.setCacheEvictionWatermark(0.5);
+        config.setCacheLongPairStoreEnabled(longPairStoreEnabled);
+        config.setCacheSpillMaxSize(1024);
+        config.setCacheSpillDirectory(spillDirectory.toString());
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        MappedEntrySpillCache spillCache = ((RangeEntryCacheManagerImpl) cacheManager).getSpillCache();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+
+        for (int i = 0; i < 4; i++) {
+            byte[] data = new byte[3];
+            data[0] = (byte) i;
+            cache1.insert(EntryImpl.create(1, i, data));
+        }
+        // Next insert should trigger a cache eviction to force the size to 5
+        assertFalse(cache1.insert(EntryImpl.create(1, 4, new byte[3])));
+
+        // The entries evicted to bring the cache back to the watermark are moved to the spill
+        Awaitility.await().untilAsserted(() -> assertEquals(cacheManager.getSize(), 3));
+        assertEquals(spillCache.getSpilledEntriesCount(), 3);
+
+        ReadHandle lh = mock(ReadHandle.class);
+        when(lh.getId()).thenReturn(1L);
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        cache1.asyncReadEntry(lh, 0, 3, false, new AsyncCallbacks.ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                future.complete(entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null);
+
+        List<Entry> entries = future.get(5, TimeUnit.SECONDS);
+        assertEquals(entries.size(), 4);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(entries.get(i).getEntryId(), i);
+            assertEquals(entries.get(i).getData()[0], (byte) i);
+            entries.get(i).release();
+        }
+        verify(lh, never()).readAsync(anyLong(), anyLong());
+        verify(lh, never()).readUnconfirmedAsync(anyLong(), anyLong());
+        assertEquals(spillCache.getHitsCount(), 3);
+        assertEquals(spillCache.getHitsSize(), 9);
+        // Only the entry found in memory is counted as a cache hit
+        assertEquals(factory2.getMbean().getCacheHitsTotal(), 1);
+
+        cacheManager.removeEntryCache(ml1.getName());
+        assertNull(spillCache.get(ml1.getName(), 1, 0));
+    }
 }
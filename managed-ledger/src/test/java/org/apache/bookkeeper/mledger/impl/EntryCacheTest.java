@@ -26,6 +26,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import io.netty.buffer.Unpooled;
@@ -91,6 +92,43 @@ public class EntryCacheTest extends MockedBookKeeperTestCase {
         verify(lh, never()).readAsync(anyLong(), anyLong());
     }
 
+    @Test(timeOut = 5000)
+    public void testAttachedMetadataSharedByCachedEntries() throws Exception {
+        ReadHandle lh = getLedgerHandle();
+        when(lh.getId()).thenReturn((long) 0);
+
+        EntryCacheManager cacheManager = factory.getEntryCacheManager();
+        @Cleanup(value = "clear")
+        EntryCache entryCache = cacheManager.getEntryCache(ml);
+
+        EntryImpl added = EntryImpl.create(0, 0, new byte[10]);
+        entryCache.insert(added);
+        added.release();
+
+        when(ml.getLastConfirmedEntry()).thenReturn(PositionFactory.create(0, 0));
+        List<Entry> firstRead = readEntry(entryCache, lh, 0, 0, false, null);
+        List<Entry> secondRead = readEntry(entryCache, lh, 0, 0, false, null);
+        EntryImpl first = (EntryImpl) firstRead.get(0);
+        EntryImpl second = (EntryImpl) secondRead.get(0);
+        assertNull(first.getAttachedMetadata());
+
+        // The metadata attached by a reader is visible to the other readers of the same cached entry
+        Object metadata = new Object();
+        first.setAttachedMetadata(metadata);
+        assertSame(second.getAttachedMetadata(), metadata);
+        List<Entry> thirdRead = readEntry(entryCache, lh, 0, 0, false, null);
+        assertSame(((EntryImpl) thirdRead.get(0)).getAttachedMetadata(), metadata);
+
+        firstRead.forEach(Entry::release);
+        secondRead.forEach(Entry::release);
+        thirdRead.forEach(Entry::release);
+
+        // The attachment is not carried over when the entry is recycled
+        EntryImpl recycled = EntryImpl.create(0, 1, new byte[10]);
+        assertNull(recycled.getAttachedMetadata());
+        recycled.release();
+    }
+
     @Test(timeOut = 5000)
     public void testReadMissingBefore() throws Exception {
         ReadHandle lh = getLedgerHandle();
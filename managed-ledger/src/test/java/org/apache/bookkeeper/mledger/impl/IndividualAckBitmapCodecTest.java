@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.LedgerEntryBitmap;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet;
+import org.apache.pulsar.common.util.collections.OpenLongPairRangeSet;
+import org.roaringbitmap.RoaringBitSet;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.testng.annotations.Test;
+
+public class IndividualAckBitmapCodecTest {
+
+    private static final LongPairRangeSet.LongPairConsumer<Position> CONVERTER = PositionFactory::create;
+
+    private static OpenLongPairRangeSet<Position> newRangeSet() {
+        return new OpenLongPairRangeSet<>(CONVERTER, RoaringBitSet::new);
+    }
+
+    private static Map<Long, ByteString> toMap(List<LedgerEntryBitmap> bitmaps) {
+        Map<Long, ByteString> map = new HashMap<>();
+        bitmaps.forEach(bitmap -> map.put(bitmap.getLedgerId(), bitmap.getBitmap()));
+        return map;
+    }
+
+    @Test
+    public void encodeAndDecode() throws Exception {
+        OpenLongPairRangeSet<Position> rangeSet = newRangeSet();
+        rangeSet.addOpenClosed(1, -1, 1, 0);
+        rangeSet.addOpenClosed(1, 4, 1, 10);
+        rangeSet.addOpenClosed(1, 99, 1, 100_000);
+        rangeSet.addOpenClosed(3, 5, 3, 6);
+        for (int i = 0; i < 1000; i += 2) {
+            rangeSet.addOpenClosed(4, i, 4, i + 1);
+        }
+
+        List<LedgerEntryBitmap> bitmaps = new ArrayList<>();
+        assertTrue(IndividualAckBitmapCodec.encode(rangeSet, null, Integer.MAX_VALUE, bitmaps));
+        assertEquals(bitmaps.size(), 3);
+
+        OpenLongPairRangeSet<Position> decoded = newRangeSet();
+        IndividualAckBitmapCodec.decode(toMap(bitmaps), decoded);
+        assertEquals(decoded.asRanges(), rangeSet.asRanges());
+    }
+
+    @Test
+    public void encodeUpdatedLedgers() throws Exception {
+        OpenLongPairRangeSet<Position> rangeSet = newRangeSet();
+        rangeSet.addOpenClosed(1, 4, 1, 10);
+        rangeSet.addOpenClosed(2, 4, 2, 10);
+        rangeSet.addOpenClosed(3, 4, 3, 10);
+
+        Roaring64Bitmap updatedLedgers = new Roaring64Bitmap();
+        updatedLedgers.add(2L);
+        updatedLedgers.add(5L);
+
+        List<LedgerEntryBitmap> bitmaps = new ArrayList<>();
+        assertTrue(IndividualAckBitmapCodec.encode(rangeSet, updatedLedgers, Integer.MAX_VALUE, bitmaps));
+        assertEquals(bitmaps.size(), 2);
+        assertEquals(bitmaps.get(0).getLedgerId(), 2);
+        // Ledger 5 was updated but has no ranges anymore
+        assertEquals(bitmaps.get(1).getLedgerId(), 5);
+        assertTrue(bitmaps.get(1).getBitmap().isEmpty());
+
+        OpenLongPairRangeSet<Position> decoded = newRangeSet();
+        IndividualAckBitmapCodec.decode(toMap(bitmaps), decoded);
+        assertEquals(decoded.size(), 1);
+        assertTrue(decoded.contains(2, 5));
+        assertFalse(decoded.contains(1, 5));
+    }
+
+    @Test
+    public void encodeWithMaxRanges() {
+        OpenLongPairRangeSet<Position> rangeSet = newRangeSet();
+        for (int i = 0; i < 10; i++) {
+            rangeSet.addOpenClosed(1, i * 10, 1, i * 10 + 1);
+        }
+
+        List<LedgerEntryBitmap> bitmaps = new ArrayList<>();
+        assertFalse(IndividualAckBitmapCodec.encode(rangeSet, null, 5, bitmaps));
+        assertEquals(bitmaps.size(), 1);
+    }
+}
@@ -51,6 +51,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
@@ -77,6 +78,7 @@ import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.client.PulsarMockBookKeeper;
 import org.apache.bookkeeper.client.api.ReadHandle;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
@@ -3203,6 +3205,96 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         assertFalse(c1.hasMoreEntries());
     }
 
+    @Test(timeOut = 20000)
+    public void testIncrementalIndividualAckPersistenceAfterCrash() throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setPersistIndividualAckIncrementally(true);
+        config.setIndividualAckSnapshotInterval(4);
+        ManagedLedger ledger = factory.open("my_test_ledger", config);
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Position p = ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding));
+            addedPositions.add(p);
+        }
+
+        // Acknowledge messages out of order, leaving holes
+        Set<Integer> deleted = new TreeSet<>();
+        for (int i : new int[] {29, 2, 5, 27, 7, 8, 9, 20, 15, 14, 0, 1, 22}) {
+            c1.delete(addedPositions.get(i));
+            deleted.add(i);
+        }
+        assertEquals(c1.getMarkDeletedPosition(), addedPositions.get(2));
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), 30 - deleted.size());
+
+        // The cursor ledger contains both snapshots and entries with only the updated ledgers
+        LedgerHandle lh = bkc.openLedgerNoRecovery(c1.getCursorLedger(),
+                DigestType.fromApiDigestType(config.getDigestType()), config.getPassword());
+        int snapshots = 0;
+        int deltas = 0;
+        for (LedgerEntry entry : Collections.list(lh.readEntries(0, lh.getLastAddConfirmed()))) {
+            PositionInfo positionInfo = PositionInfo.parseFrom(entry.getEntry());
+            assertEquals(positionInfo.getIndividualDeletedMessagesCount(), 0);
+            assertEquals(positionInfo.getIndividualDeletedMessageRangesCount(), 0);
+            if (positionInfo.hasIndividualDeletedMessagesSnapshotEntryId()) {
+                assertTrue(positionInfo.getIndividualDeletedMessagesSnapshotEntryId() < entry.getEntryId());
+                deltas++;
+            } else {
+                snapshots++;
+            }
+        }
+        assertTrue(snapshots > 1);
+        assertTrue(deltas > snapshots);
+
+        // Re-Open
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger", config);
+        ManagedCursor c2 = ledger.openCursor("c1");
+        assertEquals(c2.getMarkDeletedPosition(), addedPositions.get(2));
+        assertEquals(c2.getNumberOfEntriesInBacklog(false), 30 - deleted.size());
+
+        List<Entry> entries = c2.readEntries(30);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            if (!deleted.contains(i)) {
+                expected.add("dummy-entry-" + i);
+            }
+        }
+        assertEquals(entries.stream().map(e -> new String(e.getDataAndRelease(), Encoding))
+                .collect(Collectors.toList()), expected);
+        assertFalse(c2.hasMoreEntries());
+    }
+
+    @Test(timeOut = 20000)
+    public void testIncrementalIndividualAckPersistenceBeyondMaxRanges() throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setPersistIndividualAckIncrementally(true);
+        config.setIndividualAckSnapshotInterval(4);
+        config.setMaxUnackedRangesToPersist(3);
+        ManagedLedger ledger = factory.open("my_test_ledger", config);
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+        for (int i = 1; i < 20; i += 2) {
+            c1.delete(addedPositions.get(i));
+        }
+
+        // The bitmaps can't hold all the ranges, so the last entry falls back to the list of ranges
+        LedgerHandle lh = bkc.openLedgerNoRecovery(c1.getCursorLedger(),
+                DigestType.fromApiDigestType(config.getDigestType()), config.getPassword());
+        long lastEntryId = lh.getLastAddConfirmed();
+        PositionInfo positionInfo = PositionInfo.parseFrom(lh.readEntries(lastEntryId, lastEntryId)
+                .nextElement().getEntry());
+        assertEquals(positionInfo.getIndividualDeletedMessageBitmapsCount(), 0);
+        assertFalse(positionInfo.hasIndividualDeletedMessagesSnapshotEntryId());
+        assertTrue(positionInfo.getIndividualDeletedMessagesCount() >= 3);
+    }
+
     /**
      * <pre>
      * Verifies that {@link ManagedCursorImpl#createNewMetadataLedger()} cleans up orphan ledgers if fails to switch new
@@ -5332,6 +5424,80 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         ml.delete();
     }
 
+    @Test
+    public void testPrefetchForBackloggedCursor() throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setCursorPrefetchMaxEntries(10);
+        ManagedLedgerImpl ml = (ManagedLedgerImpl) factory.open("testPrefetchForBackloggedCursor", config);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ml.openCursor("c1");
+        for (int i = 0; i < 30; i++) {
+            ml.addEntry(new byte[10]);
+        }
+        // The broker deactivates the backlogged cursors, which also clears the cache
+        ml.deactivateCursor(cursor);
+        assertEquals(ml.entryCache.getSize(), 0);
+
+        // The next entries are prefetched after the first read
+        cursor.readEntries(5).forEach(Entry::release);
+        Awaitility.await().untilAsserted(() -> assertEquals(ml.entryCache.getSize(), 5 * 10));
+        assertEquals(cursor.getStats().getPrefetchHits(), 0);
+        assertEquals(cursor.getStats().getPrefetchMisses(), 0);
+
+        List<Entry> entries = cursor.readEntries(5);
+        assertEquals(entries.get(0).getEntryId(), 5);
+        entries.forEach(Entry::release);
+        assertEquals(cursor.getStats().getPrefetchHits(), 1);
+        assertEquals(cursor.getStats().getPrefetchMisses(), 0);
+
+        // The entries prefetched after the second read are wasted if the cursor is rewound
+        Awaitility.await().untilAsserted(() -> assertEquals(ml.entryCache.getSize(), 10 * 10));
+        cursor.rewind();
+        cursor.readEntries(5).forEach(Entry::release);
+        assertEquals(cursor.getStats().getPrefetchHits(), 1);
+        assertEquals(cursor.getStats().getPrefetchMisses(), 1);
+        assertEquals(cursor.getStats().getPrefetchWastedSize(), 5 * 10);
+        ml.delete();
+    }
+
+    @Test
+    public void testPrefetchedEntriesAreKeptUntilRead() throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setCursorPrefetchMaxEntries(10);
+        ManagedLedgerImpl ml = (ManagedLedgerImpl) factory.open("testPrefetchedEntriesAreKeptUntilRead", config);
+        ManagedCursorImpl backlogged = (ManagedCursorImpl) ml.openCursor("c1");
+        ManagedCursorImpl active = (ManagedCursorImpl) ml.openCursor("c2");
+        for (int i = 0; i < 30; i++) {
+            ml.addEntry(new byte[10]);
+        }
+        ml.deactivateCursor(backlogged);
+        active.readEntries(30).forEach(Entry::release);
+
+        backlogged.readEntries(5).forEach(Entry::release);
+        long ledgerId = backlogged.getReadPosition().getLedgerId();
+        Awaitility.await().untilAsserted(() ->
+                assertTrue(ml.entryCache.isCached(PositionFactory.create(ledgerId, 9))));
+
+        // The entries read by the active cursor are invalidated, but not the entries prefetched for the backlogged one
+        ml.addEntry(new byte[10]);
+        active.readEntries(1).forEach(Entry::release);
+        for (int i = 5; i < 10; i++) {
+            assertTrue(ml.entryCache.isCached(PositionFactory.create(ledgerId, i)));
+        }
+        backlogged.readEntries(5).forEach(Entry::release);
+        assertEquals(backlogged.getStats().getPrefetchHits(), 1);
+        assertEquals(backlogged.getStats().getPrefetchMisses(), 0);
+
+        // The read is not counted as a hit when the prefetched entries are evicted before it
+        Awaitility.await().untilAsserted(() ->
+                assertTrue(ml.entryCache.isCached(PositionFactory.create(ledgerId, 14))));
+        ml.entryCache.clear();
+        backlogged.readEntries(5).forEach(Entry::release);
+        assertEquals(backlogged.getStats().getPrefetchHits(), 1);
+        assertEquals(backlogged.getStats().getPrefetchMisses(), 1);
+        assertEquals(backlogged.getStats().getPrefetchWastedSize(), 5 * 10);
+        ml.delete();
+    }
+
     @Test
     void testForceCursorRecovery() throws Exception {
         TestPulsarMockBookKeeper bk = new TestPulsarMockBookKeeper(executor);
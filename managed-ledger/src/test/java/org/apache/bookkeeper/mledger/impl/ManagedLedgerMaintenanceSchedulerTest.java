@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import io.opentelemetry.api.OpenTelemetry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import lombok.Cleanup;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerMaintenanceScheduler.TaskType;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ManagedLedgerMaintenanceSchedulerTest {
+
+    private ScheduledExecutorService executor;
+
+    @BeforeMethod
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testExecuteRightAwayWithoutRate() {
+        @Cleanup
+        ManagedLedgerMaintenanceScheduler scheduler =
+                new ManagedLedgerMaintenanceScheduler(executor, 0, 1000, 0, OpenTelemetry.noop());
+        ManagedLedgerImpl ml = mock(ManagedLedgerImpl.class);
+        List<String> executed = new CopyOnWriteArrayList<>();
+        AtomicInteger sizeComputations = new AtomicInteger();
+        LongSupplier reclaimableBytes = () -> sizeComputations.incrementAndGet();
+
+        scheduler.submit(ml, TaskType.TRIM, reclaimableBytes, () -> executed.add("trim"));
+        scheduler.submit(ml, TaskType.TRIM, reclaimableBytes, () -> executed.add("trim"));
+
+        assertEquals(executed, List.of("trim", "trim"));
+        // The priority is not needed when the tasks are executed right away
+        assertEquals(sizeComputations.get(), 0);
+        assertEquals(scheduler.getQueueSize(), 0);
+        assertEquals(scheduler.getExecutedTasksCount(), 2);
+    }
+
+    @Test
+    public void testRateLimitedByPriority() throws Exception {
+        @Cleanup
+        ManagedLedgerMaintenanceScheduler scheduler =
+                new ManagedLedgerMaintenanceScheduler(executor, 10, 0, 0, OpenTelemetry.noop());
+        ManagedLedgerImpl ml1 = mock(ManagedLedgerImpl.class);
+        ManagedLedgerImpl ml2 = mock(ManagedLedgerImpl.class);
+        ManagedLedgerImpl ml3 = mock(ManagedLedgerImpl.class);
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        // Block the dispatch until all the tasks are queued
+        executor.submit(() -> {
+            scheduler.submit(ml1, TaskType.TRIM, () -> 10, () -> executed.add("ml1-trim"));
+            scheduler.submit(ml2, TaskType.TRIM, () -> 30, () -> executed.add("ml2-trim"));
+            scheduler.submit(ml3, TaskType.OFFLOAD, () -> 20, () -> executed.add("ml3-offload"));
+            // Coalesced with the queued task
+            scheduler.submit(ml1, TaskType.TRIM, () -> 10, () -> executed.add("ml1-trim"));
+            assertEquals(scheduler.getQueueSize(), 3);
+        }).get();
+
+        Awaitility.await().untilAsserted(() -> assertEquals(executed.size(), 3));
+        assertEquals(executed, List.of("ml2-trim", "ml3-offload", "ml1-trim"));
+        assertEquals(scheduler.getQueueSize(), 0);
+        assertEquals(scheduler.getExecutedTasksCount(), 3);
+    }
+
+    @Test
+    public void testResubmitUpdatesPriority() throws Exception {
+        @Cleanup
+        ManagedLedgerMaintenanceScheduler scheduler =
+                new ManagedLedgerMaintenanceScheduler(executor, 10, 0, 0, OpenTelemetry.noop());
+        ManagedLedgerImpl ml1 = mock(ManagedLedgerImpl.class);
+        ManagedLedgerImpl ml2 = mock(ManagedLedgerImpl.class);
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        executor.submit(() -> {
+            scheduler.submit(ml1, TaskType.TRIM, () -> 10, () -> executed.add("ml1-trim"));
+            scheduler.submit(ml2, TaskType.TRIM, () -> 20, () -> executed.add("ml2-trim"));
+            // More bytes became reclaimable while the task was queued
+            scheduler.submit(ml1, TaskType.TRIM, () -> 30, () -> executed.add("ml1-trim"));
+            assertEquals(scheduler.getQueueSize(), 2);
+        }).get();
+
+        Awaitility.await().untilAsserted(() -> assertEquals(executed.size(), 2));
+        assertEquals(executed, List.of("ml1-trim", "ml2-trim"));
+    }
+
+    @Test
+    public void testMaxQueueTime() throws Exception {
+        @Cleanup
+        ManagedLedgerMaintenanceScheduler scheduler =
+                new ManagedLedgerMaintenanceScheduler(executor, 10, 0, 200, OpenTelemetry.noop());
+        ManagedLedgerImpl ml1 = mock(ManagedLedgerImpl.class);
+        ManagedLedgerImpl ml2 = mock(ManagedLedgerImpl.class);
+        ManagedLedgerImpl ml3 = mock(ManagedLedgerImpl.class);
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        executor.submit(() -> {
+            scheduler.submit(ml1, TaskType.TRIM, () -> 10, () -> executed.add("ml1-trim"));
+            Thread.sleep(300);
+            scheduler.submit(ml2, TaskType.TRIM, () -> 20, () -> executed.add("ml2-trim"));
+            scheduler.submit(ml3, TaskType.TRIM, () -> 30, () -> executed.add("ml3-trim"));
+            return null;
+        }).get();
+
+        Awaitility.await().untilAsserted(() -> assertEquals(executed.size(), 3));
+        // The task of ml1 has waited for longer than the max queue time
+        assertEquals(executed, List.of("ml1-trim", "ml3-trim", "ml2-trim"));
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        @Cleanup
+        ManagedLedgerMaintenanceScheduler scheduler =
+                new ManagedLedgerMaintenanceScheduler(executor, 10, 0, 0, OpenTelemetry.noop());
+        List<String> executed = new CopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            long reclaimableBytes = i;
+            scheduler.submit(mock(ManagedLedgerImpl.class), TaskType.TRIM, () -> reclaimableBytes,
+                    () -> executed.add("task"));
+        }
+
+        Awaitility.await().untilAsserted(() -> assertEquals(executed.size(), 20));
+        // 10 tasks per second, starting without permits
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 1500, "Elapsed " + elapsedMillis + " ms");
+    }
+}
@@ -1823,6 +1823,47 @@ public class ManagedLedgerTest extends MockedBookKeeperTestCase {
         assertEquals(cacheManager.getSize(), entryCache.getSize());
     }
 
+    @Test
+    public void readAheadSharingCachesEntriesForTrailingCursors() throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setReadAheadSharingMaxDistanceEntries(5);
+        ManagedLedgerImpl ledger =
+                (ManagedLedgerImpl) factory.open("my_test_ledger_for_readAheadSharing", config);
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        ManagedCursorImpl c2 = (ManagedCursorImpl) ledger.openCursor("c2");
+        for (int i = 0; i < 20; i++) {
+            ledger.addEntry(String.format("entry-%02d", i).getBytes());
+        }
+        EntryCache entryCache = ledger.entryCache;
+        entryCache.clear();
+
+        // c2 is going to read the same entries, so the entries read by c1 are kept in cache
+        long cacheHits = factory.getMbean().getCacheHitsTotal();
+        c1.readEntries(5).forEach(Entry::release);
+        assertEquals(entryCache.getSize(), 5 * 8);
+
+        List<Entry> entries = c2.readEntries(5);
+        assertEquals(entries.size(), 5);
+        assertEquals(new String(entries.get(4).getData()), "entry-04");
+        entries.forEach(Entry::release);
+        assertEquals(factory.getMbean().getCacheHitsTotal() - cacheHits, 5);
+
+        // Once c2 is too far behind, c1 reads are not cached anymore
+        c2.setReadPosition(PositionFactory.create(c2.getReadPosition().getLedgerId(), 5));
+        c1.seek(PositionFactory.create(c2.getReadPosition().getLedgerId(), 15));
+        entryCache.clear();
+        c1.readEntries(5).forEach(Entry::release);
+        assertEquals(entryCache.getSize(), 0);
+
+        assertFalse(ledger.shouldShareReadEntries(c1, c2.getReadPosition().getLedgerId(), 11, 15));
+        assertTrue(ledger.shouldShareReadEntries(c1, c2.getReadPosition().getLedgerId(), 10, 15));
+        assertFalse(ledger.shouldShareReadEntries(c1, c2.getReadPosition().getLedgerId() + 1, 10, 15));
+
+        // the inactive cursors don't read, so the entries are not shared with them
+        ledger.deactivateCursor(c2);
+        assertFalse(ledger.shouldShareReadEntries(c1, c2.getReadPosition().getLedgerId(), 10, 15));
+    }
+
     @Test
     public void invalidateEntriesFromCacheByMarkDeletePosition() throws Exception {
         ManagedLedgerConfig config = new ManagedLedgerConfig();
@@ -2906,6 +2947,94 @@ public class ManagedLedgerTest extends MockedBookKeeperTestCase {
         assertEquals(cursor.getMarkDeletedPosition(), p1);
     }
 
+    @Test
+    public void testRecoverCursorOnDemand() throws Exception {
+        ManagedLedger ledger = factory.open("testRecoverCursorOnDemand");
+        ManagedCursor cursor1 = ledger.openCursor("c1");
+        ManagedCursor cursor2 = ledger.openCursor("c2");
+        ledger.addEntry("entry-1".getBytes());
+        Position p2 = ledger.addEntry("entry-2".getBytes());
+        cursor1.markDelete(p2);
+        cursor2.markDelete(p2);
+
+        // Re-open from a different factory trigger recovery.
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setLazyCursorRecovery(true);
+        managedLedgerConfig.setCursorRecoveryOnDemand(true);
+        ManagedLedgerImpl ledger2 = (ManagedLedgerImpl) factory2.open("testRecoverCursorOnDemand", managedLedgerConfig);
+        assertTrue(ledger2.getLedgersRecoveryTimeNanos() >= 0);
+        assertTrue(ledger2.getCursorsRecoveryTimeNanos() >= 0);
+
+        // No cursor is recovered until it is opened
+        assertEquals(ledger2.deferredCursors.keySet(), Set.of("c1", "c2"));
+        assertNull(ledger2.getCursors().get("c1"));
+        assertNull(ledger2.getCursors().get("c2"));
+
+        cursor1 = ledger2.openCursor("c1");
+        assertEquals(cursor1.getMarkDeletedPosition(), p2);
+        assertEquals(ledger2.deferredCursors.keySet(), Set.of("c2"));
+        assertNull(ledger2.getCursors().get("c2"));
+
+        // Trimming the ledgers needs the positions of all the cursors
+        CompletableFuture<Void> trimFuture = new CompletableFuture<>();
+        ledger2.trimConsumedLedgersInBackground(trimFuture);
+        trimFuture.get(5, TimeUnit.SECONDS);
+        assertTrue(ledger2.deferredCursors.isEmpty());
+        assertTrue(ledger2.uninitializedCursors.isEmpty());
+        assertEquals(ledger2.getCursors().get("c2").getMarkDeletedPosition(), p2);
+    }
+
+    @Test
+    public void testRecoverDeferredCursors() throws Exception {
+        ManagedLedger ledger = factory.open("testRecoverDeferredCursors");
+        ledger.openCursor("c1");
+        ManagedCursor cursor2 = ledger.openCursor("c2");
+        Position p1 = ledger.addEntry("entry-1".getBytes());
+        cursor2.markDelete(p1);
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setLazyCursorRecovery(true);
+        managedLedgerConfig.setCursorRecoveryOnDemand(true);
+        ManagedLedgerImpl ledger2 = (ManagedLedgerImpl) factory2.open("testRecoverDeferredCursors",
+                managedLedgerConfig);
+        assertEquals(ledger2.deferredCursors.keySet(), Set.of("c1", "c2"));
+
+        ledger2.recoverDeferredCursors().get(5, TimeUnit.SECONDS);
+        assertTrue(ledger2.deferredCursors.isEmpty());
+        assertTrue(ledger2.uninitializedCursors.isEmpty());
+        assertEquals(ledger2.getCursors().get("c2").getMarkDeletedPosition(), p1);
+        assertNotNull(ledger2.getCursors().get("c1"));
+    }
+
+    @Test
+    public void testDeleteWithDeferredCursors() throws Exception {
+        ManagedLedger ledger = factory.open("testDeleteWithDeferredCursors");
+        ledger.openCursor("c1");
+        ManagedCursor cursor2 = ledger.openCursor("c2");
+        Position p1 = ledger.addEntry("entry-1".getBytes());
+        cursor2.markDelete(p1);
+        ledger.close();
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setLazyCursorRecovery(true);
+        managedLedgerConfig.setCursorRecoveryOnDemand(true);
+        ManagedLedgerImpl ledger2 = (ManagedLedgerImpl) factory2.open("testDeleteWithDeferredCursors",
+                managedLedgerConfig);
+        assertEquals(ledger2.deferredCursors.keySet(), Set.of("c1", "c2"));
+
+        // The ledgers and the metadata of the deferred cursors are deleted with the managed ledger
+        ledger2.delete();
+        assertEquals(bkc.getLedgers().size(), 0);
+        assertFalse(metadataStore.exists("/managed-ledgers/testDeleteWithDeferredCursors/c1").join());
+        assertFalse(metadataStore.exists("/managed-ledgers/testDeleteWithDeferredCursors/c2").join());
+    }
+
     @Test
     public void testConcurrentOpenCursor() throws Exception {
         ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("testConcurrentOpenCursor");
@@ -3312,6 +3441,31 @@ public class ManagedLedgerTest extends MockedBookKeeperTestCase {
         setFieldValue(ManagedLedgerImpl.class, ledger, "currentLedger", null);
     }
 
+    @Test
+    public void testTrimConsumedLedgersWithMaintenanceRateLimit() throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setMaintenanceMaxTasksPerSecond(10);
+        config.setMaintenanceMaxJitterMillis(0);
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory = new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("my_test_ledger",
+                new ManagedLedgerConfig().setMaxEntriesPerLedger(1));
+        ManagedCursor cursor = ledger.openCursor("c1");
+        Position lastPosition = null;
+        for (int i = 0; i < 5; i++) {
+            lastPosition = ledger.addEntry(("entry-" + i).getBytes(Encoding));
+        }
+        assertTrue(ledger.getLedgersInfoAsList().size() > 1);
+        cursor.markDelete(lastPosition);
+        assertTrue(ledger.getConsumedLedgersSize() > 0);
+
+        // The trimming is executed by the maintenance scheduler of the factory
+        Awaitility.await().untilAsserted(() -> assertEquals(ledger.getLedgersInfoAsList().size(), 1));
+        assertEquals(ledger.getConsumedLedgersSize(), 0);
+        assertTrue(factory.getMaintenanceScheduler().getExecutedTasksCount() > 0);
+    }
+
     @Test
     public void avoidUseSameOpAddEntryBetweenDifferentLedger() throws Exception {
         ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet.RangeBoundConsumer;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPair;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPairConsumer;
@@ -90,6 +91,31 @@ public class RangeSetWrapperTest {
         }
     }
 
+    @Test
+    public void testSnapshot() {
+        doTestSnapshot();
+        managedLedgerConfig.setUnackedRangesOpenCacheSetEnabled(false);
+        doTestSnapshot();
+    }
+
+    private void doTestSnapshot() {
+        set = new RangeSetWrapper<>(consumer, reverseConvert, managedCursor);
+        set.addOpenClosed(1, 0, 1, 10);
+        set.addOpenClosed(2, 0, 2, 10);
+        List<Range<LongPair>> ranges = new ArrayList<>(set.asRanges());
+
+        LongPairRangeSet<LongPair> snapshot = set.snapshot();
+        set.addOpenClosed(1, 10, 1, 20);
+        set.addOpenClosed(2, 15, 2, 20);
+        set.removeAtMost(1, 5);
+        assertEquals(new ArrayList<>(snapshot.asRanges()), ranges);
+        assertEquals(set.size(), 3);
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(new ArrayList<>(snapshot.asRanges()), ranges);
+    }
+
     @Test
     public void testAddForSameKey() {
         doTestAddForSameKey();
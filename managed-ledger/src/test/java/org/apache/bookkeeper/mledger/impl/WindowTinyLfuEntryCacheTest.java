@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCache;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheManager;
+import org.apache.bookkeeper.mledger.impl.cache.MappedEntrySpillCache;
+import org.apache.bookkeeper.mledger.impl.cache.WindowTinyLfuEntryCacheImpl;
+import org.apache.bookkeeper.mledger.impl.cache.WindowTinyLfuEntryCacheManagerImpl;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class WindowTinyLfuEntryCacheTest extends MockedBookKeeperTestCase {
+
+    ManagedLedgerImpl ml1;
+    ManagedLedgerImpl ml2;
+
+    @Override
+    protected void setUpTestCase() throws Exception {
+        ml1 = mock(ManagedLedgerImpl.class);
+        when(ml1.getScheduledExecutor()).thenReturn(executor);
+        when(ml1.getName()).thenReturn("cache1");
+        when(ml1.getMbean()).thenReturn(new ManagedLedgerMBeanImpl(ml1));
+        when(ml1.getExecutor()).thenReturn(executor);
+        when(ml1.getConfig()).thenReturn(new ManagedLedgerConfig());
+
+        ml2 = mock(ManagedLedgerImpl.class);
+        when(ml2.getScheduledExecutor()).thenReturn(executor);
+        when(ml2.getName()).thenReturn("cache2");
+        when(ml2.getMbean()).thenReturn(new ManagedLedgerMBeanImpl(ml2));
+        when(ml2.getExecutor()).thenReturn(executor);
+        when(ml2.getConfig()).thenReturn(new ManagedLedgerConfig());
+    }
+
+    private ManagedLedgerFactoryConfig newConfig(long maxCacheSize) {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setMaxCacheSize(maxCacheSize);
+        config.setEntryCacheType(ManagedLedgerFactoryConfig.EntryCacheType.WINDOW_TINY_LFU);
+        config.setCacheAdmissionWindowRatio(0.1);
+        return config;
+    }
+
+    @Test
+    public void simple() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, newConfig(100));
+
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        assertTrue(cacheManager instanceof WindowTinyLfuEntryCacheManagerImpl);
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+        assertTrue(cache1 instanceof WindowTinyLfuEntryCacheImpl);
+
+        assertTrue(cache1.insert(EntryImpl.create(1, 1, new byte[4])));
+        assertTrue(cache1.insert(EntryImpl.create(1, 0, new byte[3])));
+        assertFalse(cache1.insert(EntryImpl.create(1, 0, new byte[5])));
+
+        assertEquals(cache1.getSize(), 7);
+        assertEquals(cacheManager.getSize(), 7);
+        assertEquals(factory2.getMbean().getCacheInsertedEntriesCount(), 2);
+        assertEquals(factory2.getMbean().getCacheEntriesCount(), 2);
+
+        cache1.invalidateEntries(PositionFactory.create(1, 1));
+        assertEquals(cache1.getSize(), 4);
+        assertEquals(cacheManager.getSize(), 4);
+
+        cache1.invalidateAllEntries(1);
+        assertEquals(cache1.getSize(), 0);
+        assertEquals(cacheManager.getSize(), 0);
+        assertEquals(factory2.getMbean().getCacheEvictedEntriesCount(), 2);
+        assertEquals(factory2.getMbean().getCacheEntriesCount(), 0);
+    }
+
+    @Test
+    public void cacheIsBounded() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, newConfig(100));
+
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+
+        for (int i = 0; i < 50; i++) {
+            cache1.insert(EntryImpl.create(1, i, new byte[10]));
+            assertTrue(cacheManager.getSize() <= 100);
+        }
+        assertEquals(cache1.getSize(), cacheManager.getSize());
+
+        // The evicted entries are unlinked from the policy as well
+        long sizeBefore = cache1.getSize();
+        assertEquals(cache1.evictEntries(20).getRight().longValue(), 20L);
+        assertEquals(cache1.getSize(), sizeBefore - 20);
+        assertEquals(cacheManager.getSize(), cache1.getSize());
+        for (int i = 50; i < 60; i++) {
+            cache1.insert(EntryImpl.create(1, i, new byte[10]));
+            assertTrue(cacheManager.getSize() <= 100);
+        }
+
+        cache1.clear();
+        assertEquals(cache1.getSize(), 0);
+        assertEquals(cacheManager.getSize(), 0);
+        assertEquals(factory2.getMbean().getCacheEntriesCount(), 0);
+    }
+
+    @Test
+    public void catchUpReadDoesNotEvictHotEntries() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, newConfig(100));
+
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache hotCache = cacheManager.getEntryCache(ml1);
+        EntryCache coldCache = cacheManager.getEntryCache(ml2);
+
+        ReadHandle lh = mock(ReadHandle.class);
+        when(lh.getId()).thenReturn(1L);
+
+        // Entries of the hot topic are read multiple times
+        for (int i = 0; i < 8; i++) {
+            hotCache.insert(EntryImpl.create(1, i, new byte[10]));
+        }
+        for (int i = 0; i < 2; i++) {
+            readEntries(hotCache, lh, 0, 7).forEach(Entry::release);
+        }
+
+        // A catch-up reader on another topic inserts many entries that are never read again
+        for (int i = 0; i < 100; i++) {
+            coldCache.insert(EntryImpl.create(2, i, new byte[10]));
+        }
+
+        assertTrue(cacheManager.getSize() <= 100);
+        assertEquals(hotCache.getSize(), 80);
+        List<Entry> entries = readEntries(hotCache, lh, 0, 7);
+        assertEquals(entries.size(), 8);
+        entries.forEach(Entry::release);
+        verify(lh, never()).readAsync(anyLong(), anyLong());
+        verify(lh, never()).readUnconfirmedAsync(anyLong(), anyLong());
+
+        WindowTinyLfuEntryCacheManagerImpl manager = (WindowTinyLfuEntryCacheManagerImpl) cacheManager;
+        assertTrue(manager.getRejectedEntriesCount() > 0);
+        factory2.getMbean().refreshStats(1, TimeUnit.SECONDS);
+        assertEquals(factory2.getMbean().getCacheRejectedEntriesCount(), manager.getRejectedEntriesCount());
+    }
+
+    @Test
+    public void cacheSizeUpdate() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, newConfig(200));
+
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+        for (int i = 0; i < 20; i++) {
+            cache1.insert(EntryImpl.create(1, i, new byte[10]));
+        }
+        assertEquals(cacheManager.getSize(), 200);
+
+        cacheManager.updateCacheSizeAndThreshold(100);
+        assertTrue(cacheManager.getSize() <= 100);
+        assertEquals(cache1.getSize(), cacheManager.getSize());
+
+        cacheManager.removeEntryCache(ml1.getName());
+        assertEquals(cacheManager.getSize(), 0);
+        assertEquals(factory2.getMbean().getCacheEntriesCount(), 0);
+    }
+
+    @Test
+    public void evictedEntriesAreReadFromSpill() throws Exception {
+        Path spillDirectory = Files.createTempDirectory("entry-cache-spill");
+        @Cleanup("run")
+        Runnable deleteSpillDirectory = () -> FileUtils.deleteQuietly(spillDirectory.toFile());
+
+        ManagedLedgerFactoryConfig config = newConfig(100);
+        config.setCacheSpillMaxSize(4096);
+        config.setCacheSpillDirectory(spillDirectory.toString());
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+
+        WindowTinyLfuEntryCacheManagerImpl cacheManager =
+                (WindowTinyLfuEntryCacheManagerImpl) factory2.getEntryCacheManager();
+        MappedEntrySpillCache spillCache = cacheManager.getSpillCache();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+        for (int i = 0; i < 20; i++) {
+            byte[] data = new byte[10];
+            data[0] = (byte) i;
+            cache1.insert(EntryImpl.create(1, i, data));
+        }
+        assertTrue(cacheManager.getSize() <= 100);
+        assertTrue(spillCache.getSpilledEntriesCount() > 0);
+
+        // The entries evicted or rejected by the policy are read from the spill instead of the bookies
+        ReadHandle lh = mock(ReadHandle.class);
+        when(lh.getId()).thenReturn(1L);
+        List<Entry> entries = readEntries(cache1, lh, 0, 19);
+        assertEquals(entries.size(), 20);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(entries.get(i).getData()[0], (byte) i);
+        }
+        entries.forEach(Entry::release);
+        verify(lh, never()).readAsync(anyLong(), anyLong());
+        verify(lh, never()).readUnconfirmedAsync(anyLong(), anyLong());
+        assertTrue(spillCache.getHitsCount() > 0);
+    }
+
+    private static List<Entry> readEntries(EntryCache entryCache, ReadHandle lh, long firstEntry, long lastEntry)
+            throws Exception {
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        entryCache.asyncReadEntry(lh, firstEntry, lastEntry, false, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                future.complete(entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null);
+        return future.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class MappedEntrySpillCacheTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("entry-cache-spill");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup() {
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    private static EntryImpl newEntry(long ledgerId, long entryId, int size) {
+        byte[] data = new byte[size];
+        data[0] = (byte) entryId;
+        data[size - 1] = (byte) ledgerId;
+        return EntryImpl.create(ledgerId, entryId, data);
+    }
+
+    @Test
+    public void spillAndGet() throws Exception {
+        MappedEntrySpillCache spillCache = new MappedEntrySpillCache(directory.toString(), 400);
+        assertEquals(spillCache.getNumberOfSegments(), 4);
+
+        EntryImpl entry = newEntry(1, 0, 10);
+        assertTrue(spillCache.spill("ml", entry));
+        assertFalse(spillCache.spill("ml", entry));
+        entry.release();
+
+        EntryImpl spilled = spillCache.get("ml", 1, 0);
+        assertNotNull(spilled);
+        assertEquals(spilled.getLedgerId(), 1);
+        assertEquals(spilled.getEntryId(), 0);
+        assertEquals(spilled.getLength(), 10);
+        assertEquals(spilled.getData()[0], 0);
+        assertEquals(spilled.getData()[9], 1);
+        spilled.release();
+
+        assertNull(spillCache.get("ml", 1, 1));
+        assertNull(spillCache.get("other-ml", 1, 0));
+        assertEquals(spillCache.getSpilledEntriesCount(), 1);
+        assertEquals(spillCache.getSpilledSize(), 10);
+        assertEquals(spillCache.getHitsCount(), 1);
+        assertEquals(spillCache.getHitsSize(), 10);
+        assertEquals(spillCache.getMissesCount(), 2);
+    }
+
+    @Test
+    public void oldestSegmentIsReused() throws Exception {
+        MappedEntrySpillCache spillCache = new MappedEntrySpillCache(directory.toString(), 400);
+
+        // Each segment of 100 bytes holds 2 entries
+        for (int i = 0; i < 9; i++) {
+            EntryImpl entry = newEntry(1, i, 40);
+            assertTrue(spillCache.spill("ml", entry));
+            entry.release();
+        }
+
+        assertNull(spillCache.get("ml", 1, 0));
+        assertNull(spillCache.get("ml", 1, 1));
+        for (int i = 2; i < 9; i++) {
+            EntryImpl spilled = spillCache.get("ml", 1, i);
+            assertNotNull(spilled);
+            assertEquals(spilled.getData()[0], (byte) i);
+            spilled.release();
+        }
+        assertEquals(spillCache.getNumberOfEntries(), 7);
+
+        // Entries bigger than a segment are not stored
+        EntryImpl entry = newEntry(1, 9, 101);
+        assertFalse(spillCache.spill("ml", entry));
+        entry.release();
+    }
+
+    @Test
+    public void invalidateAndClear() throws Exception {
+        MappedEntrySpillCache spillCache = new MappedEntrySpillCache(directory.toString(), 400);
+        for (int i = 0; i < 4; i++) {
+            EntryImpl entry = newEntry(i, 0, 10);
+            spillCache.spill(i % 2 == 0 ? "ml1" : "ml2", entry);
+            entry.release();
+        }
+
+        spillCache.invalidate("ml1");
+        assertEquals(spillCache.getNumberOfEntries(), 2);
+        assertNull(spillCache.get("ml1", 0, 0));
+        EntryImpl spilled = spillCache.get("ml2", 1, 0);
+        assertNotNull(spilled);
+        spilled.release();
+
+        spillCache.clear();
+        assertEquals(spillCache.getNumberOfEntries(), 0);
+        assertNull(spillCache.get("ml2", 1, 0));
+    }
+
+    @Test
+    public void closeDeletesSegments() throws Exception {
+        MappedEntrySpillCache spillCache = new MappedEntrySpillCache(directory.toString(), 400);
+        EntryImpl entry = newEntry(1, 0, 10);
+        assertTrue(spillCache.spill("ml", entry));
+        assertEquals(Files.list(directory).count(), 4);
+
+        spillCache.close();
+        assertEquals(Files.list(directory).count(), 0);
+        assertNull(spillCache.get("ml", 1, 0));
+        assertFalse(spillCache.spill("ml", entry));
+        entry.release();
+        // closing again is a no-op
+        spillCache.close();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import static org.testng.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.bookkeeper.mledger.impl.cache.WindowTinyLfuPolicy.Node;
+import org.testng.annotations.Test;
+
+public class WindowTinyLfuPolicyTest {
+
+    private static Node newNode(int id, int size) {
+        return new Node(null, null, EntryImpl.create(1, id, new byte[size]), id * 0x9E3779B97F4A7C15L);
+    }
+
+    @Test
+    public void testRejectedCandidateDoesNotEvictVictims() {
+        // window of 10 bytes, main segments of 90 bytes
+        WindowTinyLfuPolicy policy = new WindowTinyLfuPolicy(100, 0.1);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Node node = newNode(i, 10);
+            nodes.add(node);
+            assertEquals(policy.add(node), List.of());
+        }
+        assertEquals(policy.getWindowSize(), 10);
+        assertEquals(policy.getProbationSize(), 90);
+
+        // node 1 is more frequent than the candidate, without being promoted to the protected segment
+        Node hot = nodes.get(1);
+        for (int i = 0; i < 3; i++) {
+            policy.recordAccess(hot);
+        }
+        hot.accessed = false;
+        Node candidate = newNode(100, 20);
+        policy.recordAccess(candidate);
+        policy.recordAccess(candidate);
+
+        // node 9 leaves the window and is rejected since it's not more frequent than node 0, then the candidate
+        // would need to evict nodes 0 and 1
+        List<Node> evicted = policy.add(candidate);
+        assertEquals(evicted, List.of(nodes.get(9), candidate));
+        assertEquals(nodes.get(0).queue, WindowTinyLfuPolicy.PROBATION);
+        assertEquals(hot.queue, WindowTinyLfuPolicy.PROBATION);
+        assertEquals(policy.getProbationSize(), 90);
+        assertEquals(policy.getWindowSize(), 0);
+        assertEquals(policy.getRejectedEntriesCount(), 2);
+
+        // node 0 is still the next victim
+        Node next = newNode(101, 10);
+        policy.recordAccess(next);
+        policy.recordAccess(next);
+        assertEquals(policy.add(next), List.of());
+        assertEquals(policy.add(newNode(102, 10)), List.of(nodes.get(0)));
+    }
+
+    @Test
+    public void testEvictInPolicyOrder() {
+        // window of 20 bytes, main segments of 80 bytes
+        WindowTinyLfuPolicy policy = new WindowTinyLfuPolicy(100, 0.2);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Node node = newNode(i, 10);
+            nodes.add(node);
+            assertEquals(policy.add(node), List.of());
+        }
+        assertEquals(policy.getWindowSize(), 20);
+        assertEquals(policy.getProbationSize(), 40);
+
+        // the probation nodes are evicted first, from the least recently added, then the window nodes
+        assertEquals(policy.evict(null, 15), List.of(nodes.get(0), nodes.get(1)));
+        assertEquals(policy.getProbationSize(), 20);
+        assertEquals(policy.evict(null, 30), List.of(nodes.get(2), nodes.get(3), nodes.get(4)));
+        assertEquals(policy.getProbationSize(), 0);
+        assertEquals(policy.getWindowSize(), 10);
+        assertEquals(nodes.get(4).queue, WindowTinyLfuPolicy.REMOVED);
+        assertEquals(nodes.get(5).queue, WindowTinyLfuPolicy.WINDOW);
+    }
+
+    @Test
+    public void testSetMaxSize() {
+        WindowTinyLfuPolicy policy = new WindowTinyLfuPolicy(100, 0.1);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Node node = newNode(i, 10);
+            nodes.add(node);
+            policy.add(node);
+        }
+        // the window shrinks to 5 bytes, rejecting node 9, and the main segments shrink to 45 bytes, evicting the
+        // least recently added probation nodes
+        List<Node> expected = new ArrayList<>();
+        expected.add(nodes.get(9));
+        expected.addAll(nodes.subList(0, 5));
+        assertEquals(policy.setMaxSize(50), expected);
+        assertEquals(policy.getWindowSize(), 0);
+        assertEquals(policy.getProbationSize(), 40);
+    }
+}
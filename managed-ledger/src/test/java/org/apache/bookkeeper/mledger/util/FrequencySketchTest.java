@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void testIncrementAndFrequency() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(sketch.frequency(1), 0);
+
+        sketch.increment(1);
+        assertEquals(sketch.frequency(1), 1);
+
+        sketch.increment(1);
+        sketch.increment(1);
+        assertEquals(sketch.frequency(1), 3);
+        assertEquals(sketch.frequency(2), 0);
+    }
+
+    @Test
+    public void testSaturation() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(sketch.frequency(42), 15);
+    }
+
+    @Test
+    public void testReset() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(7);
+        }
+        int frequencyBeforeReset = sketch.frequency(7);
+        assertTrue(frequencyBeforeReset >= 10);
+
+        // Record enough distinct keys to trigger the aging of the counters
+        int sampleCount = sketch.getSampleCount();
+        for (long key = 1000; sketch.getSampleCount() >= sampleCount; key++) {
+            sampleCount = sketch.getSampleCount();
+            sketch.increment(key);
+        }
+        assertTrue(sketch.frequency(7) < frequencyBeforeReset,
+                "frequency should have been halved, was " + sketch.frequency(7));
+        assertTrue(sketch.getSampleCount() <= sampleCount / 2 + 1);
+    }
+
+    @Test
+    public void testHeavyHitters() {
+        FrequencySketch sketch = new FrequencySketch(512);
+        for (int i = 100; i < 5000; i++) {
+            sketch.increment(i);
+        }
+        for (int i = 0; i < 10; i += 2) {
+            for (int j = 0; j < i; j++) {
+                sketch.increment(i);
+            }
+        }
+
+        // A popular key must be estimated as more popular than a key seen only once
+        assertTrue(sketch.frequency(8) > sketch.frequency(4999));
+        assertTrue(sketch.frequency(6) >= 6);
+    }
+}
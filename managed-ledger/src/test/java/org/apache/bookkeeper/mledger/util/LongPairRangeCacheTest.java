@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.testng.annotations.Test;
+
+public class LongPairRangeCacheTest {
+
+    static class RefValue extends AbstractReferenceCounted implements RangeCache.ValueWithKeyValidation<Position> {
+        final Position position;
+        final int size;
+        final long timestamp;
+
+        RefValue(long ledgerId, long entryId) {
+            this(ledgerId, entryId, 1, 0);
+        }
+
+        RefValue(long ledgerId, long entryId, int size, long timestamp) {
+            this.position = PositionFactory.create(ledgerId, entryId);
+            this.size = size;
+            this.timestamp = timestamp;
+            setRefCnt(1);
+        }
+
+        @Override
+        protected void deallocate() {
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+
+        @Override
+        public boolean matchesKey(Position key) {
+            return position.compareTo(key) == 0;
+        }
+    }
+
+    private static LongPairRangeCache<RefValue> newCache() {
+        return new LongPairRangeCache<>(value -> value.size, value -> value.timestamp, 4);
+    }
+
+    private static Position pos(long ledgerId, long entryId) {
+        return PositionFactory.create(ledgerId, entryId);
+    }
+
+    private static boolean put(LongPairRangeCache<RefValue> cache, RefValue value) {
+        boolean inserted = cache.put(value.position, value);
+        if (!inserted) {
+            value.release();
+        }
+        return inserted;
+    }
+
+    private static List<Long> entryIds(Collection<RefValue> values) {
+        List<Long> ids = values.stream().map(v -> v.position.getEntryId()).collect(Collectors.toList());
+        values.forEach(RefValue::release);
+        return ids;
+    }
+
+    @Test
+    public void simple() {
+        LongPairRangeCache<RefValue> cache = newCache();
+
+        RefValue v0 = new RefValue(1, 0);
+        assertTrue(put(cache, v0));
+        assertTrue(put(cache, new RefValue(1, 1)));
+        assertFalse(put(cache, new RefValue(1, 1)));
+
+        assertEquals(cache.getSize(), 2);
+        assertEquals(cache.getNumberOfEntries(), 2);
+        assertTrue(cache.exists(pos(1, 0)));
+        assertFalse(cache.exists(pos(1, 2)));
+
+        RefValue v = cache.get(pos(1, 0));
+        assertEquals(v, v0);
+        assertEquals(v.refCnt(), 2);
+        v.release();
+        assertNull(cache.get(pos(2, 0)));
+
+        put(cache, new RefValue(1, 2));
+        put(cache, new RefValue(1, 8));
+        put(cache, new RefValue(1, 11));
+        assertEquals(cache.getSize(), 5);
+
+        assertEquals(cache.removeRange(pos(1, 1), pos(1, 5), true), Pair.of(2, 2L));
+        assertEquals(cache.getSize(), 3);
+        assertEquals(cache.removeRange(pos(1, 2), pos(1, 8), false), Pair.of(0, 0L));
+        assertEquals(cache.getNumberOfEntries(), 3);
+        assertEquals(cache.removeRange(pos(1, 0), pos(1, 100), false), Pair.of(3, 3L));
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+        assertEquals(v0.refCnt(), 0);
+    }
+
+    @Test
+    public void getRangeAcrossLedgers() {
+        LongPairRangeCache<RefValue> cache = newCache();
+        for (long ledgerId = 1; ledgerId <= 3; ledgerId++) {
+            for (long entryId = 0; entryId < 10; entryId++) {
+                put(cache, new RefValue(ledgerId, entryId));
+            }
+        }
+
+        assertEquals(entryIds(cache.getRange(pos(1, 3), pos(1, 6))), List.of(3L, 4L, 5L, 6L));
+        assertEquals(cache.getRange(pos(1, 8), pos(3, 1)).size(), 2 + 10 + 2);
+        assertEquals(entryIds(cache.getRange(pos(4, 0), pos(5, 0))), List.of());
+
+        // Delete the entries of a whole ledger, like the entry cache does when invalidating a ledger
+        assertEquals(cache.removeRange(pos(2, 0), pos(2, Long.MAX_VALUE), false), Pair.of(10, 10L));
+        assertEquals(cache.getRange(pos(1, 0), pos(3, 9)).stream().peek(RefValue::release).count(), 20);
+
+        // Delete everything before a position, like the entry cache does when invalidating the consumed entries
+        assertEquals(cache.removeRange(pos(-1, -1), pos(3, 5), false), Pair.of(15, 15L));
+        assertEquals(entryIds(cache.getRange(pos(1, 0), pos(3, 9))), List.of(5L, 6L, 7L, 8L, 9L));
+    }
+
+    @Test
+    public void outOfOrderInsertion() {
+        LongPairRangeCache<RefValue> cache = newCache();
+        for (long entryId : new long[]{5, 1, 9, 3, 7, 0}) {
+            put(cache, new RefValue(1, entryId));
+        }
+        assertEquals(entryIds(cache.getRange(pos(1, 0), pos(1, 9))), List.of(0L, 1L, 3L, 5L, 7L, 9L));
+
+        cache.removeRange(pos(1, 3), pos(1, 7), false);
+        assertEquals(entryIds(cache.getRange(pos(1, 0), pos(1, 9))), List.of(0L, 1L, 7L, 9L));
+        put(cache, new RefValue(1, 4));
+        assertEquals(entryIds(cache.getRange(pos(1, 0), pos(1, 9))), List.of(0L, 1L, 4L, 7L, 9L));
+    }
+
+    @Test
+    public void evictions() {
+        LongPairRangeCache<RefValue> cache = newCache();
+        for (long entryId = 0; entryId < 100; entryId++) {
+            put(cache, new RefValue(entryId < 50 ? 1 : 2, entryId, 10, entryId));
+        }
+        assertEquals(cache.getSize(), 1000);
+
+        // The oldest entries are evicted first
+        assertEquals(cache.evictLeastAccessedEntries(95), Pair.of(10, 100L));
+        assertFalse(cache.exists(pos(1, 9)));
+        assertTrue(cache.exists(pos(1, 10)));
+
+        assertEquals(cache.evictLEntriesBeforeTimestamp(59), Pair.of(50, 500L));
+        assertFalse(cache.exists(pos(2, 59)));
+        assertTrue(cache.exists(pos(2, 60)));
+        assertEquals(cache.getSize(), 400);
+
+        assertEquals(cache.clear(), Pair.of(40, 400L));
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+        assertTrue(put(cache, new RefValue(2, 60)));
+        assertEquals(cache.getNumberOfEntries(), 1);
+    }
+
+    @Test
+    public void rehashWithManyInsertionsAndRemovals() {
+        LongPairRangeCache<RefValue> cache = newCache();
+        List<RefValue> inserted = new ArrayList<>();
+        for (long entryId = 0; entryId < 10_000; entryId++) {
+            RefValue value = new RefValue(entryId % 3, entryId);
+            inserted.add(value);
+            put(cache, value);
+            if (entryId % 100 == 99) {
+                // Keep a sliding window of the most recent entries
+                for (long ledgerId = 0; ledgerId < 3; ledgerId++) {
+                    cache.removeRange(pos(ledgerId, 0), pos(ledgerId, entryId - 50), true);
+                }
+            }
+        }
+        assertEquals(cache.getNumberOfEntries(), 50);
+        for (long entryId = 9_950; entryId < 10_000; entryId++) {
+            RefValue value = cache.get(pos(entryId % 3, entryId));
+            assertEquals(value.position.getEntryId(), entryId);
+            value.release();
+        }
+        cache.clear();
+        inserted.forEach(value -> assertEquals(value.refCnt(), 0));
+    }
+
+    @Test
+    public void getWhileTheTableIsResized() throws Exception {
+        LongPairRangeCache<RefValue> cache = newCache();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    for (long entryId = 0; entryId < 1_000; entryId += 7) {
+                        RefValue value = cache.get(pos(1, entryId));
+                        if (value != null) {
+                            value.release();
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        try {
+            for (int round = 0; round < 200; round++) {
+                // the table grows, then clear() swaps it for a small table
+                for (long entryId = 0; entryId < 1_000; entryId++) {
+                    put(cache, new RefValue(1, entryId));
+                }
+                cache.clear();
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void getValueWithInvalidRefCount() {
+        LongPairRangeCache<RefValue> cache = newCache();
+        RefValue value = new RefValue(1, 1);
+        put(cache, value);
+        // The value was released while still being in the cache
+        value.release();
+        assertNull(cache.get(pos(1, 1)));
+        assertEquals(cache.getRange(pos(1, 0), pos(1, 2)).size(), 0);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link RangeCache} skip list based store with the {@link LongPairRangeCache} primitive hash table
+ * based store, for the operations done by the managed ledger entry cache.
+ *
+ * <p/>Run with "-prof gc" to compare the allocation rate of the two implementations.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class RangeCacheBenchmark {
+    private static final int NUMBER_OF_LEDGERS = 10;
+    private static final int RANGE_SIZE = 100;
+    private static final byte[] PAYLOAD = new byte[64];
+
+    @Param({"RangeCache", "LongPairRangeCache"})
+    private String cacheType;
+
+    @Param({"100000", "1000000"})
+    private int numberOfEntries;
+
+    private RangeCacheStore<Position, EntryImpl> cache;
+    private Position[] positions;
+    private int entriesPerLedger;
+    private long nextEntryId;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        cache = "RangeCache".equals(cacheType)
+                ? new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp)
+                : new LongPairRangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        entriesPerLedger = numberOfEntries / NUMBER_OF_LEDGERS;
+        positions = new Position[numberOfEntries];
+        for (int ledgerId = 0; ledgerId < NUMBER_OF_LEDGERS; ledgerId++) {
+            for (int entryId = 0; entryId < entriesPerLedger; entryId++) {
+                Position position = PositionFactory.create(ledgerId, entryId);
+                positions[ledgerId * entriesPerLedger + entryId] = position;
+                EntryImpl entry = EntryImpl.create(ledgerId, entryId, PAYLOAD);
+                cache.put(position, entry);
+                entry.release();
+            }
+        }
+        nextEntryId = entriesPerLedger;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Threads(1)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void get001Threads(Blackhole blackhole) {
+        get(blackhole);
+    }
+
+    @Threads(8)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void get008Threads(Blackhole blackhole) {
+        get(blackhole);
+    }
+
+    private void get(Blackhole blackhole) {
+        EntryImpl entry = cache.get(positions[ThreadLocalRandom.current().nextInt(positions.length)]);
+        if (entry != null) {
+            blackhole.consume(entry.getLength());
+            entry.release();
+        }
+    }
+
+    @Threads(1)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void getRange001Threads(Blackhole blackhole) {
+        getRange(blackhole);
+    }
+
+    @Threads(8)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void getRange008Threads(Blackhole blackhole) {
+        getRange(blackhole);
+    }
+
+    private void getRange(Blackhole blackhole) {
+        int first = ThreadLocalRandom.current().nextInt(positions.length - RANGE_SIZE);
+        Collection<EntryImpl> entries = cache.getRange(positions[first], positions[first + RANGE_SIZE - 1]);
+        blackhole.consume(entries.size());
+        entries.forEach(EntryImpl::release);
+    }
+
+    /**
+     * Simulates a tailing read workload: new entries are appended to a ledger while the oldest ones are
+     * invalidated, keeping the number of cached entries constant.
+     */
+    @Threads(1)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void putAndInvalidate(Blackhole blackhole) {
+        long ledgerId = NUMBER_OF_LEDGERS;
+        long entryId = nextEntryId++;
+        EntryImpl entry = EntryImpl.create(ledgerId, entryId, PAYLOAD);
+        blackhole.consume(cache.put(PositionFactory.create(ledgerId, entryId), entry));
+        entry.release();
+        if (entryId % RANGE_SIZE == 0) {
+            blackhole.consume(cache.removeRange(PositionFactory.create(ledgerId, 0),
+                    PositionFactory.create(ledgerId, entryId - entriesPerLedger), false));
+        }
+    }
+}
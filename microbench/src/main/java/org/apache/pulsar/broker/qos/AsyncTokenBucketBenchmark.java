@@ -37,21 +37,43 @@ import org.openjdk.jmh.infra.Blackhole;
 /**
  * On MacOS, the performance of System.nanoTime() is not great. Running benchmarks on Linux is recommended due
  * to the bottleneck of System.nanoTime() implementation on MacOS.
+ *
+ * <p>The hierarchy benchmarks compare dispatching with a subscription, a topic and a broker rate limit by checking
+ * and consuming the tokens of all three buckets for every dispatch with dispatching on tokens granted in batches by
+ * {@link HierarchicalTokenBudget}. Each thread acts as a subscription of the same topic.
  */
 @Fork(3)
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.SECONDS)
 @State(Scope.Thread)
 public class AsyncTokenBucketBenchmark {
+    private static final long RATE_PER_SECOND = 100_000_000;
+    private static final DefaultMonotonicClock MONOTONIC_CLOCK = new DefaultMonotonicClock();
+
+    @State(Scope.Benchmark)
+    public static class SharedBuckets {
+        private AsyncTokenBucket brokerBucket;
+        private AsyncTokenBucket topicBucket;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            brokerBucket = createBucket();
+            topicBucket = createBucket();
+        }
+    }
+
     private AsyncTokenBucket asyncTokenBucket;
-    private DefaultMonotonicClock monotonicSnapshotClock =
-            new DefaultMonotonicClock();
+    private HierarchicalTokenBudget budget;
 
     @Setup(Level.Iteration)
     public void setup() {
-        long ratePerSecond = 100_000_000;
-        asyncTokenBucket = AsyncTokenBucket.builder().rate(ratePerSecond).clock(monotonicSnapshotClock)
-                .initialTokens(2 * ratePerSecond).capacity(2 * ratePerSecond).build();
+        asyncTokenBucket = createBucket();
+        budget = new HierarchicalTokenBudget(1, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    private static AsyncTokenBucket createBucket() {
+        return AsyncTokenBucket.builder().rate(RATE_PER_SECOND).clock(MONOTONIC_CLOCK)
+                .initialTokens(2 * RATE_PER_SECOND).capacity(2 * RATE_PER_SECOND).build();
     }
 
     @Threads(1)
@@ -78,9 +100,76 @@ public class AsyncTokenBucketBenchmark {
         consumeTokenAndGetTokens(blackhole);
     }
 
+    @Threads(1)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void hierarchyAllLevelsBenchmark001Threads(SharedBuckets shared, Blackhole blackhole) {
+        consumeTokensOfAllLevels(shared, blackhole);
+    }
+
+    @Threads(10)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void hierarchyAllLevelsBenchmark010Threads(SharedBuckets shared, Blackhole blackhole) {
+        consumeTokensOfAllLevels(shared, blackhole);
+    }
+
+    @Threads(100)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void hierarchyAllLevelsBenchmark100Threads(SharedBuckets shared, Blackhole blackhole) {
+        consumeTokensOfAllLevels(shared, blackhole);
+    }
+
+    @Threads(1)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void hierarchyBudgetBenchmark001Threads(SharedBuckets shared, Blackhole blackhole) {
+        consumeTokensOfBudget(shared, blackhole);
+    }
+
+    @Threads(10)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void hierarchyBudgetBenchmark010Threads(SharedBuckets shared, Blackhole blackhole) {
+        consumeTokensOfBudget(shared, blackhole);
+    }
+
+    @Threads(100)
+    @Benchmark
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    @Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+    public void hierarchyBudgetBenchmark100Threads(SharedBuckets shared, Blackhole blackhole) {
+        consumeTokensOfBudget(shared, blackhole);
+    }
+
     private void consumeTokenAndGetTokens(Blackhole blackhole) {
         asyncTokenBucket.consumeTokens(1);
         // blackhole is used to ensure that the compiler doesn't do dead code elimination
         blackhole.consume(asyncTokenBucket.getTokens());
     }
+
+    private void consumeTokensOfAllLevels(SharedBuckets shared, Blackhole blackhole) {
+        // the bucket of the thread is the subscription level
+        long tokens = Math.min(asyncTokenBucket.getTokens(),
+                Math.min(shared.topicBucket.getTokens(), shared.brokerBucket.getTokens()));
+        asyncTokenBucket.consumeTokens(1);
+        shared.topicBucket.consumeTokens(1);
+        shared.brokerBucket.consumeTokens(1);
+        blackhole.consume(tokens);
+    }
+
+    private void consumeTokensOfBudget(SharedBuckets shared, Blackhole blackhole) {
+        long tokens = budget.getTokens();
+        if (tokens <= 0) {
+            tokens = budget.grantTokens(asyncTokenBucket, shared.topicBucket, shared.brokerBucket);
+        }
+        budget.consumeTokens(1);
+        blackhole.consume(tokens);
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.protocol.ByteBufPair;
+import org.apache.pulsar.common.protocol.Commands;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the number of messages per second a single thread writes to a consumer channel, either as a pair of
+ * buffers per message as {@link PulsarCommandSenderImpl} does by default, or as a single composite buffer per batch
+ * of messages with the command headers encoded in one pooled buffer, as enabled by
+ * {@code dispatcherZeroCopyWriteEnabled}.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+@Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+public class DispatchWriteBenchmark {
+    private static final int BATCH_SIZE = 100;
+    private static final int PAYLOAD_SIZE = 1024;
+    private static final int ESTIMATED_MESSAGE_HEADERS_SIZE = 64;
+    private static final long CONSUMER_ID = 1;
+    private static final int PARTITION = 0;
+    private static final long EPOCH = 0;
+
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+    private final ByteBuf[] entries = new ByteBuf[BATCH_SIZE];
+    private long ledgerId;
+    private long writtenBytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // the head of the pipeline collects the NIO buffers of the written buffers, as the outbound buffer of a NIO
+        // channel would do for a gathering write to the socket, and discards them
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ByteBuf buf = (ByteBuf) msg;
+                if (buf.nioBufferCount() == 1) {
+                    writtenBytes += buf.internalNioBuffer(buf.readerIndex(), buf.readableBytes()).remaining();
+                } else {
+                    for (ByteBuffer nioBuffer : buf.nioBuffers()) {
+                        writtenBytes += nioBuffer.remaining();
+                    }
+                }
+                buf.release();
+                promise.trySuccess();
+            }
+        }, ByteBufPair.ENCODER, new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().lastContext();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            MessageMetadata metadata = new MessageMetadata()
+                    .setProducerName("producer")
+                    .setSequenceId(i)
+                    .setPublishTime(System.currentTimeMillis());
+            ByteBuf payload = Unpooled.wrappedBuffer(new byte[PAYLOAD_SIZE]);
+            ByteBuf metadataAndPayload = Commands.serializeMetadataAndPayload(Commands.ChecksumType.Crc32c,
+                    metadata, payload);
+            entries[i] = PulsarByteBufAllocator.DEFAULT.directBuffer(metadataAndPayload.readableBytes());
+            entries[i].writeBytes(metadataAndPayload);
+            metadataAndPayload.release();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (ByteBuf entry : entries) {
+            entry.release();
+        }
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeBufferPairPerMessage() {
+        ledgerId++;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            ByteBuf metadataAndPayload = entries[i].retainedDuplicate();
+            ctx.write(Commands.serializeCommandMessageWithSize(
+                    Commands.newMessageCommand(CONSUMER_ID, ledgerId, i, PARTITION, 0, null, EPOCH),
+                    metadataAndPayload), ctx.voidPromise());
+        }
+        ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, ctx.voidPromise());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeCompositeFramesPerBatch() {
+        ledgerId++;
+        CompositeByteBuf frames = ctx.alloc().compositeDirectBuffer(2 * BATCH_SIZE);
+        ByteBuf headers = ctx.alloc().directBuffer(BATCH_SIZE * ESTIMATED_MESSAGE_HEADERS_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            ByteBuf metadataAndPayload = entries[i].retainedDuplicate();
+            int headersIndex = headers.writerIndex();
+            Commands.writeCommandMessageHeaders(
+                    Commands.newMessageCommand(CONSUMER_ID, ledgerId, i, PARTITION, 0, null, EPOCH),
+                    metadataAndPayload.readableBytes(), headers);
+            frames.addComponent(true, headers.retainedSlice(headersIndex, headers.writerIndex() - headersIndex));
+            frames.addComponent(true, metadataAndPayload);
+        }
+        headers.release();
+        ctx.write(frames, ctx.voidPromise());
+        ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, ctx.voidPromise());
+    }
+}
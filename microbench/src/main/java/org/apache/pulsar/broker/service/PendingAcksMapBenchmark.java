@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the operations of the {@link PendingAcksMap} of a consumer holding a given number of unacked messages.
+ * Each operation keeps the number of pending acks constant: a new entry is dispatched for each acked one.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+@Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+public class PendingAcksMapBenchmark {
+    private static final int ENTRIES_PER_LEDGER = 50_000;
+    private static final int MARK_DELETE_BATCH_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    private int pendingAcksCount;
+
+    private PendingAcksMap pendingAcks;
+    // the pending acks are the entries in [firstEntry, nextEntry)
+    private long firstEntry;
+    private long nextEntry;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        pendingAcks = new PendingAcksMap(null, () -> null, () -> null);
+        firstEntry = 0;
+        nextEntry = 0;
+        while (nextEntry < pendingAcksCount) {
+            dispatch();
+        }
+    }
+
+    private void dispatch() {
+        long entry = nextEntry++;
+        pendingAcks.addPendingAckIfAllowed(entry / ENTRIES_PER_LEDGER, entry % ENTRIES_PER_LEDGER, 1,
+                (int) entry);
+    }
+
+    /**
+     * Acks the oldest pending ack, as a consumer acking in order.
+     */
+    @Benchmark
+    public boolean addAndRemoveInOrder() {
+        long entry = firstEntry++;
+        boolean removed = pendingAcks.remove(entry / ENTRIES_PER_LEDGER, entry % ENTRIES_PER_LEDGER);
+        dispatch();
+        return removed;
+    }
+
+    /**
+     * Acks a random pending ack, which is redelivered.
+     */
+    @Benchmark
+    public boolean removeAndAddRandom() {
+        long entry = ThreadLocalRandom.current().nextLong(firstEntry, nextEntry);
+        long ledgerId = entry / ENTRIES_PER_LEDGER;
+        long entryId = entry % ENTRIES_PER_LEDGER;
+        boolean removed = pendingAcks.remove(ledgerId, entryId);
+        pendingAcks.addPendingAckIfAllowed(ledgerId, entryId, 1, (int) entry);
+        return removed;
+    }
+
+    /**
+     * Moves the mark delete position past the oldest pending acks.
+     */
+    @Benchmark
+    public void removeAllUpTo() {
+        firstEntry += MARK_DELETE_BATCH_SIZE;
+        long markDeleteEntry = firstEntry - 1;
+        pendingAcks.removeAllUpTo(markDeleteEntry / ENTRIES_PER_LEDGER, markDeleteEntry % ENTRIES_PER_LEDGER);
+        for (int i = 0; i < MARK_DELETE_BATCH_SIZE; i++) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Looks up a random pending ack, as done when an ack is received.
+     */
+    @Benchmark
+    public boolean contains() {
+        long entry = ThreadLocalRandom.current().nextLong(firstEntry, nextEntry);
+        return pendingAcks.contains(entry / ENTRIES_PER_LEDGER, entry % ENTRIES_PER_LEDGER);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.NavigableSet;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the selection of the messages to replay of a Key_Shared subscription with thousands of keys, where most of
+ * the keys are assigned to a stuck consumer without permits. The replay positions of the stuck consumer come first,
+ * followed by the positions of the keys of the consumers which have permits.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+@Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+public class MessageRedeliveryControllerBenchmark {
+    private static final int POSITIONS_PER_KEY = 20;
+    private static final int NUM_CONSUMERS = 10;
+    // the consumer owning the keys whose hash is a multiple of NUM_CONSUMERS is stuck
+    private static final int STUCK_CONSUMER = 0;
+    private static final int PERMITS_PER_CONSUMER = 100;
+    private static final int MAX_MESSAGES_TO_READ = 100;
+
+    @Param({"1000", "10000"})
+    private int numKeys;
+
+    // the number of replay positions of each key of the stuck consumer, which grows while the consumer is stuck
+    @Param({"20", "200"})
+    private int stuckPositionsPerKey;
+
+    private MessageRedeliveryController controller;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        controller = new MessageRedeliveryController(false);
+        long entryId = 0;
+        for (int round = 0; round < 2; round++) {
+            boolean stuckKeys = round == 0;
+            int positionsPerKey = stuckKeys ? stuckPositionsPerKey : POSITIONS_PER_KEY;
+            for (int n = 0; n < positionsPerKey; n++) {
+                for (int hash = 1; hash <= numKeys; hash++) {
+                    if ((consumerOf(hash) == STUCK_CONSUMER) == stuckKeys) {
+                        controller.add(1, entryId++, hash);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int consumerOf(int stickyKeyHash) {
+        return stickyKeyHash % NUM_CONSUMERS;
+    }
+
+    /**
+     * Visits the replay positions in order and filters them by sticky key hash.
+     */
+    @Benchmark
+    public NavigableSet<Position> scanReplayPositions() {
+        ReplayFilter filter = new ReplayFilter();
+        return controller.getMessagesToReplayNow(MAX_MESSAGES_TO_READ,
+                position -> filter.tryReplay(
+                        controller.getHash(position.getLedgerId(), position.getEntryId()).intValue()));
+    }
+
+    /**
+     * Selects the replay positions through the sticky key hash index.
+     */
+    @Benchmark
+    public NavigableSet<Position> selectByStickyKeyHash() {
+        return controller.getMessagesToReplayNowByStickyKeyHash(MAX_MESSAGES_TO_READ, new ReplayFilter());
+    }
+
+    private static class ReplayFilter implements MessageRedeliveryController.StickyKeyHashReplayFilter {
+        private final int[] permits = new int[NUM_CONSUMERS];
+        private final IntSet blockedHashes = new IntOpenHashSet();
+
+        ReplayFilter() {
+            for (int i = 0; i < NUM_CONSUMERS; i++) {
+                permits[i] = i == STUCK_CONSUMER ? 0 : PERMITS_PER_CONSUMER;
+            }
+        }
+
+        @Override
+        public boolean canReplayHash(int stickyKeyHash) {
+            if (blockedHashes.contains(stickyKeyHash)) {
+                return false;
+            }
+            if (permits[consumerOf(stickyKeyHash)] <= 0) {
+                blockedHashes.add(stickyKeyHash);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryReplay(int stickyKeyHash) {
+            if (!canReplayHash(stickyKeyHash)) {
+                return false;
+            }
+            permits[consumerOf(stickyKeyHash)]--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.plugin;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.pulsar.broker.service.Subscription;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares evaluating a {@link PropertyExpression} for each entry dispatched to a consumer with evaluating it once
+ * for the batch of entries over the property columns of {@link FilterEntryBatch}, both for the expression alone and
+ * through {@link PropertyExpressionEntryFilter} as called by the dispatcher. The throughput is in entries per second.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+@Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+public class PropertyExpressionBenchmark {
+    private static final int BATCH_SIZE = 100;
+    private static final String[] COLORS = {"red", "green", "blue", "yellow"};
+    private static final String[] REGIONS = {"eu-west", "eu-central", "us-east", "us-west", "ap-south"};
+
+    @Param({"color = 'red'", "color IN ('red', 'green') AND region != 'us-east' AND NOT EXISTS debug"})
+    private String expression;
+
+    private PropertyExpression compiled;
+    private List<Entry> entries;
+    private MessageMetadata[] metadataArray;
+    private FilterEntryBatch batch;
+    private PropertyExpressionEntryFilter filter;
+    private FilterContext filterContext;
+    private Subscription subscription;
+    private FilterResults results;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        compiled = PropertyExpression.compile(expression);
+        entries = new ArrayList<>(BATCH_SIZE);
+        metadataArray = new MessageMetadata[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            entries.add(EntryImpl.create(0, i, new byte[0]));
+            MessageMetadata metadata = new MessageMetadata();
+            metadata.addProperty().setKey("color").setValue(COLORS[i % COLORS.length]);
+            metadata.addProperty().setKey("region").setValue(REGIONS[i % REGIONS.length]);
+            metadata.addProperty().setKey("tenant").setValue("tenant-" + (i % 7));
+            metadata.addProperty().setKey("trace-id").setValue(Integer.toHexString(i * 31));
+            if (i % 10 == 0) {
+                metadata.addProperty().setKey("debug").setValue("true");
+            }
+            metadataArray[i] = metadata;
+        }
+        batch = new FilterEntryBatch();
+        filter = new PropertyExpressionEntryFilter();
+        filterContext = new FilterContext();
+        results = new FilterResults();
+        Map<String, String> subscriptionProperties =
+                Map.of(PropertyExpressionEntryFilter.EXPRESSION_SUBSCRIPTION_PROPERTY, expression);
+        // only the subscription properties are used by the filter
+        subscription = (Subscription) Proxy.newProxyInstance(Subscription.class.getClassLoader(),
+                new Class<?>[]{Subscription.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getSubscriptionProperties" -> subscriptionProperties;
+                    case "getName" -> "sub";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entries.forEach(Entry::release);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int perEntry() {
+        int matches = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (compiled.test(metadataArray[i])) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int batch() {
+        batch.reset(entries, metadataArray, 0);
+        BitSet matches = new BitSet(BATCH_SIZE);
+        compiled.evaluate(batch, matches);
+        return matches.cardinality();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int perEntryFilter() {
+        int rejected = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            filterContext.reset();
+            filterContext.setMsgMetadata(metadataArray[i]);
+            filterContext.setSubscription(subscription);
+            if (filter.filterEntry(entries.get(i), filterContext) != EntryFilter.FilterResult.ACCEPT) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int batchFilter() {
+        batch.reset(entries, metadataArray, 0);
+        results.reset(BATCH_SIZE);
+        filterContext.reset();
+        filterContext.setSubscription(subscription);
+        filter.filterEntries(batch, filterContext, results);
+        int rejected = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (!results.isAccepted(i)) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+}
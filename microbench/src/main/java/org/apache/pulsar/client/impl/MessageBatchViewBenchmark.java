@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.MessageBatchView;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.api.proto.SingleMessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the cost of reading the messages of a batched entry as {@link MessageImpl} instances, as the consumer
+ * does for the messages it queues, with reading them in place through a {@link MessageBatchView}.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+public class MessageBatchViewBenchmark {
+    private static final String TOPIC = "persistent://public/default/benchmark";
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    @Param({"100"})
+    private int messageSize;
+
+    private MessageMetadata msgMetadata;
+    private ByteBuf batchBuffer;
+    private final MessageIdImpl messageId = new MessageIdImpl(1, 1, -1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        msgMetadata = new MessageMetadata()
+                .setProducerName("benchmark-producer")
+                .setSequenceId(0)
+                .setPublishTime(System.currentTimeMillis())
+                .setNumMessagesInBatch(batchSize);
+        batchBuffer = PooledByteBufAllocator.DEFAULT.buffer();
+        SingleMessageMetadata singleMessageMetadata = new SingleMessageMetadata();
+        byte[] payload = new byte[messageSize];
+        for (int i = 0; i < batchSize; i++) {
+            singleMessageMetadata.clear();
+            singleMessageMetadata.setPartitionKey("key-" + i).setSequenceId(i);
+            singleMessageMetadata.addProperty().setKey("index").setValue(String.valueOf(i));
+            Commands.serializeSingleMessageInBatchWithPayload(singleMessageMetadata, Unpooled.wrappedBuffer(payload),
+                    batchBuffer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        batchBuffer.release();
+    }
+
+    @Benchmark
+    public void messages(Blackhole blackhole) throws Exception {
+        ByteBuf payload = batchBuffer.retainedDuplicate();
+        SingleMessageMetadata singleMessageMetadata = new SingleMessageMetadata();
+        List<MessageImpl<byte[]>> messages = new ArrayList<>(batchSize);
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                ByteBuf singleMessagePayload =
+                        Commands.deSerializeSingleMessageInBatch(payload, singleMessageMetadata, i, batchSize);
+                BatchMessageIdImpl batchMessageId = new BatchMessageIdImpl(messageId.getLedgerId(),
+                        messageId.getEntryId(), messageId.getPartitionIndex(), i, batchSize, null);
+                messages.add(MessageImpl.create(TOPIC, batchMessageId, msgMetadata, singleMessageMetadata,
+                        singleMessagePayload, Optional.empty(), null, Schema.BYTES, 0, false, -1));
+                singleMessagePayload.release();
+            }
+            for (MessageImpl<byte[]> message : messages) {
+                blackhole.consume(message.getKey());
+                blackhole.consume(message.getData());
+            }
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Benchmark
+    public void batchView(Blackhole blackhole) {
+        MessageBatchViewImpl<byte[]> view = newView();
+        try {
+            while (view.next()) {
+                blackhole.consume(view.getKey());
+                blackhole.consume(view.getDataBuffer());
+            }
+        } finally {
+            view.release();
+        }
+    }
+
+    @Benchmark
+    public void batchViewCopyingData(Blackhole blackhole) {
+        MessageBatchViewImpl<byte[]> view = newView();
+        try {
+            while (view.next()) {
+                blackhole.consume(view.getKey());
+                blackhole.consume(view.getData());
+            }
+        } finally {
+            view.release();
+        }
+    }
+
+    private MessageBatchViewImpl<byte[]> newView() {
+        return new MessageBatchViewImpl<>(TOPIC, messageId, msgMetadata, batchBuffer.retainedDuplicate(), true, 0,
+                null, Schema.BYTES, 0);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.common.api.proto.CommandCloseProducer;
+import org.apache.pulsar.common.api.proto.CommandConnect;
+import org.apache.pulsar.common.api.proto.CommandLookupTopic;
+import org.apache.pulsar.common.api.proto.CommandLookupTopicResponse.LookupType;
+import org.apache.pulsar.common.api.proto.CommandPartitionedTopicMetadata;
+import org.apache.pulsar.common.api.proto.CommandPing;
+import org.apache.pulsar.common.api.proto.CommandPong;
+import org.apache.pulsar.common.api.proto.CommandProducer;
+import org.apache.pulsar.common.api.proto.CommandSend;
+import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.protocol.PulsarDecoder;
+import org.apache.pulsar.common.protocol.schema.SchemaVersion;
+import org.apache.pulsar.common.util.netty.EventLoopUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link Producer#sendAsync} calls from 1, 8 and 64 threads on a single producer, with
+ * and without the send pipeline. The producer is connected to a minimal in-process broker which acknowledges the
+ * messages as soon as they are received, so that the benchmark measures the client.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+public class ProducerSendPipelineBenchmark {
+    @Param({"false", "true"})
+    private boolean sendPipelineEnabled;
+
+    @Param({"false", "true"})
+    private boolean batchingEnabled;
+
+    private EventLoopGroup brokerEventLoopGroup;
+    private Channel brokerChannel;
+    private PulsarClient client;
+    private Producer<byte[]> producer;
+    private final byte[] payload = new byte[100];
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        brokerEventLoopGroup = EventLoopUtil.newEventLoopGroup(1, false,
+                new DefaultThreadFactory("benchmark-broker"));
+        brokerChannel = new ServerBootstrap()
+                .group(brokerEventLoopGroup, brokerEventLoopGroup)
+                .channel(EventLoopUtil.getServerSocketChannelClass(brokerEventLoopGroup))
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast("frameDecoder",
+                                new LengthFieldBasedFrameDecoder(Commands.DEFAULT_MAX_MESSAGE_SIZE, 0, 4, 0, 4));
+                        ch.pipeline().addLast("handler", new AcknowledgingBrokerCnx());
+                    }
+                })
+                .bind("localhost", 0).sync().channel();
+        String serviceUrl = "pulsar://localhost:" + ((InetSocketAddress) brokerChannel.localAddress()).getPort();
+        client = PulsarClient.builder().serviceUrl(serviceUrl).build();
+        producer = client.newProducer()
+                .topic("persistent://public/default/benchmark")
+                .enableBatching(batchingEnabled)
+                .enableSendPipeline(sendPipelineEnabled)
+                .maxPendingMessages(10000)
+                .blockIfQueueFull(true)
+                .create();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        producer.close();
+        client.close();
+        brokerChannel.close().sync();
+        brokerEventLoopGroup.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object send1Thread() {
+        return producer.sendAsync(payload);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object send8Threads() {
+        return producer.sendAsync(payload);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object send64Threads() {
+        return producer.sendAsync(payload);
+    }
+
+    private static class AcknowledgingBrokerCnx extends PulsarDecoder {
+        private ChannelHandlerContext ctx;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        protected void messageReceived() {
+        }
+
+        @Override
+        protected void handleConnect(CommandConnect connect) {
+            ctx.writeAndFlush(Commands.newConnected(connect.getProtocolVersion(), false));
+        }
+
+        @Override
+        protected void handlePartitionMetadataRequest(CommandPartitionedTopicMetadata request) {
+            ctx.writeAndFlush(Commands.newPartitionMetadataResponse(0, request.getRequestId()));
+        }
+
+        @Override
+        protected void handleLookup(CommandLookupTopic lookup) {
+            InetSocketAddress address = (InetSocketAddress) ctx.channel().localAddress();
+            ctx.writeAndFlush(Commands.newLookupResponse("pulsar://localhost:" + address.getPort(), null, true,
+                    LookupType.Connect, lookup.getRequestId(), false));
+        }
+
+        @Override
+        protected void handleProducer(CommandProducer producer) {
+            ctx.writeAndFlush(Commands.newProducerSuccess(producer.getRequestId(), "benchmark-producer",
+                    SchemaVersion.Empty));
+        }
+
+        @Override
+        protected void handleSend(CommandSend send, ByteBuf headersAndPayload) {
+            ctx.writeAndFlush(Commands.newSendReceipt(send.getProducerId(), send.getSequenceId(),
+                    send.getHighestSequenceId(), 0, 0));
+        }
+
+        @Override
+        protected void handleCloseProducer(CommandCloseProducer closeProducer) {
+            ctx.writeAndFlush(Commands.newSuccess(closeProducer.getRequestId()));
+        }
+
+        @Override
+        protected void handlePing(CommandPing ping) {
+            ctx.writeAndFlush(Commands.newPong());
+        }
+
+        @Override
+        protected void handlePong(CommandPong pong) {
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.commons.lang3.mutable.MutableInt;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.roaringbitmap.RoaringBitSet;
+
+/**
+ * Measures the throughput of the individual acks of a cursor while its acks are concurrently serialized, as done
+ * when the cursor position is persisted.
+ *
+ * <p/>With "lock" the ranges are serialized while holding the lock, as the acks are, with "snapshot" only a
+ * {@link LongPairRangeSet#snapshot()} is taken while holding the lock and it's serialized after releasing it.
+ */
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+@Measurement(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+@Warmup(time = 10, timeUnit = TimeUnit.SECONDS, iterations = 1)
+public class OpenLongPairRangeSetSnapshotBenchmark {
+    private static final int ENTRIES_PER_LEDGER = 10_000;
+    private static final int MAX_RANGES_TO_PERSIST = 10_000;
+
+    @Param({"lock", "snapshot"})
+    private String serializationMode;
+
+    @Param({"10", "1000"})
+    private int numberOfLedgers;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private OpenLongPairRangeSet<LongPair> individualDeletedMessages;
+    private long firstLedgerId;
+    private long nextEntry;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        individualDeletedMessages = new OpenLongPairRangeSet<>(LongPair::new, RoaringBitSet::new);
+        firstLedgerId = 0;
+        nextEntry = 0;
+        // Every other entry is acked, so that there is a hole between each range
+        long entries = (long) numberOfLedgers * ENTRIES_PER_LEDGER;
+        for (long i = 0; i < entries; i += 2) {
+            individualDeletedMessages.addOpenClosed(i / ENTRIES_PER_LEDGER, i % ENTRIES_PER_LEDGER - 1,
+                    i / ENTRIES_PER_LEDGER, i % ENTRIES_PER_LEDGER);
+        }
+        nextEntry = entries;
+    }
+
+    @Benchmark
+    @Group("ackWhileSerializing")
+    @GroupThreads(1)
+    public void ack() {
+        lock.writeLock().lock();
+        try {
+            long ledgerId = nextEntry / ENTRIES_PER_LEDGER;
+            long entryId = nextEntry % ENTRIES_PER_LEDGER;
+            individualDeletedMessages.addOpenClosed(ledgerId, entryId - 1, ledgerId, entryId);
+            nextEntry += 2;
+            if (entryId + 2 >= ENTRIES_PER_LEDGER) {
+                // Keep the number of ledgers with holes constant, as if the mark-delete position moved forward
+                individualDeletedMessages.removeAtMost(firstLedgerId++, ENTRIES_PER_LEDGER);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("ackWhileSerializing")
+    @GroupThreads(1)
+    public void serialize(Blackhole blackhole) {
+        if ("lock".equals(serializationMode)) {
+            lock.writeLock().lock();
+            try {
+                serialize(individualDeletedMessages, blackhole);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else {
+            LongPairRangeSet<LongPair> snapshot;
+            lock.writeLock().lock();
+            try {
+                snapshot = individualDeletedMessages.snapshot();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            serialize(snapshot, blackhole);
+        }
+    }
+
+    private static void serialize(LongPairRangeSet<LongPair> rangeSet, Blackhole blackhole) {
+        MutableInt count = new MutableInt();
+        rangeSet.forEachRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
+            blackhole.consume(lowerKey ^ lowerValue ^ upperKey ^ upperValue);
+            return count.incrementAndGet() <= MAX_RANGES_TO_PERSIST;
+        });
+    }
+}
@@ -794,6 +794,17 @@ public class ServiceConfiguration implements PulsarConfiguration {
                     + "count to consumer (default is enabled)"
         )
     private boolean subscriptionRedeliveryTrackerEnabled = true;
+    @FieldContext(
+            category = CATEGORY_POLICIES,
+            doc = "Max number of entries per subscription whose redelivery count is tracked exactly by the "
+                    + "subscription message redelivery tracker. When the limit is reached, the redelivery counts of "
+                    + "the other entries are estimated with a count-min sketch of a fixed size, at most 1 MB per "
+                    + "subscription, which may overestimate them. The entries that were not redelivered recently may "
+                    + "be forgotten and counted from 0 again, but an entry that was never redelivered is always "
+                    + "reported with a count of 0. 0 means that the number of tracked entries is unbounded "
+                    + "(default is 0)"
+    )
+    private int subscriptionRedeliveryTrackerMaxTrackedEntries = 0;
     @FieldContext(
         category = CATEGORY_POLICIES,
         doc = "How frequently to proactively check and purge expired subscription"
@@ -1062,7 +1073,11 @@ public class ServiceConfiguration implements PulsarConfiguration {
                     + "org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryAsyncTokenBucket "
                     + "(default, PIP-322 implementation) "
                     + "org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryClassic (legacy "
-                    + "implementation)")
+                    + "implementation) "
+                    + "org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryHierarchical (PIP-322 "
+                    + "implementation where the permits of the subscription, topic and broker rate limiters are "
+                    + "granted to the subscriptions in batches, which share the topic permits in proportion to the "
+                    + "dispatchRateWeight property of the subscription, 1 by default)")
     private String dispatchRateLimiterFactoryClassName =
             "org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryAsyncTokenBucket";
 
@@ -1213,6 +1228,47 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean dispatcherDispatchMessagesInSubscriptionThread = true;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Dispatch the messages of the subscriptions on a shared scheduler instead of a thread of the topic "
+                    + "ordered executor. The subscriptions having messages to dispatch are queued in a FIFO run queue "
+                    + "served by all the threads of the scheduler, so that an expensive subscription cannot delay the "
+                    + "subscriptions of other topics. The messages of each subscription are still dispatched in "
+                    + "order. Only applies when dispatcherDispatchMessagesInSubscriptionThread is enabled."
+    )
+    private boolean dispatcherSchedulerEnabled = false;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Number of threads of the dispatch scheduler"
+    )
+    private int dispatcherSchedulerThreadNum = Runtime.getRuntime().availableProcessors();
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Max number of entries a subscription reads and dispatches in a single turn on the dispatch "
+                    + "scheduler before giving up its thread to the other subscriptions"
+    )
+    private int dispatcherSchedulerMaxEntriesPerTurn = 1000;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Max size in bytes of the entries a subscription reads and dispatches in a single turn on the "
+                    + "dispatch scheduler before giving up its thread to the other subscriptions. "
+                    + "By default it is 10MB."
+    )
+    private long dispatcherSchedulerMaxBytesPerTurn = 10 * 1024 * 1024;
+
+    @FieldContext(
+            dynamic = true,
+            category = CATEGORY_SERVER,
+            doc = "Write the messages dispatched to a consumer as a single composite buffer which references the "
+                    + "cached entry buffers, with the command headers of all the messages encoded in one pooled "
+                    + "buffer, instead of writing a pair of buffers per message. This is not used when a broker "
+                    + "interceptor is configured."
+    )
+    private boolean dispatcherZeroCopyWriteEnabled = false;
+
     @FieldContext(
         dynamic = false,
         category = CATEGORY_SERVER,
@@ -1289,6 +1345,52 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private int dispatcherMaxRoundRobinBatchSize = 20;
 
+    @FieldContext(
+        dynamic = false,
+        category = CATEGORY_SERVER,
+        doc = "Whether the dispatchers of Shared and Key_Shared subscriptions limit the permits of each consumer by "
+                + "how fast the consumer acknowledges messages. The permits of a consumer are limited so that its "
+                + "unacknowledged messages can be acknowledged within dispatcherAdaptivePermitsTargetAckLatencyMillis "
+                + "and don't exceed dispatcherAdaptivePermitsMaxInFlightBytes, which favors the consumers that are "
+                + "draining their messages when dispatching. It is applied to consumers created after enabling it."
+    )
+    private boolean dispatcherAdaptivePermitsEnabled = false;
+
+    @FieldContext(
+        dynamic = false,
+        category = CATEGORY_SERVER,
+        doc = "The target time in milliseconds for a consumer to acknowledge its in-flight messages when "
+                + "dispatcherAdaptivePermitsEnabled is enabled. By default it is 1 second."
+    )
+    private int dispatcherAdaptivePermitsTargetAckLatencyMillis = 1000;
+
+    @FieldContext(
+        dynamic = false,
+        category = CATEGORY_SERVER,
+        doc = "The number of in-flight messages that a consumer is always allowed when "
+                + "dispatcherAdaptivePermitsEnabled is enabled, regardless of its acknowledgement rate. By default "
+                + "it is 100 messages."
+    )
+    private int dispatcherAdaptivePermitsMinInFlightMessages = 100;
+
+    @FieldContext(
+        dynamic = false,
+        category = CATEGORY_SERVER,
+        doc = "The max estimated size in bytes of the in-flight messages of a consumer when "
+                + "dispatcherAdaptivePermitsEnabled is enabled. 0 means no limit. By default there is no limit."
+    )
+    private long dispatcherAdaptivePermitsMaxInFlightBytes = 0;
+
+    @FieldContext(
+        dynamic = true,
+        category = CATEGORY_SERVER,
+        doc = "Whether the dispatchers of Shared subscriptions size their reads to the number of entries that the "
+                + "connected consumers can receive, based on the permits and the unacknowledged messages limit of "
+                + "each consumer and the average number of messages per entry, so that the entries of a read are not "
+                + "pushed back to the replay queue for a later read. By default it is disabled."
+    )
+    private boolean dispatcherReadSizedToConsumerPermits = false;
+
     @FieldContext(
          dynamic = true,
          category = CATEGORY_SERVER,
@@ -1472,6 +1574,14 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "delete position can be recovered or not.")
     private boolean lazyCursorRecovery = false;
 
+    @FieldContext(category = CATEGORY_SERVER, doc = "Whether to defer the recovery of a cursor until a consumer "
+            + "attaches to its subscription, or until the positions of all the cursors are needed to trim the ledgers."
+            + " It only applies when lazyCursorRecovery is enabled and reduces the load of the metadata store and of "
+            + "the bookies when topics with many inactive subscriptions are loaded.\n"
+            + "The caveat is that a subscription whose cursor is not recovered yet is not loaded with the topic, so "
+            + "it is not listed in the topic stats until a consumer attaches to it.")
+    private boolean cursorRecoveryOnDemand = false;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "Check between intervals to see if consumed ledgers need to be trimmed"
@@ -2104,6 +2214,49 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "inserting in cache")
     private boolean managedLedgerCacheCopyEntries = false;
 
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "The managed ledger entry cache implementation. Possible"
+            + " values are \"RANGE\" (default), which evicts the oldest entries of the biggest caches, and"
+            + " \"WINDOW_TINY_LFU\", which uses a broker-wide frequency based admission policy so that entries read"
+            + " once by catch-up readers do not evict the entries read by tailing consumers")
+    private String managedLedgerCacheType = "RANGE";
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Fraction of the managed ledger cache reserved to the"
+            + " admission window when managedLedgerCacheType=WINDOW_TINY_LFU. Entries leaving the window are only"
+            + " kept if they are more popular than the entries they would replace")
+    private double managedLedgerCacheAdmissionWindowRatio = 0.1;
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Whether to index the entries of the managed ledger cache"
+            + " with a primitive (ledgerId, entryId) hash table and per-ledger sorted entry id arrays, instead of a"
+            + " concurrent skip list. This reduces the heap usage and GC pressure when caching many entries")
+    private boolean managedLedgerCacheLongPairStoreEnabled = false;
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Size of the local disk spill of the managed ledger cache."
+            + " The entries evicted from the cache are written to memory-mapped segment files in"
+            + " managedLedgerCacheSpillDirectory, and read from there instead of the bookies when they are read again."
+            + " The oldest segment is dropped when the spill is full. Use 0 to disable")
+    private int managedLedgerCacheSpillSizeMB = 0;
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Directory of the managed ledger cache spill segment files."
+            + " It must be set when managedLedgerCacheSpillSizeMB is greater than 0, preferably to an absolute path on"
+            + " a local SSD, since a relative path is resolved against the working directory of the broker. The"
+            + " segment files are deleted when the broker shuts down")
+    private String managedLedgerCacheSpillDirectory = "";
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Maximum number of background maintenance tasks of the"
+            + " managed ledgers (trimming of the consumed ledgers and offloading) executed per second by the broker."
+            + " The pending tasks are executed the ones which can reclaim the most bytes first."
+            + " Use 0 to execute the tasks right away")
+    private int managedLedgerMaintenanceMaxTasksPerSecond = 0;
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Maximum random delay added before executing each background"
+            + " maintenance task of the managed ledgers, when managedLedgerMaintenanceMaxTasksPerSecond is set")
+    private long managedLedgerMaintenanceMaxJitterMillis = 1000;
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Maximum time a background maintenance task of the managed"
+            + " ledgers waits in the queue, when managedLedgerMaintenanceMaxTasksPerSecond is set, before it is"
+            + " executed ahead of the tasks which can reclaim more bytes. Use 0 to disable it")
+    private long managedLedgerMaintenanceMaxQueueTimeMillis = 60000;
+
     @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Maximum buffer size for bytes read from storage."
             + " This is the memory retained by data read from storage (or cache) until it has been delivered to the"
             + " Consumer Netty channel. Use O to disable")
@@ -2291,6 +2444,22 @@ public class ServiceConfiguration implements PulsarConfiguration {
                     + "NOTE: This setting requires managedLedgerUnackedRangesOpenCacheSetEnabled=true to be effective.")
     private boolean managedLedgerPersistIndividualAckAsLongArray = true;
 
+    @FieldContext(category = CATEGORY_STORAGE_ML,
+            doc = "Persist the individual acknowledgements as compressed bitmaps, only writing the ledgers updated"
+                    + " since the last snapshot in each cursor ledger entry, and a full snapshot every"
+                    + " managedLedgerIndividualAckSnapshotInterval entries. The persistence cost then scales with"
+                    + " the number of updated ledgers instead of the total number of acknowledgment holes. It takes"
+                    + " precedence over managedLedgerPersistIndividualAckAsLongArray.\n\n"
+                    + "NOTE: This setting requires managedLedgerUnackedRangesOpenCacheSetEnabled=true to be effective."
+                    + " Brokers that don't support this format can't recover the individual acknowledgements it"
+                    + " persisted.")
+    private boolean managedLedgerPersistIndividualAckIncrementally = false;
+
+    @FieldContext(category = CATEGORY_STORAGE_ML,
+            doc = "Number of incremental cursor ledger entries between two snapshots of the individual"
+                    + " acknowledgements, when managedLedgerPersistIndividualAckIncrementally=true.")
+    private int managedLedgerIndividualAckSnapshotInterval = 64;
+
     @FieldContext(
         category = CATEGORY_STORAGE_ML,
         doc = "If enabled, the maximum \"acknowledgment holes\" will not be limited and \"acknowledgment holes\" "
@@ -2430,6 +2599,21 @@ public class ServiceConfiguration implements PulsarConfiguration {
             doc = "Maximum backlog entry difference to prevent caching entries that can't be reused"
     )
     private int managedLedgerMaxBacklogBetweenCursorsForCaching = 1000;
+    @FieldContext(
+            category = CATEGORY_STORAGE_ML,
+            doc = "Maximum distance, in entries, between the read positions of cursors sharing their backlog reads."
+                    + " The entries read from the bookies by a cursor are cached when other cursors are at most this"
+                    + " many entries behind, so that they are served from the cache instead of re-reading the same"
+                    + " entries from the bookies. (Default = 0 to disable read-ahead sharing)"
+    )
+    private int managedLedgerReadAheadSharingMaxDistanceEntries = 0;
+    @FieldContext(
+            category = CATEGORY_STORAGE_ML,
+            doc = "Maximum number of entries prefetched in the cache after each read of a backlogged cursor, so that"
+                    + " the next dispatcher read is served from memory. The actual number of prefetched entries follows"
+                    + " the size of the recent reads of the cursor. (Default = 0 to disable prefetching)"
+    )
+    private int managedLedgerCursorPrefetchMaxEntries = 0;
 
     /*** --- Load balancer. --- ****/
      @FieldContext(
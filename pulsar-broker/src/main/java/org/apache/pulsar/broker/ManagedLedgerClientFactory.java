@@ -78,6 +78,16 @@ public class ManagedLedgerClientFactory implements ManagedLedgerStorage {
         managedLedgerFactoryConfig.setCacheEvictionTimeThresholdMillis(
                 conf.getManagedLedgerCacheEvictionTimeThresholdMillis());
         managedLedgerFactoryConfig.setCopyEntriesInCache(conf.isManagedLedgerCacheCopyEntries());
+        managedLedgerFactoryConfig.setEntryCacheType(
+                ManagedLedgerFactoryConfig.EntryCacheType.valueOf(conf.getManagedLedgerCacheType()));
+        managedLedgerFactoryConfig.setCacheAdmissionWindowRatio(conf.getManagedLedgerCacheAdmissionWindowRatio());
+        managedLedgerFactoryConfig.setCacheLongPairStoreEnabled(conf.isManagedLedgerCacheLongPairStoreEnabled());
+        managedLedgerFactoryConfig.setCacheSpillMaxSize(conf.getManagedLedgerCacheSpillSizeMB() * 1024L * 1024L);
+        managedLedgerFactoryConfig.setCacheSpillDirectory(conf.getManagedLedgerCacheSpillDirectory());
+        managedLedgerFactoryConfig.setMaintenanceMaxTasksPerSecond(conf.getManagedLedgerMaintenanceMaxTasksPerSecond());
+        managedLedgerFactoryConfig.setMaintenanceMaxJitterMillis(conf.getManagedLedgerMaintenanceMaxJitterMillis());
+        managedLedgerFactoryConfig.setMaintenanceMaxQueueTimeMillis(
+                conf.getManagedLedgerMaintenanceMaxQueueTimeMillis());
         long managedLedgerMaxReadsInFlightSizeBytes = conf.getManagedLedgerMaxReadsInFlightSizeInMB() * 1024L * 1024L;
         if (managedLedgerMaxReadsInFlightSizeBytes > 0 && conf.getDispatcherMaxReadSizeBytes() > 0
                 && managedLedgerMaxReadsInFlightSizeBytes < conf.getDispatcherMaxReadSizeBytes()) {
@@ -113,9 +113,13 @@ import org.apache.pulsar.broker.service.schema.SchemaRegistryService;
 import org.apache.pulsar.broker.service.schema.SchemaStorageFactory;
 import org.apache.pulsar.broker.stats.MetricsGenerator;
 import org.apache.pulsar.broker.stats.OpenTelemetryConsumerStats;
+import org.apache.pulsar.broker.stats.OpenTelemetryMessageMetadataCacheStats;
 import org.apache.pulsar.broker.stats.OpenTelemetryProducerStats;
+import org.apache.pulsar.broker.stats.OpenTelemetryRedeliveryTrackerStats;
 import org.apache.pulsar.broker.stats.OpenTelemetryReplicatedSubscriptionStats;
 import org.apache.pulsar.broker.stats.OpenTelemetryReplicatorStats;
+import org.apache.pulsar.broker.stats.OpenTelemetrySharedDispatchStats;
+import org.apache.pulsar.broker.stats.OpenTelemetryTopicLoadStats;
 import org.apache.pulsar.broker.stats.OpenTelemetryTopicStats;
 import org.apache.pulsar.broker.stats.OpenTelemetryTransactionCoordinatorStats;
 import org.apache.pulsar.broker.stats.OpenTelemetryTransactionPendingAckStoreStats;
@@ -273,6 +277,10 @@ public class PulsarService implements AutoCloseable, ShutdownService {
     private OpenTelemetryProducerStats openTelemetryProducerStats;
     private OpenTelemetryReplicatorStats openTelemetryReplicatorStats;
     private OpenTelemetryReplicatedSubscriptionStats openTelemetryReplicatedSubscriptionStats;
+    private OpenTelemetryTopicLoadStats openTelemetryTopicLoadStats;
+    private OpenTelemetryMessageMetadataCacheStats openTelemetryMessageMetadataCacheStats;
+    private OpenTelemetryRedeliveryTrackerStats openTelemetryRedeliveryTrackerStats;
+    private OpenTelemetrySharedDispatchStats openTelemetrySharedDispatchStats;
     private OpenTelemetryTransactionCoordinatorStats openTelemetryTransactionCoordinatorStats;
     private OpenTelemetryTransactionPendingAckStoreStats openTelemetryTransactionPendingAckStoreStats;
 
@@ -710,6 +718,22 @@ public class PulsarService implements AutoCloseable, ShutdownService {
                 openTelemetryTopicStats.close();
                 openTelemetryTopicStats = null;
             }
+            if (openTelemetryTopicLoadStats != null) {
+                openTelemetryTopicLoadStats.close();
+                openTelemetryTopicLoadStats = null;
+            }
+            if (openTelemetryMessageMetadataCacheStats != null) {
+                openTelemetryMessageMetadataCacheStats.close();
+                openTelemetryMessageMetadataCacheStats = null;
+            }
+            if (openTelemetryRedeliveryTrackerStats != null) {
+                openTelemetryRedeliveryTrackerStats.close();
+                openTelemetryRedeliveryTrackerStats = null;
+            }
+            if (openTelemetrySharedDispatchStats != null) {
+                openTelemetrySharedDispatchStats.close();
+                openTelemetrySharedDispatchStats = null;
+            }
 
             asyncCloseFutures.add(EventLoopUtil.shutdownGracefully(ioEventLoopGroup));
 
@@ -856,6 +880,10 @@ public class PulsarService implements AutoCloseable, ShutdownService {
             openTelemetryProducerStats = new OpenTelemetryProducerStats(this);
             openTelemetryReplicatorStats = new OpenTelemetryReplicatorStats(this);
             openTelemetryReplicatedSubscriptionStats = new OpenTelemetryReplicatedSubscriptionStats(this);
+            openTelemetryTopicLoadStats = new OpenTelemetryTopicLoadStats(this);
+            openTelemetryMessageMetadataCacheStats = new OpenTelemetryMessageMetadataCacheStats(this);
+            openTelemetryRedeliveryTrackerStats = new OpenTelemetryRedeliveryTrackerStats(this);
+            openTelemetrySharedDispatchStats = new OpenTelemetrySharedDispatchStats(this);
 
             localMetadataSynchronizer = StringUtils.isNotBlank(config.getMetadataSyncEventTopic())
                     ? new PulsarMetadataEventSynchronizer(this, config.getMetadataSyncEventTopic())
@@ -1299,7 +1299,14 @@ public class PersistentTopicsBase extends AdminResource {
 
     private void internalGetSubscriptionsForNonPartitionedTopic(AsyncResponse asyncResponse) {
         getTopicReferenceAsync(topicName)
-                .thenAccept(topic -> asyncResponse.resume(topic.getSubscriptions().keySet()))
+                .thenAccept(topic -> {
+                    List<String> subscriptions = new ArrayList<>(topic.getSubscriptions().keySet());
+                    if (topic instanceof PersistentTopic persistentTopic) {
+                        // Include the durable subscriptions whose cursor is not recovered yet
+                        subscriptions.addAll(persistentTopic.getUnloadedSubscriptionNames());
+                    }
+                    asyncResponse.resume(subscriptions);
+                })
                 .exceptionally(ex -> {
                     // If the exception is not redirect exception we need to log it.
                     if (isNot307And404Exception(ex)) {
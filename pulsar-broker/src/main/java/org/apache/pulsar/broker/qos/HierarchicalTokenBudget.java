@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.qos;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A budget of tokens granted in batches from a hierarchy of {@link AsyncTokenBucket} instances, for example the
+ * broker, topic and subscription levels of dispatch rate limiting.
+ * <p>Without a budget, a consumer of a hierarchy of token buckets checks and consumes the tokens of every level on
+ * every operation. The budget instead grants tokens from all the levels at once and consumes them locally, so that
+ * the token buckets of the hierarchy are only accessed when the granted tokens are used up.
+ * <p>The size of a grant is the amount of tokens the most restrictive level of the hierarchy gains during the grant
+ * period, multiplied by the weight of the budget, and limited by the tokens available in each level. Budgets
+ * sharing a level therefore get a share of its tokens proportional to their weight when they all use their tokens,
+ * while a budget can use the tokens left by the idle budgets sharing the same levels. The tokens granted to a
+ * budget which stops using them are unavailable to the other budgets until the level gains new tokens, which is
+ * bounded by the size of a grant.
+ * <p>Consuming more tokens than granted is allowed. The debt is charged to the token buckets with the next grant.
+ */
+public class HierarchicalTokenBudget {
+    private volatile long weight;
+    private final long grantPeriodNanos;
+    /**
+     * The granted tokens which haven't been consumed yet. This is negative when more tokens were consumed than
+     * granted.
+     */
+    private final AtomicLong tokens = new AtomicLong();
+    /**
+     * The index of the level which had no tokens on the last grant, or -1 if the last grant succeeded.
+     */
+    private volatile int throttlingLevel = -1;
+
+    /**
+     * Create a budget.
+     *
+     * @param weight the weight of the budget among the budgets sharing the same levels
+     * @param grantPeriodNanos the period of time in which the most restrictive level gains the tokens of a grant
+     */
+    public HierarchicalTokenBudget(long weight, long grantPeriodNanos) {
+        if (grantPeriodNanos <= 0) {
+            throw new IllegalArgumentException("grantPeriodNanos must be > 0");
+        }
+        setWeight(weight);
+        this.grantPeriodNanos = grantPeriodNanos;
+    }
+
+    /**
+     * Update the weight of the budget, which applies from the next grant.
+     *
+     * @param weight the weight of the budget among the budgets sharing the same levels
+     */
+    public void setWeight(long weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be > 0");
+        }
+        this.weight = weight;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the granted tokens which haven't been consumed yet, without accessing the token buckets.
+     *
+     * @return the token balance of the budget, negative if more tokens were consumed than granted
+     */
+    public long getTokens() {
+        return tokens.get();
+    }
+
+    /**
+     * Returns the granted tokens, after granting new tokens from the given levels if all the granted tokens have
+     * been consumed. The levels are passed on each call since the token buckets of a level may be replaced when its
+     * rate is updated.
+     *
+     * @param levels the token buckets of the hierarchy, a null value stands for a level without limit
+     * @return the available tokens, 0 if a level has no tokens, or -1 if no level is limited
+     */
+    public long grantTokens(AsyncTokenBucket... levels) {
+        long balance = tokens.get();
+        if (balance > 0) {
+            return balance;
+        }
+        long grant = Long.MAX_VALUE;
+        for (int i = 0; i < levels.length; i++) {
+            AsyncTokenBucket level = levels[i];
+            if (level == null) {
+                continue;
+            }
+            long availableTokens = level.getTokens();
+            if (availableTokens <= 0) {
+                throttlingLevel = i;
+                return 0;
+            }
+            long tokensPerGrant = Math.max(1,
+                    (long) ((double) level.getRate() * grantPeriodNanos / level.getRatePeriodNanos())) * weight;
+            grant = Math.min(grant, Math.min(availableTokens, tokensPerGrant));
+        }
+        throttlingLevel = -1;
+        if (grant == Long.MAX_VALUE) {
+            // no level is limited, forget the consumed tokens
+            tokens.set(0);
+            return -1;
+        }
+        // charge the debt of the tokens consumed beyond the previous grants with the new grant
+        long charge = grant - balance;
+        for (AsyncTokenBucket level : levels) {
+            if (level != null) {
+                level.consumeTokens(charge);
+            }
+        }
+        return Math.max(tokens.addAndGet(charge), 0);
+    }
+
+    /**
+     * Consume granted tokens.
+     *
+     * @param consumeTokens the number of tokens to consume
+     */
+    public void consumeTokens(long consumeTokens) {
+        if (consumeTokens < 0) {
+            throw new IllegalArgumentException("consumeTokens must be >= 0");
+        }
+        if (consumeTokens > 0) {
+            tokens.addAndGet(-consumeTokens);
+        }
+    }
+
+    /**
+     * Returns the index of the level which had no tokens on the last grant.
+     *
+     * @return the index of the level in the levels of the last grant, or -1 if the last grant succeeded
+     */
+    public int getThrottlingLevel() {
+        return throttlingLevel;
+    }
+}
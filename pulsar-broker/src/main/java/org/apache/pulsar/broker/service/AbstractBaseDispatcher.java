@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 import lombok.extern.slf4j.Slf4j;
@@ -45,6 +46,7 @@ import org.apache.pulsar.broker.service.persistent.PersistentSubscription;
 import org.apache.pulsar.broker.service.persistent.PersistentTopic;
 import org.apache.pulsar.broker.service.persistent.PulsarCompactorSubscription;
 import org.apache.pulsar.broker.service.plugin.EntryFilter;
+import org.apache.pulsar.broker.service.plugin.FilterResults;
 import org.apache.pulsar.broker.transaction.pendingack.impl.PendingAckHandleImpl;
 import org.apache.pulsar.client.api.transaction.TxnID;
 import org.apache.pulsar.common.api.proto.CommandAck.AckType;
@@ -136,6 +138,10 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
         long filteredBytesCount = 0;
         List<Position> entriesToFiltered = hasFilter ? new ArrayList<>() : null;
         List<Position> entriesToRedeliver = hasFilter ? new ArrayList<>() : null;
+        FilterResults batchFilterResults = null;
+        if (hasBatchFilter) {
+            batchFilterResults = runFiltersForEntries(metadataArray, startOffset, entries, consumer);
+        }
         for (int i = 0, entriesSize = entries.size(); i < entriesSize; i++) {
             final Entry entry = entries.get(i);
             if (entry == null) {
@@ -147,10 +153,8 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
             MessageMetadata msgMetadata;
             if (metadataArray != null) {
                 msgMetadata = metadataArray[metadataIndex];
-            } else if (entry instanceof EntryAndMetadata) {
-                msgMetadata = ((EntryAndMetadata) entry).getMetadata();
             } else {
-                msgMetadata = Commands.peekAndCopyMessageMetadata(metadataAndPayload, subscription.toString(), -1);
+                msgMetadata = messageMetadataCache.getOrParse(entry, subscription.toString());
             }
 
             int entryMsgCnt = msgMetadata == null ? 1 : msgMetadata.getNumMessagesInBatch();
@@ -158,7 +162,8 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
                 this.filterProcessedMsgs.add(entryMsgCnt);
             }
 
-            EntryFilter.FilterResult filterResult = runFiltersForEntry(entry, msgMetadata, consumer);
+            EntryFilter.FilterResult filterResult = batchFilterResults != null ? batchFilterResults.getResult(i)
+                    : runFiltersForEntry(entry, msgMetadata, consumer);
             if (filterResult == EntryFilter.FilterResult.REJECT) {
                 entriesToFiltered.add(entry.getPosition());
                 entries.set(i, null);
@@ -335,6 +340,12 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
         if (serviceConfig.isDispatchThrottlingOnNonBacklogConsumerEnabled()
                 || (cursor != null && !cursor.isActive())) {
             long permits = dispatchThrottlingOnBatchMessageEnabled ? totalEntries : totalMessagesSent;
+            Optional<DispatchRateLimiter> subscriptionRateLimiter = getRateLimiter();
+            if (subscriptionRateLimiter.isPresent()
+                    && subscriptionRateLimiter.get().appliesParentDispatchRateLimits()) {
+                subscriptionRateLimiter.get().consumeDispatchQuota(permits, totalBytesSent);
+                return;
+            }
             topic.getBrokerDispatchRateLimiter().ifPresent(rateLimiter ->
                     rateLimiter.consumeDispatchQuota(permits, totalBytesSent));
             topic.getDispatchRateLimiter().ifPresent(rateLimter ->
@@ -391,27 +402,29 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
 
         boolean success = true;
 
+        Optional<DispatchRateLimiter> subscriptionRateLimiter = getRateLimiter();
+        if (subscriptionRateLimiter.isPresent() && subscriptionRateLimiter.get().appliesParentDispatchRateLimits()) {
+            applyDispatchRateLimitsToReadLimits(subscriptionRateLimiter.get(), readLimits);
+            return readLimits;
+        }
+
         if (topic.getBrokerDispatchRateLimiter().isPresent()) {
-            success = applyDispatchRateLimitsToReadLimits(topic.getBrokerDispatchRateLimiter().get(), readLimits,
-                    DispatchRateLimiter.Type.BROKER);
+            success = applyDispatchRateLimitsToReadLimits(topic.getBrokerDispatchRateLimiter().get(), readLimits);
         }
 
         if (success && topic.getDispatchRateLimiter().isPresent()) {
-            success = applyDispatchRateLimitsToReadLimits(topic.getDispatchRateLimiter().get(), readLimits,
-                    DispatchRateLimiter.Type.TOPIC);
+            success = applyDispatchRateLimitsToReadLimits(topic.getDispatchRateLimiter().get(), readLimits);
         }
 
         if (success && getRateLimiter().isPresent()) {
-            success = applyDispatchRateLimitsToReadLimits(getRateLimiter().get(), readLimits,
-                    DispatchRateLimiter.Type.SUBSCRIPTION);
+            success = applyDispatchRateLimitsToReadLimits(getRateLimiter().get(), readLimits);
         }
 
         return readLimits;
     }
 
     private boolean applyDispatchRateLimitsToReadLimits(DispatchRateLimiter rateLimiter,
-                                                        MutablePair<Integer, Long> readLimits,
-                                                        DispatchRateLimiter.Type limiterType) {
+                                                        MutablePair<Integer, Long> readLimits) {
         int originalMessagesToRead = readLimits.getLeft();
         long originalBytesToRead = readLimits.getRight();
         // update messagesToRead according to available dispatch rate limit.
@@ -424,7 +437,7 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
             readLimits.setRight(Math.min(readLimits.getRight(), availablePermitsOnByte));
         }
         if (readLimits.getLeft() < originalMessagesToRead) {
-            switch (limiterType) {
+            switch (rateLimiter.getThrottlingTypeOnMsg()) {
                 case BROKER -> dispatchThrottledMsgEventsByBrokerLimit.increment();
                 case TOPIC -> dispatchThrottledMsgEventsByTopicLimit.increment();
                 case SUBSCRIPTION -> dispatchThrottledMsgEventsBySubscriptionLimit.increment();
@@ -432,7 +445,7 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
             }
         }
         if (readLimits.getRight() < originalBytesToRead) {
-            switch (limiterType) {
+            switch (rateLimiter.getThrottlingTypeOnByte()) {
                 case BROKER -> dispatchThrottledBytesEventsByBrokerLimit.increment();
                 case TOPIC -> dispatchThrottledBytesEventsByTopicLimit.increment();
                 case SUBSCRIPTION -> dispatchThrottledBytesEventsBySubscriptionLimit.increment();
@@ -442,7 +455,8 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
         if (readLimits.getLeft() == 0 || readLimits.getRight() == 0) {
             if (log.isDebugEnabled()) {
                 log.debug("[{}] message-read exceeded {} message-rate {}/{}, schedule after {}ms", getName(),
-                        limiterType.name().toLowerCase(),
+                        (readLimits.getLeft() == 0 ? rateLimiter.getThrottlingTypeOnMsg()
+                                : rateLimiter.getThrottlingTypeOnByte()).name().toLowerCase(),
                         rateLimiter.getDispatchRateOnMsg(), rateLimiter.getDispatchRateOnByte(),
                         MESSAGE_RATE_BACKOFF_MS);
             }
@@ -68,6 +68,22 @@ public abstract class AbstractDispatcherMultipleConsumers extends AbstractBaseDi
 
     public abstract boolean isConsumerAvailable(Consumer consumer);
 
+    /**
+     * Returns the permits used to dispatch messages to the consumer. When the adaptive permits are enabled, the
+     * available permits of the consumer are limited by how fast it acknowledges messages, so that the consumers
+     * which drain their messages get more entries than the consumers which don't.
+     *
+     * @see AdaptiveConsumerPermits
+     */
+    protected int getDispatchablePermits(Consumer consumer) {
+        AdaptiveConsumerPermits adaptivePermits = consumer.getAdaptivePermits();
+        if (adaptivePermits == null) {
+            return consumer.getAvailablePermits();
+        }
+        return adaptivePermits.getDispatchablePermits(consumer.getAvailablePermits(), consumer.getUnackedMessages(),
+                System.nanoTime());
+    }
+
     /**
      * Cancel a possible pending read that is a Managed Cursor waiting to be notified for more entries.
      * This won't cancel any other pending reads that are currently in progress.
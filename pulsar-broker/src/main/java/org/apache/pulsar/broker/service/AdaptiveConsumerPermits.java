@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the permits of a consumer by how fast the consumer acknowledges messages.
+ * <p>
+ * The acknowledgement rate is sampled in windows of {@link #SAMPLE_WINDOW_NANOS}. A higher rate is taken
+ * immediately so that a consumer that drains its messages gets more permits at the next dispatch, while a lower rate
+ * is smoothed with an exponentially weighted moving average. By Little's law, a consumer with {@code unacked}
+ * messages in flight that acknowledges {@code ackRate} messages per second has an average acknowledgement latency of
+ * {@code unacked / ackRate}. The in-flight messages are limited to keep this latency below the target latency, and
+ * to keep the estimated size of the in-flight messages below the max in-flight bytes.
+ * <p>
+ * A consumer which doesn't acknowledge the messages it receives is limited to the min in-flight messages, so that
+ * the dispatcher skips it and dispatches the entries to the consumers that are draining their messages.
+ */
+public class AdaptiveConsumerPermits {
+    static final long SAMPLE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final double ACK_RATE_DECAY_WEIGHT = 0.25;
+    private static final double MESSAGE_SIZE_WEIGHT = 0.1;
+
+    private final double targetAckLatencySeconds;
+    private final int minInFlightMessages;
+    private final long maxInFlightBytes;
+
+    private final LongAdder ackedMessagesInWindow = new LongAdder();
+    private volatile long windowStartNanos;
+    private volatile double ackRate;
+    private volatile double avgMessageSize;
+    // whether the dispatcher skipped the consumer because it had no permits left
+    private volatile boolean blocked;
+
+    public AdaptiveConsumerPermits(long targetAckLatencyMillis, int minInFlightMessages, long maxInFlightBytes,
+                                   long nowNanos) {
+        if (targetAckLatencyMillis <= 0) {
+            throw new IllegalArgumentException("targetAckLatencyMillis must be positive");
+        }
+        if (minInFlightMessages <= 0) {
+            throw new IllegalArgumentException("minInFlightMessages must be positive");
+        }
+        this.targetAckLatencySeconds = targetAckLatencyMillis / 1000.0;
+        this.minInFlightMessages = minInFlightMessages;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.windowStartNanos = nowNanos;
+    }
+
+    public void recordDispatched(int messages, long bytes) {
+        if (messages <= 0) {
+            return;
+        }
+        double messageSize = (double) bytes / messages;
+        double currentAvgMessageSize = avgMessageSize;
+        avgMessageSize = currentAvgMessageSize == 0 ? messageSize
+                : currentAvgMessageSize * (1 - MESSAGE_SIZE_WEIGHT) + messageSize * MESSAGE_SIZE_WEIGHT;
+    }
+
+    /**
+     * Records the acknowledged messages of the consumer.
+     *
+     * @return true if the consumer was blocked and it can receive messages again, in which case the dispatcher
+     *         should be triggered
+     */
+    public boolean recordAcked(long messages, int unackedMessages, long nowNanos) {
+        ackedMessagesInWindow.add(messages);
+        updateAckRate(nowNanos);
+        if (blocked && getPermitsLimit(unackedMessages) > 0) {
+            blocked = false;
+            return true;
+        }
+        return false;
+    }
+
+    private void updateAckRate(long nowNanos) {
+        if (nowNanos - windowStartNanos < SAMPLE_WINDOW_NANOS) {
+            return;
+        }
+        synchronized (this) {
+            long elapsedNanos = nowNanos - windowStartNanos;
+            if (elapsedNanos < SAMPLE_WINDOW_NANOS) {
+                return;
+            }
+            double sampledAckRate = ackedMessagesInWindow.sumThenReset() * 1e9 / elapsedNanos;
+            double currentAckRate = ackRate;
+            ackRate = sampledAckRate >= currentAckRate ? sampledAckRate
+                    : currentAckRate * (1 - ACK_RATE_DECAY_WEIGHT) + sampledAckRate * ACK_RATE_DECAY_WEIGHT;
+            windowStartNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Returns how many messages can be dispatched to the consumer.
+     *
+     * @param availablePermits the permits sent by the consumer
+     * @param unackedMessages the messages dispatched to the consumer which aren't acknowledged yet
+     * @param nowNanos the current time of {@link System#nanoTime()}
+     */
+    public int getDispatchablePermits(int availablePermits, int unackedMessages, long nowNanos) {
+        if (availablePermits <= 0) {
+            return availablePermits;
+        }
+        updateAckRate(nowNanos);
+        int permitsLimit = getPermitsLimit(unackedMessages);
+        if (permitsLimit >= availablePermits) {
+            return availablePermits;
+        }
+        if (permitsLimit == 0) {
+            // the dispatcher skips the consumer until it acknowledges messages
+            blocked = true;
+        }
+        return permitsLimit;
+    }
+
+    private int getPermitsLimit(int unackedMessages) {
+        long inFlightLimit = Math.max(minInFlightMessages, (long) (ackRate * targetAckLatencySeconds));
+        double currentAvgMessageSize = avgMessageSize;
+        if (maxInFlightBytes > 0 && currentAvgMessageSize > 0) {
+            inFlightLimit = Math.min(inFlightLimit, Math.max(1, (long) (maxInFlightBytes / currentAvgMessageSize)));
+        }
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, inFlightLimit - unackedMessages));
+    }
+
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    /**
+     * Returns the acknowledgement rate of the consumer in messages per second.
+     */
+    public double getAckRate() {
+        return ackRate;
+    }
+
+    /**
+     * Returns the estimated average time in milliseconds for the consumer to acknowledge a message, by Little's law.
+     */
+    public double getEstimatedAckLatencyMillis(int unackedMessages) {
+        double currentAckRate = ackRate;
+        return currentAckRate > 0 ? unackedMessages * 1000 / currentAckRate : 0;
+    }
+
+    public double getAvgMessageSize() {
+        return avgMessageSize;
+    }
+}
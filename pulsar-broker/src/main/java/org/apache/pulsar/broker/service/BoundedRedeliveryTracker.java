@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.bookkeeper.mledger.Position;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+/**
+ * A {@link RedeliveryTracker} with a bounded memory usage.
+ *
+ * <p>The redelivery counts of up to {@code maxTrackedEntries} entries are tracked exactly, as in
+ * {@link InMemoryRedeliveryTracker}. When the limit is reached, the counts of the other entries are recorded in a
+ * count-min sketch with a fixed size, which is only allocated on the first overflow. The ids of the entries counted
+ * in the sketch are kept in a bitmap per ledger, so the sketch is only consulted for these entries and the entries
+ * that were never redelivered are reported with a count of 0. The bitmaps are split in two generations of at most
+ * {@code 2 * width} entries: when the current generation is full, the previous one is released, so the entries that
+ * were not redelivered for a while are forgotten and reported with a count of 0 until they are redelivered again. The
+ * redelivery count of an entry may then be underestimated, but an entry that was never redelivered is never reported
+ * with a count higher than 0.
+ * The sketch never underestimates a count, but it may overestimate it when entries collide, so an entry counted in
+ * the sketch may be reported with a redelivery count higher than its actual count. The counts in the sketch can't be
+ * removed when the entries are acknowledged, so they are halved after every {@code 8 * width} increments to age out
+ * the entries that are no longer redelivered, and the sketch is released when the tracker is cleared.
+ */
+public class BoundedRedeliveryTracker implements RedeliveryTracker {
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MIN_SKETCH_WIDTH = 64;
+    // 4 rows of 64K counters take 1 MB per subscription
+    private static final int MAX_SKETCH_WIDTH = 1 << 16;
+    private static final int AGING_FACTOR = 8;
+
+    private final RedeliveryTrackerStats stats;
+    private final int maxTrackedEntries;
+    private final int sketchWidth;
+    private final int maxSketchedEntriesPerGeneration;
+    // ledgerId -> entryId -> count
+    private final Long2ObjectMap<Long2IntMap> trackerCache = new Long2ObjectOpenHashMap<>();
+    private int trackedEntries;
+    // ledgerId -> ids of the entries counted in the sketch, in the current and in the previous generation
+    private Long2ObjectMap<Roaring64Bitmap> sketchedEntries = new Long2ObjectOpenHashMap<>();
+    private int sketchedEntriesCount;
+    private Long2ObjectMap<Roaring64Bitmap> previousSketchedEntries = new Long2ObjectOpenHashMap<>();
+    private int previousSketchedEntriesCount;
+    // SKETCH_DEPTH rows of sketchWidth counters, allocated on the first overflow
+    private int[] sketch;
+    private int sketchIncrements;
+    private final StampedLock rwLock = new StampedLock();
+
+    public BoundedRedeliveryTracker(int maxTrackedEntries, RedeliveryTrackerStats stats) {
+        if (maxTrackedEntries <= 0) {
+            throw new IllegalArgumentException("maxTrackedEntries must be positive: " + maxTrackedEntries);
+        }
+        this.stats = stats;
+        this.maxTrackedEntries = maxTrackedEntries;
+        // the smallest power of two that is not lower than maxTrackedEntries
+        this.sketchWidth = Math.max(MIN_SKETCH_WIDTH,
+                Integer.highestOneBit(Math.min(maxTrackedEntries, MAX_SKETCH_WIDTH) * 2 - 1));
+        this.maxSketchedEntriesPerGeneration = SKETCH_DEPTH * sketchWidth / 2;
+    }
+
+    @Override
+    public int incrementAndGetRedeliveryCount(Position position) {
+        long ledgerId = position.getLedgerId();
+        long entryId = position.getEntryId();
+        long stamp = rwLock.writeLock();
+        try {
+            Long2IntMap entryMap = trackerCache.get(ledgerId);
+            int count = entryMap != null ? entryMap.get(entryId) : 0;
+            if (count > 0) {
+                entryMap.put(entryId, ++count);
+                return count;
+            }
+            if (trackedEntries < maxTrackedEntries) {
+                // an entry that was counted in the sketch is moved to the exact counts with its estimated count
+                count = (removeSketchedEntry(ledgerId, entryId) ? estimate(sketch, hash(ledgerId, entryId)) : 0) + 1;
+                if (entryMap == null) {
+                    entryMap = new Long2IntOpenHashMap();
+                    trackerCache.put(ledgerId, entryMap);
+                }
+                entryMap.put(entryId, count);
+                trackedEntries++;
+                stats.trackedEntries.increment();
+                return count;
+            }
+            addSketchedEntry(ledgerId, entryId);
+            return incrementSketch(hash(ledgerId, entryId));
+        } finally {
+            rwLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int getRedeliveryCount(long ledgerId, long entryId) {
+        long stamp = rwLock.tryOptimisticRead();
+        Long2IntMap entryMap = trackerCache.get(ledgerId);
+        int count = entryMap != null ? entryMap.get(entryId) : 0;
+        // the bitmaps of the sketched entries are only read under the read lock
+        if (!rwLock.validate(stamp) || (count == 0 && sketch != null)) {
+            stamp = rwLock.readLock();
+            try {
+                count = readCount(ledgerId, entryId);
+            } finally {
+                rwLock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    private int readCount(long ledgerId, long entryId) {
+        Long2IntMap entryMap = trackerCache.get(ledgerId);
+        int count = entryMap != null ? entryMap.get(entryId) : 0;
+        if (count == 0 && isSketchedEntry(ledgerId, entryId)) {
+            count = estimate(sketch, hash(ledgerId, entryId));
+        }
+        return count;
+    }
+
+    @Override
+    public void remove(Position position) {
+        long stamp = rwLock.writeLock();
+        try {
+            removeEntry(position);
+        } finally {
+            rwLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void removeBatch(List<Position> positions) {
+        if (positions == null) {
+            return;
+        }
+        long stamp = rwLock.writeLock();
+        try {
+            for (Position position : positions) {
+                removeEntry(position);
+            }
+        } finally {
+            rwLock.unlockWrite(stamp);
+        }
+    }
+
+    private void removeEntry(Position position) {
+        Long2IntMap entryMap = trackerCache.get(position.getLedgerId());
+        if (entryMap != null && entryMap.remove(position.getEntryId()) != entryMap.defaultReturnValue()) {
+            trackedEntries--;
+            stats.trackedEntries.decrement();
+            if (entryMap.isEmpty()) {
+                trackerCache.remove(position.getLedgerId());
+            }
+        } else {
+            removeSketchedEntry(position.getLedgerId(), position.getEntryId());
+        }
+    }
+
+    private void addSketchedEntry(long ledgerId, long entryId) {
+        if (contains(sketchedEntries, ledgerId, entryId)) {
+            return;
+        }
+        // an entry redelivered again is moved to the current generation
+        if (remove(previousSketchedEntries, ledgerId, entryId)) {
+            previousSketchedEntriesCount--;
+        }
+        if (sketchedEntriesCount >= maxSketchedEntriesPerGeneration) {
+            // forget the entries of the previous generation rather than letting the bitmaps grow unbounded
+            previousSketchedEntries = sketchedEntries;
+            previousSketchedEntriesCount = sketchedEntriesCount;
+            sketchedEntries = new Long2ObjectOpenHashMap<>();
+            sketchedEntriesCount = 0;
+        }
+        sketchedEntries.computeIfAbsent(ledgerId, k -> new Roaring64Bitmap()).addLong(entryId);
+        sketchedEntriesCount++;
+    }
+
+    private boolean isSketchedEntry(long ledgerId, long entryId) {
+        return contains(sketchedEntries, ledgerId, entryId) || contains(previousSketchedEntries, ledgerId, entryId);
+    }
+
+    /**
+     * Removes the entry from the sketched entries and returns whether its count is in the sketch.
+     */
+    private boolean removeSketchedEntry(long ledgerId, long entryId) {
+        if (remove(sketchedEntries, ledgerId, entryId)) {
+            sketchedEntriesCount--;
+            return true;
+        }
+        if (remove(previousSketchedEntries, ledgerId, entryId)) {
+            previousSketchedEntriesCount--;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(Long2ObjectMap<Roaring64Bitmap> entries, long ledgerId, long entryId) {
+        Roaring64Bitmap entryIds = entries.get(ledgerId);
+        return entryIds != null && entryIds.contains(entryId);
+    }
+
+    private static boolean remove(Long2ObjectMap<Roaring64Bitmap> entries, long ledgerId, long entryId) {
+        Roaring64Bitmap entryIds = entries.get(ledgerId);
+        if (entryIds == null || !entryIds.contains(entryId)) {
+            return false;
+        }
+        entryIds.removeLong(entryId);
+        if (entryIds.isEmpty()) {
+            entries.remove(ledgerId);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        long stamp = rwLock.writeLock();
+        try {
+            trackerCache.clear();
+            stats.trackedEntries.add(-trackedEntries);
+            trackedEntries = 0;
+            sketchedEntries.clear();
+            sketchedEntriesCount = 0;
+            previousSketchedEntries.clear();
+            previousSketchedEntriesCount = 0;
+            if (sketch != null) {
+                stats.sketchSizeBytes.add(-(long) sketch.length * Integer.BYTES);
+                sketch = null;
+                sketchIncrements = 0;
+            }
+        } finally {
+            rwLock.unlockWrite(stamp);
+        }
+    }
+
+    private int incrementSketch(long hash) {
+        if (sketch == null) {
+            sketch = new int[SKETCH_DEPTH * sketchWidth];
+            stats.sketchSizeBytes.add((long) sketch.length * Integer.BYTES);
+        }
+        // conservative update: only the counters at the current minimum are incremented, which reduces the
+        // overestimation of the other entries
+        int count = estimate(sketch, hash) + 1;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            int index = index(hash, row);
+            if (sketch[index] < count) {
+                sketch[index] = count;
+            }
+        }
+        stats.overflowIncrements.increment();
+        if (++sketchIncrements >= AGING_FACTOR * sketchWidth) {
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] >>>= 1;
+            }
+            sketchIncrements = 0;
+        }
+        return count;
+    }
+
+    private int estimate(int[] sketch, long hash) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            min = Math.min(min, sketch[index(hash, row)]);
+        }
+        return min;
+    }
+
+    private int index(long hash, int row) {
+        // derive the hash of each row from two halves of the 64 bits hash
+        int rowHash = (int) hash + row * (int) (hash >>> 32);
+        return row * sketchWidth + (rowHash & (sketchWidth - 1));
+    }
+
+    private static long hash(long ledgerId, long entryId) {
+        long h = ledgerId * 0x9E3779B97F4A7C15L + entryId;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @VisibleForTesting
+    int getTrackedEntries() {
+        return trackedEntries;
+    }
+
+    @VisibleForTesting
+    int getSketchedEntries() {
+        return sketchedEntriesCount + previousSketchedEntriesCount;
+    }
+
+    @VisibleForTesting
+    boolean isOverflowed() {
+        return sketch != null;
+    }
+}
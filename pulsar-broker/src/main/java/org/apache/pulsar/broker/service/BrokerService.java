@@ -94,8 +94,8 @@ import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.ManagedLedgerException.ManagedLedgerNotFoundException;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
 import org.apache.bookkeeper.mledger.impl.NonAppendableLedgerOffloader;
-import org.apache.bookkeeper.mledger.util.Futures;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -133,9 +133,12 @@ import org.apache.pulsar.broker.service.persistent.DispatchRateLimiter;
 import org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactory;
 import org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryClassic;
 import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.broker.service.persistent.SharedDispatchStats;
 import org.apache.pulsar.broker.service.persistent.SystemTopic;
 import org.apache.pulsar.broker.service.plugin.EntryFilterProvider;
 import org.apache.pulsar.broker.stats.ClusterReplicationMetrics;
+import org.apache.pulsar.broker.stats.OpenTelemetryTopicLoadStats;
+import org.apache.pulsar.broker.stats.OpenTelemetryTopicLoadStats.TopicLoadPhase;
 import org.apache.pulsar.broker.stats.prometheus.metrics.ObserverGauge;
 import org.apache.pulsar.broker.stats.prometheus.metrics.Summary;
 import org.apache.pulsar.broker.storage.ManagedLedgerStorage;
@@ -235,6 +238,10 @@ public class BrokerService implements Closeable {
     private final EventLoopGroup acceptorGroup;
     private final EventLoopGroup workerGroup;
     private final OrderedExecutor topicOrderedExecutor;
+    private final DispatchScheduler dispatchScheduler;
+    private final RedeliveryTrackerStats redeliveryTrackerStats = new RedeliveryTrackerStats();
+    private final MessageMetadataCache messageMetadataCache = new MessageMetadataCache();
+    private final SharedDispatchStats sharedDispatchStats = new SharedDispatchStats();
     // offline topic backlog cache
     private final Map<TopicName, PersistentOfflineTopicStats> offlineTopicStatCache = new ConcurrentHashMap<>();
     private final Map<String, ConfigField> dynamicConfigurationMap;
@@ -343,6 +350,12 @@ public class BrokerService implements Closeable {
         this.topicOrderedExecutor = OrderedExecutor.newBuilder()
                 .numThreads(pulsar.getConfiguration().getTopicOrderedExecutorThreadNum())
                 .name("broker-topic-workers").build();
+        ServiceConfiguration conf = pulsar.getConfiguration();
+        this.dispatchScheduler = conf.isDispatcherSchedulerEnabled()
+                ? new DispatchScheduler(conf.getDispatcherSchedulerThreadNum(),
+                        conf.getDispatcherSchedulerMaxEntriesPerTurn(), conf.getDispatcherSchedulerMaxBytesPerTurn(),
+                        pulsar.getOpenTelemetry().getMeter())
+                : null;
         final DefaultThreadFactory acceptorThreadFactory =
                 new ExecutorProvider.ExtendedThreadFactory("pulsar-acceptor");
 
@@ -893,6 +906,10 @@ public class BrokerService implements Closeable {
                                 pulsarStats.close();
                                 pendingTopicLoadOperationsCounter.close();
                                 pendingLookupOperationsCounter.close();
+                                if (dispatchScheduler != null) {
+                                    // the executor of the scheduler is shut down gracefully below
+                                    dispatchScheduler.close();
+                                }
                                 try {
                                     delayedDeliveryTrackerFactory.close();
                                     if (fallbackDelayedDeliveryTrackerFactory != null) {
@@ -917,6 +934,7 @@ public class BrokerService implements Closeable {
                                                 consumedLedgersMonitor,
                                                 backlogQuotaChecker,
                                                 topicOrderedExecutor,
+                                                dispatchScheduler != null ? dispatchScheduler.getExecutor() : null,
                                                 deduplicationSnapshotMonitor)
                                         .handle());
 
@@ -1837,10 +1855,14 @@ public class BrokerService implements Closeable {
             // Once we have the configuration, we can proceed with the async open operation
             ManagedLedgerFactory managedLedgerFactory =
                     getManagedLedgerFactoryForTopic(topicName, managedLedgerConfig.getStorageClassName());
+            final long openLedgerStartTimeNanos = System.nanoTime();
             managedLedgerFactory.asyncOpen(topicName.getPersistenceNamingEncoding(), managedLedgerConfig,
                     new OpenLedgerCallback() {
                         @Override
                         public void openLedgerComplete(ManagedLedger ledger, Object ctx) {
+                            recordManagedLedgerOpenPhases(ledger, System.nanoTime() - openLedgerStartTimeNanos);
+                            // The cursors whose recovery is deferred are recovered when a consumer attaches to
+                            // their subscription, so the topic is loaded without waiting for them
                             try {
                                 PersistentTopic persistentTopic = isSystemTopic(topic)
                                         ? new SystemTopic(topic, ledger, BrokerService.this)
@@ -1852,7 +1874,10 @@ public class BrokerService implements Closeable {
                                         .thenCompose(__ -> persistentTopic.checkReplication())
                                         .thenCompose(v -> {
                                             // Also check dedup status
-                                            return persistentTopic.checkDeduplicationStatus();
+                                            long dedupRecoveryStartTimeNanos = System.nanoTime();
+                                            return persistentTopic.checkDeduplicationStatus()
+                                                    .thenRun(() -> recordTopicLoadPhase(TopicLoadPhase.DEDUP_RECOVERY,
+                                                            System.nanoTime() - dedupRecoveryStartTimeNanos));
                                         })
                                         .thenRun(() -> {
                                             log.info("Created topic {} - dedup is {}", topic,
@@ -1933,6 +1958,26 @@ public class BrokerService implements Closeable {
         });
     }
 
+    private void recordManagedLedgerOpenPhases(ManagedLedger ledger, long openLedgerTimeNanos) {
+        if (ledger instanceof ManagedLedgerImpl managedLedger && managedLedger.getLedgersRecoveryTimeNanos() >= 0
+                && managedLedger.getCursorsRecoveryTimeNanos() >= 0
+                && managedLedger.getLedgersRecoveryTimeNanos() + managedLedger.getCursorsRecoveryTimeNanos()
+                <= openLedgerTimeNanos) {
+            recordTopicLoadPhase(TopicLoadPhase.LEDGER_OPEN, managedLedger.getLedgersRecoveryTimeNanos());
+            recordTopicLoadPhase(TopicLoadPhase.CURSOR_RECOVERY, managedLedger.getCursorsRecoveryTimeNanos());
+        } else {
+            // The managed ledger was already opened, or its phases are not known
+            recordTopicLoadPhase(TopicLoadPhase.LEDGER_OPEN, openLedgerTimeNanos);
+        }
+    }
+
+    private void recordTopicLoadPhase(TopicLoadPhase phase, long durationNanos) {
+        OpenTelemetryTopicLoadStats topicLoadStats = pulsar.getOpenTelemetryTopicLoadStats();
+        if (topicLoadStats != null) {
+            topicLoadStats.recordPhaseDuration(phase, durationNanos);
+        }
+    }
+
     private CompletableFuture<Void> checkTopicAlreadyMigrated(TopicName topicName) {
         if (ExtensibleLoadManagerImpl.isInternalTopic(topicName.toString())
                 || SystemTopicNames.isEventSystemTopic(topicName)
@@ -2066,6 +2111,10 @@ public class BrokerService implements Closeable {
                     serviceConfig.getManagedLedgerMaxBatchDeletedIndexToPersist());
             managedLedgerConfig
                     .setPersistIndividualAckAsLongArray(serviceConfig.isManagedLedgerPersistIndividualAckAsLongArray());
+            managedLedgerConfig.setPersistIndividualAckIncrementally(
+                    serviceConfig.isManagedLedgerPersistIndividualAckIncrementally());
+            managedLedgerConfig.setIndividualAckSnapshotInterval(
+                    serviceConfig.getManagedLedgerIndividualAckSnapshotInterval());
             managedLedgerConfig.setPersistentUnackedRangesWithMultipleEntriesEnabled(
                     serviceConfig.isPersistentUnackedRangesWithMultipleEntriesEnabled());
             managedLedgerConfig.setMaxUnackedRangesToPersistInMetadataStore(
@@ -2101,6 +2150,7 @@ public class BrokerService implements Closeable {
             managedLedgerConfig.setAutoSkipNonRecoverableData(serviceConfig.isAutoSkipNonRecoverableData());
             managedLedgerConfig.setLedgerForceRecovery(serviceConfig.isManagedLedgerForceRecovery());
             managedLedgerConfig.setLazyCursorRecovery(serviceConfig.isLazyCursorRecovery());
+            managedLedgerConfig.setCursorRecoveryOnDemand(serviceConfig.isCursorRecoveryOnDemand());
             managedLedgerConfig.setInactiveLedgerRollOverTime(
                     serviceConfig.getManagedLedgerInactiveLedgerRolloverTimeSeconds(), TimeUnit.SECONDS);
             managedLedgerConfig.setInactiveOffloadedLedgerEvictionTime(
@@ -2115,6 +2165,10 @@ public class BrokerService implements Closeable {
                     serviceConfig.getManagedLedgerMinimumBacklogEntriesForCaching());
             managedLedgerConfig.setMaxBacklogBetweenCursorsForCaching(
                     serviceConfig.getManagedLedgerMaxBacklogBetweenCursorsForCaching());
+            managedLedgerConfig.setReadAheadSharingMaxDistanceEntries(
+                    serviceConfig.getManagedLedgerReadAheadSharingMaxDistanceEntries());
+            managedLedgerConfig.setCursorPrefetchMaxEntries(
+                    serviceConfig.getManagedLedgerCursorPrefetchMaxEntries());
 
             OffloadPoliciesImpl nsLevelOffloadPolicies =
                     (OffloadPoliciesImpl) policies.map(p -> p.offload_policies).orElse(null);
@@ -2283,7 +2337,7 @@ public class BrokerService implements Closeable {
             if (t instanceof PersistentTopic) {
                 Optional.ofNullable(((PersistentTopic) t).getManagedLedger()).ifPresent(
                         managedLedger -> {
-                            managedLedger.trimConsumedLedgersInBackground(Futures.NULL_PROMISE);
+                            managedLedger.scheduleTrimConsumedLedgers();
                             managedLedger.rolloverCursorsInBackground();
                         }
                 );
@@ -3390,6 +3444,13 @@ public class BrokerService implements Closeable {
         return topicOrderedExecutor;
     }
 
+    /**
+     * @return the scheduler dispatching the messages of the subscriptions, or null if it's disabled
+     */
+    public DispatchScheduler getDispatchScheduler() {
+        return dispatchScheduler;
+    }
+
     /**
      * If per-broker unacked message reached to limit then it blocks dispatcher if its unacked message limit has been
      * reached to {@link #maxUnackedMsgsPerDispatcher}.
@@ -51,6 +51,7 @@ import org.apache.bookkeeper.mledger.impl.AckSetStateUtil;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.broker.authentication.AuthenticationDataSubscription;
 import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLookupData;
 import org.apache.pulsar.broker.service.persistent.PersistentSubscription;
@@ -133,6 +134,8 @@ public class Consumer {
             AtomicIntegerFieldUpdater.newUpdater(Consumer.class, "unackedMessages");
     private volatile int unackedMessages = 0;
     private volatile boolean blockedConsumerOnUnackedMsgs = false;
+    // null when the adaptive permits are disabled or the consumer doesn't track its unacked messages
+    private final AdaptiveConsumerPermits adaptivePermits;
 
     private final Map<String, String> metadata;
 
@@ -245,8 +248,19 @@ public class Consumer {
 
         this.clientAddress = cnx.clientSourceAddress();
         this.consumerEpoch = consumerEpoch;
-        this.isAcknowledgmentAtBatchIndexLevelEnabled = subscription.getTopic().getBrokerService()
-                .getPulsar().getConfiguration().isAcknowledgmentAtBatchIndexLevelEnabled();
+        ServiceConfiguration serviceConfiguration = subscription.getTopic().getBrokerService()
+                .getPulsar().getConfiguration();
+        this.isAcknowledgmentAtBatchIndexLevelEnabled =
+                serviceConfiguration.isAcknowledgmentAtBatchIndexLevelEnabled();
+        if (serviceConfiguration.isDispatcherAdaptivePermitsEnabled() && isPersistentTopic
+                && Subscription.isIndividualAckMode(subType)) {
+            this.adaptivePermits = new AdaptiveConsumerPermits(
+                    serviceConfiguration.getDispatcherAdaptivePermitsTargetAckLatencyMillis(),
+                    serviceConfiguration.getDispatcherAdaptivePermitsMinInFlightMessages(),
+                    serviceConfiguration.getDispatcherAdaptivePermitsMaxInFlightBytes(), System.nanoTime());
+        } else {
+            this.adaptivePermits = null;
+        }
 
         this.schemaType = schemaType;
 
@@ -281,6 +295,7 @@ public class Consumer {
         this.clientAddress = null;
         this.startMessageId = null;
         this.isAcknowledgmentAtBatchIndexLevelEnabled = false;
+        this.adaptivePermits = null;
         this.schemaType = null;
         MESSAGE_PERMITS_UPDATER.set(this, availablePermits);
         OPEN_TELEMETRY_ATTRIBUTES_FIELD_UPDATER.set(this, null);
@@ -428,6 +443,9 @@ public class Consumer {
                    topicName, subscription, ackedCount, totalMessages, consumerId, avgMessagesPerEntry.get());
         }
         incrementUnackedMessages(unackedMessages);
+        if (adaptivePermits != null) {
+            adaptivePermits.recordDispatched(totalMessages, totalBytes);
+        }
         Future<Void> writeAndFlushPromise =
                 cnx.getCommandSender().sendMessagesToConsumer(consumerId, topicName, subscription, partitionIdx,
                         entries, batchSizes, batchIndexesAcks, redeliveryTracker, epoch);
@@ -595,12 +613,14 @@ public class Consumer {
                     }
                 }
                 addAndGetUnAckedMsgs(ackOwnerConsumer, -(int) ackedCount);
+                updateAdaptivePermits(ackOwnerConsumer, ackedCount);
             } else {
                 position = PositionFactory.create(msgId.getLedgerId(), msgId.getEntryId());
                 ackedCount = getAckedCountForMsgIdNoAckSets(batchSize, position, ackOwnerConsumer);
                 if (checkCanRemovePendingAcksAndHandle(ackOwnerConsumer, position, msgId)) {
                     addAndGetUnAckedMsgs(ackOwnerConsumer, -(int) ackedCount);
                     updateBlockedConsumerOnUnackedMsgs(ackOwnerConsumer);
+                    updateAdaptivePermits(ackOwnerConsumer, ackedCount);
                 }
             }
 
@@ -679,6 +699,7 @@ public class Consumer {
             }
 
             addAndGetUnAckedMsgs(ackOwnerConsumer, -(int) ackedCount);
+            updateAdaptivePermits(ackOwnerConsumer, ackedCount);
 
             checkCanRemovePendingAcksAndHandle(ackOwnerConsumer, position, msgId);
 
@@ -896,6 +917,28 @@ public class Consumer {
         return MESSAGE_PERMITS_UPDATER.get(this);
     }
 
+    /**
+     * Records the acknowledged messages of the consumer and triggers the dispatcher, if the consumer was skipped
+     * because of its adaptive permits and it can receive messages again.
+     */
+    private void updateAdaptivePermits(Consumer ackOwnedConsumer, long ackedMessages) {
+        AdaptiveConsumerPermits ackOwnerAdaptivePermits = ackOwnedConsumer.adaptivePermits;
+        if (ackOwnerAdaptivePermits == null) {
+            return;
+        }
+        if (ackOwnerAdaptivePermits.recordAcked(ackedMessages, UNACKED_MESSAGES_UPDATER.get(ackOwnedConsumer),
+                System.nanoTime())) {
+            subscription.consumerFlow(ackOwnedConsumer, 0);
+        }
+    }
+
+    /**
+     * Returns the adaptive permits of the consumer, or null when the adaptive permits aren't enabled.
+     */
+    public AdaptiveConsumerPermits getAdaptivePermits() {
+        return adaptivePermits;
+    }
+
     /**
      * return 0 if there is no entry dispatched yet.
      */
@@ -989,6 +1032,10 @@ public class Consumer {
         stats.unackedMessages = unackedMessages;
         stats.blockedConsumerOnUnackedMsgs = blockedConsumerOnUnackedMsgs;
         stats.avgMessagesPerEntry = getAvgMessagesPerEntry();
+        if (adaptivePermits != null) {
+            stats.adaptivePermitsAckRate = adaptivePermits.getAckRate();
+            stats.estimatedAckLatencyMillis = adaptivePermits.getEstimatedAckLatencyMillis(unackedMessages);
+        }
         stats.consumerName = consumerName;
         if (readPositionWhenJoining != null) {
             stats.readPositionWhenJoining = readPositionWhenJoining.toString();
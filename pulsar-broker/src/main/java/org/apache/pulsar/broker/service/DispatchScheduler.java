@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongUpDownCounter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.common.stats.MetricsUtil;
+
+/**
+ * Scheduler running the dispatching work of the persistent dispatchers on a shared pool of threads.
+ *
+ * <p>Each dispatcher gets its own {@link Lane}. The tasks of a lane are executed in order and never concurrently, but
+ * a lane isn't bound to a thread: the lanes having pending tasks are queued in a shared FIFO run queue, and any idle
+ * thread picks the next one. A hot dispatcher therefore cannot stall the dispatchers that would have been hashed onto
+ * the same thread of the topic ordered executor.
+ *
+ * <p>To keep the pool fair between the dispatchers, the dispatchers running on a lane cap each read to the quantum
+ * of entries and bytes of the scheduler, and the lane gives up its thread between two reads, since the next batch is
+ * only queued once it has been read. A lane that has queued more tasks than the quantum, e.g. when other tasks are
+ * submitted besides the dispatch of a read batch, also gives up its thread once it has processed the quantum in a
+ * single turn, and is queued again behind the other pending lanes.
+ */
+@Slf4j
+public class DispatchScheduler implements AutoCloseable {
+
+    public static final String QUEUE_DURATION_METRIC_NAME = "pulsar.broker.dispatch.scheduler.queue.duration";
+    public static final String PENDING_TASKS_METRIC_NAME = "pulsar.broker.dispatch.scheduler.pending.count";
+    public static final String YIELD_COUNTER_METRIC_NAME = "pulsar.broker.dispatch.scheduler.yield.count";
+
+    private final ExecutorService pool;
+    private final int maxEntriesPerTurn;
+    private final long maxBytesPerTurn;
+    private final LongAdder pendingTasks = new LongAdder();
+    private final LongAdder yieldCount = new LongAdder();
+    private final DoubleHistogram queueDuration;
+    private final ObservableLongUpDownCounter pendingTasksCounter;
+    private final LongCounter yieldCounter;
+
+    public DispatchScheduler(int numThreads, int maxEntriesPerTurn, long maxBytesPerTurn, Meter meter) {
+        this.pool = Executors.newFixedThreadPool(numThreads, new DefaultThreadFactory("broker-dispatch-scheduler"));
+        this.maxEntriesPerTurn = maxEntriesPerTurn;
+        this.maxBytesPerTurn = maxBytesPerTurn;
+        this.queueDuration = meter.histogramBuilder(QUEUE_DURATION_METRIC_NAME)
+                .setDescription("Time spent by the dispatch tasks waiting for a thread of the dispatch scheduler")
+                .setUnit("s")
+                .build();
+        this.pendingTasksCounter = meter.upDownCounterBuilder(PENDING_TASKS_METRIC_NAME)
+                .setDescription("The number of dispatch tasks waiting to be executed by the dispatch scheduler")
+                .setUnit("{task}")
+                .buildWithCallback(measurement -> measurement.record(getPendingTasks()));
+        this.yieldCounter = meter.counterBuilder(YIELD_COUNTER_METRIC_NAME)
+                .setDescription("The number of times a dispatcher gave up its thread after using its quantum")
+                .setUnit("{turn}")
+                .build();
+    }
+
+    /**
+     * Create a new lane, executing its tasks in order.
+     */
+    public Lane newLane() {
+        return new Lane();
+    }
+
+    /**
+     * Execute a dispatch task on the executor of a dispatcher, accounting the dispatched entries and bytes in the
+     * quantum of the lane when the executor is a lane of the dispatch scheduler.
+     */
+    public static void execute(Executor executor, Runnable runnable, int entries, long bytes) {
+        if (executor instanceof Lane lane) {
+            lane.execute(runnable, entries, bytes);
+        } else {
+            executor.execute(runnable);
+        }
+    }
+
+    public ExecutorService getExecutor() {
+        return pool;
+    }
+
+    public long getPendingTasks() {
+        return pendingTasks.sum();
+    }
+
+    public long getYieldCount() {
+        return yieldCount.sum();
+    }
+
+    @Override
+    public void close() {
+        pendingTasksCounter.close();
+        pool.shutdown();
+    }
+
+    private record Task(Runnable runnable, int entries, long bytes, long enqueueTimeNanos) {
+    }
+
+    /**
+     * Serial executor of the tasks of a dispatcher.
+     */
+    public final class Lane implements Executor {
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Lane() {
+        }
+
+        /**
+         * @return the max number of entries the tasks of the lane should dispatch in a single turn
+         */
+        public int getMaxEntriesPerTurn() {
+            return maxEntriesPerTurn;
+        }
+
+        /**
+         * @return the max size in bytes of the entries the tasks of the lane should dispatch in a single turn
+         */
+        public long getMaxBytesPerTurn() {
+            return maxBytesPerTurn;
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            execute(runnable, 1, 0);
+        }
+
+        /**
+         * Execute a task dispatching the given number of entries and bytes, which are accounted in the quantum of
+         * the lane.
+         */
+        public void execute(Runnable runnable, int entries, long bytes) {
+            tasks.add(new Task(runnable, entries, bytes, System.nanoTime()));
+            pendingTasks.increment();
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    pool.execute(this::runTurn);
+                } catch (Throwable t) {
+                    scheduled.set(false);
+                    throw t;
+                }
+            }
+        }
+
+        private void runTurn() {
+            int entries = 0;
+            long bytes = 0;
+            Task task;
+            while ((task = tasks.poll()) != null) {
+                pendingTasks.decrement();
+                queueDuration.record(MetricsUtil.convertToSeconds(System.nanoTime() - task.enqueueTimeNanos,
+                        TimeUnit.NANOSECONDS));
+                try {
+                    task.runnable.run();
+                } catch (Throwable t) {
+                    log.error("Unexpected error while executing dispatch task", t);
+                }
+                entries += task.entries;
+                bytes += task.bytes;
+                if ((entries >= maxEntriesPerTurn || bytes >= maxBytesPerTurn) && !tasks.isEmpty()
+                        && yieldTurn()) {
+                    return;
+                }
+            }
+            scheduled.set(false);
+            // a task might have been added after the queue was found empty and before the lane was released
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+
+        /**
+         * Queue the lane again behind the other pending lanes, once it has used its quantum.
+         *
+         * @return whether the lane was queued again, otherwise the current turn must continue
+         */
+        private boolean yieldTurn() {
+            try {
+                pool.execute(this::runTurn);
+            } catch (RejectedExecutionException e) {
+                // the scheduler is shutting down, the lane is still scheduled and keeps running its tasks
+                return false;
+            }
+            yieldCount.increment();
+            yieldCounter.add(1);
+            return true;
+        }
+    }
+}
@@ -22,19 +22,29 @@ import java.util.Collections;
 import java.util.List;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.pulsar.broker.service.plugin.BatchEntryFilter;
 import org.apache.pulsar.broker.service.plugin.EntryFilter;
 import org.apache.pulsar.broker.service.plugin.FilterContext;
+import org.apache.pulsar.broker.service.plugin.FilterEntryBatch;
+import org.apache.pulsar.broker.service.plugin.FilterResults;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.jspecify.annotations.Nullable;
 
 public class EntryFilterSupport {
 
     protected final List<EntryFilter> entryFilters;
     protected final boolean hasFilter;
+    protected final boolean hasBatchFilter;
     protected final FilterContext filterContext;
     protected final Subscription subscription;
+    protected final MessageMetadataCache messageMetadataCache;
+    private final FilterEntryBatch filterEntryBatch;
+    private final FilterResults filterResults = new FilterResults();
 
     public EntryFilterSupport(Subscription subscription) {
         this.subscription = subscription;
+        this.messageMetadataCache = getMessageMetadataCache(subscription);
+        this.filterEntryBatch = new FilterEntryBatch(messageMetadataCache);
         if (subscription != null && subscription.getTopic() != null
                 && !subscription.getTopic().isSystemTopic()) {
             final BrokerService brokerService = subscription.getTopic().getBrokerService();
@@ -57,6 +67,16 @@ public class EntryFilterSupport {
             this.filterContext = FilterContext.FILTER_CONTEXT_DISABLED;
         }
         hasFilter = CollectionUtils.isNotEmpty(entryFilters);
+        hasBatchFilter = hasFilter && entryFilters.stream().anyMatch(BatchEntryFilter.class::isInstance);
+    }
+
+    private static MessageMetadataCache getMessageMetadataCache(Subscription subscription) {
+        BrokerService brokerService = subscription != null && subscription.getTopic() != null
+                ? subscription.getTopic().getBrokerService() : null;
+        MessageMetadataCache messageMetadataCache = brokerService != null
+                ? brokerService.getMessageMetadataCache() : null;
+        // the subscriptions without a broker, as in tests, don't share the counters of a broker
+        return messageMetadataCache != null ? messageMetadataCache : new MessageMetadataCache();
     }
 
     public EntryFilter.FilterResult runFiltersForEntry(Entry entry, MessageMetadata msgMetadata,
@@ -69,6 +89,39 @@ public class EntryFilterSupport {
         }
     }
 
+    /**
+     * Run the filters for a batch of entries. The filters implementing {@link BatchEntryFilter} filter all the
+     * entries at once, and the other filters are called for each entry accepted by the previous filters.
+     *
+     * @param metadataArray the message metadata of the entries, or null to resolve the metadata of the entries
+     *                      that the filters access
+     * @param startOffset the index in {@code metadataArray} of the metadata of the first entry
+     * @param entries the entries, which may contain null elements
+     * @param consumer the consumer receiving the entries
+     * @return the results of the entries, which are valid until the next call
+     */
+    public FilterResults runFiltersForEntries(@Nullable MessageMetadata[] metadataArray, int startOffset,
+                                              List<? extends Entry> entries, Consumer consumer) {
+        filterEntryBatch.reset(entries, metadataArray, startOffset, subscription.toString());
+        filterResults.reset(entries.size());
+        fillContext(filterContext, null, subscription, consumer);
+        for (EntryFilter entryFilter : entryFilters) {
+            if (entryFilter instanceof BatchEntryFilter batchEntryFilter) {
+                batchEntryFilter.filterEntries(filterEntryBatch, filterContext, filterResults);
+                continue;
+            }
+            for (int i = 0, size = entries.size(); i < size; i++) {
+                Entry entry = entries.get(i);
+                if (entry != null && filterResults.isAccepted(i)) {
+                    filterContext.setMsgMetadata(filterEntryBatch.getMetadata(i));
+                    filterResults.setResult(i, entryFilter.filterEntry(entry, filterContext));
+                }
+            }
+            filterContext.setMsgMetadata(null);
+        }
+        return filterResults;
+    }
+
     private void fillContext(FilterContext context, MessageMetadata msgMetadata,
                              Subscription subscription, Consumer consumer) {
         context.reset();
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Resolves the {@link MessageMetadata} of the entries being dispatched.
+ *
+ * <p>The metadata parsed from an entry is attached to the managed ledger entry, and shared with all the copies of
+ * the entry handed out by the entry cache. The dispatchers of the subscriptions of a topic reading the same cached
+ * entries therefore parse the metadata only once instead of once per subscription.
+ *
+ * <p>The returned metadata is shared and must be treated as read-only. The broker owns one instance, which counts
+ * the parsed and reused metadata of its dispatchers.
+ */
+public final class MessageMetadataCache {
+
+    private final LongAdder parsedCount = new LongAdder();
+    private final LongAdder reusedCount = new LongAdder();
+
+    /**
+     * Get the metadata of the entry, parsing it only if it wasn't already parsed for the entry.
+     *
+     * @param entry the entry
+     * @param subscription the name of the subscription, used for logging parsing errors
+     * @return the metadata of the entry or null if it cannot be parsed
+     */
+    @Nullable
+    public MessageMetadata getOrParse(Entry entry, String subscription) {
+        if (entry instanceof EntryAndMetadata entryAndMetadata) {
+            return entryAndMetadata.getMetadata();
+        }
+        if (entry instanceof EntryImpl entryImpl) {
+            if (entryImpl.getAttachedMetadata() instanceof MessageMetadata attached) {
+                reusedCount.increment();
+                return attached;
+            }
+            MessageMetadata metadata = parse(entry, subscription);
+            if (metadata != null) {
+                entryImpl.setAttachedMetadata(metadata);
+            }
+            return metadata;
+        }
+        return parse(entry, subscription);
+    }
+
+    private MessageMetadata parse(Entry entry, String subscription) {
+        parsedCount.increment();
+        return Commands.peekAndCopyMessageMetadata(entry.getDataBuffer(), subscription, -1);
+    }
+
+    /**
+     * @return the number of times the metadata of an entry was parsed
+     */
+    public long getParsedCount() {
+        return parsedCount.sum();
+    }
+
+    /**
+     * @return the number of times the parsing of the metadata of an entry was saved by reusing the parsed metadata
+     */
+    public long getReusedCount() {
+        return reusedCount.sum();
+    }
+}
@@ -19,11 +19,8 @@
 package org.apache.pulsar.broker.service;
 
 import it.unimi.dsi.fastutil.ints.IntIntPair;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectRBTreeMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
-import it.unimi.dsi.fastutil.objects.ObjectBidirectionalIterator;
-import java.util.Map;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -39,6 +36,11 @@ import java.util.function.Supplier;
  * therefore no other thread cannot send out entries while the forEachAndClose is being called.
  * remove is also locked to ensure that there aren't races in the removal of entries while forEachAndClose is
  * running.
+ *
+ * The pending acks are stored in a {@link PendingAcksStore}, which doesn't allocate objects per pending ack.
+ * The size, contains and get methods don't take the lock: they read the store optimistically and validate
+ * that no write happened in the meantime with a version incremented before and after each write, and only
+ * retry with the read lock when there was a concurrent write.
  */
 public class PendingAcksMap {
     /**
@@ -98,17 +100,19 @@ public class PendingAcksMap {
     }
 
     private final Consumer consumer;
-    private final Long2ObjectSortedMap<Long2ObjectSortedMap<IntIntPair>> pendingAcks;
+    private final PendingAcksStore pendingAcks;
     private final Supplier<PendingAcksAddHandler> pendingAcksAddHandlerSupplier;
     private final Supplier<PendingAcksRemoveHandler> pendingAcksRemoveHandlerSupplier;
     private final Lock readLock;
     private final Lock writeLock;
+    // odd while the store is being modified, incremented under the write lock
+    private final AtomicLong version = new AtomicLong();
     private boolean closed = false;
 
     PendingAcksMap(Consumer consumer, Supplier<PendingAcksAddHandler> pendingAcksAddHandlerSupplier,
                    Supplier<PendingAcksRemoveHandler> pendingAcksRemoveHandlerSupplier) {
         this.consumer = consumer;
-        this.pendingAcks = new Long2ObjectRBTreeMap<>();
+        this.pendingAcks = new PendingAcksStore();
         this.pendingAcksAddHandlerSupplier = pendingAcksAddHandlerSupplier;
         this.pendingAcksRemoveHandlerSupplier = pendingAcksRemoveHandlerSupplier;
         ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
@@ -143,9 +147,12 @@ public class PendingAcksMap {
                     && !pendingAcksAddHandler.handleAdding(consumer, ledgerId, entryId, stickyKeyHash)) {
                 return false;
             }
-            Long2ObjectSortedMap<IntIntPair> ledgerPendingAcks =
-                    pendingAcks.computeIfAbsent(ledgerId, k -> new Long2ObjectRBTreeMap<>());
-            ledgerPendingAcks.put(entryId, IntIntPair.of(batchSize, stickyKeyHash));
+            startWrite();
+            try {
+                pendingAcks.put(ledgerId, entryId, batchSize, stickyKeyHash);
+            } finally {
+                endWrite();
+            }
             return true;
         } finally {
             writeLock.unlock();
@@ -158,9 +165,16 @@ public class PendingAcksMap {
      * @return the size of the pending acks map
      */
     public long size() {
+        long stamp = version.get();
+        if ((stamp & 1) == 0) {
+            int size = pendingAcks.size();
+            if (validate(stamp)) {
+                return size;
+            }
+        }
         try {
             readLock.lock();
-            return pendingAcks.values().stream().mapToInt(Long2ObjectSortedMap::size).sum();
+            return pendingAcks.size();
         } finally {
             readLock.unlock();
         }
@@ -174,29 +188,12 @@ public class PendingAcksMap {
     public void forEach(PendingAcksConsumer processor) {
         try {
             readLock.lock();
-            processPendingAcks(processor);
+            pendingAcks.forEach(processor);
         } finally {
             readLock.unlock();
         }
     }
 
-    // iterate all pending acks and process them
-    private void processPendingAcks(PendingAcksConsumer processor) {
-        // this code uses for loops intentionally, don't refactor to use forEach
-        // iterate the outer map
-        for (Map.Entry<Long, Long2ObjectSortedMap<IntIntPair>> entry : pendingAcks.entrySet()) {
-            Long ledgerId = entry.getKey();
-            Long2ObjectSortedMap<IntIntPair> ledgerPendingAcks = entry.getValue();
-            // iterate the inner map
-            for (Map.Entry<Long, IntIntPair> e : ledgerPendingAcks.entrySet()) {
-                Long entryId = e.getKey();
-                IntIntPair batchSizeAndStickyKeyHash = e.getValue();
-                processor.accept(ledgerId, entryId, batchSizeAndStickyKeyHash.leftInt(),
-                        batchSizeAndStickyKeyHash.rightInt());
-            }
-        }
-    }
-
     /**
      * Iterate over all the pending acks and close the map so that no more entries can be added.
      * All entries are removed.
@@ -211,7 +208,7 @@ public class PendingAcksMap {
             if (pendingAcksRemoveHandler != null) {
                 try {
                     pendingAcksRemoveHandler.startBatch();
-                    processPendingAcks((ledgerId, entryId, batchSize, stickyKeyHash) -> {
+                    pendingAcks.forEach((ledgerId, entryId, batchSize, stickyKeyHash) -> {
                         processor.accept(ledgerId, entryId, batchSize, stickyKeyHash);
                         pendingAcksRemoveHandler.handleRemoving(consumer, ledgerId, entryId, stickyKeyHash, closed);
                     });
@@ -219,9 +216,14 @@ public class PendingAcksMap {
                     pendingAcksRemoveHandler.endBatch();
                 }
             } else {
-                processPendingAcks(processor);
+                pendingAcks.forEach(processor);
+            }
+            startWrite();
+            try {
+                pendingAcks.clear();
+            } finally {
+                endWrite();
             }
-            pendingAcks.clear();
         } finally {
             writeLock.unlock();
         }
@@ -235,16 +237,7 @@ public class PendingAcksMap {
      * @return true if the map contains the pending ack, false otherwise
      */
     public boolean contains(long ledgerId, long entryId) {
-        try {
-            readLock.lock();
-            Long2ObjectSortedMap<IntIntPair> ledgerMap = pendingAcks.get(ledgerId);
-            if (ledgerMap == null) {
-                return false;
-            }
-            return ledgerMap.containsKey(entryId);
-        } finally {
-            readLock.unlock();
-        }
+        return getPendingAck(ledgerId, entryId) != PendingAcksStore.NOT_FOUND;
     }
 
     /**
@@ -255,13 +248,31 @@ public class PendingAcksMap {
      * @return the pending ack, or null if not found
      */
     public IntIntPair get(long ledgerId, long entryId) {
+        long pendingAck = getPendingAck(ledgerId, entryId);
+        if (pendingAck == PendingAcksStore.NOT_FOUND) {
+            return null;
+        }
+        return IntIntPair.of(PendingAcksStore.batchSize(pendingAck), PendingAcksStore.stickyKeyHash(pendingAck));
+    }
+
+    private long getPendingAck(long ledgerId, long entryId) {
+        long stamp = version.get();
+        if ((stamp & 1) == 0) {
+            try {
+                long pendingAck = pendingAcks.get(ledgerId, entryId);
+                if (validate(stamp)) {
+                    return pendingAck;
+                }
+            } catch (RuntimeException e) {
+                // the store was modified while reading it, unless the version didn't change
+                if (validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
         try {
             readLock.lock();
-            Long2ObjectSortedMap<IntIntPair> ledgerMap = pendingAcks.get(ledgerId);
-            if (ledgerMap == null) {
-                return null;
-            }
-            return ledgerMap.get(entryId);
+            return pendingAcks.get(ledgerId, entryId);
         } finally {
             readLock.unlock();
         }
@@ -279,18 +290,17 @@ public class PendingAcksMap {
     public boolean remove(long ledgerId, long entryId, int batchSize, int stickyKeyHash) {
         try {
             writeLock.lock();
-            Long2ObjectSortedMap<IntIntPair> ledgerMap = pendingAcks.get(ledgerId);
-            if (ledgerMap == null) {
+            if (pendingAcks.get(ledgerId, entryId) != PendingAcksStore.pack(batchSize, stickyKeyHash)) {
                 return false;
             }
-            boolean removed = ledgerMap.remove(entryId, IntIntPair.of(batchSize, stickyKeyHash));
-            if (removed) {
-                handleRemovePendingAck(ledgerId, entryId, stickyKeyHash);
+            startWrite();
+            try {
+                pendingAcks.remove(ledgerId, entryId);
+            } finally {
+                endWrite();
             }
-            if (removed && ledgerMap.isEmpty()) {
-                pendingAcks.remove(ledgerId);
-            }
-            return removed;
+            handleRemovePendingAck(ledgerId, entryId, stickyKeyHash);
+            return true;
         } finally {
             writeLock.unlock();
         }
@@ -306,19 +316,18 @@ public class PendingAcksMap {
     public boolean remove(long ledgerId, long entryId) {
         try {
             writeLock.lock();
-            Long2ObjectSortedMap<IntIntPair> ledgerMap = pendingAcks.get(ledgerId);
-            if (ledgerMap == null) {
-                return false;
+            long removedEntry;
+            startWrite();
+            try {
+                removedEntry = pendingAcks.remove(ledgerId, entryId);
+            } finally {
+                endWrite();
             }
-            IntIntPair removedEntry = ledgerMap.remove(entryId);
-            boolean removed = removedEntry != null;
+            boolean removed = removedEntry != PendingAcksStore.NOT_FOUND;
             if (removed) {
-                int stickyKeyHash = removedEntry.rightInt();
+                int stickyKeyHash = PendingAcksStore.stickyKeyHash(removedEntry);
                 handleRemovePendingAck(ledgerId, entryId, stickyKeyHash);
             }
-            if (removed && ledgerMap.isEmpty()) {
-                pendingAcks.remove(ledgerId);
-            }
             return removed;
         } finally {
             writeLock.unlock();
@@ -328,90 +337,55 @@ public class PendingAcksMap {
     /**
      * Remove all pending acks up to the given ledger ID and entry ID.
      *
-     * @param markDeleteLedgerId the ledger ID up to which to remove pending acks
-     * @param markDeleteEntryId the entry ID up to which to remove pending acks
-     */
-    public void removeAllUpTo(long markDeleteLedgerId, long markDeleteEntryId) {
-        internalRemoveAllUpTo(markDeleteLedgerId, markDeleteEntryId, false);
-    }
-
-    /**
-     * Removes all pending acknowledgments up to the specified ledger ID and entry ID.
-     *
-     * ReadWriteLock doesn't support upgrading from read lock to write lock.
-     * This method first checks if there's anything to remove using a read lock and if there is, exits
-     * and retries with a write lock to make the removals.
+     * The write lock is only taken when there's something to remove, which is checked without locking.
      *
      * @param markDeleteLedgerId the ledger ID up to which to remove pending acks
      * @param markDeleteEntryId the entry ID up to which to remove pending acks
-     * @param useWriteLock true if the method should use a write lock, false otherwise
      */
-    private void internalRemoveAllUpTo(long markDeleteLedgerId, long markDeleteEntryId, boolean useWriteLock) {
+    public void removeAllUpTo(long markDeleteLedgerId, long markDeleteEntryId) {
+        long stamp = version.get();
+        if ((stamp & 1) == 0) {
+            try {
+                boolean hasAnyUpTo = pendingAcks.hasAnyUpTo(markDeleteLedgerId, markDeleteEntryId);
+                if (validate(stamp) && !hasAnyUpTo) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // the store was modified while reading it, unless the version didn't change
+                if (validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
         PendingAcksRemoveHandler pendingAcksRemoveHandler = pendingAcksRemoveHandlerSupplier.get();
-        // track if the write lock was acquired
-        boolean acquiredWriteLock = false;
         // track if a batch was started
         boolean batchStarted = false;
-        // track if the method should retry with a write lock
-        boolean retryWithWriteLock = false;
         try {
-            if (useWriteLock) {
-                writeLock.lock();
-                acquiredWriteLock = true;
-            } else {
-                readLock.lock();
+            writeLock.lock();
+            if (!pendingAcks.hasAnyUpTo(markDeleteLedgerId, markDeleteEntryId)) {
+                return;
             }
-            ObjectBidirectionalIterator<Long2ObjectMap.Entry<Long2ObjectSortedMap<IntIntPair>>> ledgerMapIterator =
-                    pendingAcks.headMap(markDeleteLedgerId + 1).long2ObjectEntrySet().iterator();
-            while (ledgerMapIterator.hasNext()) {
-                Long2ObjectMap.Entry<Long2ObjectSortedMap<IntIntPair>> entry = ledgerMapIterator.next();
-                long ledgerId = entry.getLongKey();
-                Long2ObjectSortedMap<IntIntPair> ledgerMap = entry.getValue();
-                Long2ObjectSortedMap<IntIntPair> ledgerMapHead;
-                if (ledgerId == markDeleteLedgerId) {
-                    ledgerMapHead = ledgerMap.headMap(markDeleteEntryId + 1);
-                } else {
-                    ledgerMapHead = ledgerMap;
-                }
-                ObjectBidirectionalIterator<Long2ObjectMap.Entry<IntIntPair>> entryMapIterator =
-                        ledgerMapHead.long2ObjectEntrySet().iterator();
-                while (entryMapIterator.hasNext()) {
-                    Long2ObjectMap.Entry<IntIntPair> intIntPairEntry = entryMapIterator.next();
-                    long entryId = intIntPairEntry.getLongKey();
-                    if (!acquiredWriteLock) {
-                        retryWithWriteLock = true;
-                        return;
-                    }
-                    if (pendingAcksRemoveHandler != null) {
-                        if (!batchStarted) {
-                            pendingAcksRemoveHandler.startBatch();
-                            batchStarted = true;
-                        }
-                        int stickyKeyHash = intIntPairEntry.getValue().rightInt();
-                        pendingAcksRemoveHandler.handleRemoving(consumer, ledgerId, entryId, stickyKeyHash, closed);
-                    }
-                    entryMapIterator.remove();
-                }
-                if (ledgerMap.isEmpty()) {
-                    if (!acquiredWriteLock) {
-                        retryWithWriteLock = true;
-                        return;
-                    }
-                    ledgerMapIterator.remove();
-                }
+            if (pendingAcksRemoveHandler != null) {
+                pendingAcksRemoveHandler.startBatch();
+                batchStarted = true;
+            }
+            startWrite();
+            try {
+                pendingAcks.removeAllUpTo(markDeleteLedgerId, markDeleteEntryId,
+                        (ledgerId, entryId, batchSize, stickyKeyHash) -> {
+                            if (pendingAcksRemoveHandler != null) {
+                                pendingAcksRemoveHandler.handleRemoving(consumer, ledgerId, entryId, stickyKeyHash,
+                                        closed);
+                            }
+                        });
+            } finally {
+                endWrite();
             }
         } finally {
             if (batchStarted) {
                 pendingAcksRemoveHandler.endBatch();
             }
-            if (acquiredWriteLock) {
-                writeLock.unlock();
-            } else {
-                readLock.unlock();
-                if (retryWithWriteLock) {
-                    internalRemoveAllUpTo(markDeleteLedgerId, markDeleteEntryId, true);
-                }
-            }
+            writeLock.unlock();
         }
     }
 
@@ -421,4 +395,19 @@ public class PendingAcksMap {
             pendingAcksRemoveHandler.handleRemoving(consumer, ledgerId, entryId, stickyKeyHash, closed);
         }
     }
-}
\ No newline at end of file
+
+    // must be called with the write lock held
+    private void startWrite() {
+        version.incrementAndGet();
+    }
+
+    private void endWrite() {
+        version.incrementAndGet();
+    }
+
+    private boolean validate(long stamp) {
+        // prevent the reads of the store from being reordered after the read of the version
+        VarHandle.acquireFence();
+        return version.get() == stamp;
+    }
+}
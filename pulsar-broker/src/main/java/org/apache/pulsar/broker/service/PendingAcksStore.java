@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import java.util.Arrays;
+
+/**
+ * Columnar storage of the pending acks of a consumer, used by {@link PendingAcksMap}.
+ *
+ * <p>The pending acks of each ledger are stored in parallel primitive arrays of entry ids, batch sizes and sticky key
+ * hashes, sorted by entry id, and the ledgers are stored in an array sorted by ledger id. Since the entries are mostly
+ * dispatched in order, adding a pending ack is usually an append. A removed pending ack is only marked as removed,
+ * and the removed slots are reclaimed when they are at the head or the tail of the arrays, or by compacting the
+ * arrays when they are the majority. No object is allocated per pending ack.
+ *
+ * <p>This class is not thread-safe. The reads can run concurrently with a write, as long as the caller discards
+ * their result, or any exception they throw, when a write happened in the meantime.
+ */
+final class PendingAcksStore {
+    /**
+     * Value returned by {@link #get(long, long)} and {@link #remove(long, long)} when there is no pending ack.
+     */
+    static final long NOT_FOUND = Long.MIN_VALUE;
+
+    // batch size of the removed pending acks
+    private static final int REMOVED = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private LedgerPendingAcks[] ledgers = new LedgerPendingAcks[4];
+    private int ledgerCount;
+    private int size;
+    // the last removed ledger, reused for the next ledger to avoid growing new arrays for each ledger
+    private LedgerPendingAcks recycledLedger;
+
+    /**
+     * Pack the batch size and the sticky key hash of a pending ack in a long.
+     */
+    static long pack(int batchSize, int stickyKeyHash) {
+        return ((long) batchSize << 32) | (stickyKeyHash & 0xFFFFFFFFL);
+    }
+
+    static int batchSize(long batchSizeAndStickyKeyHash) {
+        return (int) (batchSizeAndStickyKeyHash >>> 32);
+    }
+
+    static int stickyKeyHash(long batchSizeAndStickyKeyHash) {
+        return (int) batchSizeAndStickyKeyHash;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void put(long ledgerId, long entryId, int batchSize, int stickyKeyHash) {
+        int index = indexOfLedger(ledgers, ledgerCount, ledgerId);
+        LedgerPendingAcks ledger;
+        if (index >= 0) {
+            ledger = ledgers[index];
+        } else {
+            ledger = recycledLedger != null ? recycledLedger : new LedgerPendingAcks();
+            recycledLedger = null;
+            ledger.ledgerId = ledgerId;
+            insertLedger(-index - 1, ledger);
+        }
+        if (ledger.put(entryId, batchSize, stickyKeyHash)) {
+            size++;
+        }
+    }
+
+    boolean contains(long ledgerId, long entryId) {
+        return get(ledgerId, entryId) != NOT_FOUND;
+    }
+
+    /**
+     * @return the batch size and the sticky key hash of the pending ack packed with {@link #pack(int, int)}, or
+     *         {@link #NOT_FOUND}
+     */
+    long get(long ledgerId, long entryId) {
+        LedgerPendingAcks[] ledgers = this.ledgers;
+        int index = indexOfLedger(ledgers, ledgerCount, ledgerId);
+        if (index < 0) {
+            return NOT_FOUND;
+        }
+        return ledgers[index].get(entryId);
+    }
+
+    /**
+     * @return the batch size and the sticky key hash of the removed pending ack packed with {@link #pack(int, int)},
+     *         or {@link #NOT_FOUND}
+     */
+    long remove(long ledgerId, long entryId) {
+        int index = indexOfLedger(ledgers, ledgerCount, ledgerId);
+        if (index < 0) {
+            return NOT_FOUND;
+        }
+        LedgerPendingAcks ledger = ledgers[index];
+        long removed = ledger.remove(entryId);
+        if (removed != NOT_FOUND) {
+            size--;
+            if (ledger.count == 0) {
+                removeLedger(index);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all the pending acks up to the given position, included.
+     *
+     * @param processor called for each removed pending ack, before it's removed
+     */
+    void removeAllUpTo(long markDeleteLedgerId, long markDeleteEntryId, PendingAcksMap.PendingAcksConsumer processor) {
+        int removedLedgers = 0;
+        for (int i = 0; i < ledgerCount; i++) {
+            LedgerPendingAcks ledger = ledgers[i];
+            if (ledger.ledgerId > markDeleteLedgerId) {
+                break;
+            }
+            long upToEntryId = ledger.ledgerId < markDeleteLedgerId ? Long.MAX_VALUE : markDeleteEntryId;
+            size -= ledger.removeAllUpTo(upToEntryId, processor);
+            if (ledger.count == 0) {
+                removedLedgers++;
+            }
+        }
+        if (removedLedgers > 0) {
+            // the removed ledgers are the first ones
+            recycledLedger = ledgers[removedLedgers - 1];
+            System.arraycopy(ledgers, removedLedgers, ledgers, 0, ledgerCount - removedLedgers);
+            Arrays.fill(ledgers, ledgerCount - removedLedgers, ledgerCount, null);
+            ledgerCount -= removedLedgers;
+        }
+    }
+
+    /**
+     * @return true if there's a pending ack up to the given position, included
+     */
+    boolean hasAnyUpTo(long markDeleteLedgerId, long markDeleteEntryId) {
+        LedgerPendingAcks[] ledgers = this.ledgers;
+        if (ledgerCount == 0) {
+            return false;
+        }
+        LedgerPendingAcks first = ledgers[0];
+        if (first.ledgerId != markDeleteLedgerId) {
+            return first.ledgerId < markDeleteLedgerId;
+        }
+        // the first slot of a ledger is never a removed pending ack
+        return first.entryIds[first.start] <= markDeleteEntryId;
+    }
+
+    void forEach(PendingAcksMap.PendingAcksConsumer processor) {
+        for (int i = 0; i < ledgerCount; i++) {
+            ledgers[i].forEach(processor);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(ledgers, 0, ledgerCount, null);
+        recycledLedger = null;
+        ledgerCount = 0;
+        size = 0;
+    }
+
+    private static int indexOfLedger(LedgerPendingAcks[] ledgers, int ledgerCount, long ledgerId) {
+        int low = 0;
+        int high = Math.min(ledgerCount, ledgers.length) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midLedgerId = ledgers[mid].ledgerId;
+            if (midLedgerId < ledgerId) {
+                low = mid + 1;
+            } else if (midLedgerId > ledgerId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insertLedger(int index, LedgerPendingAcks ledger) {
+        if (ledgerCount == ledgers.length) {
+            ledgers = Arrays.copyOf(ledgers, ledgers.length * 2);
+        }
+        System.arraycopy(ledgers, index, ledgers, index + 1, ledgerCount - index);
+        ledgers[index] = ledger;
+        ledgerCount++;
+    }
+
+    private void removeLedger(int index) {
+        recycledLedger = ledgers[index];
+        System.arraycopy(ledgers, index + 1, ledgers, index, ledgerCount - index - 1);
+        ledgers[--ledgerCount] = null;
+    }
+
+    private static final class LedgerPendingAcks {
+        private long ledgerId;
+        private long[] entryIds = new long[INITIAL_CAPACITY];
+        private int[] batchSizes = new int[INITIAL_CAPACITY];
+        private int[] stickyKeyHashes = new int[INITIAL_CAPACITY];
+        // the slots in [start, end) are used, the first and last ones are never removed pending acks
+        private int start;
+        private int end;
+        // number of pending acks
+        private int count;
+
+        /**
+         * @return true if the pending ack was added, false if it replaced an existing one
+         */
+        boolean put(long entryId, int batchSize, int stickyKeyHash) {
+            if (end == entryIds.length) {
+                ensureCapacity();
+            }
+            int index;
+            if (start == end || entryId > entryIds[end - 1]) {
+                index = end++;
+            } else {
+                index = indexOf(entryIds, start, end, entryId);
+                if (index >= 0) {
+                    boolean added = batchSizes[index] == REMOVED;
+                    set(index, entryId, batchSize, stickyKeyHash);
+                    if (added) {
+                        count++;
+                    }
+                    return added;
+                }
+                index = -index - 1;
+                if (index == start && start > 0) {
+                    index = --start;
+                } else {
+                    System.arraycopy(entryIds, index, entryIds, index + 1, end - index);
+                    System.arraycopy(batchSizes, index, batchSizes, index + 1, end - index);
+                    System.arraycopy(stickyKeyHashes, index, stickyKeyHashes, index + 1, end - index);
+                    end++;
+                }
+            }
+            set(index, entryId, batchSize, stickyKeyHash);
+            count++;
+            return true;
+        }
+
+        long get(long entryId) {
+            long[] entryIds = this.entryIds;
+            int[] batchSizes = this.batchSizes;
+            int[] stickyKeyHashes = this.stickyKeyHashes;
+            int index = indexOf(entryIds, start, Math.min(end, entryIds.length), entryId);
+            if (index < 0 || batchSizes[index] == REMOVED) {
+                return NOT_FOUND;
+            }
+            return pack(batchSizes[index], stickyKeyHashes[index]);
+        }
+
+        long remove(long entryId) {
+            int index = indexOf(entryIds, start, end, entryId);
+            if (index < 0 || batchSizes[index] == REMOVED) {
+                return NOT_FOUND;
+            }
+            long removed = pack(batchSizes[index], stickyKeyHashes[index]);
+            batchSizes[index] = REMOVED;
+            count--;
+            while (start < end && batchSizes[start] == REMOVED) {
+                start++;
+            }
+            while (end > start && batchSizes[end - 1] == REMOVED) {
+                end--;
+            }
+            if (start == end) {
+                start = 0;
+                end = 0;
+            } else if (end - start - count > Math.max(INITIAL_CAPACITY, count)) {
+                compact();
+            }
+            return removed;
+        }
+
+        /**
+         * @return the number of removed pending acks
+         */
+        int removeAllUpTo(long upToEntryId, PendingAcksMap.PendingAcksConsumer processor) {
+            int removed = 0;
+            int index = start;
+            while (index < end && entryIds[index] <= upToEntryId) {
+                int batchSize = batchSizes[index];
+                if (batchSize != REMOVED) {
+                    processor.accept(ledgerId, entryIds[index], batchSize, stickyKeyHashes[index]);
+                    removed++;
+                }
+                index++;
+            }
+            while (index < end && batchSizes[index] == REMOVED) {
+                index++;
+            }
+            start = index;
+            count -= removed;
+            if (start == end) {
+                start = 0;
+                end = 0;
+            }
+            return removed;
+        }
+
+        void forEach(PendingAcksMap.PendingAcksConsumer processor) {
+            for (int i = start; i < end; i++) {
+                int batchSize = batchSizes[i];
+                if (batchSize != REMOVED) {
+                    processor.accept(ledgerId, entryIds[i], batchSize, stickyKeyHashes[i]);
+                }
+            }
+        }
+
+        private void set(int index, long entryId, int batchSize, int stickyKeyHash) {
+            entryIds[index] = entryId;
+            batchSizes[index] = batchSize;
+            stickyKeyHashes[index] = stickyKeyHash;
+        }
+
+        // make room for at least one more slot at the end
+        private void ensureCapacity() {
+            if (count < entryIds.length / 2) {
+                compact();
+            } else {
+                int capacity = entryIds.length * 2;
+                entryIds = Arrays.copyOf(entryIds, capacity);
+                batchSizes = Arrays.copyOf(batchSizes, capacity);
+                stickyKeyHashes = Arrays.copyOf(stickyKeyHashes, capacity);
+            }
+        }
+
+        // move the pending acks to the beginning of the arrays, skipping the removed ones
+        private void compact() {
+            int capacity = entryIds.length;
+            if (capacity > INITIAL_CAPACITY && count < capacity / 4) {
+                // shrink the arrays
+                capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(count) * 4);
+                long[] newEntryIds = new long[capacity];
+                int[] newBatchSizes = new int[capacity];
+                int[] newStickyKeyHashes = new int[capacity];
+                int newEnd = copyPendingAcks(newEntryIds, newBatchSizes, newStickyKeyHashes);
+                entryIds = newEntryIds;
+                batchSizes = newBatchSizes;
+                stickyKeyHashes = newStickyKeyHashes;
+                end = newEnd;
+            } else {
+                end = copyPendingAcks(entryIds, batchSizes, stickyKeyHashes);
+            }
+            start = 0;
+        }
+
+        private int copyPendingAcks(long[] toEntryIds, int[] toBatchSizes, int[] toStickyKeyHashes) {
+            int to = 0;
+            for (int from = start; from < end; from++) {
+                int batchSize = batchSizes[from];
+                if (batchSize != REMOVED) {
+                    toEntryIds[to] = entryIds[from];
+                    toBatchSizes[to] = batchSize;
+                    toStickyKeyHashes[to] = stickyKeyHashes[from];
+                    to++;
+                }
+            }
+            return to;
+        }
+
+        private static int indexOf(long[] entryIds, int start, int end, long entryId) {
+            int low = start;
+            int high = end - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midEntryId = entryIds[mid];
+                if (midEntryId < entryId) {
+                    low = mid + 1;
+                } else if (midEntryId > entryId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.pulsar.broker.service;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
@@ -27,6 +28,7 @@ import java.util.List;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.Entry;
+import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.broker.intercept.BrokerInterceptor;
 import org.apache.pulsar.client.api.transaction.TxnID;
 import org.apache.pulsar.common.api.proto.BaseCommand;
@@ -42,6 +44,9 @@ import org.apache.pulsar.common.util.netty.NettyChannelUtil;
 @Slf4j
 public class PulsarCommandSenderImpl implements PulsarCommandSender {
 
+    // initial size of the buffer holding the command headers of the dispatched messages, per message
+    private static final int ESTIMATED_MESSAGE_HEADERS_SIZE = 64;
+
     private final BrokerInterceptor interceptor;
     private final ServerCnx cnx;
 
@@ -231,6 +236,20 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
             // and in the completion of the writePromise
             // it is safe to use a simple ArrayList
             List<Entry> entriesToRelease = new ArrayList<>(entries.size());
+            ServiceConfiguration config = cnx.getBrokerService().getPulsar().getConfig();
+            // skip broker entry metadata if consumer-client doesn't support broker entry metadata or the
+            // features is not enabled
+            boolean skipBrokerEntryMetadata = cnx.getRemoteEndpointProtocolVersion() < ProtocolVersion.v18.getValue()
+                    || !cnx.supportBrokerMetadata()
+                    || !config.isExposingBrokerEntryMetadataToClientEnabled();
+            // the messages are appended to a single composite buffer, which references the entry buffers, and their
+            // command headers are written one after the other in a single pooled buffer
+            CompositeByteBuf frames = null;
+            ByteBuf headers = null;
+            if (interceptor == null && config.isDispatcherZeroCopyWriteEnabled()) {
+                frames = ctx.alloc().compositeDirectBuffer(Math.max(2 * entries.size(), 2));
+                headers = ctx.alloc().directBuffer(entries.size() * ESTIMATED_MESSAGE_HEADERS_SIZE);
+            }
             for (int i = 0; i < entries.size(); i++) {
                 Entry entry = entries.get(i);
                 if (entry == null) {
@@ -253,12 +272,7 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
                 // increment ref-count of data and release at the end of process:
                 // so, we can get chance to call entry.release
                 metadataAndPayload.retain();
-                // skip broker entry metadata if consumer-client doesn't support broker entry metadata or the
-                // features is not enabled
-                if (cnx.getRemoteEndpointProtocolVersion() < ProtocolVersion.v18.getValue()
-                        || !cnx.supportBrokerMetadata()
-                        || !cnx.getBrokerService().getPulsar().getConfig()
-                        .isExposingBrokerEntryMetadataToClientEnabled()) {
+                if (skipBrokerEntryMetadata) {
                     Commands.skipBrokerEntryMetadataIfExist(metadataAndPayload);
                 }
                 // skip checksum by incrementing reader-index if consumer-client doesn't support checksum verification
@@ -273,15 +287,36 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
 
                 int redeliveryCount = redeliveryTracker
                         .getRedeliveryCount(entry.getLedgerId(), entry.getEntryId());
-
-                ctx.write(
-                        cnx.newMessageAndIntercept(consumerId, entry.getLedgerId(), entry.getEntryId(), partitionIdx,
-                                redeliveryCount, metadataAndPayload,
-                                batchIndexesAcks == null ? null : batchIndexesAcks.getAckSet(i), topicName, epoch),
-                        ctx.voidPromise());
+                long[] ackSet = batchIndexesAcks == null ? null : batchIndexesAcks.getAckSet(i);
+
+                if (frames != null) {
+                    int headersIndex = headers.writerIndex();
+                    Commands.writeCommandMessageHeaders(
+                            Commands.newMessageCommand(consumerId, entry.getLedgerId(), entry.getEntryId(),
+                                    partitionIdx, redeliveryCount, ackSet, epoch),
+                            metadataAndPayload.readableBytes(), headers);
+                    frames.addComponent(true, headers.retainedSlice(headersIndex,
+                            headers.writerIndex() - headersIndex));
+                    frames.addComponent(true, metadataAndPayload);
+                } else {
+                    ctx.write(
+                            cnx.newMessageAndIntercept(consumerId, entry.getLedgerId(), entry.getEntryId(),
+                                    partitionIdx, redeliveryCount, metadataAndPayload, ackSet, topicName, epoch),
+                            ctx.voidPromise());
+                }
                 entriesToRelease.add(entry);
             }
 
+            if (frames != null) {
+                // the slices of the headers keep the buffer alive until the frames are written
+                headers.release();
+                if (frames.numComponents() > 0) {
+                    ctx.write(frames, ctx.voidPromise());
+                } else {
+                    frames.release();
+                }
+            }
+
             // Use an empty write here so that we can just tie the flush with the write promise for last entry
             ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, writePromise);
             writePromise.addListener((future) -> {
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of the {@link BoundedRedeliveryTracker}s of a broker.
+ */
+public class RedeliveryTrackerStats {
+    final LongAdder trackedEntries = new LongAdder();
+    final LongAdder overflowIncrements = new LongAdder();
+    final LongAdder sketchSizeBytes = new LongAdder();
+
+    /**
+     * @return the number of entries whose redelivery count is tracked exactly by the trackers
+     */
+    public long getTrackedEntries() {
+        return trackedEntries.sum();
+    }
+
+    /**
+     * @return the number of redeliveries that were counted in the sketches because the trackers were full
+     */
+    public long getOverflowIncrements() {
+        return overflowIncrements.sum();
+    }
+
+    /**
+     * @return the memory used by the sketches of the trackers
+     */
+    public long getSketchSizeBytes() {
+        return sketchSizeBytes.sum();
+    }
+}
@@ -1352,7 +1352,9 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
                             return service.isAllowAutoSubscriptionCreationAsync(topicName)
                                     .thenCompose(isAllowedAutoSubscriptionCreation -> {
                                         boolean subscriptionExists =
-                                                topic.getSubscriptions().containsKey(subscriptionName);
+                                                topic.getSubscriptions().containsKey(subscriptionName)
+                                                || (topic instanceof PersistentTopic persistentTopic
+                                                && persistentTopic.hasUnloadedSubscription(subscriptionName));
                                         // If subscription is as "a/b". The url of HTTP API that defined as
                                         // "{tenant}/{namespace}/{topic}/{subscription}" will be like below:
                                         // "public/default/tp/a/b", then the broker will assume it is a topic that
@@ -91,6 +91,34 @@ public abstract class DispatchRateLimiter {
      */
     public abstract boolean isDispatchRateLimitingEnabled();
 
+    /**
+     * Checks if this rate limiter also applies the dispatch rate limits of the topic and of the broker, in which case
+     * the dispatcher only uses this rate limiter.
+     *
+     * @return true if the dispatch rate limits of the topic and of the broker are applied by this rate limiter
+     */
+    public boolean appliesParentDispatchRateLimits() {
+        return false;
+    }
+
+    /**
+     * Returns the type of the rate limiter which limited the last available msg-permit.
+     *
+     * @return
+     */
+    public Type getThrottlingTypeOnMsg() {
+        return type;
+    }
+
+    /**
+     * Returns the type of the rate limiter which limited the last available byte-permit.
+     *
+     * @return
+     */
+    public Type getThrottlingTypeOnByte() {
+        return type;
+    }
+
     /**
      * createDispatchRate according to broker service config.
      *
@@ -206,6 +234,22 @@ public abstract class DispatchRateLimiter {
 
     public abstract void close();
 
+    /**
+     * Checks if a dispatch rate limiter must be created for the subscription of the topic.
+     *
+     * @param topic the topic
+     * @param subscriptionName the name of the subscription
+     * @return true if the subscription has a dispatch rate or the rate limiter factory requires a rate limiter for
+     * every subscription
+     */
+    public static boolean isSubscriptionDispatchRateLimiterRequired(PersistentTopic topic, String subscriptionName) {
+        if (isDispatchRateEnabled(topic.getSubscriptionDispatchRate(subscriptionName))) {
+            return true;
+        }
+        DispatchRateLimiterFactory factory = topic.getBrokerService().getDispatchRateLimiterFactory();
+        return factory != null && factory.isSubscriptionDispatchRateLimiterAlwaysRequired();
+    }
+
     public static boolean isDispatchRateEnabled(DispatchRate dispatchRate) {
         return dispatchRate != null && (dispatchRate.getDispatchThrottlingRateInMsg() > 0
                 || dispatchRate.getDispatchThrottlingRateInByte() > 0);
@@ -190,6 +190,14 @@ public class DispatchRateLimiterAsyncTokenBucketImpl extends DispatchRateLimiter
     }
 
 
+    AsyncTokenBucket getDispatchRateLimiterOnMessage() {
+        return dispatchRateLimiterOnMessage;
+    }
+
+    AsyncTokenBucket getDispatchRateLimiterOnByte() {
+        return dispatchRateLimiterOnByte;
+    }
+
     @Override
     public void close() {
         // close rate-limiter
@@ -25,4 +25,12 @@ public interface DispatchRateLimiterFactory {
     DispatchRateLimiter createTopicDispatchRateLimiter(PersistentTopic topic);
     DispatchRateLimiter createSubscriptionDispatchRateLimiter(PersistentTopic topic, String subscriptionName);
     DispatchRateLimiter createReplicatorDispatchRateLimiter(PersistentTopic topic, String subscriptionName);
+
+    /**
+     * Checks if a subscription dispatch rate limiter is created for every subscription, also when the subscription
+     * has no dispatch rate, since it applies the dispatch rate limits of the topic and of the broker.
+     */
+    default boolean isSubscriptionDispatchRateLimiterAlwaysRequired() {
+        return false;
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.pulsar.broker.qos.AsyncTokenBucket;
+import org.apache.pulsar.broker.qos.HierarchicalTokenBudget;
+
+/**
+ * Subscription dispatch rate limiter which also applies the dispatch rate limits of the topic and of the broker.
+ * The permits are granted to the subscription in batches from the subscription, topic and broker token buckets with
+ * a {@link HierarchicalTokenBudget}, so that the dispatcher only accesses the token buckets when the granted permits
+ * are used up. The subscriptions of a topic share the topic permits in proportion to their weight, set with the
+ * {@link #DISPATCH_RATE_WEIGHT_PROPERTY} subscription property, and use the permits left by the idle subscriptions.
+ */
+public class DispatchRateLimiterHierarchicalImpl extends DispatchRateLimiterAsyncTokenBucketImpl {
+    /**
+     * The subscription property with the weight of the subscription among the subscriptions of the topic, a positive
+     * integer. It is read on each grant, so that it can be updated with the properties of the subscription.
+     */
+    public static final String DISPATCH_RATE_WEIGHT_PROPERTY = "dispatchRateWeight";
+    static final long DEFAULT_WEIGHT = 1;
+    // the permits granted at once are the permits gained by the most restrictive rate limiter in 100ms
+    static final long GRANT_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // the types of the rate limiters in the order of the levels of the budgets
+    private static final Type[] LEVEL_TYPES = {Type.SUBSCRIPTION, Type.TOPIC, Type.BROKER};
+
+    private final HierarchicalTokenBudget messageBudget =
+            new HierarchicalTokenBudget(DEFAULT_WEIGHT, GRANT_PERIOD_NANOS);
+    private final HierarchicalTokenBudget byteBudget = new HierarchicalTokenBudget(DEFAULT_WEIGHT, GRANT_PERIOD_NANOS);
+
+    public DispatchRateLimiterHierarchicalImpl(PersistentTopic topic, String subscriptionName) {
+        super(topic, subscriptionName, Type.SUBSCRIPTION);
+    }
+
+    @Override
+    public long getAvailableDispatchRateLimitOnMsg() {
+        long tokens = messageBudget.getTokens();
+        if (tokens > 0) {
+            return tokens;
+        }
+        messageBudget.setWeight(getSubscriptionWeight());
+        return messageBudget.grantTokens(getDispatchRateLimiterOnMessage(),
+                getDispatchRateLimiterOnMessage(topic.getDispatchRateLimiter()),
+                getDispatchRateLimiterOnMessage(topic.getBrokerDispatchRateLimiter()));
+    }
+
+    @Override
+    public long getAvailableDispatchRateLimitOnByte() {
+        long tokens = byteBudget.getTokens();
+        if (tokens > 0) {
+            return tokens;
+        }
+        byteBudget.setWeight(getSubscriptionWeight());
+        return byteBudget.grantTokens(getDispatchRateLimiterOnByte(),
+                getDispatchRateLimiterOnByte(topic.getDispatchRateLimiter()),
+                getDispatchRateLimiterOnByte(topic.getBrokerDispatchRateLimiter()));
+    }
+
+    @Override
+    public void consumeDispatchQuota(long numberOfMessages, long byteSize) {
+        messageBudget.consumeTokens(Math.max(numberOfMessages, 0));
+        byteBudget.consumeTokens(Math.max(byteSize, 0));
+    }
+
+    @Override
+    public boolean appliesParentDispatchRateLimits() {
+        return true;
+    }
+
+    @Override
+    public Type getThrottlingTypeOnMsg() {
+        return getLevelType(messageBudget.getThrottlingLevel());
+    }
+
+    @Override
+    public Type getThrottlingTypeOnByte() {
+        return getLevelType(byteBudget.getThrottlingLevel());
+    }
+
+    long getSubscriptionWeight() {
+        PersistentSubscription subscription = topic.getSubscription(subscriptionName);
+        Map<String, String> properties = subscription != null ? subscription.getSubscriptionProperties() : null;
+        long weight = properties != null
+                ? NumberUtils.toLong(properties.get(DISPATCH_RATE_WEIGHT_PROPERTY), DEFAULT_WEIGHT) : DEFAULT_WEIGHT;
+        return weight > 0 ? weight : DEFAULT_WEIGHT;
+    }
+
+    private static Type getLevelType(int level) {
+        return level >= 0 ? LEVEL_TYPES[level] : Type.SUBSCRIPTION;
+    }
+
+    private static AsyncTokenBucket getDispatchRateLimiterOnMessage(Optional<DispatchRateLimiter> rateLimiter) {
+        return rateLimiter.isPresent() && rateLimiter.get() instanceof DispatchRateLimiterAsyncTokenBucketImpl impl
+                ? impl.getDispatchRateLimiterOnMessage() : null;
+    }
+
+    private static AsyncTokenBucket getDispatchRateLimiterOnByte(Optional<DispatchRateLimiter> rateLimiter) {
+        return rateLimiter.isPresent() && rateLimiter.get() instanceof DispatchRateLimiterAsyncTokenBucketImpl impl
+                ? impl.getDispatchRateLimiterOnByte() : null;
+    }
+}
@@ -19,10 +19,15 @@
 package org.apache.pulsar.broker.service.persistent;
 
 import static org.apache.pulsar.broker.service.StickyKeyConsumerSelector.STICKY_KEY_HASH_NOT_SET;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Predicate;
@@ -45,6 +50,10 @@ public class MessageRedeliveryController {
     private final ConcurrentBitmapSortedLongPairSet messagesToRedeliver;
     private final ConcurrentLongLongPairHashMap hashesToBeBlocked;
     private final ConcurrentLongLongHashMap hashesRefCount;
+    // index of the replay positions by sticky key hash, so that the positions of the hashes which cannot be
+    // replayed are skipped without being visited
+    private final Int2ObjectOpenHashMap<NavigableSet<Position>> positionsByStickyKeyHash;
+    private int indexedPositionsCount;
 
     public MessageRedeliveryController(boolean allowOutOfOrderDelivery) {
         this(allowOutOfOrderDelivery, false);
@@ -59,9 +68,11 @@ public class MessageRedeliveryController {
                     .newBuilder().concurrencyLevel(2).expectedItems(128).autoShrink(true).build();
             this.hashesRefCount = ConcurrentLongLongHashMap
                     .newBuilder().concurrencyLevel(2).expectedItems(128).autoShrink(true).build();
+            this.positionsByStickyKeyHash = isClassicDispatcher ? null : new Int2ObjectOpenHashMap<>();
         } else {
             this.hashesToBeBlocked = null;
             this.hashesRefCount = null;
+            this.positionsByStickyKeyHash = null;
         }
     }
 
@@ -76,11 +87,17 @@ public class MessageRedeliveryController {
             }
             boolean inserted = hashesToBeBlocked.putIfAbsent(ledgerId, entryId, stickyKeyHash, 0);
             if (!inserted) {
+                LongPair previous = hashesToBeBlocked.get(ledgerId, entryId);
                 hashesToBeBlocked.put(ledgerId, entryId, stickyKeyHash, 0);
+                if (previous != null && previous.first != stickyKeyHash) {
+                    removeFromIndex(previous.first, ledgerId, entryId);
+                    addToIndex(stickyKeyHash, ledgerId, entryId);
+                }
             } else {
                 // Return -1 means the key was not present
                 long stored = hashesRefCount.get(stickyKeyHash);
                 hashesRefCount.put(stickyKeyHash, stored > 0 ? ++stored : 1);
+                addToIndex(stickyKeyHash, ledgerId, entryId);
             }
         }
         messagesToRedeliver.add(ledgerId, entryId);
@@ -98,6 +115,7 @@ public class MessageRedeliveryController {
         if (value != null) {
             boolean removed = hashesToBeBlocked.remove(ledgerId, entryId, value.first, 0);
             if (removed) {
+                removeFromIndex(value.first, ledgerId, entryId);
                 long exists = hashesRefCount.get(value.first);
                 if (exists == 1) {
                     hashesRefCount.remove(value.first, exists);
@@ -108,6 +126,28 @@ public class MessageRedeliveryController {
         }
     }
 
+    private void addToIndex(long stickyKeyHash, long ledgerId, long entryId) {
+        if (positionsByStickyKeyHash != null) {
+            NavigableSet<Position> positions =
+                    positionsByStickyKeyHash.computeIfAbsent((int) stickyKeyHash, k -> new TreeSet<>());
+            if (positions.add(PositionFactory.create(ledgerId, entryId))) {
+                indexedPositionsCount++;
+            }
+        }
+    }
+
+    private void removeFromIndex(long stickyKeyHash, long ledgerId, long entryId) {
+        if (positionsByStickyKeyHash != null) {
+            NavigableSet<Position> positions = positionsByStickyKeyHash.get((int) stickyKeyHash);
+            if (positions != null && positions.remove(PositionFactory.create(ledgerId, entryId))) {
+                indexedPositionsCount--;
+                if (positions.isEmpty()) {
+                    positionsByStickyKeyHash.remove((int) stickyKeyHash);
+                }
+            }
+        }
+    }
+
     public Long getHash(long ledgerId, long entryId) {
         LongPair value = hashesToBeBlocked.get(ledgerId, entryId);
         if (value == null) {
@@ -141,6 +181,10 @@ public class MessageRedeliveryController {
         if (!allowOutOfOrderDelivery) {
             hashesToBeBlocked.clear();
             hashesRefCount.clear();
+            if (positionsByStickyKeyHash != null) {
+                positionsByStickyKeyHash.clear();
+                indexedPositionsCount = 0;
+            }
         }
         messagesToRedeliver.clear();
     }
@@ -189,6 +233,103 @@ public class MessageRedeliveryController {
         return items;
     }
 
+    /**
+     * Check whether the messages to replay can be selected by sticky key hash with
+     * {@link #getMessagesToReplayNowByStickyKeyHash(int, StickyKeyHashReplayFilter)}. This requires all the messages
+     * to replay to have a sticky key hash, which isn't the case of the delayed messages that became available.
+     *
+     * @return true if the messages to replay can be selected by sticky key hash
+     */
+    public boolean canSelectByStickyKeyHash() {
+        return positionsByStickyKeyHash != null && indexedPositionsCount == messagesToRedeliver.size();
+    }
+
+    /**
+     * Get the messages to replay now, visiting only the positions of the sticky key hashes which can be replayed.
+     *
+     * <p>The positions are selected in the same order as in {@link #getMessagesToReplayNow(int, Predicate)}, but the
+     * positions of the hashes rejected by {@link StickyKeyHashReplayFilter#canReplayHash(int)} aren't visited. The
+     * cost is proportional to the number of hashes with pending replays and the number of replayable positions,
+     * instead of the total number of positions to replay.
+     *
+     * @param maxMessagesToRead
+     *            the max messages to read
+     * @param filter
+     *            the filter to use to select the sticky key hashes to replay
+     * @return the messages to replay now
+     */
+    public NavigableSet<Position> getMessagesToReplayNowByStickyKeyHash(int maxMessagesToRead,
+                                                                        StickyKeyHashReplayFilter filter) {
+        NavigableSet<Position> items = new TreeSet<>();
+        List<HashReplayCursor> replayableHashes = new ArrayList<>();
+        for (Int2ObjectMap.Entry<NavigableSet<Position>> entry
+                : Int2ObjectMaps.fastIterable(positionsByStickyKeyHash)) {
+            if (filter.canReplayHash(entry.getIntKey())) {
+                Iterator<Position> positions = entry.getValue().iterator();
+                replayableHashes.add(new HashReplayCursor(entry.getIntKey(), positions, positions.next()));
+            }
+        }
+        // heapify the cursors at once, ordered by their current position
+        PriorityQueue<HashReplayCursor> cursors = new PriorityQueue<>(replayableHashes);
+        while (items.size() < maxMessagesToRead && !cursors.isEmpty()) {
+            HashReplayCursor cursor = cursors.poll();
+            Position position = cursor.current;
+            if (messagesToRedeliver.contains(position.getLedgerId(), position.getEntryId())) {
+                if (!filter.tryReplay(cursor.stickyKeyHash)) {
+                    // the later positions of the hash are blocked to preserve ordering
+                    continue;
+                }
+                items.add(position);
+            }
+            if (cursor.positions.hasNext()) {
+                cursor.current = cursor.positions.next();
+                cursors.add(cursor);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Filter selecting the messages to replay by sticky key hash.
+     */
+    public interface StickyKeyHashReplayFilter {
+        /**
+         * Check whether the positions of the sticky key hash could be replayed now. This is called once for each
+         * sticky key hash with pending replays, before selecting any position.
+         *
+         * @param stickyKeyHash the sticky key hash
+         * @return false if none of the positions of the sticky key hash can be replayed
+         */
+        boolean canReplayHash(int stickyKeyHash);
+
+        /**
+         * Check whether the next position of the sticky key hash can be replayed. This is called in position order
+         * across all the sticky key hashes. After a position is rejected, the later positions of the sticky key hash
+         * are not tested anymore.
+         *
+         * @param stickyKeyHash the sticky key hash
+         * @return true if the position can be replayed
+         */
+        boolean tryReplay(int stickyKeyHash);
+    }
+
+    private static class HashReplayCursor implements Comparable<HashReplayCursor> {
+        private final int stickyKeyHash;
+        private final Iterator<Position> positions;
+        private Position current;
+
+        HashReplayCursor(int stickyKeyHash, Iterator<Position> positions, Position current) {
+            this.stickyKeyHash = stickyKeyHash;
+            this.positions = positions;
+            this.current = current;
+        }
+
+        @Override
+        public int compareTo(HashReplayCursor other) {
+            return current.compareTo(other.current);
+        }
+    }
+
     /**
      * Get the number of messages registered for replay in the redelivery controller.
      *
@@ -33,7 +33,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -56,9 +56,11 @@ import org.apache.pulsar.broker.delayed.InMemoryDelayedDeliveryTracker;
 import org.apache.pulsar.broker.delayed.bucket.BucketDelayedDeliveryTracker;
 import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLookupData;
 import org.apache.pulsar.broker.service.AbstractDispatcherMultipleConsumers;
+import org.apache.pulsar.broker.service.BoundedRedeliveryTracker;
 import org.apache.pulsar.broker.service.BrokerServiceException;
 import org.apache.pulsar.broker.service.BrokerServiceException.ConsumerBusyException;
 import org.apache.pulsar.broker.service.Consumer;
+import org.apache.pulsar.broker.service.DispatchScheduler;
 import org.apache.pulsar.broker.service.EntryAndMetadata;
 import org.apache.pulsar.broker.service.EntryBatchIndexesAcks;
 import org.apache.pulsar.broker.service.EntryBatchSizes;
@@ -72,7 +74,6 @@ import org.apache.pulsar.broker.transaction.exception.buffer.TransactionBufferEx
 import org.apache.pulsar.common.api.proto.CommandSubscribe.SubType;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.apache.pulsar.common.policies.data.stats.TopicMetricBean;
-import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.Backoff;
 import org.apache.pulsar.common.util.Codec;
 import org.apache.pulsar.common.util.FutureUtil;
@@ -90,6 +91,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
     private CompletableFuture<Void> closeFuture = null;
     protected final MessageRedeliveryController redeliveryMessages;
     protected final RedeliveryTracker redeliveryTracker;
+    protected final SharedDispatchPlanner dispatchPlanner;
 
     private Optional<DelayedDeliveryTracker> delayedDeliveryTracker = Optional.empty();
 
@@ -130,7 +132,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
     protected Optional<DispatchRateLimiter> dispatchRateLimiter = Optional.empty();
     private AtomicBoolean isRescheduleReadInProgress = new AtomicBoolean(false);
     private final AtomicBoolean readMoreEntriesAsyncRequested = new AtomicBoolean(false);
-    protected final ExecutorService dispatchMessagesThread;
+    protected final Executor dispatchMessagesThread;
     private final SharedConsumerAssignor assignor;
     // tracks how many entries were processed by consumers in the last trySendMessagesToConsumers call
     // the number includes also delayed messages, marker messages, aborted txn messages and filtered messages
@@ -157,11 +159,23 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
         this.lastIndividualDeletedRangeFromCursorRecovery = cursor.getLastIndividualDeletedRange();
         this.name = topic.getName() + " / " + Codec.decode(cursor.getName());
         this.topic = topic;
-        this.dispatchMessagesThread = topic.getBrokerService().getTopicOrderedExecutor().chooseThread();
+        DispatchScheduler dispatchScheduler = topic.getBrokerService().getDispatchScheduler();
+        this.dispatchMessagesThread = dispatchScheduler != null ? dispatchScheduler.newLane()
+                : topic.getBrokerService().getTopicOrderedExecutor().chooseThread();
         this.redeliveryMessages = new MessageRedeliveryController(allowOutOfOrderDelivery, false);
-        this.redeliveryTracker = this.serviceConfig.isSubscriptionRedeliveryTrackerEnabled()
-                ? new InMemoryRedeliveryTracker()
-                : RedeliveryTrackerDisabled.REDELIVERY_TRACKER_DISABLED;
+        if (!this.serviceConfig.isSubscriptionRedeliveryTrackerEnabled()) {
+            this.redeliveryTracker = RedeliveryTrackerDisabled.REDELIVERY_TRACKER_DISABLED;
+        } else if (this.serviceConfig.getSubscriptionRedeliveryTrackerMaxTrackedEntries() > 0) {
+            this.redeliveryTracker = new BoundedRedeliveryTracker(
+                    this.serviceConfig.getSubscriptionRedeliveryTrackerMaxTrackedEntries(),
+                    topic.getBrokerService().getRedeliveryTrackerStats());
+        } else {
+            this.redeliveryTracker = new InMemoryRedeliveryTracker();
+        }
+        SharedDispatchStats sharedDispatchStats = topic.getBrokerService().getSharedDispatchStats();
+        // the dispatchers of a mocked broker service don't share the counters of a broker
+        this.dispatchPlanner = new SharedDispatchPlanner(
+                sharedDispatchStats != null ? sharedDispatchStats : new SharedDispatchStats());
         this.readBatchSize = serviceConfig.getDispatcherMaxReadBatchSize();
         this.initializeDispatchRateLimiterIfNeeded();
         this.assignor = new SharedConsumerAssignor(this::getNextConsumer, this::addEntryToReplay);
@@ -549,6 +563,17 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
                     (int) Math.ceil(currentTotalAvailablePermits * 1.0 / avgMessagesPerEntry),
                     readBatchSize);
         }
+        // Key_Shared dispatchers are excluded, since the entries are assigned to the consumers by key
+        if (serviceConfig.isDispatcherReadSizedToConsumerPermits() && getType() == SubType.Shared) {
+            messagesToRead = Math.min(dispatchPlanner.getEntriesToRead(consumerList, this::getDispatchablePermits),
+                    readBatchSize);
+        }
+
+        if (dispatchMessagesThread instanceof DispatchScheduler.Lane lane) {
+            // a read never exceeds the quantum of the lane, which is released to the other lanes between two reads
+            messagesToRead = Math.min(messagesToRead, lane.getMaxEntriesPerTurn());
+            bytesToRead = Math.min(bytesToRead, lane.getMaxBytesPerTurn());
+        }
 
         if (!isConsumerWritable()) {
             // If the connection is not currently writable, we issue the read request anyway, but for a single
@@ -715,9 +740,9 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
             // setting sendInProgress here, because sendMessagesToConsumers will be executed
             // in a separate thread, and we want to prevent more reads
             acquireSendInProgress();
-            dispatchMessagesThread.execute(() -> {
+            DispatchScheduler.execute(dispatchMessagesThread, () -> {
                 handleSendingMessagesAndReadingMore(readType, entries, false, totalBytesSize);
-            });
+            }, entries.size(), totalBytesSize);
         } else {
             handleSendingMessagesAndReadingMore(readType, entries, true, totalBytesSize);
         }
@@ -798,7 +823,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
             if (entry instanceof EntryAndMetadata) {
                 metadata = ((EntryAndMetadata) entry).getMetadata();
             } else {
-                metadata = Commands.peekAndCopyMessageMetadata(entry.getDataBuffer(), subscription.toString(), -1);
+                metadata = messageMetadataCache.getOrParse(entry, subscription.toString());
                 // cache the metadata in the entry with EntryAndMetadata for later use to avoid re-parsing the metadata
                 // and to carry the metadata and calculated stickyKeyHash with the entry
                 entries.set(i, EntryAndMetadata.create(entry, metadata));
@@ -814,6 +839,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
         if (hasChunk) {
             return sendChunkedMessagesToConsumers(readType, entries, metadataArray);
         }
+        dispatchPlanner.recordRead(entries.size(), remainingMessages);
 
         int start = 0;
         long totalMessagesSent = 0;
@@ -835,7 +861,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
                 return false;
             }
             // round-robin dispatch batch size for this consumer
-            int availablePermits = c.isWritable() ? c.getAvailablePermits() : 1;
+            int availablePermits = c.isWritable() ? getDispatchablePermits(c) : 1;
             if (log.isDebugEnabled() && !c.isWritable()) {
                 log.debug("[{}-{}] consumer is not writable. dispatching only 1 message to {}; "
                                 + "availablePermits are {}", topic.getName(), name,
@@ -892,6 +918,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
                 log.debug("[{}] No consumers found with available permits, storing {} positions for later replay", name,
                         entries.size() - start);
             }
+            dispatchPlanner.recordPushedBackToReplay(entries.size() - start);
             entries.subList(start, entries.size()).forEach(this::addEntryToReplay);
         }
 
@@ -953,6 +980,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
                         name, consumer.consumerName(), messagesForC, readType);
             }
             if (messagesForC < entryAndMetadataList.size()) {
+                dispatchPlanner.recordPushedBackToReplay(entryAndMetadataList.size() - messagesForC);
                 for (int i = messagesForC; i < entryAndMetadataList.size(); i++) {
                     final EntryAndMetadata entry = entryAndMetadataList.get(i);
                     notifyAddedToReplay |= addEntryToReplay(entry);
@@ -1097,7 +1125,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
         }
         for (Consumer consumer : consumerList) {
             if (consumer != null && !consumer.isBlocked() && consumer.cnx().isActive()) {
-                int availablePermits = consumer.getAvailablePermits();
+                int availablePermits = getDispatchablePermits(consumer);
                 if (availablePermits > 0) {
                     return availablePermits;
                 }
@@ -1121,7 +1149,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
     @Override
     public boolean isConsumerAvailable(Consumer consumer) {
         return consumer != null && !consumer.isBlocked() && consumer.cnx().isActive()
-                && consumer.getAvailablePermits() > 0;
+                && getDispatchablePermits(consumer) > 0;
     }
 
     @Override
@@ -1267,6 +1295,10 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
         return name;
     }
 
+    public SharedDispatchPlanner getDispatchPlanner() {
+        return dispatchPlanner;
+    }
+
     @Override
     public RedeliveryTracker getRedeliveryTracker() {
         return redeliveryTracker;
@@ -1279,8 +1311,8 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
 
     @Override
     public boolean initializeDispatchRateLimiterIfNeeded() {
-        if (!dispatchRateLimiter.isPresent() && DispatchRateLimiter.isDispatchRateEnabled(
-                topic.getSubscriptionDispatchRate(getSubscriptionName()))) {
+        if (!dispatchRateLimiter.isPresent()
+                && DispatchRateLimiter.isSubscriptionDispatchRateLimiterRequired(topic, getSubscriptionName())) {
             this.dispatchRateLimiter =
                     Optional.of(topic.getBrokerService().getDispatchRateLimiterFactory()
                             .createSubscriptionDispatchRateLimiter(topic, getSubscriptionName()));
@@ -1328,12 +1360,19 @@ public class PersistentDispatcherMultipleConsumers extends AbstractPersistentDis
             messagesAvailableNow.forEach(p -> redeliveryMessages.add(p.getLedgerId(), p.getEntryId()));
         }
         if (!redeliveryMessages.isEmpty()) {
-            return redeliveryMessages.getMessagesToReplayNow(cappedMaxMessagesToRead, createFilterForReplay());
+            return selectMessagesToReplayNow(cappedMaxMessagesToRead);
         } else {
             return Collections.emptyNavigableSet();
         }
     }
 
+    /**
+     * Selects the messages to replay now from the redelivery messages.
+     */
+    protected NavigableSet<Position> selectMessagesToReplayNow(int maxMessagesToRead) {
+        return redeliveryMessages.getMessagesToReplayNow(maxMessagesToRead, createFilterForReplay());
+    }
+
     protected Optional<Position> getFirstPositionInReplay() {
         return redeliveryMessages.getFirstPositionInReplay();
     }
@@ -32,7 +32,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -53,9 +53,11 @@ import org.apache.pulsar.broker.delayed.InMemoryDelayedDeliveryTracker;
 import org.apache.pulsar.broker.delayed.bucket.BucketDelayedDeliveryTracker;
 import org.apache.pulsar.broker.loadbalance.extensions.data.BrokerLookupData;
 import org.apache.pulsar.broker.service.AbstractDispatcherMultipleConsumers;
+import org.apache.pulsar.broker.service.BoundedRedeliveryTracker;
 import org.apache.pulsar.broker.service.BrokerServiceException;
 import org.apache.pulsar.broker.service.BrokerServiceException.ConsumerBusyException;
 import org.apache.pulsar.broker.service.Consumer;
+import org.apache.pulsar.broker.service.DispatchScheduler;
 import org.apache.pulsar.broker.service.EntryAndMetadata;
 import org.apache.pulsar.broker.service.EntryBatchIndexesAcks;
 import org.apache.pulsar.broker.service.EntryBatchSizes;
@@ -70,7 +72,6 @@ import org.apache.pulsar.broker.transaction.exception.buffer.TransactionBufferEx
 import org.apache.pulsar.common.api.proto.CommandSubscribe.SubType;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.apache.pulsar.common.policies.data.stats.TopicMetricBean;
-import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.Backoff;
 import org.apache.pulsar.common.util.Codec;
 import org.apache.pulsar.common.util.FutureUtil;
@@ -130,7 +131,7 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
                     "blockedDispatcherOnUnackedMsgs");
     protected Optional<DispatchRateLimiter> dispatchRateLimiter = Optional.empty();
     private AtomicBoolean isRescheduleReadInProgress = new AtomicBoolean(false);
-    protected final ExecutorService dispatchMessagesThread;
+    protected final Executor dispatchMessagesThread;
     private final SharedConsumerAssignor assignor;
 
     protected enum ReadType {
@@ -150,11 +151,19 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
         this.lastIndividualDeletedRangeFromCursorRecovery = cursor.getLastIndividualDeletedRange();
         this.name = topic.getName() + " / " + Codec.decode(cursor.getName());
         this.topic = topic;
-        this.dispatchMessagesThread = topic.getBrokerService().getTopicOrderedExecutor().chooseThread();
+        DispatchScheduler dispatchScheduler = topic.getBrokerService().getDispatchScheduler();
+        this.dispatchMessagesThread = dispatchScheduler != null ? dispatchScheduler.newLane()
+                : topic.getBrokerService().getTopicOrderedExecutor().chooseThread();
         this.redeliveryMessages = new MessageRedeliveryController(allowOutOfOrderDelivery, true);
-        this.redeliveryTracker = this.serviceConfig.isSubscriptionRedeliveryTrackerEnabled()
-                ? new InMemoryRedeliveryTracker()
-                : RedeliveryTrackerDisabled.REDELIVERY_TRACKER_DISABLED;
+        if (!this.serviceConfig.isSubscriptionRedeliveryTrackerEnabled()) {
+            this.redeliveryTracker = RedeliveryTrackerDisabled.REDELIVERY_TRACKER_DISABLED;
+        } else if (this.serviceConfig.getSubscriptionRedeliveryTrackerMaxTrackedEntries() > 0) {
+            this.redeliveryTracker = new BoundedRedeliveryTracker(
+                    this.serviceConfig.getSubscriptionRedeliveryTrackerMaxTrackedEntries(),
+                    topic.getBrokerService().getRedeliveryTrackerStats());
+        } else {
+            this.redeliveryTracker = new InMemoryRedeliveryTracker();
+        }
         this.readBatchSize = serviceConfig.getDispatcherMaxReadBatchSize();
         this.initializeDispatchRateLimiterIfNeeded();
         this.assignor = new SharedConsumerAssignor(this::getNextConsumer, this::addMessageToReplay);
@@ -463,6 +472,12 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
                     readBatchSize);
         }
 
+        if (dispatchMessagesThread instanceof DispatchScheduler.Lane lane) {
+            // a read never exceeds the quantum of the lane, which is released to the other lanes between two reads
+            messagesToRead = Math.min(messagesToRead, lane.getMaxEntriesPerTurn());
+            bytesToRead = Math.min(bytesToRead, lane.getMaxBytesPerTurn());
+        }
+
         if (!isConsumerWritable()) {
             // If the connection is not currently writable, we issue the read request anyway, but for a single
             // message. The intent here is to keep use the request as a notification mechanism while avoiding to
@@ -628,14 +643,14 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
             // setting sendInProgress here, because sendMessagesToConsumers will be executed
             // in a separate thread, and we want to prevent more reads
             acquireSendInProgress();
-            dispatchMessagesThread.execute(() -> {
+            DispatchScheduler.execute(dispatchMessagesThread, () -> {
                 if (sendMessagesToConsumers(readType, entries, false)) {
                     updatePendingBytesToDispatch(-size);
                     readMoreEntries();
                 } else {
                     updatePendingBytesToDispatch(-size);
                 }
-            });
+            }, entries.size(), size);
         } else {
             if (sendMessagesToConsumers(readType, entries, true)) {
                 updatePendingBytesToDispatch(-size);
@@ -690,8 +705,7 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
         int remainingMessages = 0;
         boolean hasChunk = false;
         for (int i = 0; i < metadataArray.length; i++) {
-            final MessageMetadata metadata = Commands.peekAndCopyMessageMetadata(
-                    entries.get(i).getDataBuffer(), subscription.toString(), -1);
+            final MessageMetadata metadata = messageMetadataCache.getOrParse(entries.get(i), subscription.toString());
             if (metadata != null) {
                 remainingMessages += metadata.getNumMessagesInBatch();
                 if (!hasChunk && metadata.hasUuid()) {
@@ -723,7 +737,7 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
             }
 
             // round-robin dispatch batch size for this consumer
-            int availablePermits = c.isWritable() ? c.getAvailablePermits() : 1;
+            int availablePermits = c.isWritable() ? getDispatchablePermits(c) : 1;
             if (c.getMaxUnackedMessages() > 0) {
                 // Avoid negative number
                 int remainUnAckedMessages = Math.max(c.getMaxUnackedMessages() - c.getUnackedMessages(), 0);
@@ -955,7 +969,7 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
         }
         for (Consumer consumer : consumerList) {
             if (consumer != null && !consumer.isBlocked()) {
-                int availablePermits = consumer.getAvailablePermits();
+                int availablePermits = getDispatchablePermits(consumer);
                 if (availablePermits > 0) {
                     return availablePermits;
                 }
@@ -978,7 +992,7 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
 
     @Override
     public boolean isConsumerAvailable(Consumer consumer) {
-        return consumer != null && !consumer.isBlocked() && consumer.getAvailablePermits() > 0;
+        return consumer != null && !consumer.isBlocked() && getDispatchablePermits(consumer) > 0;
     }
 
     @Override
@@ -1126,8 +1140,8 @@ public class PersistentDispatcherMultipleConsumersClassic extends AbstractPersis
 
     @Override
     public boolean initializeDispatchRateLimiterIfNeeded() {
-        if (!dispatchRateLimiter.isPresent() && DispatchRateLimiter.isDispatchRateEnabled(
-                topic.getSubscriptionDispatchRate(getSubscriptionName()))) {
+        if (!dispatchRateLimiter.isPresent()
+                && DispatchRateLimiter.isSubscriptionDispatchRateLimiterRequired(topic, getSubscriptionName())) {
             this.dispatchRateLimiter =
                     Optional.of(topic.getBrokerService().getDispatchRateLimiterFactory()
                             .createSubscriptionDispatchRateLimiter(topic, getSubscriptionName()));
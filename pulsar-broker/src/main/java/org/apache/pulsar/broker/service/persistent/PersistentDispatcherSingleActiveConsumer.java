@@ -559,8 +559,8 @@ public class PersistentDispatcherSingleActiveConsumer extends AbstractDispatcher
 
     @Override
     public boolean initializeDispatchRateLimiterIfNeeded() {
-        if (!dispatchRateLimiter.isPresent() && DispatchRateLimiter.isDispatchRateEnabled(
-                topic.getSubscriptionDispatchRate(getSubscriptionName()))) {
+        if (!dispatchRateLimiter.isPresent()
+                && DispatchRateLimiter.isSubscriptionDispatchRateLimiterRequired(topic, getSubscriptionName())) {
             this.dispatchRateLimiter =
                     Optional.of(topic.getBrokerService().getDispatchRateLimiterFactory()
                             .createSubscriptionDispatchRateLimiter(topic, getSubscriptionName()));
@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -58,7 +59,6 @@ import org.apache.pulsar.client.api.Range;
 import org.apache.pulsar.common.api.proto.CommandSubscribe.SubType;
 import org.apache.pulsar.common.api.proto.KeySharedMeta;
 import org.apache.pulsar.common.api.proto.KeySharedMode;
-import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.FutureUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -420,7 +420,7 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
                 // replace the input entry with EntryAndMetadata instance. In addition to the entry and metadata,
                 // it will also carry the calculated sticky key hash
                 entry = EntryAndMetadata.create(inputEntry,
-                        Commands.peekAndCopyMessageMetadata(inputEntry.getDataBuffer(), getSubscriptionName(), -1));
+                        messageMetadataCache.getOrParse(inputEntry, getSubscriptionName()));
             }
             int stickyKeyHash = getStickyKeyHash(entry);
             Consumer consumer = null;
@@ -535,18 +535,32 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
         return new ReplayPositionFilter();
     }
 
+    /**
+     * Selects the messages to replay using the sticky key hash index of the redelivery messages when possible, so that
+     * the positions of the hashes that are blocked, for example behind a slow consumer, are not visited.
+     */
+    @Override
+    protected NavigableSet<Position> selectMessagesToReplayNow(int maxMessagesToRead) {
+        if (!isAllowOutOfOrderDelivery() && redeliveryMessages.canSelectByStickyKeyHash()) {
+            return redeliveryMessages.getMessagesToReplayNowByStickyKeyHash(maxMessagesToRead,
+                    new ReplayPositionFilter());
+        }
+        return super.selectMessagesToReplayNow(maxMessagesToRead);
+    }
+
     /**
      * Filter for replaying messages. The filter is stateful for a single invocation and shouldn't be cached, shared
      * or reused. This is a short-lived object, and optimizing it for the "no garbage" coding style of Pulsar is
      * unnecessary since the JVM can optimize allocations for short-lived objects.
      */
-    private class ReplayPositionFilter implements Predicate<Position> {
+    private class ReplayPositionFilter implements Predicate<Position>,
+            MessageRedeliveryController.StickyKeyHashReplayFilter {
         // tracks the available permits for each consumer for the duration of the filter usage
         // the filter is stateful and shouldn't be shared or reused later
         private final Map<Consumer, MutableInt> availablePermitsMap = new HashMap<>();
         // tracks the hashes that have been blocked during the filtering
         // it is necessary to block all later messages after a hash gets blocked so that ordering is preserved
-        private final Set<Long> alreadyBlockedHashes = new HashSet<>();
+        private final IntSet alreadyBlockedHashes = new IntOpenHashSet();
 
         @Override
         public boolean test(Position position) {
@@ -564,18 +578,37 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
                 }
                 return true;
             }
+            return tryReplay(stickyKeyHash.intValue());
+        }
+
+        @Override
+        public boolean canReplayHash(int stickyKeyHash) {
+            return getAvailablePermitsIfReplayable(stickyKeyHash) != null;
+        }
+
+        @Override
+        public boolean tryReplay(int stickyKeyHash) {
+            MutableInt availablePermits = getAvailablePermitsIfReplayable(stickyKeyHash);
+            if (availablePermits == null) {
+                return false;
+            }
+            availablePermits.decrement();
+            return true;
+        }
+
+        private MutableInt getAvailablePermitsIfReplayable(int stickyKeyHash) {
             // check if the hash is already blocked, if so, then replaying of the position should be skipped
             // to preserve ordering
             if (alreadyBlockedHashes.contains(stickyKeyHash)) {
-                return false;
+                return null;
             }
 
             // find the consumer for the sticky key hash
-            Consumer consumer = selector.select(stickyKeyHash.intValue());
+            Consumer consumer = selector.select(stickyKeyHash);
             // skip replaying the message position if there's no assigned consumer
             if (consumer == null) {
                 alreadyBlockedHashes.add(stickyKeyHash);
-                return false;
+                return null;
             }
 
             // lookup the available permits for the consumer
@@ -585,18 +618,16 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
             // skip replaying the message position if the consumer has no available permits
             if (availablePermits.intValue() <= 0) {
                 alreadyBlockedHashes.add(stickyKeyHash);
-                return false;
+                return null;
             }
 
             if (drainingHashesRequired
-                    && drainingHashesTracker.shouldBlockStickyKeyHash(consumer, stickyKeyHash.intValue())) {
+                    && drainingHashesTracker.shouldBlockStickyKeyHash(consumer, stickyKeyHash)) {
                 // the hash is draining and the consumer is not the draining consumer
                 alreadyBlockedHashes.add(stickyKeyHash);
-                return false;
+                return null;
             }
-
-            availablePermits.decrement();
-            return true;
+            return availablePermits;
         }
     }
 
@@ -641,7 +672,7 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
         if (!c.cnx().isActive()) {
             return 0;
         }
-        int availablePermits = Math.max(c.getAvailablePermits(), 0);
+        int availablePermits = Math.max(getDispatchablePermits(c), 0);
         if (availablePermits > 0 && c.getMaxUnackedMessages() > 0) {
             // Calculate the maximum number of additional unacked messages allowed
             int maxAdditionalUnackedMessages = Math.max(c.getMaxUnackedMessages() - c.getUnackedMessages(), 0);
@@ -512,7 +512,7 @@ public class PersistentStickyKeyDispatcherMultipleConsumersClassic
     }
 
     private int getAvailablePermits(Consumer c) {
-        int availablePermits = Math.max(c.getAvailablePermits(), 0);
+        int availablePermits = Math.max(getDispatchablePermits(c), 0);
         if (c.getMaxUnackedMessages() > 0) {
             // Avoid negative number
             int remainUnAckedMessages = Math.max(c.getMaxUnackedMessages() - c.getUnackedMessages(), 0);
@@ -584,7 +584,7 @@ public class PersistentStickyKeyDispatcherMultipleConsumersClassic
             if (recentlyJoinedConsumers.containsKey(consumer)) {
                 continue;
             }
-            if (consumer.getAvailablePermits() > 0) {
+            if (getDispatchablePermits(consumer) > 0) {
                 return true;
             }
         }
@@ -87,6 +87,7 @@ import org.apache.bookkeeper.mledger.PositionBound;
 import org.apache.bookkeeper.mledger.PositionFactory;
 import org.apache.bookkeeper.mledger.impl.ManagedCursorContainer;
 import org.apache.bookkeeper.mledger.impl.ManagedCursorContainer.CursorInfo;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
 import org.apache.bookkeeper.mledger.util.Futures;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -449,6 +450,11 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
         List<CompletableFuture<Void>> futures = new ArrayList<>();
         futures.add(brokerService.getPulsar().newTopicCompactionService(topic).thenAccept(service -> {
             PersistentTopic.this.topicCompactionService = service;
+            if (ledger instanceof ManagedLedgerImpl managedLedger) {
+                // The cursors recovered lazily are not returned by getCursors() yet, load their subscription once
+                // they are recovered
+                managedLedger.setLazyCursorRecoveryListener(this::onLazyCursorRecovered);
+            }
             this.createPersistentSubscriptions();
         }));
 
@@ -509,26 +515,47 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
 
     private void createPersistentSubscriptions() {
         for (ManagedCursor cursor : ledger.getCursors()) {
-                if (cursor.getName().equals(DEDUPLICATION_CURSOR_NAME)
-                        || cursor.getName().startsWith(replicatorPrefix)) {
-                    // This is not a regular subscription, we are going to
-                    // ignore it for now and let the message dedup logic to take care of it
-                } else {
-                    final String subscriptionName = Codec.decode(cursor.getName());
-                    Optional<Boolean> replicatedSubscriptionConfiguration =
-                            PersistentSubscription.getReplicatedSubscriptionConfiguration(cursor);
-                    Boolean replicated = replicatedSubscriptionConfiguration.orElse(null);
-                    subscriptions.put(subscriptionName,
-                            createPersistentSubscription(subscriptionName, cursor, replicated,
-                                    cursor.getCursorProperties()));
-                    // subscription-cursor gets activated by default: deactivate as there is no active subscription
-                    // right now
-                    subscriptions.get(subscriptionName).deactivateCursor();
-                }
+            loadPersistentSubscription(cursor);
         }
         checkReplicatedSubscriptionControllerState();
     }
 
+    private void onLazyCursorRecovered(ManagedCursor cursor) {
+        if (loadPersistentSubscription(cursor)) {
+            checkReplicatedSubscriptionControllerState();
+        }
+    }
+
+    /**
+     * Load the subscription of a durable cursor recovered by the managed ledger, unless it is already loaded.
+     *
+     * @return true if the subscription was loaded
+     */
+    private boolean loadPersistentSubscription(ManagedCursor cursor) {
+        if (cursor.getName().equals(DEDUPLICATION_CURSOR_NAME)
+                || cursor.getName().startsWith(replicatorPrefix)) {
+            // This is not a regular subscription, we are going to
+            // ignore it for now and let the message dedup logic to take care of it
+            return false;
+        }
+        final String subscriptionName = Codec.decode(cursor.getName());
+        if (subscriptions.containsKey(subscriptionName)) {
+            return false;
+        }
+        Optional<Boolean> replicatedSubscriptionConfiguration =
+                PersistentSubscription.getReplicatedSubscriptionConfiguration(cursor);
+        Boolean replicated = replicatedSubscriptionConfiguration.orElse(null);
+        PersistentSubscription subscription = createPersistentSubscription(subscriptionName, cursor, replicated,
+                cursor.getCursorProperties());
+        if (subscriptions.putIfAbsent(subscriptionName, subscription) != null) {
+            return false;
+        }
+        // subscription-cursor gets activated by default: deactivate as there is no active subscription
+        // right now
+        subscription.deactivateCursor();
+        return true;
+    }
+
     private CompletableFuture<Void> removeOrphanReplicationCursors() {
         List<CompletableFuture<Void>> futures = new ArrayList<>();
         List<String> replicationClusters = topicPolicies.getReplicationClusters().get();
@@ -544,6 +571,37 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
         return FutureUtil.waitForAll(futures);
     }
 
+    /**
+     * Whether the topic has a durable subscription whose cursor is still being recovered, or whose recovery is deferred
+     * until a consumer attaches to it, in which case the subscription is not loaded yet.
+     */
+    public boolean hasUnloadedSubscription(String subscriptionName) {
+        return !subscriptions.containsKey(subscriptionName)
+                && ledger instanceof ManagedLedgerImpl managedLedger
+                && managedLedger.isCursorRecovering(Codec.encode(subscriptionName));
+    }
+
+    /**
+     * @return the names of the durable subscriptions which are not loaded yet, see
+     *         {@link #hasUnloadedSubscription(String)}
+     */
+    public List<String> getUnloadedSubscriptionNames() {
+        if (!(ledger instanceof ManagedLedgerImpl managedLedger)) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        for (String cursorName : managedLedger.getRecoveringCursorNames()) {
+            if (cursorName.equals(DEDUPLICATION_CURSOR_NAME) || cursorName.startsWith(replicatorPrefix)) {
+                continue;
+            }
+            String subscriptionName = Codec.decode(cursorName);
+            if (!subscriptions.containsKey(subscriptionName)) {
+                names.add(subscriptionName);
+            }
+        }
+        return names;
+    }
+
     /**
      * Unload a subscriber.
      * @throws SubscriptionNotFoundException If subscription not founded.
@@ -1477,6 +1535,13 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
     private CompletableFuture<Void> delete(boolean failIfHasSubscriptions,
                                            boolean failIfHasBacklogs,
                                            boolean closeIfClientsConnected) {
+        if (!closeIfClientsConnected && (failIfHasSubscriptions || failIfHasBacklogs)
+                && ledger instanceof ManagedLedgerImpl managedLedger
+                && !getUnloadedSubscriptionNames().isEmpty()) {
+            // Load all the subscriptions so that they are checked before the deletion
+            return managedLedger.recoverDeferredCursors()
+                    .thenCompose(__ -> delete(failIfHasSubscriptions, failIfHasBacklogs, false));
+        }
 
         lock.writeLock().lock();
         try {
@@ -3008,11 +3073,12 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
     public boolean isActive(InactiveTopicDeleteMode deleteMode) {
         switch (deleteMode) {
             case delete_when_no_subscriptions:
-                if (!subscriptions.isEmpty()) {
+                if (!subscriptions.isEmpty() || !getUnloadedSubscriptionNames().isEmpty()) {
                     return true;
                 }
                 break;
             case delete_when_subscriptions_caught_up:
+                // The subscriptions which are not loaded yet are loaded and checked before deleting the topic
                 if (hasBacklogs(false)) {
                     return true;
                 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+import org.apache.pulsar.broker.service.Consumer;
+
+/**
+ * Plans the reads of a Shared subscription dispatcher so that all the entries of a read can be dispatched to the
+ * consumers in a single pass.
+ *
+ * <p>The permits of the consumers are counted in messages while the reads are counted in entries, and a consumer
+ * may not be able to use all its permits because of its unacknowledged messages limit. When the read is sized to the
+ * total permits, the entries that don't fit in the consumers are pushed back to the replay queue and read again
+ * later. The planner sizes the read to the sum of the entries that each consumer can receive, using the average
+ * number of messages per entry of the previous reads.
+ *
+ * <p>The planner isn't thread-safe and is used with the dispatcher lock held.
+ */
+public class SharedDispatchPlanner {
+    private static final double AVG_MESSAGES_PER_ENTRY_WEIGHT = 0.25;
+
+    private final SharedDispatchStats stats;
+    private double avgMessagesPerEntry = 1;
+    private long entriesPushedBackToReplay;
+
+    public SharedDispatchPlanner(SharedDispatchStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Record the number of messages of the entries that were read.
+     */
+    public void recordRead(int entries, int messages) {
+        if (entries > 0 && messages > 0) {
+            avgMessagesPerEntry += AVG_MESSAGES_PER_ENTRY_WEIGHT * ((double) messages / entries - avgMessagesPerEntry);
+        }
+    }
+
+    /**
+     * Record the entries of a read that were pushed back to the replay queue because no consumer could receive them.
+     */
+    public void recordPushedBackToReplay(int entries) {
+        entriesPushedBackToReplay += entries;
+        stats.entriesPushedBackToReplay.add(entries);
+    }
+
+    /**
+     * Get the number of entries that the consumers can receive.
+     *
+     * @param consumers the consumers of the dispatcher
+     * @param dispatchablePermits the permits that the dispatcher can use for a consumer
+     * @return the number of entries to read, or 0 if no consumer can receive entries
+     */
+    public int getEntriesToRead(List<Consumer> consumers, ToIntFunction<Consumer> dispatchablePermits) {
+        // the dispatcher converts the permits to entries with an integer average as well
+        int avgMessagesPerEntry = Math.max((int) Math.round(this.avgMessagesPerEntry), 1);
+        int entriesToRead = 0;
+        for (Consumer consumer : consumers) {
+            if (consumer == null || consumer.isBlocked() || !consumer.cnx().isActive()) {
+                continue;
+            }
+            int permits = dispatchablePermits.applyAsInt(consumer);
+            if (!consumer.isWritable()) {
+                // a single entry is dispatched to a consumer that isn't writable
+                permits = Math.min(permits, 1);
+            }
+            int maxUnackedMessages = consumer.getMaxUnackedMessages();
+            if (maxUnackedMessages > 0) {
+                permits = Math.min(permits, Math.max(maxUnackedMessages - consumer.getUnackedMessages(), 0));
+            }
+            if (permits > 0) {
+                entriesToRead += (permits + avgMessagesPerEntry - 1) / avgMessagesPerEntry;
+                if (entriesToRead < 0) {
+                    return Integer.MAX_VALUE;
+                }
+            }
+        }
+        return entriesToRead;
+    }
+
+    public double getAvgMessagesPerEntry() {
+        return avgMessagesPerEntry;
+    }
+
+    /**
+     * @return the number of entries of this dispatcher that were pushed back to the replay queue
+     */
+    public long getEntriesPushedBackToReplay() {
+        return entriesPushedBackToReplay;
+    }
+}
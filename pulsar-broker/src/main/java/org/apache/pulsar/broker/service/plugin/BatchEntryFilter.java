@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.plugin;
+
+/**
+ * An {@link EntryFilter} that filters the entries dispatched to a consumer in batches.
+ * <p>
+ * The broker calls {@link #filterEntries(FilterEntryBatch, FilterContext, FilterResults)} once for all the entries
+ * dispatched to a consumer instead of calling {@link #filterEntry} for each entry. The message metadata of an
+ * entry is resolved when a filter first accesses it, and its properties are decoded once for all the filters, so
+ * that a filter can evaluate a condition over many entries at once.
+ * <p>
+ * {@link #filterEntry} is still used when the broker filters a single entry.
+ */
+public interface BatchEntryFilter extends EntryFilter {
+
+    /**
+     * Filter a batch of entries.
+     * <p>
+     * {@code results} contains the results of the filters that ran before this filter. The result of an entry that
+     * isn't accepted by a previous filter can't be changed, so the filter may skip evaluating such entries. The
+     * entries whose result isn't set by the filter are accepted.
+     * <p>
+     * The batch and the results are only valid during the call. {@link FilterContext#getMsgMetadata()} is null,
+     * the metadata of each entry is available with {@link FilterEntryBatch#getMetadata(int)}.
+     *
+     * @param batch the entries to filter
+     * @param context the subscription and the consumer of the entries
+     * @param results the results of the entries
+     */
+    void filterEntries(FilterEntryBatch batch, FilterContext context, FilterResults results);
+}
@@ -34,6 +34,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pulsar.broker.ServiceConfiguration;
@@ -48,6 +49,10 @@ public class EntryFilterProvider implements AutoCloseable {
     @VisibleForTesting
     static final String ENTRY_FILTER_DEFINITION_FILE = "entry_filter";
 
+    // the entry filters shipped with the broker, which are loaded without a NAR package
+    private static final Map<String, Supplier<EntryFilter>> BUILTIN_ENTRY_FILTERS =
+            Map.of(PropertyExpressionEntryFilter.NAME, PropertyExpressionEntryFilter::new);
+
     private final ServiceConfiguration serviceConfiguration;
     @VisibleForTesting
     protected Map<String, EntryFilterMetaData> definitions;
@@ -77,7 +82,7 @@ public class EntryFilterProvider implements AutoCloseable {
         final List<String> entryFilterList = readEntryFiltersString(entryFilterNames);
         for (String filterName : entryFilterList) {
             EntryFilterMetaData metaData = definitions.get(filterName);
-            if (metaData == null) {
+            if (metaData == null && !BUILTIN_ENTRY_FILTERS.containsKey(filterName)) {
                 throw new InvalidEntryFilterException("Entry filter '" + filterName + "' not found");
             }
         }
@@ -105,6 +110,11 @@ public class EntryFilterProvider implements AutoCloseable {
         ImmutableMap.Builder<String, EntryFilter> builder = ImmutableMap.builder();
         for (String filterName : entryFilterNames) {
             EntryFilterMetaData metaData = definitions.get(filterName);
+            if (null == metaData && BUILTIN_ENTRY_FILTERS.containsKey(filterName)) {
+                builder.put(filterName, BUILTIN_ENTRY_FILTERS.get(filterName).get());
+                log.info("Successfully loaded built-in entry filter `{}`", filterName);
+                continue;
+            }
             if (null == metaData) {
                 throw new RuntimeException("No entry filter is found for name `" + filterName
                         + "`. Available entry filters are : " + definitions.keySet());
@@ -196,8 +206,11 @@ public class EntryFilterProvider implements AutoCloseable {
                 throw new IOException("Class " + def.getEntryFilterClass()
                         + " does not implement entry filter interface");
             }
-            EntryFilter pi = (EntryFilter) filter;
             // the classloader is shared with the broker, the instance doesn't own it
+            if (filter instanceof BatchEntryFilter batchEntryFilter) {
+                return new BatchEntryFilterWithClassLoader(batchEntryFilter, ncl, false);
+            }
+            EntryFilter pi = (EntryFilter) filter;
             return new EntryFilterWithClassLoader(pi, ncl, false);
         } catch (Throwable e) {
             if (e instanceof IOException) {
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.plugin;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.pulsar.broker.service.MessageMetadataCache;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A batch of entries passed to {@link BatchEntryFilter}, with the message metadata of each entry.
+ * <p>
+ * The metadata of an entry is only resolved the first time a filter accesses it, so that the entries already
+ * decided by the previous filters don't need their metadata. Likewise, the value of a message property is decoded
+ * for an entry the first time a filter accesses it with {@link #getPropertyValues(String)}, and the decoded values
+ * are shared by all the filters of the batch.
+ */
+public class FilterEntryBatch {
+    private final MessageMetadataCache messageMetadataCache;
+    private List<? extends Entry> entries;
+    private MessageMetadata[] metadataArray;
+    private int startOffset;
+    private String subscriptionName;
+    // the metadata resolved when no metadata array was passed to the batch
+    private MessageMetadata[] resolvedMetadata;
+    private final BitSet resolved = new BitSet();
+    private final Map<String, PropertyValues> propertyValues = new HashMap<>();
+
+    public FilterEntryBatch() {
+        this(new MessageMetadataCache());
+    }
+
+    /**
+     * @param messageMetadataCache the cache resolving the metadata of the entries when no metadata array is passed
+     */
+    public FilterEntryBatch(MessageMetadataCache messageMetadataCache) {
+        this.messageMetadataCache = messageMetadataCache;
+    }
+
+    /**
+     * Reset the batch to the given entries.
+     *
+     * @param entries the entries, which may contain null elements for entries that were already dispatched
+     * @param metadataArray the message metadata of the entries
+     * @param startOffset the index in {@code metadataArray} of the metadata of the first entry
+     */
+    public void reset(List<? extends Entry> entries, MessageMetadata[] metadataArray, int startOffset) {
+        reset(entries, metadataArray, startOffset, null);
+    }
+
+    /**
+     * Reset the batch to the given entries.
+     *
+     * @param entries the entries, which may contain null elements for entries that were already dispatched
+     * @param metadataArray the message metadata of the entries, or null to resolve the metadata of an entry when
+     *                      it is accessed
+     * @param startOffset the index in {@code metadataArray} of the metadata of the first entry
+     * @param subscriptionName the name of the subscription, used for logging the errors of parsing the metadata
+     */
+    public void reset(List<? extends Entry> entries, @Nullable MessageMetadata[] metadataArray, int startOffset,
+                      @Nullable String subscriptionName) {
+        this.entries = entries;
+        this.metadataArray = metadataArray;
+        this.startOffset = startOffset;
+        this.subscriptionName = subscriptionName;
+        if (metadataArray == null) {
+            if (resolvedMetadata == null || resolvedMetadata.length < entries.size()) {
+                resolvedMetadata = new MessageMetadata[entries.size()];
+            }
+            resolved.clear();
+        } else {
+            resolvedMetadata = null;
+        }
+        propertyValues.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Nullable
+    public Entry getEntry(int index) {
+        return entries.get(index);
+    }
+
+    /**
+     * @return the metadata of the entry, or null if the entry is null or its metadata cannot be parsed
+     */
+    @Nullable
+    public MessageMetadata getMetadata(int index) {
+        Entry entry = entries.get(index);
+        if (entry == null) {
+            return null;
+        }
+        if (metadataArray != null) {
+            return metadataArray[index + startOffset];
+        }
+        if (!resolved.get(index)) {
+            resolvedMetadata[index] = messageMetadataCache.getOrParse(entry, subscriptionName);
+            resolved.set(index);
+        }
+        return resolvedMetadata[index];
+    }
+
+    /**
+     * Get the values of a message property for all the entries of the batch.
+     *
+     * @param key the key of the property
+     * @return the value of the property of each entry, where entries without the property have a null value, or
+     *         null if no entry of the batch has the property
+     */
+    @Nullable
+    public String[] getPropertyColumn(String key) {
+        return getPropertyValues(key).toColumn();
+    }
+
+    /**
+     * Get the values of a message property, which are decoded for each entry when they are first accessed.
+     *
+     * @param key the key of the property
+     */
+    public PropertyValues getPropertyValues(String key) {
+        return propertyValues.computeIfAbsent(key, PropertyValues::new);
+    }
+
+    /**
+     * The values of a message property in the entries of a {@link FilterEntryBatch}.
+     */
+    public final class PropertyValues {
+        private static final Object UNDECODED = new Object();
+
+        private final String key;
+        private final Object[] values;
+        // the producers of a topic usually set the properties in the same order, so the property is first looked up
+        // at the position where it was found in the last decoded entry
+        private int positionHint;
+
+        private PropertyValues(String key) {
+            this.key = key;
+            this.values = new Object[size()];
+            Arrays.fill(values, UNDECODED);
+        }
+
+        /**
+         * @return the value of the property of the entry, or null if the entry doesn't have the property
+         */
+        @Nullable
+        public String get(int index) {
+            Object value = values[index];
+            if (value == UNDECODED) {
+                value = decode(index);
+                values[index] = value;
+            }
+            return (String) value;
+        }
+
+        private String decode(int index) {
+            MessageMetadata metadata = getMetadata(index);
+            if (metadata == null) {
+                return null;
+            }
+            int count = metadata.getPropertiesCount();
+            int position = positionHint < count && metadata.getPropertyAt(positionHint).getKey().equals(key)
+                    ? positionHint : indexOfProperty(metadata, count, key);
+            if (position < 0) {
+                return null;
+            }
+            positionHint = position;
+            return metadata.getPropertyAt(position).getValue();
+        }
+
+        private String[] toColumn() {
+            String[] column = new String[values.length];
+            boolean found = false;
+            for (int i = 0; i < values.length; i++) {
+                column[i] = get(i);
+                found |= column[i] != null;
+            }
+            return found ? column : null;
+        }
+    }
+
+    private static int indexOfProperty(MessageMetadata metadata, int count, String key) {
+        for (int j = 0; j < count; j++) {
+            if (metadata.getPropertyAt(j).getKey().equals(key)) {
+                return j;
+            }
+        }
+        return -1;
+    }
+}
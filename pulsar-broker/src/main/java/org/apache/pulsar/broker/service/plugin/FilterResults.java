@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.plugin;
+
+import java.util.BitSet;
+
+/**
+ * The results of filtering a {@link FilterEntryBatch}, stored as bitmaps of the rejected and rescheduled entries.
+ * The entries which are neither rejected nor rescheduled are accepted.
+ * <p>
+ * Like with {@link EntryFilter#filterEntry}, the first filter that doesn't accept an entry decides its result: the
+ * result of an entry which isn't accepted can't be changed.
+ */
+public class FilterResults {
+    private final BitSet rejected = new BitSet();
+    private final BitSet rescheduled = new BitSet();
+    private int size;
+
+    public void reset(int size) {
+        this.size = size;
+        rejected.clear();
+        rescheduled.clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public EntryFilter.FilterResult getResult(int index) {
+        if (rejected.get(index)) {
+            return EntryFilter.FilterResult.REJECT;
+        }
+        if (rescheduled.get(index)) {
+            return EntryFilter.FilterResult.RESCHEDULE;
+        }
+        return EntryFilter.FilterResult.ACCEPT;
+    }
+
+    public boolean isAccepted(int index) {
+        return !rejected.get(index) && !rescheduled.get(index);
+    }
+
+    /**
+     * Set the result of an entry if it is accepted. A null result is regarded as ACCEPT.
+     */
+    public void setResult(int index, EntryFilter.FilterResult result) {
+        checkIndex(index);
+        if (result == null || result == EntryFilter.FilterResult.ACCEPT || !isAccepted(index)) {
+            return;
+        }
+        if (result == EntryFilter.FilterResult.REJECT) {
+            rejected.set(index);
+        } else {
+            rescheduled.set(index);
+        }
+    }
+
+    /**
+     * Reject the accepted entries whose indexes are set in {@code indexes}.
+     */
+    public void rejectAll(BitSet indexes) {
+        setAll(indexes, rejected, rescheduled);
+    }
+
+    /**
+     * Reschedule the accepted entries whose indexes are set in {@code indexes}.
+     */
+    public void rescheduleAll(BitSet indexes) {
+        setAll(indexes, rescheduled, rejected);
+    }
+
+    private void setAll(BitSet indexes, BitSet target, BitSet other) {
+        if (indexes.length() > size) {
+            throw new IndexOutOfBoundsException("Index " + (indexes.length() - 1) + " out of bounds for size "
+                    + size);
+        }
+        BitSet accepted = (BitSet) indexes.clone();
+        accepted.andNot(other);
+        target.or(accepted);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+}
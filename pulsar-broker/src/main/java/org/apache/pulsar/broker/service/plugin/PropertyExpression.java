@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.plugin;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.apache.pulsar.common.api.proto.KeyValue;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+
+/**
+ * A boolean expression over the message properties, compiled into a tree of evaluators specialized for each
+ * operator. The expression can be evaluated for a single message with {@link #test(MessageMetadata)}, or for the
+ * entries of a {@link FilterEntryBatch} at once with {@link #evaluate(FilterEntryBatch, BitSet, BitSet)}, which
+ * combines the bitmaps of the matching entries. Like {@code &&} and {@code ||}, the batch evaluation short-circuits:
+ * the right operand of {@code AND} and {@code OR} is only evaluated for the entries whose result isn't decided by the
+ * left operand.
+ * <p>
+ * Grammar, where keywords are case-insensitive and values are single-quoted strings in which {@code ''} escapes a
+ * quote:
+ * <pre>
+ * expression := and ('OR' and)*
+ * and        := unary ('AND' unary)*
+ * unary      := 'NOT' unary | '(' expression ')' | 'EXISTS' key
+ *             | key '=' value | key '!=' value | key 'IN' '(' value (',' value)* ')'
+ * key        := [A-Za-z0-9_.-]+ | "double-quoted key"
+ * </pre>
+ * A comparison on a property that the message doesn't have is false, for example both {@code color = 'red'} and
+ * {@code color != 'red'} are false for a message without a {@code color} property.
+ */
+public abstract class PropertyExpression {
+
+    /**
+     * @return whether the message matches the expression
+     */
+    public abstract boolean test(MessageMetadata metadata);
+
+    /**
+     * Set the bits of the entries of the batch that match the expression. Entries without metadata don't match
+     * any expression.
+     *
+     * @param batch the batch to evaluate
+     * @param matches the bitmap to update, which must be empty
+     */
+    public void evaluate(FilterEntryBatch batch, BitSet matches) {
+        int size = batch.size();
+        BitSet candidates = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (batch.getEntry(i) != null) {
+                candidates.set(i);
+            }
+        }
+        evaluate(batch, candidates, matches);
+        // the metadata of the matching entries was already resolved by the evaluation
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            if (batch.getMetadata(i) == null) {
+                matches.clear(i);
+            }
+        }
+    }
+
+    /**
+     * Set the bits of the candidate entries of the batch that match the expression. The other entries are not
+     * evaluated.
+     *
+     * @param batch the batch to evaluate
+     * @param candidates the entries to evaluate, where entries without metadata are evaluated as messages without
+     *                   properties
+     * @param matches the bitmap to update, which must be empty
+     */
+    public abstract void evaluate(FilterEntryBatch batch, BitSet candidates, BitSet matches);
+
+    /**
+     * Compile an expression.
+     *
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static PropertyExpression compile(String expression) {
+        Parser parser = new Parser(expression);
+        PropertyExpression compiled = parser.parseExpression();
+        if (parser.peek() != null) {
+            throw parser.error("Unexpected token '" + parser.peek() + "'");
+        }
+        return compiled;
+    }
+
+    private static String getProperty(MessageMetadata metadata, String key) {
+        for (int i = 0, count = metadata.getPropertiesCount(); i < count; i++) {
+            KeyValue property = metadata.getPropertyAt(i);
+            if (property.getKey().equals(key)) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A condition on the value of a single property.
+     */
+    private abstract static class PropertyCondition extends PropertyExpression {
+        protected final String key;
+
+        PropertyCondition(String key) {
+            this.key = key;
+        }
+
+        abstract boolean matches(String value);
+
+        @Override
+        public boolean test(MessageMetadata metadata) {
+            String value = getProperty(metadata, key);
+            return value != null && matches(value);
+        }
+
+        @Override
+        public void evaluate(FilterEntryBatch batch, BitSet candidates, BitSet matches) {
+            FilterEntryBatch.PropertyValues values = batch.getPropertyValues(key);
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                String value = values.get(i);
+                if (value != null && matches(value)) {
+                    matches.set(i);
+                }
+            }
+        }
+    }
+
+    private static final class Exists extends PropertyCondition {
+        Exists(String key) {
+            super(key);
+        }
+
+        @Override
+        boolean matches(String value) {
+            return true;
+        }
+    }
+
+    private static final class Equals extends PropertyCondition {
+        private final String expected;
+
+        Equals(String key, String expected) {
+            super(key);
+            this.expected = expected;
+        }
+
+        @Override
+        boolean matches(String value) {
+            return expected.equals(value);
+        }
+    }
+
+    private static final class NotEquals extends PropertyCondition {
+        private final String unexpected;
+
+        NotEquals(String key, String unexpected) {
+            super(key);
+            this.unexpected = unexpected;
+        }
+
+        @Override
+        boolean matches(String value) {
+            return !unexpected.equals(value);
+        }
+    }
+
+    private static final class In extends PropertyCondition {
+        private final Set<String> expected;
+
+        In(String key, Set<String> expected) {
+            super(key);
+            this.expected = expected;
+        }
+
+        @Override
+        boolean matches(String value) {
+            return expected.contains(value);
+        }
+    }
+
+    private static final class And extends PropertyExpression {
+        private final PropertyExpression left;
+        private final PropertyExpression right;
+
+        And(PropertyExpression left, PropertyExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(MessageMetadata metadata) {
+            return left.test(metadata) && right.test(metadata);
+        }
+
+        @Override
+        public void evaluate(FilterEntryBatch batch, BitSet candidates, BitSet matches) {
+            BitSet leftMatches = new BitSet(batch.size());
+            left.evaluate(batch, candidates, leftMatches);
+            // the entries which don't match the left operand don't match the expression
+            if (!leftMatches.isEmpty()) {
+                right.evaluate(batch, leftMatches, matches);
+            }
+        }
+    }
+
+    private static final class Or extends PropertyExpression {
+        private final PropertyExpression left;
+        private final PropertyExpression right;
+
+        Or(PropertyExpression left, PropertyExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(MessageMetadata metadata) {
+            return left.test(metadata) || right.test(metadata);
+        }
+
+        @Override
+        public void evaluate(FilterEntryBatch batch, BitSet candidates, BitSet matches) {
+            left.evaluate(batch, candidates, matches);
+            // the entries which match the left operand match the expression
+            BitSet undecided = (BitSet) candidates.clone();
+            undecided.andNot(matches);
+            if (!undecided.isEmpty()) {
+                right.evaluate(batch, undecided, matches);
+            }
+        }
+    }
+
+    private static final class Not extends PropertyExpression {
+        private final PropertyExpression expression;
+
+        Not(PropertyExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public boolean test(MessageMetadata metadata) {
+            return !expression.test(metadata);
+        }
+
+        @Override
+        public void evaluate(FilterEntryBatch batch, BitSet candidates, BitSet matches) {
+            BitSet expressionMatches = new BitSet(batch.size());
+            expression.evaluate(batch, candidates, expressionMatches);
+            matches.or(candidates);
+            matches.andNot(expressionMatches);
+        }
+    }
+
+    private static final class Parser {
+        private final String expression;
+        private final List<String> tokens;
+        private int position;
+
+        Parser(String expression) {
+            this.expression = expression;
+            this.tokens = tokenize(expression);
+        }
+
+        String peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        private String next() {
+            String token = peek();
+            if (token == null) {
+                throw error("Unexpected end of expression");
+            }
+            position++;
+            return token;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            String token = peek();
+            if (token != null && !isQuoted(token) && token.toUpperCase(Locale.ROOT).equals(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String expected) {
+            String token = next();
+            if (!token.equals(expected)) {
+                throw error("Expected '" + expected + "' but found '" + token + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in expression: " + expression);
+        }
+
+        PropertyExpression parseExpression() {
+            PropertyExpression expression = parseAnd();
+            while (acceptKeyword("OR")) {
+                expression = new Or(expression, parseAnd());
+            }
+            return expression;
+        }
+
+        private PropertyExpression parseAnd() {
+            PropertyExpression expression = parseUnary();
+            while (acceptKeyword("AND")) {
+                expression = new And(expression, parseUnary());
+            }
+            return expression;
+        }
+
+        private PropertyExpression parseUnary() {
+            if (acceptKeyword("NOT")) {
+                return new Not(parseUnary());
+            }
+            if ("(".equals(peek())) {
+                position++;
+                PropertyExpression expression = parseExpression();
+                expect(")");
+                return expression;
+            }
+            if (acceptKeyword("EXISTS")) {
+                return new Exists(parseKey());
+            }
+            String key = parseKey();
+            String operator = next();
+            if (operator.equals("=")) {
+                return new Equals(key, parseValue());
+            } else if (operator.equals("!=")) {
+                return new NotEquals(key, parseValue());
+            } else if (!isQuoted(operator) && operator.toUpperCase(Locale.ROOT).equals("IN")) {
+                expect("(");
+                Set<String> values = new HashSet<>();
+                values.add(parseValue());
+                while (",".equals(peek())) {
+                    position++;
+                    values.add(parseValue());
+                }
+                expect(")");
+                return new In(key, values);
+            }
+            throw error("Unknown operator '" + operator + "'");
+        }
+
+        private String parseKey() {
+            String token = next();
+            if (token.startsWith("\"")) {
+                return token.substring(1, token.length() - 1);
+            }
+            if (token.startsWith("'") || isSymbol(token.charAt(0))) {
+                throw error("Expected a property key but found '" + token + "'");
+            }
+            return token;
+        }
+
+        private String parseValue() {
+            String token = next();
+            if (!token.startsWith("'")) {
+                throw error("Expected a quoted value but found '" + token + "'");
+            }
+            return token.substring(1, token.length() - 1).replace("''", "'");
+        }
+
+        private static boolean isQuoted(String token) {
+            return token.startsWith("'") || token.startsWith("\"");
+        }
+
+        private static boolean isSymbol(char c) {
+            return c == '(' || c == ')' || c == ',' || c == '=' || c == '!';
+        }
+
+        private List<String> tokenize(String expression) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            int length = expression.length();
+            while (i < length) {
+                char c = expression.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')' || c == ',' || c == '=') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (c == '!') {
+                    if (i + 1 >= length || expression.charAt(i + 1) != '=') {
+                        throw error("Unexpected character '!'");
+                    }
+                    tokens.add("!=");
+                    i += 2;
+                } else if (c == '\'' || c == '"') {
+                    int end = i + 1;
+                    while (true) {
+                        if (end >= length) {
+                            throw error("Unterminated quoted string");
+                        }
+                        if (expression.charAt(end) == c) {
+                            // a doubled single quote is an escaped quote in a value
+                            if (c == '\'' && end + 1 < length && expression.charAt(end + 1) == '\'') {
+                                end += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        end++;
+                    }
+                    tokens.add(expression.substring(i, end + 1));
+                    i = end + 1;
+                } else if (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-') {
+                    int end = i + 1;
+                    while (end < length && (Character.isLetterOrDigit(expression.charAt(end))
+                            || expression.charAt(end) == '_' || expression.charAt(end) == '.'
+                            || expression.charAt(end) == '-')) {
+                        end++;
+                    }
+                    tokens.add(expression.substring(i, end));
+                    i = end;
+                } else {
+                    throw error("Unexpected character '" + c + "'");
+                }
+            }
+            if (tokens.isEmpty()) {
+                throw error("Empty expression");
+            }
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.plugin;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pulsar.broker.service.Subscription;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+
+/**
+ * A built-in entry filter that delivers the messages whose properties match the {@link PropertyExpression} set in
+ * the {@value #EXPRESSION_SUBSCRIPTION_PROPERTY} subscription property, and rejects the other messages. The messages
+ * of subscriptions without the property are accepted.
+ * <p>
+ * It is enabled by adding {@value #NAME} to the entry filter names of the broker or of a topic, and it doesn't need
+ * a NAR package in the entry filters directory.
+ */
+@Slf4j
+public class PropertyExpressionEntryFilter implements BatchEntryFilter {
+    public static final String NAME = "property-expression";
+    public static final String EXPRESSION_SUBSCRIPTION_PROPERTY = "entryFilterPropertyExpression";
+    private static final int MAX_COMPILED_EXPRESSIONS = 1000;
+
+    // invalid expressions are cached as empty values so that they are only compiled and logged once
+    private final Map<String, Optional<PropertyExpression>> compiledExpressions = new ConcurrentHashMap<>();
+
+    @Override
+    public FilterResult filterEntry(Entry entry, FilterContext context) {
+        PropertyExpression expression = getExpression(context);
+        MessageMetadata metadata = context.getMsgMetadata();
+        if (expression == null || metadata == null || expression.test(metadata)) {
+            return FilterResult.ACCEPT;
+        }
+        return FilterResult.REJECT;
+    }
+
+    @Override
+    public void filterEntries(FilterEntryBatch batch, FilterContext context, FilterResults results) {
+        PropertyExpression expression = getExpression(context);
+        if (expression == null) {
+            return;
+        }
+        // the entries already decided by the previous filters are not evaluated, and the metadata of the other
+        // entries is only resolved when the expression reads their properties
+        int size = batch.size();
+        BitSet candidates = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (results.isAccepted(i) && batch.getEntry(i) != null) {
+                candidates.set(i);
+            }
+        }
+        BitSet matches = new BitSet(size);
+        expression.evaluate(batch, candidates, matches);
+        candidates.andNot(matches);
+        // the entries whose metadata can't be parsed are accepted, as by filterEntry
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (batch.getMetadata(i) == null) {
+                candidates.clear(i);
+            }
+        }
+        results.rejectAll(candidates);
+    }
+
+    private PropertyExpression getExpression(FilterContext context) {
+        Subscription subscription = context.getSubscription();
+        if (subscription == null) {
+            return null;
+        }
+        Map<String, String> subscriptionProperties = subscription.getSubscriptionProperties();
+        String expression = subscriptionProperties == null ? null
+                : subscriptionProperties.get(EXPRESSION_SUBSCRIPTION_PROPERTY);
+        if (StringUtils.isBlank(expression)) {
+            return null;
+        }
+        Optional<PropertyExpression> compiled = compiledExpressions.get(expression);
+        if (compiled == null) {
+            if (compiledExpressions.size() >= MAX_COMPILED_EXPRESSIONS) {
+                compiledExpressions.clear();
+            }
+            compiled = compiledExpressions.computeIfAbsent(expression, __ -> compile(subscription, expression));
+        }
+        return compiled.orElse(null);
+    }
+
+    private static Optional<PropertyExpression> compile(Subscription subscription, String expression) {
+        try {
+            return Optional.of(PropertyExpression.compile(expression));
+        } catch (IllegalArgumentException e) {
+            log.warn("[{}] Ignoring invalid {} subscription property: {}", subscription.getName(),
+                    EXPRESSION_SUBSCRIPTION_PROPERTY, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void close() {
+        compiledExpressions.clear();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.stats;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.ObservableLongCounter;
+import java.util.function.ToLongFunction;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.broker.service.MessageMetadataCache;
+
+public class OpenTelemetryMessageMetadataCacheStats implements AutoCloseable {
+
+    public static final AttributeKey<String> METADATA_PARSE_RESULT =
+            AttributeKey.stringKey("pulsar.dispatch.metadata.parse.result");
+    public enum MetadataParseResult {
+        PARSED,
+        REUSED;
+        private final Attributes attributes = Attributes.of(METADATA_PARSE_RESULT, name().toLowerCase());
+    }
+
+    public static final String METADATA_PARSE_COUNTER = "pulsar.broker.dispatch.metadata.parse.count";
+    private final ObservableLongCounter metadataParseCounter;
+
+    public OpenTelemetryMessageMetadataCacheStats(PulsarService pulsar) {
+        var meter = pulsar.getOpenTelemetry().getMeter();
+        metadataParseCounter = meter.counterBuilder(METADATA_PARSE_COUNTER)
+                .setUnit("{entry}")
+                .setDescription("The number of entries whose message metadata was parsed for dispatching, or reused "
+                        + "from a previous parsing of the same entry")
+                .buildWithCallback(measurement -> {
+                    measurement.record(getStat(pulsar, MessageMetadataCache::getParsedCount),
+                            MetadataParseResult.PARSED.attributes);
+                    measurement.record(getStat(pulsar, MessageMetadataCache::getReusedCount),
+                            MetadataParseResult.REUSED.attributes);
+                });
+    }
+
+    private static long getStat(PulsarService pulsar, ToLongFunction<MessageMetadataCache> stat) {
+        // the broker service is created after the metrics are registered
+        var brokerService = pulsar.getBrokerService();
+        return brokerService != null ? stat.applyAsLong(brokerService.getMessageMetadataCache()) : 0;
+    }
+
+    @Override
+    public void close() {
+        metadataParseCounter.close();
+    }
+}
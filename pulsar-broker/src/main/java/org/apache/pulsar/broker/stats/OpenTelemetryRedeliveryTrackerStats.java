@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.stats;
+
+import io.opentelemetry.api.metrics.ObservableLongCounter;
+import io.opentelemetry.api.metrics.ObservableLongUpDownCounter;
+import java.util.function.ToLongFunction;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.broker.service.RedeliveryTrackerStats;
+
+public class OpenTelemetryRedeliveryTrackerStats implements AutoCloseable {
+
+    public static final String TRACKED_ENTRY_COUNTER = "pulsar.broker.dispatch.redelivery.tracker.entry.count";
+    private final ObservableLongUpDownCounter trackedEntryCounter;
+
+    public static final String OVERFLOW_COUNTER = "pulsar.broker.dispatch.redelivery.tracker.overflow.count";
+    private final ObservableLongCounter overflowCounter;
+
+    public static final String SKETCH_SIZE_COUNTER = "pulsar.broker.dispatch.redelivery.tracker.sketch.size";
+    private final ObservableLongUpDownCounter sketchSizeCounter;
+
+    public OpenTelemetryRedeliveryTrackerStats(PulsarService pulsar) {
+        var meter = pulsar.getOpenTelemetry().getMeter();
+        trackedEntryCounter = meter.upDownCounterBuilder(TRACKED_ENTRY_COUNTER)
+                .setUnit("{entry}")
+                .setDescription("The number of entries whose redelivery count is tracked exactly by the bounded "
+                        + "subscription redelivery trackers")
+                .buildWithCallback(measurement ->
+                        measurement.record(getStat(pulsar, RedeliveryTrackerStats::getTrackedEntries)));
+        overflowCounter = meter.counterBuilder(OVERFLOW_COUNTER)
+                .setUnit("{redelivery}")
+                .setDescription("The number of redeliveries that were counted approximately because the bounded "
+                        + "subscription redelivery trackers were full")
+                .buildWithCallback(measurement ->
+                        measurement.record(getStat(pulsar, RedeliveryTrackerStats::getOverflowIncrements)));
+        sketchSizeCounter = meter.upDownCounterBuilder(SKETCH_SIZE_COUNTER)
+                .setUnit("By")
+                .setDescription("The memory used to count the redeliveries approximately by the bounded subscription "
+                        + "redelivery trackers")
+                .buildWithCallback(measurement ->
+                        measurement.record(getStat(pulsar, RedeliveryTrackerStats::getSketchSizeBytes)));
+    }
+
+    private static long getStat(PulsarService pulsar, ToLongFunction<RedeliveryTrackerStats> stat) {
+        // the broker service is created after the metrics are registered
+        var brokerService = pulsar.getBrokerService();
+        return brokerService != null ? stat.applyAsLong(brokerService.getRedeliveryTrackerStats()) : 0;
+    }
+
+    @Override
+    public void close() {
+        trackedEntryCounter.close();
+        overflowCounter.close();
+        sketchSizeCounter.close();
+    }
+}
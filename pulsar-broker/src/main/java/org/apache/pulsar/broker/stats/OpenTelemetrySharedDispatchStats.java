@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.stats;
+
+import io.opentelemetry.api.metrics.ObservableLongCounter;
+import org.apache.pulsar.broker.PulsarService;
+
+public class OpenTelemetrySharedDispatchStats implements AutoCloseable {
+
+    public static final String REPLAY_PUSH_BACK_COUNTER = "pulsar.broker.dispatch.shared.replay.push.back.count";
+    private final ObservableLongCounter replayPushBackCounter;
+
+    public OpenTelemetrySharedDispatchStats(PulsarService pulsar) {
+        var meter = pulsar.getOpenTelemetry().getMeter();
+        replayPushBackCounter = meter.counterBuilder(REPLAY_PUSH_BACK_COUNTER)
+                .setUnit("{entry}")
+                .setDescription("The number of entries read by the Shared subscription dispatchers that were pushed "
+                        + "back to the replay queue because no consumer could receive them")
+                .buildWithCallback(measurement -> {
+                    // the broker service is created after the metrics are registered
+                    var brokerService = pulsar.getBrokerService();
+                    if (brokerService != null) {
+                        measurement.record(brokerService.getSharedDispatchStats().getEntriesPushedBackToReplay());
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        replayPushBackCounter.close();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.stats;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.common.stats.MetricsUtil;
+
+public class OpenTelemetryTopicLoadStats implements AutoCloseable {
+
+    public static final AttributeKey<String> TOPIC_LOAD_PHASE = AttributeKey.stringKey("pulsar.topic.load.phase");
+    public enum TopicLoadPhase {
+        LEDGER_OPEN,
+        CURSOR_RECOVERY,
+        DEDUP_RECOVERY;
+        private final Attributes attributes = Attributes.of(TOPIC_LOAD_PHASE, name().toLowerCase());
+    }
+
+    public static final String TOPIC_LOAD_DURATION_METRIC_NAME = "pulsar.broker.topic.load.duration";
+    private final DoubleHistogram topicLoadDuration;
+    // a synchronous instrument can't be unregistered, so the durations are no longer recorded once closed
+    private volatile boolean closed;
+
+    public OpenTelemetryTopicLoadStats(PulsarService pulsar) {
+        var meter = pulsar.getOpenTelemetry().getMeter();
+        topicLoadDuration = meter.histogramBuilder(TOPIC_LOAD_DURATION_METRIC_NAME)
+                .setDescription("Time taken by each phase of the load of a persistent topic")
+                .setUnit("s")
+                .build();
+    }
+
+    public void recordPhaseDuration(TopicLoadPhase phase, long durationNanos) {
+        if (closed) {
+            return;
+        }
+        topicLoadDuration.record(MetricsUtil.convertToSeconds(durationNanos, TimeUnit.NANOSECONDS),
+                phase.attributes);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -94,7 +94,7 @@ public class ConcurrentBitmapSortedLongPairSet {
                 } else {
                     RoaringBitmap bitSet = firstEntry.getValue();
                     if (bitSet != null) {
-                        bitsCleared |= bitSet.contains(0, item2);
+                        bitsCleared |= bitSet.intersects(0, item2);
                         bitSet.remove(0, item2);
                         if (bitSet.isEmpty()) {
                             map.remove(firstEntry.getKey(), bitSet);
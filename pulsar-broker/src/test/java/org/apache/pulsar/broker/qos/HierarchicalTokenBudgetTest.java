@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.qos;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class HierarchicalTokenBudgetTest {
+    private static final long GRANT_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private AtomicLong manualClockSource;
+    private MonotonicClock clockSource;
+
+    @BeforeMethod
+    public void setup() {
+        manualClockSource = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        clockSource = () -> manualClockSource.get();
+    }
+
+    private AsyncTokenBucket createBucket(long rate) {
+        return AsyncTokenBucket.builder().rate(rate).capacity(rate).initialTokens(rate).clock(clockSource).build();
+    }
+
+    @Test
+    void shouldGrantTokensOfMostRestrictiveLevel() {
+        AsyncTokenBucket subscription = createBucket(1000);
+        AsyncTokenBucket topic = createBucket(500);
+        HierarchicalTokenBudget budget = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+
+        // 100ms of the topic rate
+        assertEquals(budget.grantTokens(subscription, topic, null), 50);
+        assertEquals(budget.getThrottlingLevel(), -1);
+        assertEquals(subscription.getTokens(), 950);
+        assertEquals(topic.getTokens(), 450);
+
+        // the granted tokens are consumed without accessing the levels
+        budget.consumeTokens(30);
+        assertEquals(budget.grantTokens(subscription, topic, null), 20);
+        assertEquals(topic.getTokens(), 450);
+    }
+
+    @Test
+    void shouldChargeDebtWithNextGrant() {
+        AsyncTokenBucket topic = createBucket(100);
+        HierarchicalTokenBudget budget = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+
+        assertEquals(budget.grantTokens(topic), 10);
+        budget.consumeTokens(25);
+        assertEquals(budget.getTokens(), -15);
+        // the new grant covers the debt of 15 tokens
+        assertEquals(budget.grantTokens(topic), 10);
+        assertEquals(topic.getTokens(), 65);
+    }
+
+    @Test
+    void shouldReportThrottlingLevel() {
+        AsyncTokenBucket subscription = createBucket(1000);
+        AsyncTokenBucket topic = createBucket(100);
+        HierarchicalTokenBudget budget = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+
+        topic.consumeTokens(100);
+        assertEquals(budget.grantTokens(subscription, topic), 0);
+        assertEquals(budget.getThrottlingLevel(), 1);
+        assertEquals(subscription.getTokens(), 1000);
+
+        manualClockSource.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(budget.grantTokens(subscription, topic), 10);
+        assertEquals(budget.getThrottlingLevel(), -1);
+    }
+
+    @Test
+    void shouldNotLimitWithoutLimitedLevels() {
+        HierarchicalTokenBudget budget = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+        budget.consumeTokens(100);
+        assertEquals(budget.grantTokens(null, null), -1);
+        // the tokens consumed without limit aren't charged when a level gets limited
+        assertEquals(budget.getTokens(), 0);
+        AsyncTokenBucket topic = createBucket(100);
+        assertEquals(budget.grantTokens(null, topic), 10);
+        assertEquals(topic.getTokens(), 90);
+    }
+
+    @Test
+    void shouldShareTokensByWeight() {
+        // grants are sized by the rate and the burst capacity holds 5 grants of both budgets
+        AsyncTokenBucket topic = AsyncTokenBucket.builder().rate(1000).capacity(2000).initialTokens(2000)
+                .clock(clockSource).build();
+        HierarchicalTokenBudget light = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+        HierarchicalTokenBudget heavy = new HierarchicalTokenBudget(3, GRANT_PERIOD_NANOS);
+        long lightTokens = 0;
+        long heavyTokens = 0;
+        // both budgets use their tokens until the topic has no tokens
+        while (topic.getTokens() > 0) {
+            long tokens = light.grantTokens(topic);
+            light.consumeTokens(tokens);
+            lightTokens += tokens;
+            tokens = heavy.grantTokens(topic);
+            heavy.consumeTokens(tokens);
+            heavyTokens += tokens;
+        }
+        assertEquals(lightTokens, 500);
+        assertEquals(heavyTokens, 1500);
+    }
+
+    @Test
+    void shouldApplyUpdatedWeightOnNextGrant() {
+        AsyncTokenBucket topic = createBucket(1000);
+        HierarchicalTokenBudget budget = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+        assertEquals(budget.grantTokens(topic), 100);
+
+        budget.setWeight(2);
+        assertEquals(budget.getWeight(), 2);
+        // the tokens already granted are not affected
+        assertEquals(budget.grantTokens(topic), 100);
+        budget.consumeTokens(100);
+        assertEquals(budget.grantTokens(topic), 200);
+        assertThrows(IllegalArgumentException.class, () -> budget.setWeight(0));
+    }
+
+    @Test
+    void shouldUseTokensOfIdleBudgets() {
+        AsyncTokenBucket topic = createBucket(1000);
+        HierarchicalTokenBudget active = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+        HierarchicalTokenBudget idle = new HierarchicalTokenBudget(1, GRANT_PERIOD_NANOS);
+        assertEquals(idle.grantTokens(topic), 100);
+        long activeTokens = 0;
+        int grants = 0;
+        for (long tokens = active.grantTokens(topic); tokens > 0; tokens = active.grantTokens(topic)) {
+            active.consumeTokens(tokens);
+            activeTokens += tokens;
+            grants++;
+        }
+        // only the tokens granted to the idle budget are unavailable
+        assertEquals(activeTokens, 900);
+        assertEquals(grants, 9);
+        assertTrue(active.getThrottlingLevel() == 0);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class AdaptiveConsumerPermitsTest {
+    private static final long WINDOW_NANOS = AdaptiveConsumerPermits.SAMPLE_WINDOW_NANOS;
+
+    @Test
+    public void testMinInFlightMessages() {
+        AdaptiveConsumerPermits permits = new AdaptiveConsumerPermits(1000, 100, 0, 0);
+        assertEquals(permits.getDispatchablePermits(1000, 0, 0), 100);
+        assertEquals(permits.getDispatchablePermits(1000, 40, 0), 60);
+        assertEquals(permits.getDispatchablePermits(50, 40, 0), 50);
+        assertEquals(permits.getDispatchablePermits(0, 0, 0), 0);
+        assertFalse(permits.isBlocked());
+    }
+
+    @Test
+    public void testPermitsFollowAckRate() {
+        AdaptiveConsumerPermits permits = new AdaptiveConsumerPermits(1000, 100, 0, 0);
+        // 1000 messages acked in 100ms
+        assertFalse(permits.recordAcked(1000, 0, WINDOW_NANOS));
+        assertEquals(permits.getAckRate(), 10_000.0);
+        // the consumer can acknowledge 10000 messages within the target latency
+        assertEquals(permits.getDispatchablePermits(100_000, 2000, WINDOW_NANOS), 8000);
+        assertEquals(permits.getEstimatedAckLatencyMillis(2000), 200.0);
+
+        // the ack rate decreases gradually when the consumer slows down
+        permits.recordAcked(100, 0, 2 * WINDOW_NANOS);
+        assertEquals(permits.getAckRate(), 10_000 * 0.75 + 1000 * 0.25);
+        permits.recordAcked(0, 0, 10 * WINDOW_NANOS);
+        assertTrue(permits.getAckRate() < 8000);
+    }
+
+    @Test
+    public void testBlockedUntilAcked() {
+        AdaptiveConsumerPermits permits = new AdaptiveConsumerPermits(1000, 100, 0, 0);
+        assertEquals(permits.getDispatchablePermits(1000, 100, 0), 0);
+        assertTrue(permits.isBlocked());
+        // the dispatcher should be triggered once the consumer has permits again
+        assertTrue(permits.recordAcked(10, 90, 1));
+        assertFalse(permits.isBlocked());
+        assertFalse(permits.recordAcked(10, 80, 2));
+    }
+
+    @Test
+    public void testMaxInFlightBytes() {
+        AdaptiveConsumerPermits permits = new AdaptiveConsumerPermits(1000, 100, 10_000, 0);
+        permits.recordDispatched(10, 10_000);
+        assertEquals(permits.getAvgMessageSize(), 1000.0);
+        assertEquals(permits.getDispatchablePermits(1000, 0, 0), 10);
+        assertEquals(permits.getDispatchablePermits(1000, 10, 0), 0);
+        // a message is always allowed when there is nothing in flight
+        permits.recordDispatched(1, 100_000);
+        assertEquals(permits.getDispatchablePermits(1000, 0, 0), 1);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConsumerPermits(0, 100, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConsumerPermits(1000, 0, 0, 0));
+    }
+
+    @Test
+    public void testSampleWindow() {
+        AdaptiveConsumerPermits permits = new AdaptiveConsumerPermits(1000, 100, 0, 0);
+        permits.recordAcked(500, 0, TimeUnit.MILLISECONDS.toNanos(50));
+        // the rate isn't sampled before the window ends
+        assertEquals(permits.getAckRate(), 0.0);
+        permits.recordAcked(500, 0, TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(permits.getAckRate(), 5000.0);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.testng.annotations.Test;
+
+public class BoundedRedeliveryTrackerTest {
+
+    @Test
+    public void testExactCounts() {
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(10, new RedeliveryTrackerStats());
+        Position position1 = PositionFactory.create(1, 1);
+        Position position2 = PositionFactory.create(1, 2);
+        assertEquals(tracker.incrementAndGetRedeliveryCount(position1), 1);
+        assertEquals(tracker.incrementAndGetRedeliveryCount(position1), 2);
+        assertEquals(tracker.incrementAndGetRedeliveryCount(position2), 1);
+        assertEquals(tracker.getRedeliveryCount(1, 1), 2);
+        assertEquals(tracker.getRedeliveryCount(1, 2), 1);
+        assertEquals(tracker.getRedeliveryCount(1, 3), 0);
+        assertEquals(tracker.getTrackedEntries(), 2);
+
+        tracker.remove(position1);
+        assertEquals(tracker.getRedeliveryCount(1, 1), 0);
+        assertEquals(tracker.getTrackedEntries(), 1);
+        // removing an untracked entry doesn't change the number of tracked entries
+        tracker.remove(position1);
+        tracker.removeBatch(List.of(position2, PositionFactory.create(2, 1)));
+        assertEquals(tracker.getTrackedEntries(), 0);
+        assertFalse(tracker.isOverflowed());
+    }
+
+    @Test
+    public void testOverflowNeverUnderestimates() {
+        int maxTrackedEntries = 100;
+        RedeliveryTrackerStats stats = new RedeliveryTrackerStats();
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(maxTrackedEntries, stats);
+        int entries = 300;
+        for (int round = 1; round <= 3; round++) {
+            for (int i = 0; i < entries; i++) {
+                int count = tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, i));
+                assertTrue(count >= round, "entry " + i + " count " + count + " round " + round);
+            }
+        }
+        assertTrue(tracker.isOverflowed());
+        assertEquals(tracker.getTrackedEntries(), maxTrackedEntries);
+        assertEquals(stats.getTrackedEntries(), maxTrackedEntries);
+        assertEquals(stats.getOverflowIncrements(), 3L * (entries - maxTrackedEntries));
+        for (int i = 0; i < entries; i++) {
+            int count = tracker.getRedeliveryCount(1, i);
+            if (i < maxTrackedEntries) {
+                assertEquals(count, 3);
+            } else {
+                assertTrue(count >= 3, "entry " + i + " count " + count);
+            }
+        }
+        assertTrue(stats.getSketchSizeBytes() > 0);
+
+        tracker.clear();
+        assertFalse(tracker.isOverflowed());
+        assertEquals(tracker.getTrackedEntries(), 0);
+        assertEquals(stats.getTrackedEntries(), 0);
+        assertEquals(stats.getSketchSizeBytes(), 0);
+        assertEquals(tracker.getRedeliveryCount(1, 0), 0);
+        assertEquals(tracker.getRedeliveryCount(1, entries - 1), 0);
+    }
+
+    @Test
+    public void testUnseenEntriesWhileOverflowed() {
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(1, new RedeliveryTrackerStats());
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 0));
+        for (int i = 1; i <= 200; i++) {
+            tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, i));
+        }
+        // entry ids beyond the int range are not truncated
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, (1L << 32) + 1));
+        assertTrue(tracker.isOverflowed());
+        // the entries that were never redelivered are not estimated from the sketch
+        for (int i = 201; i <= 2000; i++) {
+            assertEquals(tracker.getRedeliveryCount(1, i), 0);
+            assertEquals(tracker.getRedeliveryCount(2, i), 0);
+        }
+        assertTrue(tracker.getRedeliveryCount(1, (1L << 32) + 1) >= 1);
+        assertEquals(tracker.getRedeliveryCount(1, (1L << 32) + 2), 0);
+        // nor are the sketched entries once they are acknowledged
+        tracker.remove(PositionFactory.create(1, 100));
+        assertEquals(tracker.getRedeliveryCount(1, 100), 0);
+        assertTrue(tracker.getRedeliveryCount(1, 101) >= 1);
+    }
+
+    @Test
+    public void testSketchedEntriesAreBounded() {
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(1, new RedeliveryTrackerStats());
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 0));
+        // the sketch has 4 rows of 64 counters, so at most 256 sketched entries are remembered
+        for (int i = 1; i <= 256; i++) {
+            tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, i));
+        }
+        assertEquals(tracker.getRedeliveryCount(2, 1), 0);
+        assertEquals(tracker.getSketchedEntries(), 256);
+
+        // beyond that, the older generation of 128 sketched entries is forgotten and reported with a count of 0
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 257));
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(2, 1));
+        assertEquals(tracker.getSketchedEntries(), 130);
+        for (int i = 1; i <= 128; i++) {
+            assertEquals(tracker.getRedeliveryCount(1, i), 0, "entry " + i);
+        }
+        for (int i = 129; i <= 257; i++) {
+            assertTrue(tracker.getRedeliveryCount(1, i) >= 1, "entry " + i);
+        }
+        assertTrue(tracker.getRedeliveryCount(2, 1) >= 1);
+        assertEquals(tracker.getRedeliveryCount(1, 0), 1);
+
+        tracker.clear();
+        assertEquals(tracker.getRedeliveryCount(1, 1), 0);
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 0));
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 1));
+        assertEquals(tracker.getSketchedEntries(), 1);
+        assertEquals(tracker.getRedeliveryCount(2, 1), 0);
+    }
+
+    @Test
+    public void testFreshEntriesAfterSketchedEntriesEviction() {
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(1, new RedeliveryTrackerStats());
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 0));
+        // redeliver many more entries than the sketched entries can remember, several times each
+        for (int round = 0; round < 3; round++) {
+            for (int i = 1; i <= 1000; i++) {
+                tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, i));
+            }
+        }
+        assertTrue(tracker.getSketchedEntries() <= 256);
+        // the entries read for the first time are not estimated from the saturated sketch
+        for (int i = 1001; i <= 5000; i++) {
+            assertEquals(tracker.getRedeliveryCount(1, i), 0, "entry " + i);
+            assertEquals(tracker.getRedeliveryCount(2, i), 0, "entry " + i);
+        }
+        // nor are the forgotten entries, while the recently redelivered ones are still counted
+        assertEquals(tracker.getRedeliveryCount(1, 1), 0);
+        assertTrue(tracker.getRedeliveryCount(1, 1000) >= 1);
+    }
+
+    @Test
+    public void testSketchedEntryRedeliveredAgainIsRemembered() {
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(1, new RedeliveryTrackerStats());
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 0));
+        Position nacked = PositionFactory.create(1, 1);
+        tracker.incrementAndGetRedeliveryCount(nacked);
+        for (int i = 2; i <= 1000; i++) {
+            tracker.incrementAndGetRedeliveryCount(PositionFactory.create(2, i));
+            if (i % 100 == 0) {
+                // redelivered again before its generation is forgotten
+                tracker.incrementAndGetRedeliveryCount(nacked);
+            }
+        }
+        assertTrue(tracker.getRedeliveryCount(1, 1) >= 1);
+    }
+
+    @Test
+    public void testSketchedEntryMovedToExactCounts() {
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(1, new RedeliveryTrackerStats());
+        Position tracked = PositionFactory.create(1, 1);
+        Position sketched = PositionFactory.create(1, 2);
+        tracker.incrementAndGetRedeliveryCount(tracked);
+        tracker.incrementAndGetRedeliveryCount(sketched);
+        int estimated = tracker.incrementAndGetRedeliveryCount(sketched);
+        assertTrue(estimated >= 2);
+
+        // once there is room for the entry, it keeps counting from its estimated count
+        tracker.remove(tracked);
+        assertEquals(tracker.incrementAndGetRedeliveryCount(sketched), estimated + 1);
+        assertEquals(tracker.getTrackedEntries(), 1);
+        assertEquals(tracker.getRedeliveryCount(1, 2), estimated + 1);
+    }
+
+    @Test
+    public void testSketchAging() {
+        BoundedRedeliveryTracker tracker = new BoundedRedeliveryTracker(1, new RedeliveryTrackerStats());
+        tracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, 0));
+        List<Position> positions = new ArrayList<>();
+        for (int i = 1; i <= 64; i++) {
+            positions.add(PositionFactory.create(2, i));
+        }
+        Position nacked = PositionFactory.create(3, 1);
+        for (int i = 0; i < 10; i++) {
+            tracker.incrementAndGetRedeliveryCount(nacked);
+        }
+        assertTrue(tracker.getRedeliveryCount(3, 1) >= 10);
+        // the counts are halved after 8 * width increments in the sketch
+        for (int i = 0; i < 8; i++) {
+            for (Position position : positions) {
+                tracker.incrementAndGetRedeliveryCount(position);
+            }
+        }
+        assertTrue(tracker.getRedeliveryCount(3, 1) >= 1);
+        assertTrue(tracker.getRedeliveryCount(3, 1) < 10);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.policies.data.InactiveTopicDeleteMode;
+import org.apache.pulsar.common.policies.data.InactiveTopicPolicies;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class CursorRecoveryOnDemandTest extends ProducerConsumerBase {
+
+    @Override
+    @BeforeClass
+    protected void setup() throws Exception {
+        conf.setLazyCursorRecovery(true);
+        conf.setCursorRecoveryOnDemand(true);
+        conf.setAllowAutoSubscriptionCreation(false);
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @Override
+    @AfterClass(alwaysRun = true)
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test
+    public void testTopicLoadWithSubscriptions() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testTopicLoadWithSubscriptions").toString();
+        admin.topics().createSubscription(topic, "sub-1", MessageId.earliest);
+        admin.topics().createSubscription(topic, "sub-2", MessageId.latest);
+        @Cleanup
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).create();
+        producer.send("message".getBytes());
+
+        admin.topics().unload(topic);
+        PersistentTopic persistentTopic =
+                (PersistentTopic) pulsar.getBrokerService().getTopic(topic, false).get().get();
+
+        // The subscriptions are not loaded with the topic since their cursors are not opened by consumers, but they
+        // are still listed and keep the topic active
+        assertTrue(persistentTopic.getSubscriptions().isEmpty());
+        assertTrue(persistentTopic.hasUnloadedSubscription("sub-1"));
+        assertEquals(Set.copyOf(persistentTopic.getUnloadedSubscriptionNames()), Set.of("sub-1", "sub-2"));
+        assertEquals(Set.copyOf(admin.topics().getSubscriptions(topic)), Set.of("sub-1", "sub-2"));
+        assertTrue(persistentTopic.isActive(InactiveTopicDeleteMode.delete_when_no_subscriptions));
+
+        // The cursor is recovered when a consumer attaches, although the subscriptions can't be created on demand
+        @Cleanup
+        Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topic).subscriptionName("sub-1").subscribe();
+        Message<byte[]> message = consumer.receive(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals(message.getValue(), "message".getBytes());
+        assertEquals(persistentTopic.getSubscriptions().keySet(), Set.of("sub-1"));
+        assertTrue(persistentTopic.hasUnloadedSubscription("sub-2"));
+
+        // The subscription is loaded when its cursor is recovered for another reason than a consumer attaching
+        ((ManagedLedgerImpl) persistentTopic.getManagedLedger()).recoverDeferredCursors().get();
+        assertEquals(persistentTopic.getSubscriptions().keySet(), Set.of("sub-1", "sub-2"));
+        assertFalse(persistentTopic.hasUnloadedSubscription("sub-2"));
+        assertTrue(persistentTopic.getUnloadedSubscriptionNames().isEmpty());
+    }
+
+    @Test
+    public void testInactiveTopicWithUnloadedSubscriptions() throws Exception {
+        final String topic = TopicName.get("public/default/testInactiveTopicWithUnloadedSubscriptions").toString();
+        admin.topics().createSubscription(topic, "sub-1", MessageId.earliest);
+        @Cleanup
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).create();
+        producer.send("message".getBytes());
+        producer.close();
+
+        admin.namespaces().setInactiveTopicPolicies("public/default",
+                new InactiveTopicPolicies(InactiveTopicDeleteMode.delete_when_subscriptions_caught_up, 1, true));
+        admin.topics().unload(topic);
+        PersistentTopic persistentTopic =
+                (PersistentTopic) pulsar.getBrokerService().getTopic(topic, false).get().get();
+        Awaitility.await().until(() -> persistentTopic.getInactiveTopicPolicies().getInactiveTopicDeleteMode()
+                == InactiveTopicDeleteMode.delete_when_subscriptions_caught_up);
+        assertTrue(persistentTopic.hasUnloadedSubscription("sub-1"));
+
+        // The subscription is loaded before checking the backlog, so the topic is not deleted
+        Awaitility.await().untilAsserted(() -> {
+            persistentTopic.checkGC();
+            assertTrue(persistentTopic.getSubscriptions().containsKey("sub-1"));
+        });
+        persistentTopic.checkGC();
+        assertTrue(admin.topics().getList("public/default").contains(topic));
+        admin.namespaces().removeInactiveTopicPolicies("public/default");
+    }
+
+    @Test
+    public void testTopicDeleteWithSubscriptions() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testTopicDeleteWithSubscriptions").toString();
+        admin.topics().createSubscription(topic, "sub-1", MessageId.earliest);
+        admin.topics().unload(topic);
+        pulsar.getBrokerService().getTopic(topic, false).get().get();
+
+        admin.topics().delete(topic);
+        String cursorPath = "/managed-ledgers/" + TopicName.get(topic).getPersistenceNamingEncoding() + "/sub-1";
+        assertFalse(pulsar.getLocalMetadataStore().exists(cursorPath).join());
+    }
+}
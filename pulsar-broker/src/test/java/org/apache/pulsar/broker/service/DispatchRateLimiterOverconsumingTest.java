@@ -38,6 +38,7 @@ import lombok.Cleanup;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryAsyncTokenBucket;
 import org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryClassic;
+import org.apache.pulsar.broker.service.persistent.DispatchRateLimiterFactoryHierarchical;
 import org.apache.pulsar.client.api.Consumer;
 import org.apache.pulsar.client.api.Message;
 import org.apache.pulsar.client.api.MessageListener;
@@ -57,7 +58,8 @@ import org.testng.annotations.Test;
 public class DispatchRateLimiterOverconsumingTest extends BrokerTestBase implements ITest {
     public enum DispatchRateLimiterImplType {
         PIP322(DispatchRateLimiterFactoryAsyncTokenBucket.class.getName()),
-        Classic(DispatchRateLimiterFactoryClassic.class.getName());
+        Classic(DispatchRateLimiterFactoryClassic.class.getName()),
+        Hierarchical(DispatchRateLimiterFactoryHierarchical.class.getName());
 
         private final String factoryClassName;
 
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.apache.pulsar.broker.stats.BrokerOpenTelemetryTestUtil.assertMetricLongSumValue;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DispatchSchedulerTest {
+
+    private InMemoryMetricReader metricReader;
+    private SdkMeterProvider meterProvider;
+
+    @BeforeMethod
+    public void setup() {
+        metricReader = InMemoryMetricReader.create();
+        meterProvider = SdkMeterProvider.builder().registerMetricReader(metricReader).build();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup() {
+        meterProvider.close();
+    }
+
+    private DispatchScheduler newScheduler(int numThreads, int maxEntriesPerTurn, long maxBytesPerTurn) {
+        return new DispatchScheduler(numThreads, maxEntriesPerTurn, maxBytesPerTurn, meterProvider.get("test"));
+    }
+
+    @Test
+    public void testTasksOfLaneAreExecutedInOrder() throws Exception {
+        DispatchScheduler scheduler = newScheduler(4, 10, Long.MAX_VALUE);
+        List<List<Integer>> executed = new ArrayList<>();
+        List<DispatchScheduler.Lane> lanes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            executed.add(Collections.synchronizedList(new ArrayList<>()));
+            lanes.add(scheduler.newLane());
+        }
+        int tasksPerLane = 1000;
+        for (int n = 0; n < tasksPerLane; n++) {
+            for (int i = 0; i < lanes.size(); i++) {
+                int laneIndex = i;
+                int taskIndex = n;
+                lanes.get(i).execute(() -> executed.get(laneIndex).add(taskIndex), 1, 0);
+            }
+        }
+
+        Awaitility.await().untilAsserted(() -> assertEquals(scheduler.getPendingTasks(), 0));
+        for (List<Integer> laneTasks : executed) {
+            Awaitility.await().untilAsserted(() -> assertEquals(laneTasks.size(), tasksPerLane));
+            for (int n = 0; n < tasksPerLane; n++) {
+                assertEquals(laneTasks.get(n).intValue(), n);
+            }
+        }
+        scheduler.close();
+        assertTrue(scheduler.getExecutor().awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBlockedLaneDoesNotStallOtherLanes() throws Exception {
+        DispatchScheduler scheduler = newScheduler(2, 10, Long.MAX_VALUE);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch otherLaneDone = new CountDownLatch(10);
+        DispatchScheduler.Lane hotLane = scheduler.newLane();
+        hotLane.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            DispatchScheduler.Lane lane = scheduler.newLane();
+            lane.execute(otherLaneDone::countDown);
+        }
+        assertTrue(otherLaneDone.await(10, TimeUnit.SECONDS));
+        blocked.countDown();
+        scheduler.close();
+    }
+
+    @Test
+    public void testLaneYieldsAfterQuantum() throws Exception {
+        DispatchScheduler scheduler = newScheduler(1, 10, 1000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // occupy the single thread, so that the tasks of both lanes are queued before running
+        scheduler.newLane().execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        DispatchScheduler.Lane busyLane = scheduler.newLane();
+        DispatchScheduler.Lane otherLane = scheduler.newLane();
+        for (int i = 0; i < 5; i++) {
+            busyLane.execute(() -> executed.add("busy"), 5, 0);
+        }
+        otherLane.execute(() -> executed.add("other"), 1, 0);
+        release.countDown();
+
+        Awaitility.await().untilAsserted(() -> assertEquals(executed.size(), 6));
+        // the busy lane used its quantum of 10 entries after 2 tasks and let the other lane run
+        assertThat(executed.indexOf("other")).isLessThan(5);
+        assertThat(scheduler.getYieldCount()).isGreaterThan(0);
+        assertMetricLongSumValue(metricReader.collectAllMetrics(), DispatchScheduler.YIELD_COUNTER_METRIC_NAME,
+                Attributes.empty(), actual -> assertThat(actual).isGreaterThan(0));
+        assertThat(metricReader.collectAllMetrics())
+                .anySatisfy(metric -> assertThat(metric.getName())
+                        .isEqualTo(DispatchScheduler.QUEUE_DURATION_METRIC_NAME));
+        scheduler.close();
+    }
+
+    @Test
+    public void testLaneKeepsRunningWhenYieldIsRejected() throws Exception {
+        DispatchScheduler scheduler = newScheduler(1, 1, Long.MAX_VALUE);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DispatchScheduler.Lane lane = scheduler.newLane();
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch executed = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            lane.execute(executed::countDown);
+        }
+        // the pool rejects the turns queued after the shutdown, the lane continues its turn instead of yielding
+        scheduler.close();
+        release.countDown();
+        assertTrue(executed.await(10, TimeUnit.SECONDS));
+        assertEquals(scheduler.getYieldCount(), 0);
+        assertEquals(scheduler.getPendingTasks(), 0);
+    }
+}
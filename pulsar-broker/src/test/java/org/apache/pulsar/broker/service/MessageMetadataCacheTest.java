@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.testng.annotations.Test;
+
+public class MessageMetadataCacheTest {
+
+    @Test
+    public void testMetadataParsedOnceForCopiesOfEntry() {
+        ByteBuf data = createMessage("msg", 1);
+        EntryImpl cachedEntry = EntryImpl.create(1, 1, data);
+        data.release();
+        EntryImpl copy1 = EntryImpl.create(cachedEntry);
+        EntryImpl copy2 = EntryImpl.create(cachedEntry);
+
+        MessageMetadataCache messageMetadataCache = new MessageMetadataCache();
+        MessageMetadata metadata = messageMetadataCache.getOrParse(copy1, "sub1");
+        assertNotNull(metadata);
+        assertEquals(metadata.getSequenceId(), 1);
+        assertEquals(metadata.getProducerName(), "testProducer");
+        assertSame(messageMetadataCache.getOrParse(copy2, "sub2"), metadata);
+        assertSame(messageMetadataCache.getOrParse(cachedEntry, "sub3"), metadata);
+
+        assertEquals(messageMetadataCache.getParsedCount(), 1);
+        assertEquals(messageMetadataCache.getReusedCount(), 2);
+
+        // the payload is left untouched by the parsing
+        assertEquals(copy2.getDataBuffer().readerIndex(), 0);
+
+        copy1.release();
+        copy2.release();
+        cachedEntry.release();
+    }
+
+    @Test
+    public void testEntryAndMetadataIsNotParsed() {
+        ByteBuf data = createMessage("msg", 2);
+        EntryImpl entry = EntryImpl.create(1, 2, data);
+        data.release();
+        MessageMetadata metadata = new MessageMetadata().setSequenceId(3);
+        EntryAndMetadata entryAndMetadata = EntryAndMetadata.create(entry, metadata);
+
+        MessageMetadataCache messageMetadataCache = new MessageMetadataCache();
+        assertSame(messageMetadataCache.getOrParse(entryAndMetadata, "sub"), metadata);
+        assertEquals(messageMetadataCache.getParsedCount(), 0);
+        entryAndMetadata.release();
+    }
+
+    private static ByteBuf createMessage(String message, int sequenceId) {
+        MessageMetadata messageMetadata = new MessageMetadata()
+                .setSequenceId(sequenceId)
+                .setProducerName("testProducer")
+                .setPublishTime(System.currentTimeMillis());
+        return Commands.serializeMetadataAndPayload(Commands.ChecksumType.Crc32c, messageMetadata,
+                Unpooled.copiedBuffer(message.getBytes(UTF_8)));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.apache.commons.lang3.tuple.Pair;
+import org.testng.annotations.Test;
+
+public class PendingAcksStoreTest {
+
+    @Test
+    public void putGetAndRemove() {
+        PendingAcksStore store = new PendingAcksStore();
+        store.put(1L, 2L, 3, 4);
+        store.put(1L, 1L, 1, -1);
+
+        assertEquals(store.size(), 2);
+        assertEquals(store.get(1L, 2L), PendingAcksStore.pack(3, 4));
+        assertEquals(PendingAcksStore.batchSize(store.get(1L, 1L)), 1);
+        assertEquals(PendingAcksStore.stickyKeyHash(store.get(1L, 1L)), -1);
+        assertEquals(store.get(1L, 3L), PendingAcksStore.NOT_FOUND);
+        assertEquals(store.get(2L, 1L), PendingAcksStore.NOT_FOUND);
+
+        // replace an existing pending ack
+        store.put(1L, 2L, 5, 6);
+        assertEquals(store.size(), 2);
+        assertEquals(store.get(1L, 2L), PendingAcksStore.pack(5, 6));
+
+        assertEquals(store.remove(1L, 2L), PendingAcksStore.pack(5, 6));
+        assertEquals(store.remove(1L, 2L), PendingAcksStore.NOT_FOUND);
+        assertFalse(store.contains(1L, 2L));
+        assertTrue(store.contains(1L, 1L));
+        assertEquals(store.size(), 1);
+    }
+
+    @Test
+    public void removeAllUpToAcrossLedgers() {
+        PendingAcksStore store = new PendingAcksStore();
+        for (long ledgerId = 3; ledgerId >= 1; ledgerId--) {
+            for (long entryId = 0; entryId < 100; entryId++) {
+                store.put(ledgerId, entryId, 1, (int) entryId);
+            }
+        }
+        store.remove(2L, 60L);
+
+        assertTrue(store.hasAnyUpTo(1L, 0L));
+        List<Pair<Long, Long>> removed = new ArrayList<>();
+        store.removeAllUpTo(2L, 60L, (ledgerId, entryId, batchSize, stickyKeyHash) -> {
+            removed.add(Pair.of(ledgerId, entryId));
+        });
+
+        assertEquals(removed.size(), 160);
+        assertEquals(removed.get(0), Pair.of(1L, 0L));
+        assertEquals(removed.get(159), Pair.of(2L, 59L));
+        assertEquals(store.size(), 139);
+        assertFalse(store.hasAnyUpTo(2L, 60L));
+        assertTrue(store.hasAnyUpTo(2L, 61L));
+        List<Pair<Long, Long>> remaining = new ArrayList<>();
+        store.forEach((ledgerId, entryId, batchSize, stickyKeyHash) -> remaining.add(Pair.of(ledgerId, entryId)));
+        assertEquals(remaining.size(), 139);
+        assertEquals(remaining.get(0), Pair.of(2L, 61L));
+    }
+
+    @Test
+    public void randomOperationsMatchSortedMap() {
+        PendingAcksStore store = new PendingAcksStore();
+        TreeMap<Pair<Long, Long>, Long> expected = new TreeMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long ledgerId = random.nextInt(4);
+            long entryId = random.nextInt(2000);
+            switch (random.nextInt(5)) {
+                case 0, 1 -> {
+                    int batchSize = random.nextInt(10) + 1;
+                    int stickyKeyHash = random.nextInt();
+                    store.put(ledgerId, entryId, batchSize, stickyKeyHash);
+                    expected.put(Pair.of(ledgerId, entryId), PendingAcksStore.pack(batchSize, stickyKeyHash));
+                }
+                case 2, 3 -> {
+                    Long removed = expected.remove(Pair.of(ledgerId, entryId));
+                    assertEquals(store.remove(ledgerId, entryId),
+                            removed == null ? PendingAcksStore.NOT_FOUND : removed.longValue());
+                }
+                default -> {
+                    entryId = random.nextInt(100);
+                    List<Pair<Long, Long>> removed = new ArrayList<>();
+                    store.removeAllUpTo(ledgerId, entryId, (l, e, batchSize, stickyKeyHash) -> {
+                        removed.add(Pair.of(l, e));
+                    });
+                    var expectedRemoved = expected.headMap(Pair.of(ledgerId, entryId), true);
+                    assertEquals(removed, new ArrayList<>(expectedRemoved.keySet()));
+                    expectedRemoved.clear();
+                }
+            }
+            assertEquals(store.size(), expected.size());
+        }
+        List<Pair<Long, Long>> remaining = new ArrayList<>();
+        store.forEach((ledgerId, entryId, batchSize, stickyKeyHash) -> {
+            remaining.add(Pair.of(ledgerId, entryId));
+            assertEquals(PendingAcksStore.pack(batchSize, stickyKeyHash),
+                    expected.get(Pair.of(ledgerId, entryId)).longValue());
+        });
+        assertEquals(remaining, new ArrayList<>(expected.keySet()));
+    }
+}
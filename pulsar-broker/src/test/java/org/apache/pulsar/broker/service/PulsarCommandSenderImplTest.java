@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.PositionFactory;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.api.proto.ProtocolVersion;
+import org.apache.pulsar.common.protocol.ByteBufPair;
+import org.apache.pulsar.common.protocol.Commands;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class PulsarCommandSenderImplTest {
+
+    @Test
+    public void testZeroCopyWriteProducesSameFrames() {
+        byte[] expected = sendMessages(false);
+        byte[] actual = sendMessages(true);
+        assertTrue(expected.length > 0);
+        assertEquals(actual, expected);
+    }
+
+    private static byte[] sendMessages(boolean zeroCopyWriteEnabled) {
+        EmbeddedChannel channel = new EmbeddedChannel(ByteBufPair.ENCODER, new ChannelInboundHandlerAdapter());
+        ServiceConfiguration config = new ServiceConfiguration();
+        config.setDispatcherZeroCopyWriteEnabled(zeroCopyWriteEnabled);
+        ServerCnx cnx = mock(ServerCnx.class, RETURNS_DEEP_STUBS);
+        when(cnx.ctx()).thenReturn(channel.pipeline().lastContext());
+        when(cnx.getRemoteEndpointProtocolVersion()).thenReturn(ProtocolVersion.v21.getValue());
+        when(cnx.getBrokerService().getPulsar().getConfig()).thenReturn(config);
+        doCallRealMethod().when(cnx).newMessageAndIntercept(anyLong(), anyLong(), anyLong(), anyInt(), anyInt(),
+                any(), any(), anyString(), anyLong());
+
+        int numEntries = 10;
+        List<Entry> entries = new ArrayList<>();
+        EntryBatchSizes batchSizes = EntryBatchSizes.get(numEntries);
+        EntryBatchIndexesAcks batchIndexesAcks = EntryBatchIndexesAcks.get(numEntries);
+        InMemoryRedeliveryTracker redeliveryTracker = new InMemoryRedeliveryTracker();
+        for (int i = 0; i < numEntries; i++) {
+            MessageMetadata metadata = new MessageMetadata()
+                    .setProducerName("producer")
+                    .setSequenceId(i)
+                    .setPublishTime(i);
+            ByteBuf metadataAndPayload = Commands.serializeMetadataAndPayload(Commands.ChecksumType.Crc32c,
+                    metadata, Unpooled.wrappedBuffer(("message-" + i).getBytes()));
+            entries.add(i == 3 ? null : EntryImpl.create(1, i, metadataAndPayload));
+            metadataAndPayload.release();
+            batchSizes.setBatchSize(i, 1);
+            if (i % 2 == 0) {
+                batchIndexesAcks.setIndexesAcks(i, Pair.of(1, new long[] {i}));
+                redeliveryTracker.incrementAndGetRedeliveryCount(PositionFactory.create(1, i));
+            }
+        }
+
+        ChannelPromise promise = new PulsarCommandSenderImpl(null, cnx).sendMessagesToConsumer(1, "topic",
+                mock(Subscription.class), 2, entries, batchSizes, batchIndexesAcks, redeliveryTracker, 3);
+        channel.runPendingTasks();
+        assertTrue(promise.isSuccess());
+
+        ByteBuf written = Unpooled.buffer();
+        for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+            ByteBuf buf = (ByteBuf) msg;
+            written.writeBytes(buf);
+            buf.release();
+        }
+        for (Entry entry : entries) {
+            if (entry != null) {
+                assertEquals(((EntryImpl) entry).refCnt(), 0);
+            }
+        }
+        channel.finishAndReleaseAll();
+        return ByteBufUtil.getBytes(written);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.broker.BrokerTestUtil;
+import org.apache.pulsar.broker.service.DispatchScheduler;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-api")
+public class DispatchSchedulerDispatcherTest extends ProducerConsumerBase {
+
+    @BeforeClass(alwaysRun = true)
+    @Override
+    protected void setup() throws Exception {
+        conf.setDispatcherSchedulerEnabled(true);
+        conf.setDispatcherSchedulerThreadNum(2);
+        conf.setDispatcherSchedulerMaxEntriesPerTurn(10);
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @DataProvider
+    public Object[][] subscriptionTypes() {
+        return new Object[][]{{SubscriptionType.Shared}, {SubscriptionType.Key_Shared}};
+    }
+
+    @Test(timeOut = 30 * 1000, dataProvider = "subscriptionTypes")
+    public void testDispatchOnDispatchScheduler(SubscriptionType subscriptionType) throws Exception {
+        final String topicName = BrokerTestUtil.newUniqueName("persistent://public/default/tp");
+        final String subscription = "s1";
+        final int numMessages = 200;
+
+        @Cleanup
+        Consumer<String> consumer1 = pulsarClient.newConsumer(Schema.STRING).topic(topicName)
+                .subscriptionName(subscription).subscriptionType(subscriptionType).subscribe();
+        @Cleanup
+        Consumer<String> consumer2 = pulsarClient.newConsumer(Schema.STRING).topic(topicName)
+                .subscriptionName(subscription).subscriptionType(subscriptionType).subscribe();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topicName)
+                .enableBatching(false).create();
+        for (int i = 0; i < numMessages; i++) {
+            producer.newMessage().key("key-" + (i % 10)).value("message-" + i).sendAsync();
+        }
+        producer.flush();
+
+        PersistentDispatcherMultipleConsumers dispatcher = (PersistentDispatcherMultipleConsumers) pulsar
+                .getBrokerService().getTopic(topicName, false).join().get()
+                .getSubscription(subscription).getDispatcher();
+        assertTrue(dispatcher.dispatchMessagesThread instanceof DispatchScheduler.Lane);
+        // the reads are capped to the quantum of the lane
+        assertTrue(dispatcher.calculateToRead(1000).getLeft() <= 10);
+
+        Set<String> received = new HashSet<>();
+        for (Consumer<String> consumer : new Consumer[]{consumer1, consumer2}) {
+            Message<String> message;
+            while ((message = consumer.receive(1, TimeUnit.SECONDS)) != null) {
+                received.add(message.getValue());
+                consumer.acknowledge(message);
+            }
+        }
+        assertEquals(received.size(), numMessages);
+    }
+}
@@ -25,6 +25,8 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import org.apache.bookkeeper.mledger.Position;
@@ -241,4 +243,70 @@ public class MessageRedeliveryControllerTest {
             assertEquals(actual2, expected2);
         }
     }
+
+    @Test(timeOut = 10000)
+    public void testGetMessagesToReplayNowByStickyKeyHash() {
+        MessageRedeliveryController controller = new MessageRedeliveryController(false);
+        Random random = new Random(1);
+        int numHashes = 500;
+        for (int i = 0; i < 5000; i++) {
+            controller.add(1 + random.nextInt(3), random.nextInt(2000), 1 + random.nextInt(numHashes));
+        }
+        controller.remove(2, 100);
+        controller.removeAllUpTo(1, 500);
+        assertTrue(controller.canSelectByStickyKeyHash());
+
+        // consumers own the hashes by modulo, the first consumer is stuck without permits
+        int[] permits = {0, 30, 50, 1000};
+        for (int maxMessages : new int[]{1, 10, 100, 10000}) {
+            Set<Position> expected = controller.getMessagesToReplayNow(maxMessages,
+                    new TestReplayFilter(controller, permits)::test);
+            Set<Position> actual = controller.getMessagesToReplayNowByStickyKeyHash(maxMessages,
+                    new TestReplayFilter(controller, permits));
+            assertEquals(actual, expected);
+        }
+
+        // the positions without sticky key hash cannot be selected by hash
+        controller.add(4, 1);
+        assertFalse(controller.canSelectByStickyKeyHash());
+        controller.remove(4, 1);
+        assertTrue(controller.canSelectByStickyKeyHash());
+        controller.clear();
+        assertTrue(controller.canSelectByStickyKeyHash());
+        assertTrue(controller.getMessagesToReplayNowByStickyKeyHash(10, new TestReplayFilter(controller, permits))
+                .isEmpty());
+    }
+
+    private static class TestReplayFilter implements MessageRedeliveryController.StickyKeyHashReplayFilter {
+        private final MessageRedeliveryController controller;
+        private final int[] permits;
+        private final Set<Integer> blockedHashes = new HashSet<>();
+
+        TestReplayFilter(MessageRedeliveryController controller, int[] permits) {
+            this.controller = controller;
+            this.permits = permits.clone();
+        }
+
+        boolean test(Position position) {
+            return tryReplay(controller.getHash(position.getLedgerId(), position.getEntryId()).intValue());
+        }
+
+        @Override
+        public boolean canReplayHash(int stickyKeyHash) {
+            if (blockedHashes.contains(stickyKeyHash) || permits[stickyKeyHash % permits.length] <= 0) {
+                blockedHashes.add(stickyKeyHash);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryReplay(int stickyKeyHash) {
+            if (!canReplayHash(stickyKeyHash)) {
+                return false;
+            }
+            permits[stickyKeyHash % permits.length]--;
+            return true;
+        }
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.pulsar.broker.service.Consumer;
+import org.apache.pulsar.broker.service.TransportCnx;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class SharedDispatchPlannerTest {
+
+    private static Consumer createConsumer(int permits, int maxUnackedMessages, int unackedMessages) {
+        Consumer consumer = mock(Consumer.class);
+        TransportCnx cnx = mock(TransportCnx.class);
+        when(cnx.isActive()).thenReturn(true);
+        when(consumer.cnx()).thenReturn(cnx);
+        when(consumer.isWritable()).thenReturn(true);
+        when(consumer.getAvailablePermits()).thenReturn(permits);
+        when(consumer.getMaxUnackedMessages()).thenReturn(maxUnackedMessages);
+        when(consumer.getUnackedMessages()).thenReturn(unackedMessages);
+        return consumer;
+    }
+
+    @Test
+    public void testEntriesToReadWithoutBatching() {
+        SharedDispatchPlanner planner = new SharedDispatchPlanner(new SharedDispatchStats());
+        List<Consumer> consumers = List.of(createConsumer(100, 0, 0), createConsumer(50, 0, 0));
+        assertEquals(planner.getEntriesToRead(consumers, Consumer::getAvailablePermits), 150);
+    }
+
+    @Test
+    public void testEntriesToReadLimitedByUnackedMessages() {
+        SharedDispatchPlanner planner = new SharedDispatchPlanner(new SharedDispatchStats());
+        List<Consumer> consumers = List.of(createConsumer(100, 30, 20), createConsumer(100, 30, 40));
+        // the second consumer has reached its unacked messages limit
+        assertEquals(planner.getEntriesToRead(consumers, Consumer::getAvailablePermits), 10);
+    }
+
+    @Test
+    public void testEntriesToReadSkipsUnavailableConsumers() {
+        SharedDispatchPlanner planner = new SharedDispatchPlanner(new SharedDispatchStats());
+        Consumer blocked = createConsumer(100, 0, 0);
+        when(blocked.isBlocked()).thenReturn(true);
+        Consumer inactive = createConsumer(100, 0, 0);
+        when(inactive.cnx().isActive()).thenReturn(false);
+        Consumer notWritable = createConsumer(100, 0, 0);
+        when(notWritable.isWritable()).thenReturn(false);
+        List<Consumer> consumers = Arrays.asList(blocked, null, inactive, notWritable, createConsumer(0, 0, 0));
+        assertEquals(planner.getEntriesToRead(consumers, Consumer::getAvailablePermits), 1);
+    }
+
+    @Test
+    public void testEntriesToReadWithBatching() {
+        SharedDispatchPlanner planner = new SharedDispatchPlanner(new SharedDispatchStats());
+        for (int i = 0; i < 100; i++) {
+            planner.recordRead(10, 100);
+        }
+        assertEquals(planner.getAvgMessagesPerEntry(), 10, 0.01);
+        List<Consumer> consumers = List.of(createConsumer(100, 0, 0), createConsumer(5, 0, 0));
+        // at least one entry is read for each consumer with permits
+        assertEquals(planner.getEntriesToRead(consumers, Consumer::getAvailablePermits), 11);
+        assertEquals(planner.getEntriesToRead(consumers, consumer -> 0), 0);
+    }
+
+    @Test
+    public void testPushedBackToReplay() {
+        SharedDispatchStats stats = new SharedDispatchStats();
+        SharedDispatchPlanner planner = new SharedDispatchPlanner(stats);
+        planner.recordPushedBackToReplay(3);
+        planner.recordPushedBackToReplay(2);
+        assertEquals(planner.getEntriesPushedBackToReplay(), 5);
+        assertEquals(stats.getEntriesPushedBackToReplay(), 5);
+    }
+}
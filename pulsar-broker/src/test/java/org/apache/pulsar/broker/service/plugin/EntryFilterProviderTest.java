@@ -22,11 +22,14 @@ import static org.apache.pulsar.broker.service.plugin.EntryFilterProvider.ENTRY_
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import lombok.Cleanup;
+import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.common.nar.NarClassLoader;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
+import java.util.List;
 
 @Test(groups = "broker")
 public class EntryFilterProviderTest {
@@ -66,4 +69,17 @@ public class EntryFilterProviderTest {
             }
         }
     }
+
+    @Test
+    public void testBuiltinEntryFilter() throws Exception {
+        ServiceConfiguration conf = new ServiceConfiguration();
+        conf.setEntryFiltersDirectory("/non-existing-entry-filters-directory");
+        conf.setEntryFilterNames(List.of(PropertyExpressionEntryFilter.NAME));
+        @Cleanup
+        EntryFilterProvider provider = new EntryFilterProvider(conf);
+        Assert.assertEquals(provider.getBrokerEntryFilters().size(), 1);
+        Assert.assertTrue(provider.getBrokerEntryFilters().get(0) instanceof PropertyExpressionEntryFilter);
+        provider.validateEntryFilters(PropertyExpressionEntryFilter.NAME);
+        Assert.assertThrows(InvalidEntryFilterException.class, () -> provider.validateEntryFilters("unknown"));
+    }
 }
@@ -155,6 +155,42 @@ public class FilterEntryTest extends BrokerTestBase {
         consumer.close();
     }
 
+    @Test
+    public void testPropertyExpressionFilter() throws Exception {
+        String topic = "persistent://prop/ns-abc/topic" + UUID.randomUUID();
+        setMockBrokerFilter(List.of(new EntryFilterTest(), new PropertyExpressionEntryFilter()));
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub").subscriptionType(SubscriptionType.Shared)
+                .subscriptionProperties(Map.of(PropertyExpressionEntryFilter.EXPRESSION_SUBSCRIPTION_PROPERTY,
+                        "color IN ('red', 'green') AND NOT EXISTS skip"))
+                .subscribe();
+        PersistentSubscription subscription = (PersistentSubscription) pulsar.getBrokerService()
+                .getTopicReference(topic).get().getSubscription("sub");
+        assertTrue((boolean) FieldUtils.readField(subscription.getDispatcher(), "hasBatchFilter", true));
+
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .enableBatching(false).topic(topic).create();
+        String[] colors = {"red", "green", "blue"};
+        for (int i = 0; i < 30; i++) {
+            producer.newMessage().property("color", colors[i % 3]).value(String.valueOf(i)).send();
+        }
+        producer.newMessage().property("color", "red").property("skip", "true").value("skipped").send();
+        // the per-entry filter configured before the batch filter rejects the entry first
+        producer.newMessage().property("color", "red").property("REJECT", "").value("rejected").send();
+
+        int received = 0;
+        Message<String> message;
+        while ((message = consumer.receive(1, TimeUnit.SECONDS)) != null) {
+            assertTrue(List.of("red", "green").contains(message.getProperty("color")));
+            assertTrue(Integer.parseInt(message.getValue()) % 3 != 2);
+            consumer.acknowledge(message);
+            received++;
+        }
+        assertEquals(received, 20);
+    }
+
     @Test
     public void testEntryFilterWithCompactor() throws Exception {
         conf.setAllowOverrideEntryFilters(true);
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.plugin;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.pulsar.broker.service.Subscription;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class PropertyExpressionTest {
+
+    private static MessageMetadata metadata(Map<String, String> properties) {
+        MessageMetadata metadata = new MessageMetadata();
+        properties.forEach((key, value) -> metadata.addProperty().setKey(key).setValue(value));
+        return metadata;
+    }
+
+    private static final List<MessageMetadata> MESSAGES = List.of(
+            metadata(Map.of("color", "red", "size", "L")),
+            metadata(Map.of("color", "blue", "size", "M")),
+            metadata(Map.of("color", "green")),
+            metadata(Map.of("size", "S")),
+            metadata(Map.of()),
+            metadata(Map.of("color", "it's red", "region.name", "eu-west")));
+
+    @DataProvider(name = "expressions")
+    public Object[][] expressions() {
+        return new Object[][] {
+                {"color = 'red'", List.of(0)},
+                {"color != 'red'", List.of(1, 2, 5)},
+                {"NOT color = 'red'", List.of(1, 2, 3, 4, 5)},
+                {"color IN ('red', 'green')", List.of(0, 2)},
+                {"EXISTS size", List.of(0, 1, 3)},
+                {"not exists color", List.of(3, 4)},
+                {"color = 'red' OR size = 'M'", List.of(0, 1)},
+                {"color = 'red' and size = 'M'", List.of()},
+                {"(color = 'red' OR color = 'blue') AND size IN ('M', 'S')", List.of(1)},
+                {"color = 'red' OR color = 'blue' AND size = 'S'", List.of(0)},
+                {"color = 'it''s red' AND region.name = 'eu-west'", List.of(5)},
+                {"\"color\" = 'green'", List.of(2)},
+                {"unknown = 'x' OR NOT EXISTS unknown", List.of(0, 1, 2, 3, 4, 5)},
+        };
+    }
+
+    @Test(dataProvider = "expressions")
+    public void testExpression(String expression, List<Integer> expectedMatches) {
+        PropertyExpression compiled = PropertyExpression.compile(expression);
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < MESSAGES.size(); i++) {
+            if (compiled.test(MESSAGES.get(i))) {
+                matches.add(i);
+            }
+        }
+        assertEquals(matches, expectedMatches);
+
+        // the evaluation of a batch matches the same messages
+        FilterEntryBatch batch = new FilterEntryBatch();
+        List<Entry> entries = new ArrayList<>();
+        MESSAGES.forEach(__ -> entries.add(mock(Entry.class)));
+        batch.reset(entries, MESSAGES.toArray(new MessageMetadata[0]), 0);
+        BitSet batchMatches = new BitSet();
+        compiled.evaluate(batch, batchMatches);
+        assertEquals(batchMatches.stream().boxed().toList(), expectedMatches);
+
+        // only the candidate entries are evaluated
+        BitSet candidates = new BitSet();
+        candidates.set(1);
+        candidates.set(3);
+        candidates.set(5);
+        BitSet candidateMatches = new BitSet();
+        compiled.evaluate(batch, candidates, candidateMatches);
+        assertEquals(candidateMatches.stream().boxed().toList(),
+                expectedMatches.stream().filter(candidates::get).toList());
+    }
+
+    @Test
+    public void testFilterResolvesMetadataOfUndecidedEntries() {
+        List<Entry> entries = new ArrayList<>();
+        for (String color : List.of("red", "blue", "green")) {
+            MessageMetadata metadata = metadata(Map.of("color", color))
+                    .setProducerName("producer").setSequenceId(0).setPublishTime(0);
+            Entry entry = mock(Entry.class);
+            when(entry.getDataBuffer()).thenReturn(Commands.serializeMetadataAndPayload(
+                    Commands.ChecksumType.None, metadata, Unpooled.EMPTY_BUFFER));
+            entries.add(entry);
+        }
+        // an entry whose metadata can't be parsed
+        Entry corrupted = mock(Entry.class);
+        when(corrupted.getDataBuffer()).thenReturn(Unpooled.wrappedBuffer(new byte[] {0, 0, 0, 1, 0}));
+        entries.add(corrupted);
+        FilterEntryBatch batch = new FilterEntryBatch();
+        batch.reset(entries, null, 0, "sub");
+        FilterResults results = new FilterResults();
+        results.reset(entries.size());
+        // the first entry was rescheduled by a previous filter
+        results.setResult(0, EntryFilter.FilterResult.RESCHEDULE);
+
+        FilterContext context = new FilterContext();
+        Subscription subscription = mock(Subscription.class);
+        when(subscription.getSubscriptionProperties()).thenReturn(
+                Map.of(PropertyExpressionEntryFilter.EXPRESSION_SUBSCRIPTION_PROPERTY, "color = 'blue'"));
+        context.setSubscription(subscription);
+        new PropertyExpressionEntryFilter().filterEntries(batch, context, results);
+
+        assertEquals(results.getResult(0), EntryFilter.FilterResult.RESCHEDULE);
+        assertEquals(results.getResult(1), EntryFilter.FilterResult.ACCEPT);
+        assertEquals(results.getResult(2), EntryFilter.FilterResult.REJECT);
+        assertEquals(results.getResult(3), EntryFilter.FilterResult.ACCEPT);
+        verify(entries.get(0), never()).getDataBuffer();
+        assertEquals(batch.getPropertyValues("color").get(2), "green");
+    }
+
+    @Test
+    public void testBatchWithoutMetadata() {
+        FilterEntryBatch batch = new FilterEntryBatch();
+        List<Entry> entries = new ArrayList<>();
+        entries.add(mock(Entry.class));
+        entries.add(null);
+        entries.add(mock(Entry.class));
+        MessageMetadata[] metadataArray = new MessageMetadata[] {
+                metadata(Map.of("not-used", "x")), MESSAGES.get(0), MESSAGES.get(0), MESSAGES.get(1)};
+        batch.reset(entries, metadataArray, 1);
+        assertEquals(batch.size(), 3);
+        assertEquals(batch.getMetadata(0), MESSAGES.get(0));
+        assertNull(batch.getMetadata(1));
+        assertEquals(batch.getPropertyColumn("color"), new String[] {"red", null, "blue"});
+        assertNull(batch.getPropertyColumn("not-used"));
+
+        BitSet matches = new BitSet();
+        PropertyExpression.compile("NOT color = 'red'").evaluate(batch, matches);
+        assertEquals(matches.stream().boxed().toList(), List.of(2));
+    }
+
+    @Test
+    public void testInvalidExpressions() {
+        for (String expression : List.of("", "color", "color = red", "color = 'red", "color == 'red'",
+                "color = 'red' AND", "(color = 'red'", "color = 'red')", "color IN 'red'", "color ! 'red'",
+                "'color' = 'red'", "color = 'red' size = 'L'", "color # 'red'")) {
+            assertThrows(IllegalArgumentException.class, () -> PropertyExpression.compile(expression));
+        }
+    }
+
+    @Test
+    public void testFilterResults() {
+        FilterResults results = new FilterResults();
+        results.reset(4);
+        results.setResult(0, EntryFilter.FilterResult.RESCHEDULE);
+        results.setResult(1, null);
+        BitSet rejected = new BitSet();
+        rejected.set(0);
+        rejected.set(2);
+        results.rejectAll(rejected);
+        // the first filter which doesn't accept an entry decides its result
+        assertEquals(results.getResult(0), EntryFilter.FilterResult.RESCHEDULE);
+        assertEquals(results.getResult(1), EntryFilter.FilterResult.ACCEPT);
+        assertEquals(results.getResult(2), EntryFilter.FilterResult.REJECT);
+        assertTrue(results.isAccepted(3));
+        results.setResult(2, EntryFilter.FilterResult.ACCEPT);
+        assertFalse(results.isAccepted(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> results.setResult(4, EntryFilter.FilterResult.REJECT));
+
+        results.reset(2);
+        assertTrue(results.isAccepted(0));
+    }
+}
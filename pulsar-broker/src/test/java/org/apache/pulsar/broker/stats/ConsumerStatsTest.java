@@ -264,6 +264,8 @@ public class ConsumerStatsTest extends ProducerConsumerBase {
                 "unackedMessages",
                 "avgMessagesPerEntry",
                 "blockedConsumerOnUnackedMsgs",
+                "adaptivePermitsAckRate",
+                "estimatedAckLatencyMillis",
                 "lastAckedTime",
                 "lastAckedTimestamp",
                 "lastConsumedTime",
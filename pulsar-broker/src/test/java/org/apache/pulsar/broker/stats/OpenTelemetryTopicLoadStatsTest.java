@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import io.opentelemetry.sdk.metrics.data.HistogramPointData;
+import java.util.stream.Collectors;
+import org.apache.pulsar.broker.BrokerTestUtil;
+import org.apache.pulsar.broker.service.BrokerTestBase;
+import org.apache.pulsar.broker.stats.OpenTelemetryTopicLoadStats.TopicLoadPhase;
+import org.apache.pulsar.broker.testcontext.PulsarTestContext;
+import org.apache.pulsar.client.api.MessageId;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class OpenTelemetryTopicLoadStatsTest extends BrokerTestBase {
+
+    @BeforeMethod(alwaysRun = true)
+    @Override
+    protected void setup() throws Exception {
+        super.baseSetup();
+    }
+
+    @Override
+    protected void customizeMainPulsarTestContextBuilder(PulsarTestContext.Builder pulsarTestContextBuilder) {
+        super.customizeMainPulsarTestContextBuilder(pulsarTestContextBuilder);
+        pulsarTestContextBuilder.enableOpenTelemetry(true);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test
+    public void testTopicLoadPhases() throws Exception {
+        var topicName = BrokerTestUtil.newUniqueName("persistent://prop/ns-abc/testTopicLoadPhases");
+        admin.topics().createNonPartitionedTopic(topicName);
+        admin.topics().createSubscription(topicName, "sub", MessageId.earliest);
+        admin.topics().unload(topicName);
+        pulsar.getBrokerService().getTopic(topicName, false).get();
+
+        var metrics = pulsarTestContext.getOpenTelemetryMetricReader().collectAllMetrics();
+        var phases = metrics.stream()
+                .filter(metric -> metric.getName().equals(OpenTelemetryTopicLoadStats.TOPIC_LOAD_DURATION_METRIC_NAME))
+                .flatMap(metric -> metric.getHistogramData().getPoints().stream())
+                .filter(point -> point.getCount() > 0)
+                .map(HistogramPointData::getAttributes)
+                .map(attributes -> attributes.get(OpenTelemetryTopicLoadStats.TOPIC_LOAD_PHASE))
+                .collect(Collectors.toSet());
+        assertThat(phases).containsExactlyInAnyOrder(
+                TopicLoadPhase.LEDGER_OPEN.name().toLowerCase(),
+                TopicLoadPhase.CURSOR_RECOVERY.name().toLowerCase(),
+                TopicLoadPhase.DEDUP_RECOVERY.name().toLowerCase());
+    }
+}
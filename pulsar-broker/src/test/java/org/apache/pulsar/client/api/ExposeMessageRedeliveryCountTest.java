@@ -176,4 +176,46 @@ public class ExposeMessageRedeliveryCountTest extends ProducerConsumerBase {
         }
 
     }
+
+    @Test(timeOut = 30000)
+    public void testRedeliveryCountWithBoundedTracker() throws Exception {
+        // a single entry is tracked exactly, the counts of the others are estimated
+        restartBroker(conf -> conf.setSubscriptionRedeliveryTrackerMaxTrackedEntries(1));
+
+        final String topic = "persistent://my-property/my-ns/redeliveryCountWithBoundedTracker";
+
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("my-subscription")
+                .subscriptionType(SubscriptionType.Shared)
+                .negativeAckRedeliveryDelay(100, TimeUnit.MILLISECONDS)
+                .subscriptionInitialPosition(SubscriptionInitialPosition.Earliest)
+                .subscribe();
+
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+
+        final int messages = 5;
+        for (int i = 0; i < messages; i++) {
+            producer.send("my-message-" + i);
+        }
+
+        for (int redelivery = 0; redelivery < 3; redelivery++) {
+            for (int i = 0; i < messages; i++) {
+                Message<String> message = consumer.receive();
+                Assert.assertTrue(message.getRedeliveryCount() >= redelivery);
+                consumer.negativeAcknowledge(message);
+            }
+        }
+        for (int i = 0; i < messages; i++) {
+            Message<String> message = consumer.receive();
+            Assert.assertTrue(message.getRedeliveryCount() >= 3);
+            consumer.acknowledge(message);
+        }
+
+        producer.close();
+        consumer.close();
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.broker.service.AdaptiveConsumerPermits;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.policies.data.ConsumerStats;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-api")
+public class SharedSubscriptionAdaptivePermitsTest extends ProducerConsumerBase {
+    private static final int MIN_IN_FLIGHT_MESSAGES = 10;
+
+    @BeforeClass
+    @Override
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @Override
+    protected void doInitConf() throws Exception {
+        super.doInitConf();
+        conf.setDispatcherAdaptivePermitsEnabled(true);
+        conf.setDispatcherAdaptivePermitsMinInFlightMessages(MIN_IN_FLIGHT_MESSAGES);
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test
+    public void testDispatchToDrainingConsumer() throws Exception {
+        final String topicName = TopicName.get("my-property/my-ns/testDispatchToDrainingConsumer").toString();
+        final String subName = "my-subscription";
+        final int numMessages = 500;
+
+        // the slow consumer never receives the messages in its receiver queue
+        @Cleanup
+        Consumer<byte[]> slowConsumer = pulsarClient.newConsumer().topic(topicName).subscriptionName(subName)
+                .consumerName("slow").subscriptionType(SubscriptionType.Shared).receiverQueueSize(1000).subscribe();
+        @Cleanup
+        Consumer<byte[]> fastConsumer = pulsarClient.newConsumer().topic(topicName).subscriptionName(subName)
+                .consumerName("fast").subscriptionType(SubscriptionType.Shared).receiverQueueSize(1000).subscribe();
+        @Cleanup
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topicName).enableBatching(false).create();
+        for (int i = 0; i < numMessages; i++) {
+            producer.sendAsync(("my-message-" + i).getBytes());
+        }
+        producer.flush();
+
+        int received = 0;
+        Message<byte[]> message;
+        while ((message = fastConsumer.receive(5, TimeUnit.SECONDS)) != null) {
+            fastConsumer.acknowledge(message);
+            received++;
+        }
+
+        // the slow consumer only gets the min in-flight messages since it doesn't acknowledge messages
+        assertEquals(received, numMessages - MIN_IN_FLIGHT_MESSAGES);
+        PersistentTopic topic = (PersistentTopic) pulsar.getBrokerService().getTopicIfExists(topicName).get().get();
+        org.apache.pulsar.broker.service.Consumer slowConsumerOnBroker = topic.getSubscription(subName)
+                .getConsumers().stream().filter(c -> c.consumerName().equals("slow")).findFirst().get();
+        assertEquals(slowConsumerOnBroker.getUnackedMessages(), MIN_IN_FLIGHT_MESSAGES);
+        AdaptiveConsumerPermits adaptivePermits = slowConsumerOnBroker.getAdaptivePermits();
+        assertNotNull(adaptivePermits);
+        assertTrue(adaptivePermits.isBlocked());
+        assertEquals(adaptivePermits.getAckRate(), 0.0);
+
+        ConsumerStats slowConsumerStats = admin.topics().getStats(topicName).getSubscriptions().get(subName)
+                .getConsumers().stream().filter(c -> c.getConsumerName().equals("slow")).findFirst().get();
+        assertEquals(slowConsumerStats.getAdaptivePermitsAckRate(), 0.0);
+        assertEquals(slowConsumerStats.getEstimatedAckLatencyMillis(), 0.0);
+    }
+
+    @Test
+    public void testExclusiveSubscriptionIsNotLimited() throws Exception {
+        final String topicName = TopicName.get("my-property/my-ns/testExclusiveSubscriptionIsNotLimited").toString();
+        @Cleanup
+        Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topicName).subscriptionName("my-subscription")
+                .subscriptionType(SubscriptionType.Exclusive).subscribe();
+        PersistentTopic topic = (PersistentTopic) pulsar.getBrokerService().getTopicIfExists(topicName).get().get();
+        assertNull(topic.getSubscription("my-subscription").getConsumers().get(0).getAdaptivePermits());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.common.naming.TopicName;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-api")
+public class SharedSubscriptionReadPlanningTest extends ProducerConsumerBase {
+    private static final int MAX_UNACKED_MESSAGES = 30;
+
+    @BeforeClass
+    @Override
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @Override
+    protected void doInitConf() throws Exception {
+        super.doInitConf();
+        conf.setMaxUnackedMessagesPerConsumer(MAX_UNACKED_MESSAGES);
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @DataProvider
+    public Object[][] readSizedToConsumerPermits() {
+        return new Object[][]{{true}, {false}};
+    }
+
+    @Test(dataProvider = "readSizedToConsumerPermits")
+    public void testEntriesPushedBackToReplay(boolean readSizedToConsumerPermits) throws Exception {
+        pulsar.getConfiguration().setDispatcherReadSizedToConsumerPermits(readSizedToConsumerPermits);
+        final String topicName = TopicName.get("my-property/my-ns/testEntriesPushedBackToReplay-"
+                + readSizedToConsumerPermits).toString();
+        final String subName = "my-subscription";
+        final int numMessages = 200;
+
+        pulsarClient.newConsumer().topic(topicName).subscriptionName(subName)
+                .subscriptionType(SubscriptionType.Shared).subscribe().close();
+        @Cleanup
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topicName).enableBatching(false).create();
+        for (int i = 0; i < numMessages; i++) {
+            producer.sendAsync(("my-message-" + i).getBytes());
+        }
+        producer.flush();
+
+        // the consumer acknowledges its messages only when it reaches the unacked messages limit, so the reads
+        // sized to its permits can't be fully dispatched to it
+        @Cleanup
+        Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topicName).subscriptionName(subName)
+                .subscriptionType(SubscriptionType.Shared).receiverQueueSize(1000).subscribe();
+        int received = 0;
+        List<MessageId> unacked = new ArrayList<>();
+        Message<byte[]> message;
+        while ((message = consumer.receive(5, TimeUnit.SECONDS)) != null) {
+            received++;
+            unacked.add(message.getMessageId());
+            if (unacked.size() == MAX_UNACKED_MESSAGES) {
+                consumer.acknowledge(unacked);
+                unacked.clear();
+            }
+        }
+        assertEquals(received, numMessages);
+
+        PersistentTopic topic = (PersistentTopic) pulsar.getBrokerService().getTopicIfExists(topicName).get().get();
+        PersistentDispatcherMultipleConsumers dispatcher =
+                (PersistentDispatcherMultipleConsumers) topic.getSubscription(subName).getDispatcher();
+        long entriesPushedBackToReplay = dispatcher.getDispatchPlanner().getEntriesPushedBackToReplay();
+        if (readSizedToConsumerPermits) {
+            assertEquals(entriesPushedBackToReplay, 0);
+        } else {
+            assertTrue(entriesPushedBackToReplay > 0);
+        }
+    }
+}
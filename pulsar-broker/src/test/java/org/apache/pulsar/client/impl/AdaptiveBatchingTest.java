@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.client.api.BatcherBuilder;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.ProducerStats;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class AdaptiveBatchingTest extends ProducerConsumerBase {
+
+    @Override
+    @BeforeClass
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @Override
+    @AfterClass(alwaysRun = true)
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test
+    public void testIdleProducerFlushesImmediately() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testIdleProducerFlushesImmediately").toString();
+        @Cleanup
+        PulsarClient client = newPulsarClient(lookupUrl.toString(), 1);
+        @Cleanup
+        Producer<String> producer = client.newProducer(Schema.STRING).topic(topic)
+                .batcherBuilder(BatcherBuilder.ADAPTIVE)
+                .batchingMaxPublishDelay(1, TimeUnit.MINUTES)
+                .create();
+
+        for (int i = 0; i < 5; i++) {
+            // a batching delay of one minute would fail the send with the default timeout of 30 seconds
+            producer.sendAsync("message-" + i).get(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+        }
+        ProducerStats stats = producer.getStats();
+        assertEquals(stats.getBatchingMaxMessages(), 1);
+        assertTrue(stats.getBatchingMaxPublishDelayMicros() < TimeUnit.MINUTES.toMicros(1));
+    }
+
+    @Test
+    public void testBatchesGrowUnderLoad() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testBatchesGrowUnderLoad").toString();
+        final int numRounds = 10;
+        final int numMessagesPerRound = 500;
+        @Cleanup
+        PulsarClient client = newPulsarClient(lookupUrl.toString(), 1);
+        @Cleanup
+        Consumer<String> consumer = client.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("my-subscription").subscribe();
+        @Cleanup
+        Producer<String> producer = client.newProducer(Schema.STRING).topic(topic)
+                .batcherBuilder(BatcherBuilder.ADAPTIVE)
+                .batchingMaxMessages(100)
+                .batchingMaxPublishDelay(10, TimeUnit.MILLISECONDS)
+                .create();
+
+        int maxBatchSize = 0;
+        for (int round = 0; round < numRounds; round++) {
+            List<CompletableFuture<MessageId>> futures = new ArrayList<>(numMessagesPerRound);
+            for (int i = 0; i < numMessagesPerRound; i++) {
+                futures.add(producer.sendAsync("message-" + (round * numMessagesPerRound + i)));
+            }
+            FutureUtil.waitForAll(futures).get(30, TimeUnit.SECONDS);
+            maxBatchSize = Math.max(maxBatchSize, producer.getStats().getBatchingMaxMessages());
+        }
+        assertTrue(maxBatchSize > 1 && maxBatchSize <= 100, "batch size " + maxBatchSize);
+
+        boolean receivedBatch = false;
+        for (int i = 0; i < numRounds * numMessagesPerRound; i++) {
+            Message<String> message = consumer.receive(10, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(message.getValue(), "message-" + i);
+            receivedBatch |= message.getMessageId() instanceof BatchMessageIdImpl;
+            consumer.acknowledge(message);
+        }
+        assertTrue(receivedBatch);
+    }
+}
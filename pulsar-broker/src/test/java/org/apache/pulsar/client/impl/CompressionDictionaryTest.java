@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.client.api.CompressionDictionaryReader;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.conf.ProducerConfigurationData;
+import org.apache.pulsar.common.compression.CompressionCodecZLib;
+import org.apache.pulsar.common.compression.CompressionDictionaryTrainer;
+import org.apache.pulsar.common.naming.TopicName;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class CompressionDictionaryTest extends ProducerConsumerBase {
+
+    private byte[] dictionary;
+
+    @Override
+    @BeforeClass
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            samples.add(jsonPayload(i).getBytes(UTF_8));
+        }
+        dictionary = CompressionDictionaryTrainer.train(samples, 4096);
+    }
+
+    @Override
+    @AfterClass(alwaysRun = true)
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @DataProvider
+    public Object[][] batching() {
+        return new Object[][] {{true}, {false}};
+    }
+
+    @Test(dataProvider = "batching")
+    public void testProduceConsumeWithDictionary(boolean batching) throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testProduceConsumeWithDictionary-" + batching)
+                .toString();
+        final int numMessages = 20;
+        long dictionaryId = CompressionCodecZLib.getDictionaryId(dictionary);
+        CompressionDictionaryReader reader = (topicName, id) -> id == dictionaryId ? dictionary : null;
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub")
+                .compressionDictionaryReader(reader)
+                .subscribe();
+        @Cleanup
+        Consumer<String> consumerWithoutReader = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub-without-reader")
+                .subscribe();
+        @Cleanup
+        Consumer<String> discardingConsumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub-discarding")
+                .loadConf(Map.of("discardUnknownCompressionDictionaryMessages", true))
+                .subscribe();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic)
+                .enableBatching(batching)
+                .batchingMaxPublishDelay(1, TimeUnit.MINUTES)
+                .batchingMaxMessages(numMessages)
+                .compressionType(CompressionType.ZLIB)
+                // the payloads are smaller than the default compressionMinMsgBodySize, which is lowered to 0
+                .compressionDictionary(dictionary)
+                .create();
+
+        for (int i = 0; i < numMessages; i++) {
+            producer.sendAsync(jsonPayload(10000 + i));
+        }
+        producer.flush();
+
+        for (int i = 0; i < numMessages; i++) {
+            Message<String> message = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(message.getValue(), jsonPayload(10000 + i));
+            assertEquals(((MessageImpl<String>) message).getMessageBuilder().getCompressionDictionaryId(),
+                    dictionaryId);
+            assertEquals(((MessageImpl<String>) message).getMessageBuilder().getCompression(),
+                    org.apache.pulsar.common.api.proto.CompressionType.ZLIB_DICT);
+        }
+        // the threshold is lowered by the producer, the configuration is left untouched
+        assertEquals(((ProducerImpl<String>) producer).getConfiguration().getCompressMinMsgBodySize(),
+                ProducerConfigurationData.DEFAULT_COMPRESS_MIN_MSG_BODY_SIZE);
+        // the messages compressed with an unknown dictionary are kept unacked, unless the consumer discards them
+        assertNull(consumerWithoutReader.receive(1, TimeUnit.SECONDS));
+        assertNull(discardingConsumer.receive(1, TimeUnit.SECONDS));
+        Awaitility.await().untilAsserted(() -> assertEquals(admin.topics().getStats(topic).getSubscriptions()
+                .get("sub-discarding").getMsgBacklog(), 0));
+        assertTrue(admin.topics().getStats(topic).getSubscriptions().get("sub-without-reader").getMsgBacklog() > 0);
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        final String topic = TopicName.get("my-property/my-ns/testInvalidConfiguration").toString();
+        assertTrue(expectThrows(IllegalArgumentException.class, () -> pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .compressionType(CompressionType.LZ4)
+                .compressionDictionary(dictionary)
+                .create()).getMessage().contains("ZLIB"));
+        expectThrows(IllegalArgumentException.class, () -> pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .compressionDictionary(new byte[CompressionCodecZLib.MAX_DICTIONARY_SIZE + 1]));
+    }
+
+    private static String jsonPayload(int i) {
+        return "{\"id\":" + i + ",\"type\":\"order-created\",\"customer\":{\"name\":\"customer-" + (i % 17)
+                + "\",\"country\":\"FR\"},\"amount\":" + (i * 31 % 1000) + ",\"currency\":\"EUR\"}";
+    }
+}
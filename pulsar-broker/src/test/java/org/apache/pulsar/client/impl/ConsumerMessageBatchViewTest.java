@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.MessageBatchViewListener;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.naming.TopicName;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class ConsumerMessageBatchViewTest extends ProducerConsumerBase {
+
+    @Override
+    @BeforeClass
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @Override
+    @AfterClass(alwaysRun = true)
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test
+    public void testBatchedEntries() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testBatchedEntries").toString();
+        final int numMessages = 20;
+        List<String> received = new CopyOnWriteArrayList<>();
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        MessageBatchViewListener<String> listener = (consumer, batch) -> {
+            batchSizes.add(batch.getNumMessages());
+            while (batch.next()) {
+                received.add(batch.getValue() + "|" + batch.getKey() + "|" + batch.getProperty("index") + "|"
+                        + batch.getBatchIndex());
+            }
+            consumer.acknowledgeAsync(batch.getMessageId());
+        };
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub")
+                .messageBatchViewListener(listener)
+                .subscribe();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic)
+                .batchingMaxMessages(10)
+                .batchingMaxPublishDelay(1, TimeUnit.MINUTES)
+                .create();
+
+        for (int i = 0; i < numMessages; i++) {
+            producer.newMessage().key("key-" + i).property("index", String.valueOf(i)).value("message-" + i)
+                    .sendAsync();
+        }
+        producer.flush();
+
+        Awaitility.await().untilAsserted(() -> assertEquals(received.size(), numMessages));
+        assertEquals(batchSizes, List.of(10, 10));
+        for (int i = 0; i < numMessages; i++) {
+            assertEquals(received.get(i), "message-" + i + "|key-" + i + "|" + i + "|" + (i % 10));
+        }
+
+        // the entries acknowledged by the listener are not redelivered
+        consumer.close();
+        @Cleanup
+        Consumer<String> nextConsumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub")
+                .subscribe();
+        assertNull(nextConsumer.receive(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testNonBatchedMessages() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testNonBatchedMessages").toString();
+        final int numMessages = 5;
+        List<String> received = new CopyOnWriteArrayList<>();
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        List<Boolean> sameMessageIds = new CopyOnWriteArrayList<>();
+        MessageBatchViewListener<String> listener = (consumer, batch) -> {
+            batchSizes.add(batch.getNumMessages());
+            while (batch.next()) {
+                received.add(new String(batch.getData()) + "|" + batch.getKey());
+                sameMessageIds.add(batch.getCurrentMessageId().equals(batch.getMessageId()));
+            }
+            consumer.acknowledgeAsync(batch.getMessageId());
+        };
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub")
+                .receiverQueueSize(2)
+                .messageBatchViewListener(listener)
+                .subscribe();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic)
+                .enableBatching(false)
+                .create();
+
+        for (int i = 0; i < numMessages; i++) {
+            producer.newMessage().key("key-" + i).value("message-" + i).send();
+        }
+
+        // a receiver queue of 2 messages is enough as the permits are returned when the listener returns
+        Awaitility.await().untilAsserted(() -> assertEquals(received.size(), numMessages));
+        assertEquals(batchSizes, Collections.nCopies(numMessages, 1));
+        assertEquals(sameMessageIds, Collections.nCopies(numMessages, true));
+        for (int i = 0; i < numMessages; i++) {
+            assertEquals(received.get(i), "message-" + i + "|key-" + i);
+        }
+    }
+
+    @Test
+    public void testInvalidConfiguration() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testInvalidConfiguration").toString();
+        MessageBatchViewListener<String> listener = (consumer, batch) -> { };
+        try {
+            pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                    .subscriptionName("sub")
+                    .messageBatchViewListener(listener)
+                    .messageListener((consumer, msg) -> { })
+                    .subscribe();
+            fail("should have failed");
+        } catch (PulsarClientException.InvalidConfigurationException e) {
+            // expected
+        }
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("sub")
+                .messageBatchViewListener(listener)
+                .subscribe();
+        try {
+            consumer.receive();
+            fail("should have failed");
+        } catch (PulsarClientException.InvalidConfigurationException e) {
+            // expected
+        }
+    }
+}
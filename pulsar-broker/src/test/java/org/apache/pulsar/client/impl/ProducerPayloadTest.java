@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Cleanup;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessagePayloadFactory;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class ProducerPayloadTest extends ProducerConsumerBase {
+
+    @Override
+    @BeforeClass
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @Override
+    @AfterClass(alwaysRun = true)
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @DataProvider
+    public Object[][] producerConfigs() {
+        return new Object[][]{
+                {false, CompressionType.NONE},
+                {false, CompressionType.LZ4},
+                {true, CompressionType.NONE},
+                {true, CompressionType.ZSTD},
+        };
+    }
+
+    @Test(dataProvider = "producerConfigs")
+    public void testSendDirectBufferPayload(boolean batchingEnabled, CompressionType compressionType)
+            throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testSendDirectBufferPayload-" + batchingEnabled
+                + "-" + compressionType).toString();
+        final int numMessages = 10;
+        final int payloadSize = 100 * 1024;
+        @Cleanup
+        Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topic)
+                .subscriptionName("my-subscription").subscribe();
+        @Cleanup
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic)
+                .enableBatching(batchingEnabled)
+                .batchingMaxBytes(4 * payloadSize)
+                .compressionType(compressionType)
+                .create();
+
+        AtomicInteger released = new AtomicInteger();
+        List<byte[]> payloads = new ArrayList<>(numMessages);
+        List<CompletableFuture<MessageId>> futures = new ArrayList<>(numMessages);
+        for (int i = 0; i < numMessages; i++) {
+            byte[] bytes = new byte[payloadSize];
+            ThreadLocalRandom.current().nextBytes(bytes);
+            payloads.add(bytes);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(payloadSize);
+            buffer.put(bytes).flip();
+            futures.add(producer.newMessage()
+                    .payload(MessagePayloadFactory.DEFAULT.wrap(buffer, released::incrementAndGet))
+                    .sendAsync());
+        }
+        FutureUtil.waitForAll(futures).get(30, TimeUnit.SECONDS);
+        Awaitility.await().untilAsserted(() -> assertEquals(released.get(), numMessages));
+
+        for (int i = 0; i < numMessages; i++) {
+            Message<byte[]> message = consumer.receive(10, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(message.getData(), payloads.get(i));
+            consumer.acknowledge(message);
+        }
+    }
+
+    @Test
+    public void testPayloadIsReleasedWhenSendFails() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testPayloadIsReleasedWhenSendFails").toString();
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).create();
+        producer.close();
+
+        AtomicInteger released = new AtomicInteger();
+        CompletableFuture<MessageId> future = producer.newMessage()
+                .payload(MessagePayloadFactory.DEFAULT.wrap(ByteBuffer.allocateDirect(16), released::incrementAndGet))
+                .sendAsync();
+        Awaitility.await().until(future::isDone);
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(released.get(), 1);
+    }
+}
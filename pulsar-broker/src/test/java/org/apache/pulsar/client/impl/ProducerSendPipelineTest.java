@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class ProducerSendPipelineTest extends ProducerConsumerBase {
+
+    @Override
+    @BeforeClass
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @Override
+    @AfterClass(alwaysRun = true)
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @DataProvider
+    public Object[][] batchingEnabled() {
+        return new Object[][]{{true}, {false}};
+    }
+
+    @Test(dataProvider = "batchingEnabled")
+    public void testConcurrentSendsKeepThreadOrder(boolean batchingEnabled) throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testConcurrentSendsKeepThreadOrder-"
+                + batchingEnabled).toString();
+        final int numThreads = 8;
+        final int numMessagesPerThread = 500;
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionName("my-subscription").subscribe();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING).topic(topic)
+                .enableBatching(batchingEnabled).enableSendPipeline(true).create();
+
+        @Cleanup("shutdownNow")
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<List<CompletableFuture<MessageId>>>> threadFutures = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            final int thread = t;
+            threadFutures.add(executor.submit(() -> {
+                List<CompletableFuture<MessageId>> sendFutures = new ArrayList<>();
+                for (int i = 0; i < numMessagesPerThread; i++) {
+                    sendFutures.add(producer.sendAsync(thread + "-" + i));
+                }
+                return sendFutures;
+            }));
+        }
+        List<CompletableFuture<MessageId>> sendFutures = new ArrayList<>();
+        for (Future<List<CompletableFuture<MessageId>>> threadFuture : threadFutures) {
+            sendFutures.addAll(threadFuture.get());
+        }
+        producer.flush();
+        FutureUtil.waitForAll(sendFutures).get(30, TimeUnit.SECONDS);
+
+        Map<Integer, Integer> lastReceived = new HashMap<>();
+        for (int i = 0; i < numThreads * numMessagesPerThread; i++) {
+            Message<String> message = consumer.receive(10, TimeUnit.SECONDS);
+            assertNotNull(message);
+            String[] parts = message.getValue().split("-");
+            int thread = Integer.parseInt(parts[0]);
+            int index = Integer.parseInt(parts[1]);
+            assertEquals(index, lastReceived.getOrDefault(thread, -1) + 1);
+            lastReceived.put(thread, index);
+            consumer.acknowledge(message);
+        }
+        assertNull(consumer.receive(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testChunkedMessageAfterPipelinedMessages() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testChunkedMessageAfterPipelinedMessages").toString();
+        @Cleanup
+        Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topic)
+                .subscriptionName("my-subscription").subscribe();
+        @Cleanup
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).enableBatching(false)
+                .enableChunking(true).chunkMaxMessageSize(1024).enableSendPipeline(true).create();
+
+        List<CompletableFuture<MessageId>> sendFutures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sendFutures.add(producer.sendAsync(new byte[]{(byte) i}));
+        }
+        // the chunked message is sent by the calling thread after the enqueued messages
+        sendFutures.add(producer.sendAsync(new byte[10 * 1024]));
+        FutureUtil.waitForAll(sendFutures).get(30, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 10; i++) {
+            Message<byte[]> message = consumer.receive(10, TimeUnit.SECONDS);
+            assertEquals(message.getData(), new byte[]{(byte) i});
+        }
+        assertEquals(consumer.receive(10, TimeUnit.SECONDS).getData().length, 10 * 1024);
+    }
+
+    @Test
+    public void testSendAfterClose() throws Exception {
+        final String topic = TopicName.get("my-property/my-ns/testSendAfterClose").toString();
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).enableSendPipeline(true).create();
+        CompletableFuture<MessageId> sentBeforeClose = producer.sendAsync(new byte[10]);
+        producer.close();
+        assertTrue(sentBeforeClose.isDone());
+        try {
+            producer.sendAsync(new byte[10]).get(10, TimeUnit.SECONDS);
+            fail("the send should fail after the producer is closed");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof PulsarClientException.AlreadyClosedException);
+        }
+    }
+}
@@ -126,6 +126,13 @@ public class ConcurrentBitmapSortedLongPairSetTest {
 
         set.removeUpTo(2, 0);
         assertTrue(set.isEmpty());
+
+        // clearing only some of the bits in the range is reported
+        set.add(3, 2);
+        set.add(3, 4);
+        assertTrue(set.removeUpTo(3, 3));
+        assertFalse(set.removeUpTo(3, 3));
+        assertEquals(set.size(), 1);
     }
 
     @Test
@@ -72,6 +72,16 @@ public interface ConsumerStats {
     /** Flag to verify if consumer is blocked due to reaching threshold of unacked messages. */
     boolean isBlockedConsumerOnUnackedMsgs();
 
+    /**
+     * Acknowledgement rate used to limit the permits of the consumer when adaptive permits are enabled (msg/s).
+     */
+    double getAdaptivePermitsAckRate();
+
+    /**
+     * Estimated time for the consumer to acknowledge a dispatched message when adaptive permits are enabled (ms).
+     */
+    double getEstimatedAckLatencyMillis();
+
     /** The read position of the cursor when the consumer joining. */
     @Deprecated
     String getReadPositionWhenJoining();
@@ -52,6 +52,16 @@ public interface BatcherBuilder extends Serializable {
      */
     BatcherBuilder KEY_BASED = DefaultImplementation.getDefaultImplementation().newKeyBasedBatcherBuilder();
 
+    /**
+     * Adaptive batch message container.
+     *
+     * <p>Messages are batched in the same way as {@link #DEFAULT}, but the number of messages in a batch and the
+     * batching delay are tuned from the observed send latency and message rate. An idle producer flushes every message
+     * immediately, a busy producer grows its batches up to {@link ProducerBuilder#batchingMaxMessages(int)} and waits
+     * at most {@link ProducerBuilder#batchingMaxPublishDelay(long, java.util.concurrent.TimeUnit)}.
+     */
+    BatcherBuilder ADAPTIVE = DefaultImplementation.getDefaultImplementation().newAdaptiveBatcherBuilder();
+
     /**
      * Build a new batch message container.
      * @return new batch message container
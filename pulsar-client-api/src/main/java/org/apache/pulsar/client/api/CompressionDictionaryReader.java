@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import java.io.Serializable;
+import org.apache.pulsar.common.classification.InterfaceAudience;
+import org.apache.pulsar.common.classification.InterfaceStability;
+
+/**
+ * Interface that abstracts the access to the dictionaries the message payloads are compressed with.
+ *
+ * @see ProducerBuilder#compressionDictionary(byte[])
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface CompressionDictionaryReader extends Serializable {
+
+    /**
+     * Return the dictionary with the given id.
+     *
+     * <p>This method is called the first time a consumer receives a message compressed with the dictionary, the
+     * dictionary is then cached by the client. It is called on an internal thread of the client rather than on the
+     * IO thread, so the implementation can load the dictionary from a remote store, such as the properties of the
+     * topic. The messages received while the dictionary is loaded are redelivered once it is loaded.
+     *
+     * @param topicName
+     *            the topic of the message
+     * @param dictionaryId
+     *            the id of the dictionary, which is made of the first 63 bits of the SHA-256 digest of its content
+     * @return the dictionary, or null if it is unknown
+     */
+    byte[] getDictionary(String topicName, long dictionaryId);
+}
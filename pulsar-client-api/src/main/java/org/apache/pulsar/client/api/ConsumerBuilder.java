@@ -304,6 +304,24 @@ public interface ConsumerBuilder<T> extends Cloneable {
      */
     ConsumerBuilder<T> messageListener(MessageListener<T> messageListener);
 
+    /**
+     * Sets a {@link MessageBatchViewListener} for the consumer.
+     *
+     * <p>The application receives every entry through the listener, as a {@link MessageBatchView} that reads the
+     * messages of the entry in place instead of creating a {@link Message} per message, and calls to
+     * {@link Consumer#receive()} are not allowed. The permits of the consumer are given back to the broker once the
+     * listener returns.
+     *
+     * <p>It can't be used together with a {@link MessageListener}, a {@link DeadLetterPolicy}, retry, a
+     * {@link MessagePayloadProcessor} or {@link ConsumerCryptoFailureAction#CONSUME}, and the consumer interceptors are
+     * not called on receive.
+     *
+     * @param messageBatchViewListener
+     *            the listener object
+     * @return the consumer builder instance
+     */
+    ConsumerBuilder<T> messageBatchViewListener(MessageBatchViewListener<T> messageBatchViewListener);
+
     /**
      * Set the {@link MessageListenerExecutor} to be used for message listeners of <b>current consumer</b>.
      * <i>(default: use executor from PulsarClient,
@@ -330,6 +348,19 @@ public interface ConsumerBuilder<T> extends Cloneable {
      */
     ConsumerBuilder<T> cryptoKeyReader(CryptoKeyReader cryptoKeyReader);
 
+    /**
+     * Sets a {@link CompressionDictionaryReader}.
+     *
+     * <p>Configure the reader to be used to load the dictionaries the producers compressed the message payloads with.
+     * The messages compressed with a dictionary the reader can't load are kept unacknowledged, so that they are
+     * redelivered when the ack timeout expires.
+     *
+     * @param compressionDictionaryReader
+     *            CompressionDictionaryReader object
+     * @return the consumer builder instance
+     */
+    ConsumerBuilder<T> compressionDictionaryReader(CompressionDictionaryReader compressionDictionaryReader);
+
     /**
      * Sets the default implementation of {@link CryptoKeyReader}.
      *
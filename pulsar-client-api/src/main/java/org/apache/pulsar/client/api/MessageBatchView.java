@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.apache.pulsar.common.classification.InterfaceAudience;
+import org.apache.pulsar.common.classification.InterfaceStability;
+
+/**
+ * A cursor over the messages of an entry received by a consumer, delivered to a {@link MessageBatchViewListener}.
+ *
+ * <p>The view reads the messages directly from the buffer received from the broker: moving the cursor with
+ * {@link #next()} does not create a {@link Message} per message, and the key and the properties of a message are only
+ * decoded when they are accessed. The view, and the buffers returned by {@link #getDataBuffer()}, are only valid until
+ * {@link MessageBatchViewListener#received(Consumer, MessageBatchView)} returns.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * (consumer, batch) -> {
+ *     while (batch.next()) {
+ *         process(batch.getKey(), batch.getDataBuffer());
+ *     }
+ *     consumer.acknowledgeAsync(batch.getMessageId());
+ * }
+ * }</pre>
+ *
+ * @param <T> the type of the values of the messages
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface MessageBatchView<T> {
+
+    /**
+     * Get the id of the entry. Acknowledging it acknowledges all the messages of the view.
+     *
+     * @return the id of the entry
+     */
+    MessageId getMessageId();
+
+    /**
+     * Get the topic the entry was published to.
+     *
+     * @return the name of the topic
+     */
+    String getTopicName();
+
+    /**
+     * Get the number of messages in the entry, including the messages skipped by the cursor because they were already
+     * acknowledged.
+     *
+     * @return the number of messages in the entry
+     */
+    int getNumMessages();
+
+    /**
+     * Get the number of times the entry has been redelivered.
+     *
+     * @return the redelivery count of the entry
+     */
+    int getRedeliveryCount();
+
+    /**
+     * Move the cursor to the next message of the entry.
+     *
+     * @return false if there are no more messages in the entry
+     */
+    boolean next();
+
+    /**
+     * Get the index of the current message in the entry.
+     *
+     * @return the batch index of the current message
+     */
+    int getBatchIndex();
+
+    /**
+     * Get the id of the current message, it can be used to acknowledge the current message individually.
+     *
+     * @return the id of the current message
+     */
+    MessageId getCurrentMessageId();
+
+    /**
+     * Get the de-serialized value of the current message, according to the configured {@link Schema}.
+     *
+     * @return the value of the current message
+     */
+    T getValue();
+
+    /**
+     * Get a read-only view of the payload of the current message, without copying it.
+     *
+     * @return the payload of the current message
+     */
+    ByteBuffer getDataBuffer();
+
+    /**
+     * Get a copy of the payload of the current message.
+     *
+     * @return the payload of the current message
+     */
+    byte[] getData();
+
+    /**
+     * Get the size of the payload of the current message.
+     *
+     * @return the size of the payload in bytes
+     */
+    int size();
+
+    /**
+     * Check whether the current message has a key.
+     *
+     * @return true if the key was set while creating the message
+     */
+    boolean hasKey();
+
+    /**
+     * Get the key of the current message.
+     *
+     * @return the key of the message or null if it has no key
+     */
+    String getKey();
+
+    /**
+     * Get the bytes of the key of the current message.
+     *
+     * @return the key of the message or null if it has no key
+     */
+    byte[] getKeyBytes();
+
+    /**
+     * Get the value of a property of the current message, without decoding the other properties.
+     *
+     * @param name the name of the property
+     * @return the value of the property or null if the property is not present
+     */
+    String getProperty(String name);
+
+    /**
+     * Get the properties of the current message.
+     *
+     * @return an unmodifiable view of the properties of the message
+     */
+    Map<String, String> getProperties();
+
+    /**
+     * Get the event time of the current message.
+     *
+     * @return the event time of the message or 0 if it was not set
+     */
+    long getEventTime();
+
+    /**
+     * Get the publish time of the current message.
+     *
+     * @return the publish time of the message
+     */
+    long getPublishTime();
+
+    /**
+     * Get the sequence id of the current message.
+     *
+     * @return the sequence id of the message
+     */
+    long getSequenceId();
+
+    /**
+     * Get the name of the producer of the entry.
+     *
+     * @return the name of the producer
+     */
+    String getProducerName();
+}
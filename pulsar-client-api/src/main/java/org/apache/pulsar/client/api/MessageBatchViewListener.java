@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import java.io.Serializable;
+import org.apache.pulsar.common.classification.InterfaceAudience;
+import org.apache.pulsar.common.classification.InterfaceStability;
+
+/**
+ * A listener that will be called in order for every entry received, with a {@link MessageBatchView} over the messages
+ * of the entry.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface MessageBatchViewListener<T> extends Serializable {
+    /**
+     * This method is called whenever a new entry is received.
+     *
+     * <p>Entries are guaranteed to be delivered in order and from the same thread for a single consumer.
+     *
+     * <p>The view must not be used after this method returns. Application is responsible for acking the messages by
+     * calling any of consumer acknowledgement methods, e.g. with {@link MessageBatchView#getMessageId()} to acknowledge
+     * all the messages of the entry at once.
+     *
+     * @param consumer
+     *            the consumer that received the entry
+     * @param batch
+     *            the view over the messages of the entry
+     */
+    void received(Consumer<T> consumer, MessageBatchView<T> batch);
+}
@@ -43,4 +43,24 @@ public interface MessagePayloadFactory {
      * @return the created MessagePayload object
      */
     MessagePayload wrap(ByteBuffer buffer);
+
+    /**
+     * Create a payload whose underlying buffer refers to a NIO buffer, without copying it.
+     *
+     * <p>The content of the buffer must not be modified until the release callback is invoked. The callback is invoked
+     * once, when the last reference to the payload is released, e.g. after a producer that was given the payload
+     * received the acknowledgment of the message.
+     *
+     * <p>The default implementation copies the buffer and invokes the callback before returning.
+     *
+     * @param buffer the NIO buffer
+     * @param releaseCallback the callback to invoke when the buffer is no longer referenced by the payload
+     * @return the created MessagePayload object
+     */
+    default MessagePayload wrap(ByteBuffer buffer, Runnable releaseCallback) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer.duplicate()).flip();
+        releaseCallback.run();
+        return wrap(copy);
+    }
 }
@@ -306,6 +306,31 @@ public interface ProducerBuilder<T> extends Cloneable {
      */
     ProducerBuilder<T> compressionMinMsgBodySize(int compressionMinMsgBodySize);
 
+    /**
+     * Set a preset dictionary to compress the message payloads with.
+     *
+     * <p>A dictionary trained from sampled payloads of the topic, for example with
+     * {@code org.apache.pulsar.common.compression.CompressionDictionaryTrainer}, significantly improves the
+     * compression of small payloads sharing the same structure, such as JSON records. It requires the
+     * {@link CompressionType#ZLIB} compression type.
+     *
+     * <p>Since the payloads smaller than the {@link #compressionMinMsgBodySize(int)} threshold are not compressed,
+     * the threshold is lowered from its default of 4 KB to 0 when a dictionary is set, so that all the payloads are
+     * compressed with the dictionary. A threshold set to another value with
+     * {@link #compressionMinMsgBodySize(int)} is kept.
+     *
+     * <p>The id of the dictionary is recorded in the metadata of the messages, and the consumers must be able to
+     * load the dictionary from its id with a {@link CompressionDictionaryReader}. The dictionary can therefore not be
+     * modified once messages have been published with it: a new version of the dictionary has a different id. The
+     * messages are tagged with a distinct compression type on the wire, so the consumers of older versions can't
+     * decompress them and every consumer of the topic must support the dictionaries.
+     *
+     * @param dictionary
+     *            the dictionary, up to 32 KB
+     * @return the producer builder instance
+     */
+    ProducerBuilder<T> compressionDictionary(byte[] dictionary);
+
     /**
      * Set a custom message routing policy by passing an implementation of MessageRouter.
      *
@@ -631,4 +656,22 @@ public interface ProducerBuilder<T> extends Cloneable {
      * @return the producer builder instance
      */
     ProducerBuilder<T> enableLazyStartPartitionedProducers(boolean lazyStartPartitionedProducers);
+
+    /**
+     * Set the send pipeline mode for the producer. <i>default: disabled</i>
+     *
+     * <p>By default, the thread calling {@link Producer#sendAsync} adds the message to the batch, or serializes it,
+     * while holding a lock on the producer, which is also held by the IO thread when processing the receipts of the
+     * broker. When many threads send messages with the same producer, they contend on this lock.
+     *
+     * <p>When enabled, the sending threads only enqueue the messages into a lock-free queue, and a single task in the
+     * IO thread of the producer adds the enqueued messages to the batch and serializes them. The messages of a
+     * sending thread are still published in the order they were sent, and chunked messages are sent by the calling
+     * thread after the messages already enqueued.
+     *
+     * @param sendPipelineEnabled
+     *            enable or disable the send pipeline
+     * @return the producer builder instance
+     */
+    ProducerBuilder<T> enableSendPipeline(boolean sendPipelineEnabled);
 }
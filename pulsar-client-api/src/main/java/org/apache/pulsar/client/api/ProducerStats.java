@@ -122,6 +122,22 @@ public interface ProducerStats extends Serializable {
      */
     int getPendingQueueSize();
 
+    /**
+     * @return the maximum number of messages in a batch currently used by the producer, which differs from the
+     *         configured one when the batcher adapts it to the load
+     */
+    default int getBatchingMaxMessages() {
+        return 0;
+    }
+
+    /**
+     * @return the batching delay in microseconds currently used by the producer, which differs from the configured
+     *         one when the batcher adapts it to the send latency
+     */
+    default long getBatchingMaxPublishDelayMicros() {
+        return 0;
+    }
+
     /**
      * @return stats for each partition if topic is partitioned topic
      */
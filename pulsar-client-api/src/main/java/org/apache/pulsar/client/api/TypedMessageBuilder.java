@@ -122,6 +122,32 @@ public interface TypedMessageBuilder<T> extends Serializable {
      */
     TypedMessageBuilder<T> value(T value);
 
+    /**
+     * Set the already encoded payload of the message.
+     *
+     * <p>The payload is sent as is, without being encoded by the schema of the producer, and takes precedence over
+     * {@link #value(Object)}. When it is created from {@link MessagePayloadFactory#DEFAULT}, the underlying buffer is
+     * not copied on its way to the broker. The message builder takes the ownership of the payload: it will be released
+     * by the producer once the message is sent, or fails to be sent, and must not be used by the application after
+     * calling this method.
+     *
+     * <p>Example:
+     * <pre>{@code
+     * ByteBuffer image = ...; // a direct buffer
+     * producer.newMessage()
+     *         .payload(MessagePayloadFactory.DEFAULT.wrap(image, () -> imagePool.release(image)))
+     *         .sendAsync();
+     * }</pre>
+     *
+     * @param payload
+     *            the encoded payload of the message
+     * @return the message builder instance
+     * @throws UnsupportedOperationException if the message builder doesn't support setting the payload
+     */
+    default TypedMessageBuilder<T> payload(MessagePayload payload) {
+        throw new UnsupportedOperationException("payload is not supported by " + getClass().getName());
+    }
+
     /**
      * Sets a new property on a message.
      *
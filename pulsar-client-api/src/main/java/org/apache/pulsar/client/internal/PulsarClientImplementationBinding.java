@@ -229,6 +229,8 @@ public interface PulsarClientImplementationBinding {
 
     BatcherBuilder newKeyBasedBatcherBuilder();
 
+    BatcherBuilder newAdaptiveBatcherBuilder();
+
     MessagePayloadFactory newDefaultMessagePayloadFactory();
 
     /**
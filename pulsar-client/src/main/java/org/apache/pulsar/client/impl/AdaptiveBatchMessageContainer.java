@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch message container that tunes the batch size and the batching delay of the producer from the observed load.
+ *
+ * <p>When a new batch is started, the container estimates how many messages will arrive while a batch is lingering,
+ * using the average gap between two added messages. The linger is half of the average send receipt latency, bounded
+ * by the configured batching delay: while a batch is in flight, holding the next one for a fraction of the round trip
+ * adds little latency. If less than two messages are expected in that window, the producer is considered idle and the
+ * batch is closed with a single message so it is flushed immediately. Under load the batch grows up to the configured
+ * maximum number of messages.
+ */
+class AdaptiveBatchMessageContainer extends BatchMessageContainerImpl {
+
+    static final long MIN_BATCHING_DELAY_MICROS = 100;
+    private static final double EWMA_WEIGHT = 0.125;
+
+    private int configuredMaxNumMessagesInBatch;
+    private long configuredMaxPublishDelayMicros;
+
+    // averages in nanoseconds, the arrival gap is only updated while holding the producer lock
+    private double arrivalGapNanos = 0;
+    private volatile double sendLatencyNanos = 0;
+    private long lastAddedNanos = 0;
+
+    private volatile long currentPublishDelayMicros;
+
+    @Override
+    public void setProducer(ProducerImpl<?> producer) {
+        super.setProducer(producer);
+        this.configuredMaxNumMessagesInBatch = maxNumMessagesInBatch > 0 ? maxNumMessagesInBatch : Integer.MAX_VALUE;
+        this.configuredMaxPublishDelayMicros = producer.getConfiguration().getBatchingMaxPublishDelayMicros();
+        this.maxNumMessagesInBatch = 1;
+        this.currentPublishDelayMicros = Math.min(MIN_BATCHING_DELAY_MICROS, configuredMaxPublishDelayMicros);
+    }
+
+    @Override
+    public boolean add(MessageImpl<?> msg, SendCallback callback) {
+        long now = System.nanoTime();
+        if (lastAddedNanos != 0) {
+            long gap = now - lastAddedNanos;
+            arrivalGapNanos = arrivalGapNanos == 0 ? gap : arrivalGapNanos + EWMA_WEIGHT * (gap - arrivalGapNanos);
+        }
+        lastAddedNanos = now;
+        if (numMessagesInBatch == 0) {
+            adapt();
+        }
+        return super.add(msg, callback);
+    }
+
+    @Override
+    public void recordSendLatency(long latencyNanos) {
+        double current = sendLatencyNanos;
+        sendLatencyNanos = current == 0 ? latencyNanos : current + EWMA_WEIGHT * (latencyNanos - current);
+    }
+
+    @Override
+    public long getBatchingMaxPublishDelayMicros(long configuredDelayMicros) {
+        return currentPublishDelayMicros;
+    }
+
+    @VisibleForTesting
+    int getCurrentMaxNumMessagesInBatch() {
+        return maxNumMessagesInBatch;
+    }
+
+    private void adapt() {
+        long delayMicros = Math.min(configuredMaxPublishDelayMicros,
+                Math.max(MIN_BATCHING_DELAY_MICROS, (long) (sendLatencyNanos / 2) / 1000));
+        double expectedMessages = arrivalGapNanos > 0
+                ? TimeUnit.MICROSECONDS.toNanos(delayMicros) / arrivalGapNanos : 0;
+        if (expectedMessages < 2) {
+            maxNumMessagesInBatch = 1;
+        } else {
+            maxNumMessagesInBatch = (int) Math.min(configuredMaxNumMessagesInBatch, expectedMessages);
+        }
+        currentPublishDelayMicros = delayMicros;
+        ProducerStatsRecorder stats = producer != null ? producer.getStats() : null;
+        if (stats != null) {
+            stats.updateBatchingSettings(maxNumMessagesInBatch, delayMicros);
+        }
+    }
+}
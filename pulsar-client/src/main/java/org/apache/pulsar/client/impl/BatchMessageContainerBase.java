@@ -90,6 +90,25 @@ public interface BatchMessageContainerBase extends BatchMessageContainer {
      */
     long getFirstAddedTimestamp();
 
+    /**
+     * Get the maximum time a message can stay in the batch container before the batch is flushed.
+     *
+     * @param configuredDelayMicros the batching delay configured on the producer
+     * @return the batching delay in microseconds, the configured one unless the container adapts it
+     */
+    default long getBatchingMaxPublishDelayMicros(long configuredDelayMicros) {
+        return configuredDelayMicros;
+    }
+
+    /**
+     * Record the time the broker took to acknowledge a batch built by this container.
+     *
+     * @param latencyNanos the send receipt latency in nanoseconds
+     */
+    default void recordSendLatency(long latencyNanos) {
+        // no-op, the batch size and the batching delay are fixed by the producer configuration
+    }
+
     /**
      * Clear the container's payload if build {@link OpSendMsg} failed.
      */
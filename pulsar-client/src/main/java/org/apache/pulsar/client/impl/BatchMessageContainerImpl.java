@@ -174,9 +174,10 @@ class BatchMessageContainerImpl extends AbstractBatchMessageContainer {
         ByteBuf compressedPayload;
         if (clientOperation && producer != null){
             if (compressionType != CompressionType.NONE
-                    && uncompressedSize > producer.conf.getCompressMinMsgBodySize()) {
+                    && uncompressedSize > producer.getCompressMinMsgBodySize()) {
                 compressedPayload = producer.applyCompression(batchedMessageMetadataAndPayload);
                 messageMetadata.setCompression(compressionType);
+                producer.setCompressionDictionaryId(messageMetadata);
                 messageMetadata.setUncompressedSize(uncompressedSize);
             } else {
                 compressedPayload = batchedMessageMetadataAndPayload;
@@ -256,7 +256,7 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
 
     @Override
     public Message<T> receive() throws PulsarClientException {
-        if (listener != null) {
+        if (hasListener()) {
             throw new PulsarClientException.InvalidConfigurationException(
                     "Cannot use receive() when a listener has been set");
         }
@@ -266,7 +266,7 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
 
     @Override
     public CompletableFuture<Message<T>> receiveAsync() {
-        if (listener != null) {
+        if (hasListener()) {
             return FutureUtil.failedFuture(new PulsarClientException.InvalidConfigurationException(
                     "Cannot use receive() when a listener has been set"));
         }
@@ -280,6 +280,10 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
 
     protected abstract Message<T> internalReceive() throws PulsarClientException;
 
+    private boolean hasListener() {
+        return listener != null || conf.getMessageBatchViewListener() != null;
+    }
+
     protected abstract CompletableFuture<Message<T>> internalReceiveAsync();
 
     @Override
@@ -288,7 +292,7 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
             throw new PulsarClientException.InvalidConfigurationException(
                     "Can't use receive with timeout, if the queue size is 0");
         }
-        if (listener != null) {
+        if (hasListener()) {
             throw new PulsarClientException.InvalidConfigurationException(
                     "Cannot use receive() when a listener has been set");
         }
@@ -973,7 +977,7 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
     }
 
     private void verifyBatchReceive() throws PulsarClientException {
-        if (listener != null) {
+        if (hasListener()) {
             throw new PulsarClientException.InvalidConfigurationException(
                 "Cannot use receive() when a listener has been set");
         }
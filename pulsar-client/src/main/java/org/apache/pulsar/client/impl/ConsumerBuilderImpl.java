@@ -35,6 +35,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pulsar.client.admin.PulsarAdminException;
 import org.apache.pulsar.client.api.BatchReceivePolicy;
+import org.apache.pulsar.client.api.CompressionDictionaryReader;
 import org.apache.pulsar.client.api.Consumer;
 import org.apache.pulsar.client.api.ConsumerBuilder;
 import org.apache.pulsar.client.api.ConsumerCryptoFailureAction;
@@ -43,6 +44,7 @@ import org.apache.pulsar.client.api.ConsumerInterceptor;
 import org.apache.pulsar.client.api.CryptoKeyReader;
 import org.apache.pulsar.client.api.DeadLetterPolicy;
 import org.apache.pulsar.client.api.KeySharedPolicy;
+import org.apache.pulsar.client.api.MessageBatchViewListener;
 import org.apache.pulsar.client.api.MessageCrypto;
 import org.apache.pulsar.client.api.MessageListener;
 import org.apache.pulsar.client.api.MessageListenerExecutor;
@@ -172,6 +174,14 @@ public class ConsumerBuilderImpl<T> implements ConsumerBuilder<T> {
             return FutureUtil.failedFuture(
                     new InvalidConfigurationException("KeySharedPolicy must set with KeyShared subscription"));
         }
+        if (conf.getMessageBatchViewListener() != null && (conf.getMessageListener() != null
+                || conf.getDeadLetterPolicy() != null || conf.isRetryEnable() || conf.getPayloadProcessor() != null
+                || conf.getCryptoFailureAction() == ConsumerCryptoFailureAction.CONSUME
+                || conf.getReceiverQueueSize() == 0)) {
+            return FutureUtil.failedFuture(new InvalidConfigurationException("MessageBatchViewListener can't be set"
+                    + " with a MessageListener, a DeadLetterPolicy, retry, a MessagePayloadProcessor, the CONSUME"
+                    + " crypto failure action or a receiver queue size of 0"));
+        }
         if (conf.getBatchReceivePolicy() != null) {
             conf.setReceiverQueueSize(
                     Math.max(conf.getBatchReceivePolicy().getMaxNumMessages(), conf.getReceiverQueueSize()));
@@ -333,6 +343,13 @@ public class ConsumerBuilderImpl<T> implements ConsumerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ConsumerBuilder<T> messageBatchViewListener(
+            @NonNull MessageBatchViewListener<T> messageBatchViewListener) {
+        conf.setMessageBatchViewListener(messageBatchViewListener);
+        return this;
+    }
+
     @Override
     public ConsumerBuilder<T> messageListenerExecutor(MessageListenerExecutor messageListenerExecutor) {
         checkArgument(messageListenerExecutor != null, "messageListenerExecutor needs to be not null");
@@ -352,6 +369,13 @@ public class ConsumerBuilderImpl<T> implements ConsumerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ConsumerBuilder<T> compressionDictionaryReader(
+            @NonNull CompressionDictionaryReader compressionDictionaryReader) {
+        conf.setCompressionDictionaryReader(compressionDictionaryReader);
+        return this;
+    }
+
     @Override
     public ConsumerBuilder<T> defaultCryptoKeyReader(String privateKey) {
         checkArgument(StringUtils.isNotBlank(privateKey), "privateKey cannot be blank");
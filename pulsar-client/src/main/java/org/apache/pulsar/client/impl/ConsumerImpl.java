@@ -44,6 +44,7 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -74,12 +75,14 @@ import lombok.Getter;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Triple;
+import org.apache.pulsar.client.api.CompressionDictionaryReader;
 import org.apache.pulsar.client.api.Consumer;
 import org.apache.pulsar.client.api.ConsumerCryptoFailureAction;
 import org.apache.pulsar.client.api.DeadLetterPolicy;
 import org.apache.pulsar.client.api.DeadLetterProducerBuilderContext;
 import org.apache.pulsar.client.api.DeadLetterProducerBuilderCustomizer;
 import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageBatchViewListener;
 import org.apache.pulsar.client.api.MessageCrypto;
 import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.MessageIdAdv;
@@ -194,6 +197,7 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
 
     private final boolean readCompacted;
     private final boolean resetIncludeHead;
+    private final MessageBatchViewListener<T> batchViewListener;
 
     private final SubscriptionInitialPosition subscriptionInitialPosition;
     private final ConnectionHandler connectionHandler;
@@ -213,6 +217,9 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
 
     protected volatile boolean paused;
 
+    // dictionary id -> the messages kept unacked while the compression dictionary is loaded
+    private final Map<Long, Set<MessageId>> messagesPendingCompressionDictionary = new ConcurrentHashMap<>();
+
     protected Map<String, ChunkedMessageCtx> chunkedMessagesMap = new ConcurrentHashMap<>();
     private int pendingChunkedMessageCount = 0;
     protected long expireTimeOfIncompleteChunkedMessageMillis = 0;
@@ -326,6 +333,7 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
         this.subscriptionInitialPosition = conf.getSubscriptionInitialPosition();
         this.negativeAcksTracker = new NegativeAcksTracker(this, conf);
         this.resetIncludeHead = conf.isResetIncludeHead();
+        this.batchViewListener = conf.getMessageBatchViewListener();
         this.createTopicIfDoesNotExist = createTopicIfDoesNotExist;
         this.maxPendingChunkedMessage = conf.getMaxPendingChunkedMessage();
         this.pendingChunkedMessageUuidQueue = new GrowableArrayBlockingQueue<>();
@@ -1530,6 +1538,12 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
                 return;
             }
 
+            if (batchViewListener != null) {
+                // uncompressedPayload is released with the view so we don't need to call release() again
+                notifyBatchView(msgId, msgMetadata, uncompressedPayload, false, 0, null, redeliveryCount, cnx);
+                return;
+            }
+
             final MessageImpl<T> message =
                     newMessage(msgId, brokerEntryMetadata, msgMetadata, uncompressedPayload,
                             schema, redeliveryCount, consumerEpoch);
@@ -1549,6 +1563,19 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
                 }
             }
             executeNotifyCallback(message);
+        } else if (batchViewListener != null) {
+            int firstIndex = 0;
+            if (this.topicName.isPersistent() && isSameEntry(msgId)) {
+                firstIndex = resetIncludeHead ? startMessageId.getBatchIndex() : startMessageId.getBatchIndex() + 1;
+            }
+            BitSetRecyclable ackBitSet = null;
+            if (!ackSet.isEmpty()) {
+                ackBitSet = BitSetRecyclable.valueOf(SafeCollectionUtils.longListToArray(ackSet));
+            }
+            // uncompressedPayload is released with the view so we don't need to call release() again
+            notifyBatchView(msgId, msgMetadata, uncompressedPayload, true, firstIndex, ackBitSet, redeliveryCount,
+                    cnx);
+            return;
         } else {
             // handle batch message enqueuing; uncompressed payload has all messages in batch
             receiveIndividualMessagesFromBatch(brokerEntryMetadata, msgMetadata, redeliveryCount, ackSet,
@@ -1560,6 +1587,45 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
 
     }
 
+    /**
+     * Hand an entry to the {@link MessageBatchViewListener} without creating a message for each of its messages.
+     *
+     * <p>The permits of the entry are only returned once the listener returns, so that the broker does not push more
+     * entries than the application is able to process.
+     */
+    private void notifyBatchView(MessageIdImpl msgId, MessageMetadata msgMetadata, ByteBuf uncompressedPayload,
+                                 boolean batched, int firstIndex, BitSetRecyclable ackBitSet, int redeliveryCount,
+                                 ClientCnx cnx) {
+        // msgMetadata is a thread local instance reused for the next entry
+        MessageBatchViewImpl<T> view = new MessageBatchViewImpl<>(topic, msgId,
+                new MessageMetadata().copyFrom(msgMetadata), uncompressedPayload, batched, firstIndex, ackBitSet,
+                schema, redeliveryCount);
+        int permits = view.getNumPermits();
+        if (acknowledgmentsGroupingTracker.isDuplicate(msgId)) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] [{}] Ignoring entry as it was already being acked earlier by same consumer {}/{}",
+                        topic, subscription, consumerName, msgId);
+            }
+            view.release();
+            increaseAvailablePermits(cnx, permits);
+            return;
+        }
+        trackMessage(msgId, redeliveryCount);
+        externalPinnedExecutor.execute(() -> {
+            try {
+                batchViewListener.received(ConsumerImpl.this, view);
+            } catch (Throwable t) {
+                log.error("[{}][{}] Message batch view listener error in processing entry: {}", topic, subscription,
+                        msgId, t);
+            } finally {
+                view.release();
+                if (cnx == cnx()) {
+                    increaseAvailablePermits(cnx, permits);
+                }
+            }
+        });
+    }
+
     private ByteBuf processMessageChunk(ByteBuf compressedPayload, MessageMetadata msgMetadata, MessageIdImpl msgId,
             MessageIdData messageId, ClientCnx cnx) {
         if (msgMetadata.getChunkId() != (msgMetadata.getNumChunksFromMsg() - 1)) {
@@ -2079,7 +2145,23 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
     private ByteBuf uncompressPayloadIfNeeded(MessageIdData messageId, MessageMetadata msgMetadata, ByteBuf payload,
             ClientCnx currentCnx, boolean checkMaxMessageSize) {
         CompressionType compressionType = msgMetadata.getCompression();
-        CompressionCodec codec = CompressionCodecProvider.getCompressionCodec(compressionType);
+        CompressionCodec codec;
+        if (compressionType == CompressionType.ZLIB_DICT || msgMetadata.hasCompressionDictionaryId()) {
+            if (!msgMetadata.hasCompressionDictionaryId()) {
+                log.error("[{}][{}] Failed to decompress message at {} since its compression dictionary is missing",
+                        topic, subscription, messageId);
+                discardCorruptedMessage(messageId, currentCnx, ValidationError.DecompressionError);
+                return null;
+            }
+            long dictionaryId = msgMetadata.getCompressionDictionaryId();
+            codec = client.getCompressionDictionaryCodecs().getCodec(dictionaryId);
+            if (codec == null) {
+                onCompressionDictionaryNotLoaded(messageId, msgMetadata, currentCnx, dictionaryId);
+                return null;
+            }
+        } else {
+            codec = CompressionCodecProvider.getCompressionCodec(compressionType);
+        }
         int uncompressedSize = msgMetadata.getUncompressedSize();
         int payloadSize = payload.readableBytes();
         if (checkMaxMessageSize && payloadSize > getConnectionHandler().getMaxMessageSize()) {
@@ -2100,6 +2182,75 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
         }
     }
 
+    /**
+     * Handle a message compressed with a dictionary which isn't loaded yet. The message is kept unacked, so that it is
+     * redelivered once the dictionary is loaded or on the ack timeout, unless the consumer is configured to discard
+     * such messages.
+     */
+    private void onCompressionDictionaryNotLoaded(MessageIdData messageId, MessageMetadata msgMetadata,
+                                                  ClientCnx currentCnx, long dictionaryId) {
+        CompressionDictionaryReader reader = conf.getCompressionDictionaryReader();
+        if (reader == null && conf.isDiscardUnknownCompressionDictionaryMessages()) {
+            log.error("[{}][{}] Discarding message at {} since its compression dictionary {} is unknown",
+                    topic, subscription, messageId, dictionaryId);
+            discardMessage(messageId, currentCnx, ValidationError.DecompressionError,
+                    msgMetadata.getNumMessagesInBatch());
+            return;
+        }
+        MessageId m = new MessageIdImpl(messageId.getLedgerId(), messageId.getEntryId(), partitionIndex);
+        unAckedMessageTracker.add(m);
+        increaseAvailablePermits(currentCnx, msgMetadata.getNumMessagesInBatch());
+        if (reader == null) {
+            log.error("[{}][{}] Message delivery failed at {} since no CompressionDictionaryReader is configured to"
+                    + " load its compression dictionary {}", topic, subscription, messageId, dictionaryId);
+            return;
+        }
+        boolean[] loadDictionary = new boolean[1];
+        messagesPendingCompressionDictionary.compute(dictionaryId, (__, messageIds) -> {
+            if (messageIds == null) {
+                messageIds = new HashSet<>();
+                loadDictionary[0] = true;
+            }
+            messageIds.add(m);
+            return messageIds;
+        });
+        if (!loadDictionary[0]) {
+            return;
+        }
+        // the dictionary may be fetched from a remote store, so it isn't loaded on the IO thread
+        client.getCompressionDictionaryCodecs().loadCodec(dictionaryId, id -> reader.getDictionary(topic, id),
+                client.getInternalExecutorService()).whenComplete((codec, e) -> {
+            Set<MessageId> messageIds = messagesPendingCompressionDictionary.remove(dictionaryId);
+            if (messageIds == null) {
+                return;
+            }
+            if (e == null) {
+                redeliverUnacknowledgedMessages(messageIds);
+                return;
+            }
+            log.warn("[{}][{}] Failed to load the compression dictionary {}", topic, subscription, dictionaryId, e);
+            if (conf.isDiscardUnknownCompressionDictionaryMessages()) {
+                discardMessages(messageIds, ValidationError.DecompressionError);
+            }
+        });
+    }
+
+    private void discardMessages(Set<MessageId> messageIds, ValidationError validationError) {
+        ClientCnx cnx = cnx();
+        if (cnx == null) {
+            return;
+        }
+        for (MessageId messageId : messageIds) {
+            MessageIdImpl id = (MessageIdImpl) messageId;
+            log.error("[{}][{}] Discarding message at {}:{}", topic, subscription, id.getLedgerId(), id.getEntryId());
+            unAckedMessageTracker.remove(id);
+            ByteBuf cmd = Commands.newAck(consumerId, id.getLedgerId(), id.getEntryId(), null,
+                    AckType.Individual, validationError, Collections.emptyMap(), -1);
+            cnx.ctx().writeAndFlush(cmd, cnx.ctx().voidPromise());
+            stats.incrementNumReceiveFailed();
+        }
+    }
+
     private boolean verifyChecksum(ByteBuf headersAndPayload, MessageIdData messageId) {
 
         if (hasChecksum(headersAndPayload)) {
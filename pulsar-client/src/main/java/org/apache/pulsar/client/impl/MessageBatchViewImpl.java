@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.pulsar.client.api.MessageBatchView;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.schema.KeyValueSchemaImpl;
+import org.apache.pulsar.common.api.proto.KeyValue;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.api.proto.SingleMessageMetadata;
+import org.apache.pulsar.common.schema.KeyValueEncodingType;
+import org.apache.pulsar.common.util.collections.BitSetRecyclable;
+
+/**
+ * A {@link MessageBatchView} that reads the messages of an entry from its uncompressed payload.
+ *
+ * <p>The metadata of the current message is parsed into a single {@link SingleMessageMetadata} instance reused for
+ * all the messages of the entry, and its string fields are only decoded when accessed.
+ */
+class MessageBatchViewImpl<T> implements MessageBatchView<T> {
+
+    private final String topicName;
+    private final MessageIdImpl messageId;
+    private final MessageMetadata msgMetadata;
+    private final ByteBuf payload;
+    private final boolean batched;
+    private final int numMessages;
+    private final int firstIndex;
+    private final BitSetRecyclable ackBitSet;
+    private final Schema<T> schema;
+    private final int redeliveryCount;
+
+    private final SingleMessageMetadata singleMessageMetadata = new SingleMessageMetadata();
+    private BitSet ackSetInMessageId;
+    private int index = -1;
+    private int payloadOffset;
+    private int payloadSize;
+
+    /**
+     * @param msgMetadata the metadata of the entry, owned by the view
+     * @param payload the uncompressed payload of the entry, released with the view
+     * @param batched whether the payload contains a batch of messages, each one prefixed with its metadata
+     * @param firstIndex the index of the first message to read, the messages before it are skipped
+     * @param ackBitSet the messages of the batch that are not acknowledged yet, or null if none is acknowledged,
+     *                  released with the view
+     */
+    MessageBatchViewImpl(String topicName, MessageIdImpl messageId, MessageMetadata msgMetadata, ByteBuf payload,
+                         boolean batched, int firstIndex, BitSetRecyclable ackBitSet, Schema<T> schema,
+                         int redeliveryCount) {
+        this.topicName = topicName;
+        this.messageId = messageId;
+        this.msgMetadata = msgMetadata;
+        this.payload = payload;
+        this.batched = batched;
+        this.numMessages = batched ? msgMetadata.getNumMessagesInBatch() : 1;
+        this.firstIndex = firstIndex;
+        this.ackBitSet = ackBitSet;
+        this.schema = schema;
+        this.redeliveryCount = redeliveryCount;
+    }
+
+    @Override
+    public MessageId getMessageId() {
+        return messageId;
+    }
+
+    @Override
+    public String getTopicName() {
+        return topicName;
+    }
+
+    @Override
+    public int getNumMessages() {
+        return numMessages;
+    }
+
+    @Override
+    public int getRedeliveryCount() {
+        return redeliveryCount;
+    }
+
+    @Override
+    public boolean next() {
+        while (++index < numMessages) {
+            if (batched) {
+                int metadataSize = (int) payload.readUnsignedInt();
+                singleMessageMetadata.parseFrom(payload, metadataSize);
+                payloadOffset = payload.readerIndex();
+                payloadSize = singleMessageMetadata.getPayloadSize();
+                payload.skipBytes(payloadSize);
+                if (index < firstIndex || singleMessageMetadata.isCompactedOut()
+                        || (ackBitSet != null && !ackBitSet.get(index))) {
+                    continue;
+                }
+            } else {
+                payloadOffset = payload.readerIndex();
+                payloadSize = payload.readableBytes();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int getBatchIndex() {
+        return index;
+    }
+
+    @Override
+    public MessageId getCurrentMessageId() {
+        if (!batched) {
+            return messageId;
+        }
+        if (ackSetInMessageId == null) {
+            ackSetInMessageId = BatchMessageIdImpl.newAckSet(numMessages);
+        }
+        return new BatchMessageIdImpl(messageId.getLedgerId(), messageId.getEntryId(),
+                messageId.getPartitionIndex(), index, numMessages, ackSetInMessageId);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getValue() {
+        if (batched ? singleMessageMetadata.hasNullValue() && singleMessageMetadata.isNullValue()
+                : msgMetadata.hasNullValue() && msgMetadata.isNullValue()) {
+            return null;
+        }
+        byte[] schemaVersion = schema.supportSchemaVersioning() && msgMetadata.hasSchemaVersion()
+                ? msgMetadata.getSchemaVersion() : null;
+        if (schema instanceof KeyValueSchemaImpl
+                && ((KeyValueSchemaImpl<?, ?>) schema).getKeyValueEncodingType() == KeyValueEncodingType.SEPARATED) {
+            return (T) ((KeyValueSchemaImpl<?, ?>) schema).decode(getKeyBytes(), getData(), schemaVersion);
+        }
+        return schemaVersion == null ? schema.decode(getDataBuffer()) : schema.decode(getDataBuffer(), schemaVersion);
+    }
+
+    @Override
+    public ByteBuffer getDataBuffer() {
+        return payload.nioBuffer(payloadOffset, payloadSize).asReadOnlyBuffer();
+    }
+
+    @Override
+    public byte[] getData() {
+        byte[] data = new byte[payloadSize];
+        payload.getBytes(payloadOffset, data);
+        return data;
+    }
+
+    @Override
+    public int size() {
+        return payloadSize;
+    }
+
+    @Override
+    public boolean hasKey() {
+        return batched ? singleMessageMetadata.hasPartitionKey() : msgMetadata.hasPartitionKey();
+    }
+
+    @Override
+    public String getKey() {
+        if (!hasKey()) {
+            return null;
+        }
+        return batched ? singleMessageMetadata.getPartitionKey() : msgMetadata.getPartitionKey();
+    }
+
+    @Override
+    public byte[] getKeyBytes() {
+        if (!hasKey() || (batched ? singleMessageMetadata.isNullPartitionKey() : msgMetadata.isNullPartitionKey())) {
+            return null;
+        }
+        boolean base64Encoded = batched ? singleMessageMetadata.isPartitionKeyB64Encoded()
+                : msgMetadata.isPartitionKeyB64Encoded();
+        return base64Encoded ? Base64.getDecoder().decode(getKey()) : getKey().getBytes(UTF_8);
+    }
+
+    @Override
+    public String getProperty(String name) {
+        int count = batched ? singleMessageMetadata.getPropertiesCount() : msgMetadata.getPropertiesCount();
+        for (int i = 0; i < count; i++) {
+            KeyValue property = batched ? singleMessageMetadata.getPropertyAt(i) : msgMetadata.getPropertyAt(i);
+            if (property.getKey().equals(name)) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        int count = batched ? singleMessageMetadata.getPropertiesCount() : msgMetadata.getPropertiesCount();
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> properties = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            KeyValue property = batched ? singleMessageMetadata.getPropertyAt(i) : msgMetadata.getPropertyAt(i);
+            properties.put(property.getKey(), property.getValue());
+        }
+        return Collections.unmodifiableMap(properties);
+    }
+
+    @Override
+    public long getEventTime() {
+        if (batched && singleMessageMetadata.hasEventTime()) {
+            return singleMessageMetadata.getEventTime();
+        }
+        return msgMetadata.hasEventTime() ? msgMetadata.getEventTime() : 0;
+    }
+
+    @Override
+    public long getPublishTime() {
+        return msgMetadata.getPublishTime();
+    }
+
+    @Override
+    public long getSequenceId() {
+        if (batched && singleMessageMetadata.hasSequenceId()) {
+            return singleMessageMetadata.getSequenceId();
+        }
+        return msgMetadata.hasSequenceId() ? msgMetadata.getSequenceId() : -1;
+    }
+
+    @Override
+    public String getProducerName() {
+        return msgMetadata.getProducerName();
+    }
+
+    /**
+     * Get the number of messages of the entry the broker counted against the permits of the consumer.
+     */
+    int getNumPermits() {
+        if (ackBitSet == null) {
+            return numMessages;
+        }
+        int permits = 0;
+        for (int i = 0; i < numMessages; i++) {
+            if (ackBitSet.get(i)) {
+                permits++;
+            }
+        }
+        return permits;
+    }
+
+    void release() {
+        payload.release();
+        if (ackBitSet != null) {
+            ackBitSet.recycle();
+        }
+    }
+}
@@ -86,6 +86,13 @@ public class MessageImpl<T> implements Message<T> {
     // Constructor for out-going message
     public static <T> MessageImpl<T> create(MessageMetadata msgMetadata, ByteBuffer payload, Schema<T> schema,
             String topic) {
+        return create(msgMetadata, Unpooled.wrappedBuffer(payload), schema, topic);
+    }
+
+    // Constructor for out-going message whose payload is already encoded, the ownership of the payload is transferred
+    // to the message
+    public static <T> MessageImpl<T> create(MessageMetadata msgMetadata, ByteBuf payload, Schema<T> schema,
+            String topic) {
         @SuppressWarnings("unchecked")
         MessageImpl<T> msg = (MessageImpl<T>) RECYCLER.get();
         msg.msgMetadata.clear();
@@ -93,11 +100,11 @@ public class MessageImpl<T> implements Message<T> {
         msg.messageId = null;
         msg.topic = topic;
         msg.cnx = null;
-        msg.payload = Unpooled.wrappedBuffer(payload);
+        msg.payload = payload;
         msg.properties = null;
         msg.schema = schema;
         msg.schemaHash = SchemaHash.of(schema);
-        msg.uncompressedSize = payload.remaining();
+        msg.uncompressedSize = payload.readableBytes();
         return msg;
     }
 
@@ -18,10 +18,12 @@
  */
 package org.apache.pulsar.client.impl;
 
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
 import org.apache.pulsar.client.api.MessagePayload;
 import org.apache.pulsar.client.api.MessagePayloadFactory;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 
 public class MessagePayloadFactoryImpl implements MessagePayloadFactory {
 
@@ -34,4 +36,28 @@ public class MessagePayloadFactoryImpl implements MessagePayloadFactory {
     public MessagePayload wrap(ByteBuffer buffer) {
         return MessagePayloadImpl.create(Unpooled.wrappedBuffer(buffer));
     }
+
+    @Override
+    public MessagePayload wrap(ByteBuffer buffer, Runnable releaseCallback) {
+        return MessagePayloadImpl.create(new ReleaseCallbackByteBuf(buffer, releaseCallback));
+    }
+
+    /**
+     * A view of a NIO buffer that invokes a callback when its last reference is released.
+     */
+    private static class ReleaseCallbackByteBuf extends CompositeByteBuf {
+
+        private final Runnable releaseCallback;
+
+        ReleaseCallbackByteBuf(ByteBuffer buffer, Runnable releaseCallback) {
+            super(PulsarByteBufAllocator.DEFAULT, buffer.isDirect(), 1, Unpooled.wrappedBuffer(buffer));
+            this.releaseCallback = releaseCallback;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            releaseCallback.run();
+        }
+    }
 }
@@ -47,6 +47,7 @@ import org.apache.pulsar.client.api.interceptor.ProducerInterceptor;
 import org.apache.pulsar.client.api.interceptor.ProducerInterceptorWrapper;
 import org.apache.pulsar.client.impl.conf.ConfigurationDataUtils;
 import org.apache.pulsar.client.impl.conf.ProducerConfigurationData;
+import org.apache.pulsar.common.compression.CompressionCodecZLib;
 import org.apache.pulsar.common.util.FutureUtil;
 
 @Getter(AccessLevel.PUBLIC)
@@ -95,6 +96,8 @@ public class ProducerBuilderImpl<T> implements ProducerBuilder<T> {
         // config validation
         checkArgument(!(conf.isBatchingEnabled() && conf.isChunkingEnabled()),
                 "Batching and chunking of messages can't be enabled together");
+        checkArgument(conf.getCompressionDictionary() == null || conf.getCompressionType() == CompressionType.ZLIB,
+                "A compression dictionary can only be used with the ZLIB compression type");
         if (conf.getTopicName() == null) {
             return FutureUtil
                     .failedFuture(new IllegalArgumentException("Topic name must be set on the producer builder"));
@@ -180,6 +183,14 @@ public class ProducerBuilderImpl<T> implements ProducerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ProducerBuilder<T> compressionDictionary(@NonNull byte[] dictionary) {
+        checkArgument(dictionary.length > 0 && dictionary.length <= CompressionCodecZLib.MAX_DICTIONARY_SIZE,
+                "The size of the dictionary must be between 1 and %s bytes", CompressionCodecZLib.MAX_DICTIONARY_SIZE);
+        conf.setCompressionDictionary(dictionary);
+        return this;
+    }
+
     @Override
     public ProducerBuilder<T> hashingScheme(@NonNull HashingScheme hashingScheme) {
         conf.setHashingScheme(hashingScheme);
@@ -344,6 +355,12 @@ public class ProducerBuilderImpl<T> implements ProducerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ProducerBuilder<T> enableSendPipeline(boolean sendPipelineEnabled) {
+        conf.setSendPipelineEnabled(sendPipelineEnabled);
+        return this;
+    }
+
     /**
      * Use this config to automatically create an initial subscription when creating the topic.
      * If this field is not set, the initial subscription will not be created.
@@ -44,6 +44,7 @@ import io.netty.util.ReferenceCounted;
 import io.netty.util.Timeout;
 import io.netty.util.TimerTask;
 import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.PlatformDependent;
 import io.opentelemetry.api.common.Attributes;
 import java.io.IOException;
 import java.net.URI;
@@ -58,6 +59,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -95,6 +97,7 @@ import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.apache.pulsar.common.api.proto.ProtocolVersion;
 import org.apache.pulsar.common.compression.CompressionCodec;
 import org.apache.pulsar.common.compression.CompressionCodecProvider;
+import org.apache.pulsar.common.compression.CompressionCodecZLib;
 import org.apache.pulsar.common.naming.TopicName;
 import org.apache.pulsar.common.protocol.ByteBufPair;
 import org.apache.pulsar.common.protocol.Commands;
@@ -145,6 +148,8 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     private final ProducerStatsRecorder stats;
 
     private final CompressionCodec compressor;
+    private final long compressionDictionaryId;
+    private final int compressMinMsgBodySize;
 
     static final AtomicLongFieldUpdater<ProducerImpl> LAST_SEQ_ID_PUBLISHED_UPDATER = AtomicLongFieldUpdater
             .newUpdater(ProducerImpl.class, "lastSequenceIdPublished");
@@ -195,6 +200,16 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     // This variable can be exposed as a metrics in the future, a PIP is needed.
     private final AtomicInteger pendingQueueFullCounter;
 
+    // The messages enqueued by the sending threads when the send pipeline is enabled, which are added to the batch or
+    // serialized by a single drain task
+    private final Queue<PipelinedSend> sendPipeline;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ProducerImpl> SEND_PIPELINE_DRAIN_SCHEDULED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ProducerImpl.class, "sendPipelineDrainScheduled");
+    @SuppressWarnings("unused")
+    private volatile int sendPipelineDrainScheduled = 0;
+    private static final int SEND_PIPELINE_CAPACITY = 1024;
+
     public ProducerImpl(PulsarClientImpl client, String topic, ProducerConfigurationData conf,
                         CompletableFuture<Producer<T>> producerCreatedFuture, int partitionIndex, Schema<T> schema,
                         ProducerInterceptors interceptors, Optional<String> overrideProducerName) {
@@ -215,7 +230,22 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         }
         overrideProducerName.ifPresent(key -> this.producerName = key);
 
-        this.compressor = CompressionCodecProvider.getCompressionCodec(conf.getCompressionType());
+        if (conf.getCompressionDictionary() != null) {
+            CompressionCodecZLib dictionaryCompressor =
+                    client.getCompressionDictionaryCodecs().getCodec(conf.getCompressionDictionary());
+            this.compressor = dictionaryCompressor;
+            this.compressionDictionaryId = dictionaryCompressor.getDictionaryId();
+        } else {
+            this.compressor = CompressionCodecProvider.getCompressionCodec(conf.getCompressionType());
+            this.compressionDictionaryId = -1;
+        }
+        if (conf.getCompressionDictionary() != null
+                && conf.getCompressMinMsgBodySize() == ProducerConfigurationData.DEFAULT_COMPRESS_MIN_MSG_BODY_SIZE) {
+            // the dictionary is meant for the small payloads, which wouldn't be compressed with the default threshold
+            this.compressMinMsgBodySize = 0;
+        } else {
+            this.compressMinMsgBodySize = conf.getCompressMinMsgBodySize();
+        }
 
         if (conf.getInitialSequenceId() != null) {
             long initialSequenceId = conf.getInitialSequenceId();
@@ -281,6 +311,8 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         } else {
             this.batchMessageContainer = null;
         }
+        this.sendPipeline = conf.isSendPipelineEnabled()
+                ? PlatformDependent.newFixedMpscQueue(SEND_PIPELINE_CAPACITY) : null;
         if (client.getConfiguration().getStatsIntervalSeconds() > 0) {
             stats = new ProducerStatsRecorderImpl(client, conf, this);
         } else {
@@ -516,6 +548,25 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         return compressedPayload;
     }
 
+    /**
+     * Get the minimum size of the payloads to compress, which is lowered to 0 by default when a compression dictionary
+     * is set.
+     */
+    int getCompressMinMsgBodySize() {
+        return compressMinMsgBodySize;
+    }
+
+    /**
+     * Record the compression dictionary in the metadata of a payload compressed by {@link #applyCompression}, whose
+     * compression type becomes {@code ZLIB_DICT}.
+     */
+    void setCompressionDictionaryId(MessageMetadata msgMetadata) {
+        if (compressionDictionaryId >= 0) {
+            msgMetadata.setCompression(org.apache.pulsar.common.api.proto.CompressionType.ZLIB_DICT);
+            msgMetadata.setCompressionDictionaryId(compressionDictionaryId);
+        }
+    }
+
     /**
      * Note on ByteBuf Release Behavior.
      *
@@ -566,7 +617,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         // Batch will be compressed when closed
         // If a message has a delayed delivery time, we'll always send it individually
         if (!isBatchMessagingEnabled() || msgMetadata.hasDeliverAtTime()) {
-            if (payload.readableBytes() > conf.getCompressMinMsgBodySize()) {
+            if (payload.readableBytes() > compressMinMsgBodySize) {
                 compressedPayload = applyCompression(payload);
                 compressed = true;
 
@@ -646,6 +697,19 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
             }
         }
 
+        if (sendPipeline != null) {
+            if (totalChunks == 1 && sendPipeline.offer(new PipelinedSend(msg, payload, compressedPayload, compressed,
+                    payloadChunkSize, uncompressedSize, callback))) {
+                scheduleSendPipelineDrain();
+                return;
+            }
+            // chunked messages, and messages that don't fit in the pipeline, are sent by the calling thread after the
+            // messages already enqueued, to keep the publishing order of the thread
+            synchronized (this) {
+                drainSendPipeline();
+            }
+        }
+
         try {
             int readStartIndex = 0;
             ChunkedMessageCtx chunkedMessageCtx = totalChunks > 1 ? ChunkedMessageCtx.get(totalChunks) : null;
@@ -696,6 +760,73 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         }
     }
 
+    private void scheduleSendPipelineDrain() {
+        if (SEND_PIPELINE_DRAIN_SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+            ClientCnx cnx = cnx();
+            Executor executor = cnx != null ? cnx.ctx().channel().eventLoop() : client.eventLoopGroup().next();
+            executor.execute(catchingAndLoggingThrowables(() -> {
+                // reset the flag before draining, so that a message enqueued after the drain schedules another one
+                SEND_PIPELINE_DRAIN_SCHEDULED_UPDATER.set(this, 0);
+                synchronized (ProducerImpl.this) {
+                    drainSendPipeline();
+                }
+            }));
+        }
+    }
+
+    // must hold the producer lock
+    private void drainSendPipeline() {
+        if (sendPipeline == null) {
+            return;
+        }
+        PipelinedSend send;
+        while ((send = sendPipeline.poll()) != null) {
+            MessageImpl<?> msg = send.msg;
+            State state = getState();
+            if (state != State.Ready && state != State.Connecting && state != State.RegisteringSchema) {
+                // the producer was closed after the message was enqueued
+                send.compressedPayload.release();
+                semaphore.ifPresent(Semaphore::release);
+                client.getMemoryLimitController().releaseMemory(send.uncompressedSize);
+                isValidProducerState(send.callback, msg.getSequenceId());
+                continue;
+            }
+            try {
+                final long sequenceId = updateMessageMetadataSequenceId(msg.getMessageBuilder());
+                serializeAndSendMessage(msg, send.payload, sequenceId, null, 0, 1, 0, send.payloadChunkSize,
+                        send.compressedPayload, send.compressed, send.compressedPayload.readableBytes(),
+                        send.callback, null, msg.getMessageId());
+            } catch (PulsarClientException e) {
+                e.setSequenceId(msg.getSequenceId());
+                completeCallbackAndReleaseSemaphore(send.uncompressedSize, send.callback, e);
+            } catch (Throwable t) {
+                completeCallbackAndReleaseSemaphore(send.uncompressedSize, send.callback,
+                        new PulsarClientException(t, msg.getSequenceId()));
+            }
+        }
+    }
+
+    private static final class PipelinedSend {
+        final MessageImpl<?> msg;
+        final ByteBuf payload;
+        final ByteBuf compressedPayload;
+        final boolean compressed;
+        final int payloadChunkSize;
+        final int uncompressedSize;
+        final SendCallback callback;
+
+        PipelinedSend(MessageImpl<?> msg, ByteBuf payload, ByteBuf compressedPayload, boolean compressed,
+                      int payloadChunkSize, int uncompressedSize, SendCallback callback) {
+            this.msg = msg;
+            this.payload = payload;
+            this.compressedPayload = compressedPayload;
+            this.compressed = compressed;
+            this.payloadChunkSize = payloadChunkSize;
+            this.uncompressedSize = uncompressedSize;
+            this.callback = callback;
+        }
+    }
+
     /**
      * Update the message metadata except those fields that will be updated for chunks later.
      *
@@ -718,6 +849,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                 if (conf.getCompressionType() != CompressionType.NONE && isCompressed) {
                     msgMetadata.setCompression(
                             CompressionCodecProvider.convertToWireProtocol(conf.getCompressionType()));
+                    setCompressionDictionaryId(msgMetadata);
                 }
                 msgMetadata.setUncompressedSize(uncompressedSize);
             }
@@ -809,7 +941,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         } else {
             // in this case compression has not been applied by the caller
             // but we have to compress the payload if compression is configured
-            if (!compressed && chunkPayload.readableBytes() > conf.getCompressMinMsgBodySize()) {
+            if (!compressed && chunkPayload.readableBytes() > compressMinMsgBodySize) {
                 chunkPayload = applyCompression(chunkPayload);
             }
             ByteBuf encryptedPayload = encryptMessage(msgMetadata, chunkPayload);
@@ -1196,6 +1328,8 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
 
     @Override
     public synchronized CompletableFuture<Void> closeAsync() {
+        // the messages enqueued before closing are handled like the messages sent before closing
+        drainSendPipeline();
         final State currentState = getAndUpdateState(state -> {
             if (state == State.Closed) {
                 return state;
@@ -1345,6 +1479,9 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         }
 
         OpSendMsg finalOp = op;
+        if (batchMessageContainer != null && op.lastSentAt > 0) {
+            batchMessageContainer.recordSendLatency(System.nanoTime() - op.lastSentAt);
+        }
         LAST_SEQ_ID_PUBLISHED_UPDATER.getAndUpdate(this, last -> Math.max(last, getHighestSequenceId(finalOp)));
         op.setMessageId(ledgerId, entryId, partitionIndex);
         if (op.totalChunks > 1) {
@@ -2249,7 +2386,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                     // Because we don't flush batch messages while disconnected, we consider them "createdAt" when
                     // they would have otherwise been flushed.
                     createdAt = batchMessageContainer.getFirstAddedTimestamp()
-                            + TimeUnit.MICROSECONDS.toNanos(conf.getBatchingMaxPublishDelayMicros());
+                            + TimeUnit.MICROSECONDS.toNanos(getBatchingMaxPublishDelayMicros());
                 }
                 // If there is at least one message, calculate the diff between the message timeout and the elapsed
                 // time since first message was created.
@@ -2346,6 +2483,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     @Override
     public CompletableFuture<Void> flushAsync() {
         synchronized (ProducerImpl.this) {
+            drainSendPipeline();
             if (isBatchMessagingEnabled()) {
                 batchMessageAndSend(false);
             }
@@ -2372,7 +2510,11 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         if (this.batchFlushTask != null || getState() != State.Ready) {
             return;
         }
-        scheduleBatchFlushTask(conf.getBatchingMaxPublishDelayMicros());
+        scheduleBatchFlushTask(getBatchingMaxPublishDelayMicros());
+    }
+
+    private long getBatchingMaxPublishDelayMicros() {
+        return batchMessageContainer.getBatchingMaxPublishDelayMicros(conf.getBatchingMaxPublishDelayMicros());
     }
 
     // must acquire semaphore before calling
@@ -2397,12 +2539,13 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         // If a batch was sent more recently than the BatchingMaxPublishDelayMicros, schedule another flush to run just
         // at BatchingMaxPublishDelayMicros after the last send.
         long microsSinceLastSend = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - lastBatchSendNanoTime);
-        if (microsSinceLastSend < conf.getBatchingMaxPublishDelayMicros()) {
-            scheduleBatchFlushTask(conf.getBatchingMaxPublishDelayMicros() - microsSinceLastSend);
+        long batchingMaxPublishDelayMicros = getBatchingMaxPublishDelayMicros();
+        if (microsSinceLastSend < batchingMaxPublishDelayMicros) {
+            scheduleBatchFlushTask(batchingMaxPublishDelayMicros - microsSinceLastSend);
         } else if (lastBatchSendNanoTime == 0) {
             // The first time a producer sends a message, the lastBatchSendNanoTime is 0.
             lastBatchSendNanoTime = System.nanoTime();
-            scheduleBatchFlushTask(conf.getBatchingMaxPublishDelayMicros());
+            scheduleBatchFlushTask(batchingMaxPublishDelayMicros);
         } else {
             batchMessageAndSend(true);
         }
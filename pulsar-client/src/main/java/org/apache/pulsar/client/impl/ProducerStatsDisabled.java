@@ -48,6 +48,11 @@ public class ProducerStatsDisabled implements ProducerStatsRecorder {
         // Do nothing
     }
 
+    @Override
+    public void updateBatchingSettings(int batchingMaxMessages, long batchingMaxPublishDelayMicros) {
+        // Do nothing
+    }
+
     @Override
     public long getNumMsgsSent() {
         return 0;
@@ -61,6 +61,8 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
     private volatile double[] latencyPctValues = new double[PERCENTILES.length];
     private volatile double[] batchSizePctValues = new double[PERCENTILES.length];
     private volatile double[] msgSizePctValues = new double[PERCENTILES.length];
+    private volatile int batchingMaxMessages;
+    private volatile long batchingMaxPublishDelayMicros;
 
     private static final double[] PERCENTILES = { 0.5, 0.75, 0.95, 0.99, 0.999, 1.0 };
 
@@ -98,6 +100,9 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
     }
 
     private void init(ProducerConfigurationData conf) {
+        batchingMaxMessages = conf.getBatchingMaxMessages();
+        batchingMaxPublishDelayMicros = conf.getBatchingMaxPublishDelayMicros();
+
         ObjectWriter w = ObjectMapperFactory.getMapperWithIncludeAlways().writer()
                 .without(SerializationFeature.FAIL_ON_EMPTY_BEANS);
 
@@ -229,6 +234,22 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
         }
     }
 
+    @Override
+    public void updateBatchingSettings(int batchingMaxMessages, long batchingMaxPublishDelayMicros) {
+        this.batchingMaxMessages = batchingMaxMessages;
+        this.batchingMaxPublishDelayMicros = batchingMaxPublishDelayMicros;
+    }
+
+    @Override
+    public int getBatchingMaxMessages() {
+        return batchingMaxMessages;
+    }
+
+    @Override
+    public long getBatchingMaxPublishDelayMicros() {
+        return batchingMaxPublishDelayMicros;
+    }
+
     void reset() {
         numMsgsSent.reset();
         numBytesSent.reset();
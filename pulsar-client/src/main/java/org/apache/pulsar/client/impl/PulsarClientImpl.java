@@ -84,6 +84,7 @@ import org.apache.pulsar.client.impl.transaction.TransactionCoordinatorClientImp
 import org.apache.pulsar.client.util.ExecutorProvider;
 import org.apache.pulsar.client.util.ScheduledExecutorProvider;
 import org.apache.pulsar.common.api.proto.CommandGetTopicsOfNamespace.Mode;
+import org.apache.pulsar.common.compression.CompressionDictionaryCodecs;
 import org.apache.pulsar.common.naming.NamespaceName;
 import org.apache.pulsar.common.naming.TopicDomain;
 import org.apache.pulsar.common.naming.TopicName;
@@ -159,6 +160,9 @@ public class PulsarClientImpl implements PulsarClient {
 
     private final Clock clientClock;
 
+    @Getter
+    private final CompressionDictionaryCodecs compressionDictionaryCodecs = new CompressionDictionaryCodecs();
+
     private final InstrumentProvider instrumentProvider;
 
     @Getter
@@ -945,6 +949,7 @@ public class PulsarClientImpl implements PulsarClient {
                     throwable = t;
                 }
             }
+            compressionDictionaryCodecs.clear();
             if (throwable != null) {
                 throw throwable;
             }
@@ -380,6 +380,10 @@ public final class PulsarClientImplementationBindingImpl implements PulsarClient
         return new KeyBasedBatcherBuilder();
     }
 
+    public BatcherBuilder newAdaptiveBatcherBuilder() {
+        return new AdaptiveBatcherBuilder();
+    }
+
     public MessagePayloadFactory newDefaultMessagePayloadFactory() {
         return new MessagePayloadFactoryImpl();
     }
@@ -20,6 +20,7 @@ package org.apache.pulsar.client.impl;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.pulsar.client.util.TypeCheckUtil.checkType;
+import io.netty.buffer.ByteBuf;
 import java.nio.ByteBuffer;
 import java.util.Base64;
 import java.util.List;
@@ -30,6 +31,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.apache.pulsar.client.api.Message;
 import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessagePayload;
 import org.apache.pulsar.client.api.PulsarClientException;
 import org.apache.pulsar.client.api.Schema;
 import org.apache.pulsar.client.api.TypedMessageBuilder;
@@ -49,6 +51,8 @@ public class TypedMessageBuilderImpl<T> implements TypedMessageBuilder<T> {
     private final transient MessageMetadata msgMetadata = new MessageMetadata();
     private final transient Schema<T> schema;
     private transient ByteBuffer content;
+    // the encoded payload set by the application, it takes precedence over the value
+    private transient ByteBuf payload;
     private final transient TransactionImpl txn;
     private transient T value;
 
@@ -66,9 +70,10 @@ public class TypedMessageBuilderImpl<T> implements TypedMessageBuilder<T> {
     }
 
     private long beforeSend() {
-        if (value == null) {
+        // a payload set by the application is already encoded
+        if (payload == null && value == null) {
             msgMetadata.setNullValue(true);
-        } else {
+        } else if (payload == null) {
             getKeyValueSchema().map(keyValueSchema -> {
                 if (keyValueSchema.getKeyValueEncodingType() == KeyValueEncodingType.SEPARATED) {
                     setSeparateKeyValue(value, keyValueSchema);
@@ -161,6 +166,18 @@ public class TypedMessageBuilderImpl<T> implements TypedMessageBuilder<T> {
         return this;
     }
 
+    @Override
+    public TypedMessageBuilder<T> payload(MessagePayload payload) {
+        Objects.requireNonNull(payload);
+        if (this.payload != null) {
+            this.payload.release();
+        }
+        // a payload created by the default factory is handed over without copying its buffer
+        this.payload = MessagePayloadUtils.convertToByteBuf(payload);
+        payload.release();
+        return this;
+    }
+
     @Override
     public TypedMessageBuilder<T> property(String name, String value) {
         checkArgument(name != null, "Need Non-Null name");
@@ -268,7 +285,14 @@ public class TypedMessageBuilderImpl<T> implements TypedMessageBuilder<T> {
 
     public Message<T> getMessage() {
         beforeSend();
-        return MessageImpl.create(msgMetadata, content, schema, producer != null ? producer.getTopic() : null);
+        String topic = producer != null ? producer.getTopic() : null;
+        if (payload != null) {
+            // the ownership of the payload is transferred to the message
+            ByteBuf messagePayload = payload;
+            payload = null;
+            return MessageImpl.create(msgMetadata, messagePayload, schema, topic);
+        }
+        return MessageImpl.create(msgMetadata, content, schema, topic);
     }
 
     public long getPublishTime() {
@@ -37,11 +37,13 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.apache.pulsar.client.api.BatchReceivePolicy;
+import org.apache.pulsar.client.api.CompressionDictionaryReader;
 import org.apache.pulsar.client.api.ConsumerCryptoFailureAction;
 import org.apache.pulsar.client.api.ConsumerEventListener;
 import org.apache.pulsar.client.api.CryptoKeyReader;
 import org.apache.pulsar.client.api.DeadLetterPolicy;
 import org.apache.pulsar.client.api.KeySharedPolicy;
+import org.apache.pulsar.client.api.MessageBatchViewListener;
 import org.apache.pulsar.client.api.MessageCrypto;
 import org.apache.pulsar.client.api.MessageListener;
 import org.apache.pulsar.client.api.MessageListenerExecutor;
@@ -97,6 +99,9 @@ public class ConsumerConfigurationData<T> implements Serializable, Cloneable {
     @JsonIgnore
     private MessageListener<T> messageListener;
 
+    @JsonIgnore
+    private MessageBatchViewListener<T> messageBatchViewListener;
+
     @JsonIgnore
     private ConsumerEventListener consumerEventListener;
 
@@ -265,6 +270,17 @@ public class ConsumerConfigurationData<T> implements Serializable, Cloneable {
     @JsonIgnore
     private CryptoKeyReader cryptoKeyReader = null;
 
+    @JsonIgnore
+    private CompressionDictionaryReader compressionDictionaryReader = null;
+
+    @ApiModelProperty(
+            name = "discardUnknownCompressionDictionaryMessages",
+            value = "Whether to discard the messages compressed with a dictionary that can't be loaded.\n"
+                    + "By default, such messages are kept unacknowledged, so that they are redelivered once the"
+                    + " dictionary is loaded or when the ack timeout expires."
+    )
+    private boolean discardUnknownCompressionDictionaryMessages = false;
+
     @JsonIgnore
     private transient MessageCrypto messageCrypto = null;
 
@@ -52,6 +52,7 @@ public class ProducerConfigurationData implements Serializable, Cloneable {
     public static final int DEFAULT_BATCHING_MAX_MESSAGES = 1000;
     public static final int DEFAULT_MAX_PENDING_MESSAGES = 0;
     public static final int DEFAULT_MAX_PENDING_MESSAGES_ACROSS_PARTITIONS = 0;
+    public static final int DEFAULT_COMPRESS_MIN_MSG_BODY_SIZE = 4 * 1024;
 
     @ApiModelProperty(
             name = "topicName",
@@ -189,7 +190,10 @@ public class ProducerConfigurationData implements Serializable, Cloneable {
     )
     private CompressionType compressionType = CompressionType.NONE;
 
-    private int compressMinMsgBodySize = 4 * 1024; // 4kb
+    private int compressMinMsgBodySize = DEFAULT_COMPRESS_MIN_MSG_BODY_SIZE; // 4kb
+
+    @JsonIgnore
+    private byte[] compressionDictionary = null;
 
     // Cannot use Optional<Long> since it's not serializable
     private Long initialSequenceId = null;
@@ -204,6 +208,14 @@ public class ProducerConfigurationData implements Serializable, Cloneable {
 
     private boolean lazyStartPartitionedProducers = false;
 
+    @ApiModelProperty(
+            name = "sendPipelineEnabled",
+            value = "Whether the messages sent by the application threads are enqueued into a lock-free queue and"
+                    + " serialized by a single task in the IO thread of the producer, instead of being serialized by"
+                    + " the application threads while holding the producer lock."
+    )
+    private boolean sendPipelineEnabled = false;
+
     private SortedMap<String, String> properties = new TreeMap<>();
 
     private boolean isNonPartitionedTopicExpected;
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.BatcherBuilder;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.conf.ProducerConfigurationData;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AdaptiveBatchMessageContainerTest {
+
+    private static final int BATCHING_MAX_MESSAGES = 100;
+    private static final long BATCHING_MAX_PUBLISH_DELAY_MICROS = TimeUnit.MILLISECONDS.toMicros(10);
+
+    private ProducerStatsRecorderImpl stats;
+    private AdaptiveBatchMessageContainer container;
+    private long sequenceId;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        ProducerConfigurationData conf = new ProducerConfigurationData();
+        conf.setCompressionType(CompressionType.NONE);
+        conf.setBatchingMaxMessages(BATCHING_MAX_MESSAGES);
+        conf.setBatchingMaxPublishDelayMicros(BATCHING_MAX_PUBLISH_DELAY_MICROS);
+        stats = new ProducerStatsRecorderImpl();
+        ProducerImpl<?> producer = mock(ProducerImpl.class);
+        when(producer.getConfiguration()).thenReturn(conf);
+        when(producer.getStats()).thenReturn(stats);
+        PulsarClientImpl pulsarClient = mock(PulsarClientImpl.class);
+        when(pulsarClient.getMemoryLimitController()).thenReturn(mock(MemoryLimitController.class));
+        Field clientField = HandlerState.class.getDeclaredField("client");
+        clientField.setAccessible(true);
+        clientField.set(producer, pulsarClient);
+        container = (AdaptiveBatchMessageContainer) BatcherBuilder.ADAPTIVE.build();
+        container.setProducer(producer);
+        sequenceId = 0;
+    }
+
+    @Test
+    public void testFlushImmediatelyWhenIdle() {
+        assertTrue(container.add(createMessage(), null));
+        assertEquals(stats.getBatchingMaxMessages(), 1);
+        assertEquals(stats.getBatchingMaxPublishDelayMicros(),
+                AdaptiveBatchMessageContainer.MIN_BATCHING_DELAY_MICROS);
+    }
+
+    @Test
+    public void testBatchingDelayFollowsSendLatency() {
+        container.recordSendLatency(TimeUnit.MILLISECONDS.toNanos(4));
+        // a single message is not enough to observe an arrival rate
+        assertTrue(container.add(createMessage(), null));
+        assertEquals(stats.getBatchingMaxMessages(), 1);
+        assertEquals(stats.getBatchingMaxPublishDelayMicros(), TimeUnit.MILLISECONDS.toMicros(2));
+    }
+
+    @Test
+    public void testGrowBatchUnderLoad() {
+        container.recordSendLatency(TimeUnit.MILLISECONDS.toNanos(8));
+        for (int i = 0; i < 1000; i++) {
+            if (container.add(createMessage(), null)) {
+                container.clear();
+            }
+        }
+        container.clear();
+
+        assertFalse(container.add(createMessage(), null));
+        int batchSize = container.getCurrentMaxNumMessagesInBatch();
+        assertTrue(batchSize > 1 && batchSize <= BATCHING_MAX_MESSAGES, "batch size " + batchSize);
+        assertEquals(stats.getBatchingMaxMessages(), batchSize);
+        assertEquals(stats.getBatchingMaxPublishDelayMicros(), TimeUnit.MILLISECONDS.toMicros(4));
+        assertEquals(container.getBatchingMaxPublishDelayMicros(BATCHING_MAX_PUBLISH_DELAY_MICROS), TimeUnit.MILLISECONDS.toMicros(4));
+        for (int i = 1; i < batchSize - 1; i++) {
+            assertFalse(container.add(createMessage(), null));
+        }
+        assertTrue(container.add(createMessage(), null));
+    }
+
+    @Test
+    public void testBatchingDelayBoundedByConfiguration() {
+        container.recordSendLatency(TimeUnit.SECONDS.toNanos(1));
+        container.add(createMessage(), null);
+        assertEquals(container.getBatchingMaxPublishDelayMicros(BATCHING_MAX_PUBLISH_DELAY_MICROS), BATCHING_MAX_PUBLISH_DELAY_MICROS);
+        assertEquals(stats.getBatchingMaxPublishDelayMicros(), BATCHING_MAX_PUBLISH_DELAY_MICROS);
+    }
+
+    private MessageImpl<byte[]> createMessage() {
+        MessageMetadata messageMetadata = new MessageMetadata();
+        messageMetadata.setSequenceId(sequenceId++);
+        messageMetadata.setProducerName("producer");
+        messageMetadata.setPublishTime(System.currentTimeMillis());
+        ByteBuffer payload = ByteBuffer.wrap("payload".getBytes(StandardCharsets.UTF_8));
+        return MessageImpl.create(messageMetadata, payload, Schema.BYTES, null);
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.pulsar.client.impl;
 
+import org.apache.pulsar.client.api.MessagePayloadFactory;
 import org.apache.pulsar.client.api.Schema;
 import org.apache.pulsar.client.api.schema.SchemaDefinition;
 import org.apache.pulsar.client.impl.schema.AvroSchema;
@@ -30,7 +31,9 @@ import org.testng.annotations.Test;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.mock;
 import static org.testng.Assert.assertEquals;
@@ -236,4 +239,46 @@ public class TypedMessageBuilderImplTest {
         }
     }
 
+
+    @Test
+    public void testPayloadIsNotCopied() {
+        producerBase = mock(ProducerBase.class);
+        TypedMessageBuilderImpl<String> typedMessageBuilder = new TypedMessageBuilderImpl<>(producerBase, Schema.STRING);
+
+        byte[] bytes = "payload".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        AtomicInteger released = new AtomicInteger();
+        typedMessageBuilder.value("ignored")
+                .payload(MessagePayloadFactory.DEFAULT.wrap(buffer, released::incrementAndGet));
+        MessageImpl<String> msg = (MessageImpl<String>) typedMessageBuilder.getMessage();
+
+        // the payload takes precedence over the value and shares the memory of the buffer
+        assertEquals(msg.getValue(), "payload");
+        buffer.put(0, (byte) 'P');
+        assertEquals(msg.getValue(), "Payload");
+        assertFalse(msg.getMessageBuilder().hasNullValue());
+        assertEquals(released.get(), 0);
+
+        msg.getDataBuffer().release();
+        assertEquals(released.get(), 1);
+    }
+
+    @Test
+    public void testPayloadIsReleasedWhenReplaced() {
+        producerBase = mock(ProducerBase.class);
+        TypedMessageBuilderImpl<byte[]> typedMessageBuilder = new TypedMessageBuilderImpl<>(producerBase, Schema.BYTES);
+
+        AtomicInteger released = new AtomicInteger();
+        typedMessageBuilder.payload(MessagePayloadFactory.DEFAULT.wrap(ByteBuffer.allocateDirect(1),
+                released::incrementAndGet));
+        assertEquals(released.get(), 0);
+        typedMessageBuilder.payload(MessagePayloadFactory.DEFAULT.wrap(new byte[]{1, 2}));
+        assertEquals(released.get(), 1);
+
+        MessageImpl<byte[]> msg = (MessageImpl<byte[]>) typedMessageBuilder.getMessage();
+        assertEquals(msg.getData(), new byte[]{1, 2});
+        assertEquals(msg.getUncompressedSize(), 2);
+        msg.getDataBuffer().release();
+    }
 }
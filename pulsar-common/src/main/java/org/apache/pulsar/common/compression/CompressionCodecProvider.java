@@ -39,7 +39,11 @@ public class CompressionCodecProvider {
         codecs = new EnumMap<>(org.apache.pulsar.common.api.proto.CompressionType.class);
         codecs.put(org.apache.pulsar.common.api.proto.CompressionType.NONE, new CompressionCodecNone());
         codecs.put(org.apache.pulsar.common.api.proto.CompressionType.LZ4, new CompressionCodecLZ4());
-        codecs.put(org.apache.pulsar.common.api.proto.CompressionType.ZLIB, new CompressionCodecZLib());
+        CompressionCodecZLib zlib = new CompressionCodecZLib();
+        codecs.put(org.apache.pulsar.common.api.proto.CompressionType.ZLIB, zlib);
+        // the payloads compressed with a dictionary are decoded with the codecs of CompressionDictionaryCodecs, the
+        // plain ZLIB codec fails to decode them with an IOException
+        codecs.put(org.apache.pulsar.common.api.proto.CompressionType.ZLIB_DICT, zlib);
         codecs.put(org.apache.pulsar.common.api.proto.CompressionType.ZSTD, new CompressionCodecZstd());
         codecs.put(org.apache.pulsar.common.api.proto.CompressionType.SNAPPY, new CompressionCodecSnappy());
     }
@@ -79,6 +83,7 @@ public class CompressionCodecProvider {
         case LZ4:
             return CompressionType.LZ4;
         case ZLIB:
+        case ZLIB_DICT:
             return CompressionType.ZLIB;
         case ZSTD:
             return CompressionType.ZSTD;
@@ -19,9 +19,13 @@
 package org.apache.pulsar.common.compression;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import com.google.common.hash.Hashing;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.concurrent.FastThreadLocal;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+import java.util.zip.Adler32;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -29,32 +33,94 @@ import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 
 /**
  * ZLib Compression.
+ *
+ * <p>The codec can be created with a preset dictionary, trained with {@link CompressionDictionaryTrainer}, which
+ * improves the compression of small payloads sharing the same structure. The payloads compressed with a dictionary can
+ * only be decompressed by a codec created with the same dictionary. The codecs with a dictionary should be obtained
+ * from {@link CompressionDictionaryCodecs}, which shares them by dictionary.
  */
 public class CompressionCodecZLib implements CompressionCodec {
 
-    private final FastThreadLocal<Deflater> deflater = new FastThreadLocal<Deflater>() {
-        @Override
-        protected Deflater initialValue() throws Exception {
-            return new Deflater();
-        }
+    /**
+     * The maximum size of a dictionary, larger dictionaries are truncated by zlib to the size of its window.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private final byte[] dictionary;
+    private final long dictionaryId;
+    // the Adler-32 checksum of the dictionary, which zlib writes in the header of the payloads compressed with it
+    private final long dictionaryAdler;
+
+    private final Supplier<Deflater> deflater;
+    private final Supplier<Inflater> inflater;
+
+    public CompressionCodecZLib() {
+        this.dictionary = null;
+        this.dictionaryId = -1;
+        this.dictionaryAdler = -1;
+        FastThreadLocal<Deflater> deflater = new FastThreadLocal<Deflater>() {
+            @Override
+            protected Deflater initialValue() throws Exception {
+                return new Deflater();
+            }
+
+            @Override
+            protected void onRemoval(Deflater deflater) throws Exception {
+                deflater.end();
+            }
+        };
+        FastThreadLocal<Inflater> inflater = new FastThreadLocal<Inflater>() {
+            @Override
+            protected Inflater initialValue() throws Exception {
+                return new Inflater();
+            }
+
+            @Override
+            protected void onRemoval(Inflater inflater) throws Exception {
+                inflater.end();
+            }
+        };
+        this.deflater = deflater::get;
+        this.inflater = inflater::get;
+    }
 
-        @Override
-        protected void onRemoval(Deflater deflater) throws Exception {
-            deflater.end();
-        }
-    };
+    public CompressionCodecZLib(byte[] dictionary) {
+        checkArgument(dictionary.length > 0 && dictionary.length <= MAX_DICTIONARY_SIZE,
+                "The size of the dictionary must be between 1 and %s bytes", MAX_DICTIONARY_SIZE);
+        this.dictionary = dictionary.clone();
+        this.dictionaryId = getDictionaryId(dictionary);
+        Adler32 adler32 = new Adler32();
+        adler32.update(dictionary, 0, dictionary.length);
+        this.dictionaryAdler = adler32.getValue();
+        // Unlike the fast thread locals, whose slots are never reclaimed, the thread locals of a codec with a
+        // dictionary are released with the codec once the dictionary is no longer used
+        ThreadLocal<Deflater> deflater = ThreadLocal.withInitial(Deflater::new);
+        ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(Inflater::new);
+        this.deflater = deflater::get;
+        this.inflater = inflater::get;
+    }
 
-    private final FastThreadLocal<Inflater> inflater = new FastThreadLocal<Inflater>() {
-        @Override
-        protected Inflater initialValue() throws Exception {
-            return new Inflater();
-        }
+    /**
+     * Get the id of a dictionary, which is made of the first 63 bits of its SHA-256 digest, so that two different
+     * dictionaries practically never have the same id.
+     */
+    public static long getDictionaryId(byte[] dictionary) {
+        return Hashing.sha256().hashBytes(dictionary).asLong() & Long.MAX_VALUE;
+    }
 
-        @Override
-        protected void onRemoval(Inflater inflater) throws Exception {
-            inflater.end();
-        }
-    };
+    /**
+     * Get the id of the dictionary of this codec, or -1 if it has no dictionary.
+     */
+    public long getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * Check whether this codec compresses with the given dictionary.
+     */
+    public boolean hasDictionary(byte[] dictionary) {
+        return Arrays.equals(this.dictionary, dictionary);
+    }
 
     @Override
     public ByteBuf encode(ByteBuf source) {
@@ -76,6 +142,9 @@ public class CompressionCodecZLib implements CompressionCodec {
 
         Deflater deflater = this.deflater.get();
         deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
         deflater.setInput(array, offset, length);
         while (!deflater.needsInput()) {
             deflate(deflater, compressed);
@@ -118,6 +187,15 @@ public class CompressionCodecZLib implements CompressionCodec {
 
         try {
             resultLength = inflater.inflate(uncompressed.array(), uncompressed.arrayOffset(), uncompressedLength);
+            if (inflater.needsDictionary()) {
+                if (Integer.toUnsignedLong(inflater.getAdler()) != dictionaryAdler) {
+                    uncompressed.release();
+                    throw new IOException("Missing compression dictionary with the Adler-32 checksum "
+                            + Integer.toUnsignedLong(inflater.getAdler()));
+                }
+                inflater.setDictionary(dictionary);
+                resultLength = inflater.inflate(uncompressed.array(), uncompressed.arrayOffset(), uncompressedLength);
+            }
         } catch (DataFormatException e) {
             throw new IOException(e);
         }
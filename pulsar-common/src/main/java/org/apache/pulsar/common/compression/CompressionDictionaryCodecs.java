@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.compression;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.LongFunction;
+
+/**
+ * The ZLIB codecs compressing with a dictionary, shared by the producers and consumers of a client using the same
+ * dictionary, since each codec keeps a compressor and a decompressor per thread.
+ *
+ * <p>The codecs are kept until {@link #clear()} is called when the client is closed. The dictionaries of the
+ * consumers are loaded asynchronously with {@link #loadCodec(long, LongFunction, Executor)}, since they may be fetched
+ * from a remote store.
+ */
+public class CompressionDictionaryCodecs {
+    // dictionary id -> codec compressing with the dictionary
+    private final ConcurrentMap<Long, CompressionCodecZLib> codecs = new ConcurrentHashMap<>();
+    // dictionary id -> pending load of the dictionary
+    private final ConcurrentMap<Long, CompletableFuture<CompressionCodecZLib>> pendingLoads =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Get the codec compressing with the given dictionary.
+     *
+     * @throws IllegalArgumentException if another dictionary with the same id is already in use
+     */
+    public CompressionCodecZLib getCodec(byte[] dictionary) {
+        long dictionaryId = CompressionCodecZLib.getDictionaryId(dictionary);
+        CompressionCodecZLib codec = codecs.computeIfAbsent(dictionaryId, id -> new CompressionCodecZLib(dictionary));
+        if (!codec.hasDictionary(dictionary)) {
+            throw new IllegalArgumentException("Another compression dictionary with the id " + dictionaryId
+                    + " is already in use");
+        }
+        return codec;
+    }
+
+    /**
+     * Get the codec compressing with the dictionary with the given id, or null if the dictionary isn't loaded yet.
+     */
+    public CompressionCodecZLib getCodec(long dictionaryId) {
+        return codecs.get(dictionaryId);
+    }
+
+    /**
+     * Load the dictionary with the given id in the background, unless it is already being loaded.
+     * <p>
+     * The future fails if the loader fails, returns null or returns a dictionary with another id, in which case the
+     * dictionary is loaded again on the next call.
+     *
+     * @param dictionaryId the id of the dictionary
+     * @param loader the function returning the dictionary with the given id, or null if it is unknown
+     * @param executor the executor running the loader
+     * @return the future of the codec compressing with the dictionary
+     */
+    public CompletableFuture<CompressionCodecZLib> loadCodec(long dictionaryId, LongFunction<byte[]> loader,
+                                                             Executor executor) {
+        CompressionCodecZLib codec = codecs.get(dictionaryId);
+        if (codec != null) {
+            return CompletableFuture.completedFuture(codec);
+        }
+        CompletableFuture<CompressionCodecZLib> newLoad = new CompletableFuture<>();
+        CompletableFuture<CompressionCodecZLib> pendingLoad = pendingLoads.putIfAbsent(dictionaryId, newLoad);
+        if (pendingLoad != null) {
+            return pendingLoad;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    byte[] dictionary = loader.apply(dictionaryId);
+                    if (dictionary == null) {
+                        throw new IllegalArgumentException("Unknown compression dictionary " + dictionaryId);
+                    }
+                    if (CompressionCodecZLib.getDictionaryId(dictionary) != dictionaryId) {
+                        throw new IllegalArgumentException("The compression dictionary loaded for the id "
+                                + dictionaryId + " has another id");
+                    }
+                    newLoad.complete(getCodec(dictionary));
+                } catch (Throwable t) {
+                    newLoad.completeExceptionally(t);
+                } finally {
+                    pendingLoads.remove(dictionaryId, newLoad);
+                }
+            });
+        } catch (Throwable t) {
+            pendingLoads.remove(dictionaryId, newLoad);
+            newLoad.completeExceptionally(t);
+        }
+        return newLoad;
+    }
+
+    public void clear() {
+        codecs.clear();
+        pendingLoads.clear();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.compression;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Trainer of the dictionaries used by {@link CompressionCodecZLib}.
+ *
+ * <p>The dictionary is made of the segments of the samples with the most content shared by the other samples, in a
+ * simplified version of the COVER algorithm used by zstd: the samples are split into epochs, and the segment with the
+ * highest score is selected in each epoch, where the score of a segment is the number of samples containing each of
+ * its 8 bytes sequences not selected yet. The best segments are placed at the end of the dictionary, where zlib
+ * references them with the shortest distances.
+ */
+@UtilityClass
+public class CompressionDictionaryTrainer {
+
+    private static final int DMER_SIZE = 8;
+    private static final int SEGMENT_SIZE = 64;
+
+    /**
+     * Train a dictionary from sampled payloads.
+     *
+     * @param samples the payloads to train the dictionary from, which should be representative of the payloads the
+     *                dictionary is used for
+     * @param maxDictionarySize the maximum size of the dictionary, up to
+     *                          {@link CompressionCodecZLib#MAX_DICTIONARY_SIZE}
+     * @return the dictionary, which is empty if the samples don't share any content
+     */
+    public static byte[] train(List<byte[]> samples, int maxDictionarySize) {
+        checkArgument(maxDictionarySize > 0 && maxDictionarySize <= CompressionCodecZLib.MAX_DICTIONARY_SIZE,
+                "The size of the dictionary must be between 1 and %s bytes", CompressionCodecZLib.MAX_DICTIONARY_SIZE);
+
+        // Number of samples containing each 8 bytes sequence
+        Map<Long, Integer> frequencies = new HashMap<>();
+        Set<Long> sampleDmers = new HashSet<>();
+        for (byte[] sample : samples) {
+            sampleDmers.clear();
+            for (int i = 0; i + DMER_SIZE <= sample.length; i++) {
+                sampleDmers.add(dmer(sample, i));
+            }
+            for (Long dmer : sampleDmers) {
+                frequencies.merge(dmer, 1, Integer::sum);
+            }
+        }
+        // A sequence found in a single sample doesn't help to compress the other payloads
+        frequencies.values().removeIf(frequency -> frequency < 2);
+
+        int numEpochs = Math.max(1, Math.min(samples.size(), maxDictionarySize / SEGMENT_SIZE));
+        List<byte[]> segments = new ArrayList<>();
+        int dictionarySize = 0;
+        boolean selected = true;
+        while (selected && dictionarySize < maxDictionarySize) {
+            selected = false;
+            for (int epoch = 0; epoch < numEpochs && dictionarySize < maxDictionarySize; epoch++) {
+                int bestSample = -1;
+                int bestOffset = 0;
+                int bestLength = 0;
+                long bestScore = 0;
+                for (int s = epoch; s < samples.size(); s += numEpochs) {
+                    byte[] sample = samples.get(s);
+                    int length = Math.min(SEGMENT_SIZE, sample.length);
+                    if (length < DMER_SIZE) {
+                        continue;
+                    }
+                    int dmersInSegment = length - DMER_SIZE + 1;
+                    long score = 0;
+                    for (int i = 0; i < dmersInSegment; i++) {
+                        score += frequencies.getOrDefault(dmer(sample, i), 0);
+                    }
+                    for (int offset = 0; ; offset++) {
+                        if (score > bestScore) {
+                            bestSample = s;
+                            bestOffset = offset;
+                            bestLength = length;
+                            bestScore = score;
+                        }
+                        if (offset + length >= sample.length) {
+                            break;
+                        }
+                        score -= frequencies.getOrDefault(dmer(sample, offset), 0);
+                        score += frequencies.getOrDefault(dmer(sample, offset + dmersInSegment), 0);
+                    }
+                }
+                if (bestSample < 0) {
+                    continue;
+                }
+                byte[] sample = samples.get(bestSample);
+                for (int i = bestOffset; i + DMER_SIZE <= bestOffset + bestLength; i++) {
+                    frequencies.remove(dmer(sample, i));
+                }
+                int length = Math.min(bestLength, maxDictionarySize - dictionarySize);
+                segments.add(Arrays.copyOfRange(sample, bestOffset, bestOffset + length));
+                dictionarySize += length;
+                selected = true;
+            }
+        }
+
+        byte[] dictionary = new byte[dictionarySize];
+        int position = 0;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            byte[] segment = segments.get(i);
+            System.arraycopy(segment, 0, dictionary, position, segment.length);
+            position += segment.length;
+        }
+        return dictionary;
+    }
+
+    private static long dmer(byte[] sample, int offset) {
+        long dmer = 0;
+        for (int i = 0; i < DMER_SIZE; i++) {
+            dmer = (dmer << 8) | (sample[offset + i] & 0xFF);
+        }
+        return dmer;
+    }
+}
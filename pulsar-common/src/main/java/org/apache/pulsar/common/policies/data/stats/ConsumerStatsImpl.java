@@ -78,6 +78,12 @@ public class ConsumerStatsImpl implements ConsumerStats {
     /** Flag to verify if consumer is blocked due to reaching threshold of unacked messages. */
     public boolean blockedConsumerOnUnackedMsgs;
 
+    /** Acknowledgement rate used to limit the permits of the consumer when adaptive permits are enabled (msg/s). */
+    public double adaptivePermitsAckRate;
+
+    /** Estimated time for the consumer to acknowledge a dispatched message when adaptive permits are enabled (ms). */
+    public double estimatedAckLatencyMillis;
+
     /** The read position of the cursor when the consumer joining. */
     public String readPositionWhenJoining;
 
@@ -153,6 +159,8 @@ public class ConsumerStatsImpl implements ConsumerStats {
         this.availablePermits += stats.availablePermits;
         this.unackedMessages += stats.unackedMessages;
         this.blockedConsumerOnUnackedMsgs = stats.blockedConsumerOnUnackedMsgs;
+        this.adaptivePermitsAckRate += stats.adaptivePermitsAckRate;
+        this.estimatedAckLatencyMillis = stats.estimatedAckLatencyMillis;
         this.readPositionWhenJoining = stats.readPositionWhenJoining;
         this.drainingHashesCount = stats.drainingHashesCount;
         this.drainingHashesClearedTotal += stats.drainingHashesClearedTotal;
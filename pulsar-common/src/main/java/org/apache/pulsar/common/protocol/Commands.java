@@ -1936,17 +1936,28 @@ public class Commands {
         //
         // metadataAndPayload contains from magic-number to the payload included
 
-        int cmdSize = cmd.getSerializedSize();
-        int totalSize = 4 + cmdSize + metadataAndPayload.readableBytes();
-        int headersSize = 4 + 4 + cmdSize;
-
+        int headersSize = 4 + 4 + cmd.getSerializedSize();
         ByteBuf headers = PulsarByteBufAllocator.DEFAULT.buffer(headersSize);
+        writeCommandMessageHeaders(cmd, metadataAndPayload.readableBytes(), headers);
+        return ByteBufPair.get(headers, metadataAndPayload);
+    }
+
+    /**
+     * Write the frame headers of a message command, that is the total size and the serialized command, without
+     * copying the metadata and payload. This allows the headers of many messages to share the same buffer.
+     *
+     * @param cmd the message command
+     * @param metadataAndPayloadSize the size of the metadata and payload following the headers
+     * @param headers the buffer to write the headers to
+     */
+    public static void writeCommandMessageHeaders(BaseCommand cmd, int metadataAndPayloadSize, ByteBuf headers) {
+        int cmdSize = cmd.getSerializedSize();
+        int totalSize = 4 + cmdSize + metadataAndPayloadSize;
         headers.writeInt(totalSize); // External frame
 
         // Write cmd
         headers.writeInt(cmdSize);
         cmd.writeTo(headers);
-        return ByteBufPair.get(headers, metadataAndPayload);
     }
 
     public static int getNumberOfMessagesInBatch(ByteBuf metadataAndPayload, String subscription,
@@ -317,6 +317,18 @@ public class ConcurrentOpenLongPairRangeSet<T extends Comparable<T>> implements
         return v.intValue();
     }
 
+    @Override
+    public LongPairRangeSet<T> snapshot() {
+        ConcurrentOpenLongPairRangeSet<T> snapshot = new ConcurrentOpenLongPairRangeSet<>(bitSetSize, threadSafe,
+                consumer);
+        rangeBitSetMap.forEach((key, set) -> {
+            BitSet copy = snapshot.createNewBitSet();
+            copy.or(set);
+            snapshot.rangeBitSetMap.put(key, copy);
+        });
+        return snapshot;
+    }
+
     @Override
     public int size() {
         if (updatedAfterCachedForSize) {
@@ -155,6 +155,14 @@ public interface LongPairRangeSet<T extends Comparable<T>> {
      */
     int cardinality(long lowerKey, long lowerValue, long upperKey, long upperValue);
 
+    /**
+     * Returns a point-in-time view of this range set, that is not affected by the following updates of this set. It
+     * can be read from another thread without synchronizing with the updates of this set.
+     *
+     * @return a snapshot of the ranges of this set
+     */
+    LongPairRangeSet<T> snapshot();
+
     /**
      * Represents a function that accepts two long arguments and produces a result.
      *
@@ -373,6 +381,13 @@ public interface LongPairRangeSet<T extends Comparable<T>> {
             return set.asRanges().size();
         }
 
+        @Override
+        public LongPairRangeSet<T> snapshot() {
+            DefaultRangeSet<T> snapshot = new DefaultRangeSet<>(consumer, rangeEndPointConsumer);
+            snapshot.set.addAll(set);
+            return snapshot;
+        }
+
         @Override
         public String toString() {
             return set.toString();
@@ -21,15 +21,19 @@ package org.apache.pulsar.common.util.collections;
 import static java.util.BitSet.valueOf;
 import static java.util.Objects.requireNonNull;
 import com.google.common.collect.BoundType;
+import com.google.common.collect.ForwardingNavigableMap;
 import com.google.common.collect.Range;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -46,15 +50,22 @@ import org.apache.commons.lang3.mutable.MutableInt;
  * a. This can be used if one doesn't want to create object for every new inserted {@code range}
  * b. It creates {@link BitSet} for every unique first-key of the range.
  * So, this rangeSet is not suitable for large number of unique keys.
+ * c. {@link #snapshot()} is O(1): the bit sets are shared with the snapshot, and each one is copied by the first
+ * update of its key.
  * </pre>
  */
 @NotThreadSafe
 public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRangeSet<T> {
 
-    protected final NavigableMap<Long, BitSet> rangeBitSetMap = new ConcurrentSkipListMap<>();
+    protected NavigableMap<Long, BitSet> rangeBitSetMap = new ConcurrentSkipListMap<>();
     private final LongPairConsumer<T> consumer;
     private final Supplier<BitSet> bitSetSupplier;
 
+    // the last snapshot taken of this set, which shares the bit sets of the keys not updated since then
+    private Snapshot lastSnapshot = null;
+    // for a snapshot, the keys of the bit sets copied since it was taken, the other ones are shared with its set
+    private Set<Long> copiedKeys = null;
+
     // caching place-holder for cpu-optimization to avoid calculating ranges again
     private volatile int cachedSize = 0;
     private volatile String cachedToString = "[]";
@@ -91,22 +102,18 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
                 // eg: (2:10..4:10] in this case, don't set any value for 2:10 and set [4:0..4:10]
                 if (rangeBitSet != null && (rangeBitSet.previousSetBit(rangeBitSet.size()) > lowerValueOpen)) {
                     int lastValue = rangeBitSet.previousSetBit(rangeBitSet.size());
+                    rangeBitSet = writableBitSet(lowerKey, rangeBitSet);
                     rangeBitSet.set((int) lowerValue, (int) Math.max(lastValue, lowerValue) + 1);
                 }
             }
             // (2) set 0th-index to upper-index in upperRange.getKey()
             if (isValid(upperKey, upperValue)) {
-                BitSet rangeBitSet = rangeBitSetMap.computeIfAbsent(upperKey, (key) -> createNewBitSet());
-                if (rangeBitSet != null) {
-                    rangeBitSet.set(0, (int) upperValue + 1);
-                }
+                writableBitSet(upperKey).set(0, (int) upperValue + 1);
             }
             // No-op if values are not valid eg: if lower == LongPair.earliest or upper == LongPair.latest then nothing
             // to set
         } else {
-            long key = lowerKey;
-            BitSet rangeBitSet = rangeBitSetMap.computeIfAbsent(key, (k) -> createNewBitSet());
-            rangeBitSet.set((int) lowerValue, (int) upperValue + 1);
+            writableBitSet(lowerKey).set((int) lowerValue, (int) upperValue + 1);
         }
         updatedAfterCachedForSize = true;
         updatedAfterCachedForToString = true;
@@ -164,7 +171,14 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
 
     @Override
     public void clear() {
-        rangeBitSetMap.clear();
+        if (lastSnapshot != null || copiedKeys != null) {
+            // the bit sets are left to the snapshots
+            rangeBitSetMap = new ConcurrentSkipListMap<>();
+            lastSnapshot = null;
+            copiedKeys = null;
+        } else {
+            rangeBitSetMap.clear();
+        }
         updatedAfterCachedForSize = true;
         updatedAfterCachedForToString = true;
     }
@@ -273,7 +287,7 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
         internalRange.forEach((id, ranges) -> {
             BitSet bitset = createNewBitSet();
             bitset.or(valueOf(ranges));
-            rangeBitSetMap.put(id, bitset);
+            putBitSet(id, bitset);
         });
     }
 
@@ -381,8 +395,7 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
 
         // #addOpenClosed doesn't create bitSet for lower-key because it avoids setting up values for non-exist items
         // into the key-ledger. so, create bitSet and initialize so, it can't be ignored at #addOpenClosed
-        rangeBitSetMap.computeIfAbsent(lowerEndpoint.getKey(), (key) -> createNewBitSet())
-                .set((int) lowerValueOpen + 1);
+        writableBitSet(lowerEndpoint.getKey()).set((int) lowerValueOpen + 1);
         this.addOpenClosed(lowerEndpoint.getKey(), lowerValueOpen, upperEndpoint.getKey(), upperValueClosed);
     }
 
@@ -407,7 +420,7 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
             // remove all keys with
             rangeBitSetMap.forEach((key, set) -> {
                 if (key < upperEndpoint.getKey()) {
-                    rangeBitSetMap.remove(key);
+                    removeBitSet(key);
                 }
             });
         }
@@ -417,30 +430,34 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
             // remove all keys with
             rangeBitSetMap.forEach((key, set) -> {
                 if (key > lowerEndpoint.getKey()) {
-                    rangeBitSetMap.remove(key);
+                    removeBitSet(key);
                 }
             });
         }
 
         // remove all the keys between two endpoint keys
-        rangeBitSetMap.forEach((key, set) -> {
+        rangeBitSetMap.forEach((key, bitSet) -> {
+            BitSet set = bitSet;
             if (lowerEndpoint.getKey() == upperEndpoint.getKey() && key == upperEndpoint.getKey()) {
+                set = writableBitSet(key, set);
                 set.clear((int) lower, (int) upper + 1);
             } else {
                 // eg: remove-range: [(3,5) - (5,5)] -> Delete all items from 3,6->3,N,4.*,5,0->5,5
                 if (key == lowerEndpoint.getKey()) {
                     // remove all entries from given position to last position
+                    set = writableBitSet(key, set);
                     set.clear((int) lower, set.previousSetBit(set.size()));
                 } else if (key == upperEndpoint.getKey()) {
                     // remove all entries from 0 to given position
+                    set = writableBitSet(key, set);
                     set.clear(0, (int) upper + 1);
                 } else if (key > lowerEndpoint.getKey() && key < upperEndpoint.getKey()) {
-                    rangeBitSetMap.remove(key);
+                    removeBitSet(key);
                 }
             }
             // remove bit-set if set is empty
             if (set.isEmpty()) {
-                rangeBitSetMap.remove(key);
+                removeBitSet(key);
             }
         });
 
@@ -448,6 +465,84 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
         updatedAfterCachedForToString = true;
     }
 
+    /**
+     * Returns a snapshot of this range set in O(1). The snapshot shares the bit sets of this range set, each one is
+     * copied by the first update of its key on either side, so the snapshot can be read while this set is updated.
+     */
+    @Override
+    public OpenLongPairRangeSet<T> snapshot() {
+        if (rangeBitSetMap instanceof SnapshotMap) {
+            // a snapshot of a snapshot is based on its own map
+            rangeBitSetMap = ((SnapshotMap) rangeBitSetMap).delegate();
+        }
+        // the last snapshot can be shared if this set hasn't been updated since then
+        if (lastSnapshot == null || !lastSnapshot.previousBitSets.isEmpty()) {
+            Snapshot snapshot = new Snapshot(rangeBitSetMap);
+            if (lastSnapshot != null) {
+                lastSnapshot.next = snapshot;
+            }
+            lastSnapshot = snapshot;
+        }
+        OpenLongPairRangeSet<T> snapshot = new OpenLongPairRangeSet<>(consumer, bitSetSupplier);
+        snapshot.rangeBitSetMap = new SnapshotMap(lastSnapshot);
+        snapshot.copiedKeys = new HashSet<>();
+        return snapshot;
+    }
+
+    /**
+     * Must be called before any update of the bit set of a key.
+     *
+     * @return true if the bit set is shared with a snapshot, and must be copied to be updated
+     */
+    private boolean beforeUpdate(long key, BitSet bitSet) {
+        if (lastSnapshot != null
+                && lastSnapshot.previousBitSets.putIfAbsent(key, bitSet != null ? bitSet : ABSENT) == null) {
+            return true;
+        }
+        return copiedKeys != null && !copiedKeys.contains(key);
+    }
+
+    private void putBitSet(long key, BitSet bitSet) {
+        beforeUpdate(key, rangeBitSetMap.get(key));
+        rangeBitSetMap.put(key, bitSet);
+        if (copiedKeys != null) {
+            copiedKeys.add(key);
+        }
+    }
+
+    private void removeBitSet(long key) {
+        BitSet bitSet = rangeBitSetMap.get(key);
+        if (bitSet != null) {
+            beforeUpdate(key, bitSet);
+            rangeBitSetMap.remove(key);
+            if (copiedKeys != null) {
+                copiedKeys.remove(key);
+            }
+        }
+    }
+
+    private BitSet writableBitSet(long key) {
+        BitSet bitSet = rangeBitSetMap.get(key);
+        if (bitSet == null) {
+            bitSet = createNewBitSet();
+            putBitSet(key, bitSet);
+            return bitSet;
+        }
+        return writableBitSet(key, bitSet);
+    }
+
+    private BitSet writableBitSet(long key, BitSet bitSet) {
+        if (beforeUpdate(key, bitSet)) {
+            BitSet copy = (BitSet) bitSet.clone();
+            rangeBitSetMap.put(key, copy);
+            if (copiedKeys != null) {
+                copiedKeys.add(key);
+            }
+            return copy;
+        }
+        return bitSet;
+    }
+
     private int getSafeEntry(LongPair position) {
         return (int) Math.max(position.getValue(), -1);
     }
@@ -460,4 +555,76 @@ public class OpenLongPairRangeSet<T extends Comparable<T>> implements LongPairRa
         return bitSetSupplier.get();
     }
 
+    // marks the keys which were absent when a snapshot was taken
+    private static final BitSet ABSENT = new BitSet(0);
+
+    /**
+     * The state of a range set when a snapshot was taken: the map of the set, and the bit sets of the keys updated
+     * since then, which are recorded by the set before the update. The snapshots taken later are chained, since a key
+     * is only recorded by the last snapshot.
+     */
+    private static final class Snapshot {
+        private final NavigableMap<Long, BitSet> rangeBitSetMap;
+        private final Map<Long, BitSet> previousBitSets = new ConcurrentHashMap<>();
+        private volatile Snapshot next;
+
+        Snapshot(NavigableMap<Long, BitSet> rangeBitSetMap) {
+            this.rangeBitSetMap = rangeBitSetMap;
+        }
+
+        private BitSet get(long key, BitSet currentBitSet) {
+            // the current bit set must be read first: when it has been updated, its key is recorded
+            for (Snapshot snapshot = this; snapshot != null; snapshot = snapshot.next) {
+                BitSet previousBitSet = snapshot.previousBitSets.get(key);
+                if (previousBitSet != null) {
+                    return previousBitSet != ABSENT ? previousBitSet : null;
+                }
+            }
+            return currentBitSet;
+        }
+
+        NavigableMap<Long, BitSet> toMap() {
+            NavigableMap<Long, BitSet> map = new ConcurrentSkipListMap<>();
+            rangeBitSetMap.forEach((key, currentBitSet) -> {
+                BitSet bitSet = get(key, currentBitSet);
+                if (bitSet != null) {
+                    map.put(key, bitSet);
+                }
+            });
+            // the keys removed in the meantime are recorded
+            for (Snapshot snapshot = this; snapshot != null; snapshot = snapshot.next) {
+                for (Long key : snapshot.previousBitSets.keySet()) {
+                    if (!map.containsKey(key)) {
+                        BitSet bitSet = get(key, rangeBitSetMap.get(key));
+                        if (bitSet != null) {
+                            map.put(key, bitSet);
+                        }
+                    }
+                }
+            }
+            return map;
+        }
+    }
+
+    /**
+     * The map of a snapshot, built from the state of its set on the first access, by the thread reading it.
+     */
+    private static final class SnapshotMap extends ForwardingNavigableMap<Long, BitSet> {
+        private Snapshot snapshot;
+        private NavigableMap<Long, BitSet> map;
+
+        SnapshotMap(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        protected NavigableMap<Long, BitSet> delegate() {
+            if (map == null) {
+                map = snapshot.toMap();
+                snapshot = null;
+            }
+            return map;
+        }
+    }
+
 }
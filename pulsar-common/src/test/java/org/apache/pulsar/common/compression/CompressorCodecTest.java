@@ -19,7 +19,10 @@
 package org.apache.pulsar.common.compression;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
@@ -27,6 +30,9 @@ import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.proto.CompressionType;
@@ -191,4 +197,62 @@ public class CompressorCodecTest {
         compressed.release();
         uncompressed.release();
     }
+
+    @Test
+    void testCompressDecompressWithDictionary() throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            samples.add(jsonPayload(i));
+        }
+        byte[] dictionary = CompressionDictionaryTrainer.train(samples, 4096);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 4096);
+
+        CompressionDictionaryCodecs dictionaryCodecs = new CompressionDictionaryCodecs();
+        CompressionCodecZLib codec = dictionaryCodecs.getCodec(dictionary);
+        assertEquals(codec.getDictionaryId(), CompressionCodecZLib.getDictionaryId(dictionary));
+        // the codecs are shared by dictionary
+        assertSame(dictionaryCodecs.getCodec(dictionary.clone()), codec);
+        assertNotSame(dictionaryCodecs.getCodec(Arrays.copyOf(dictionary, dictionary.length - 1)), codec);
+        CompressionCodec codecWithoutDictionary = CompressionCodecProvider.getCompressionCodec(CompressionType.ZLIB);
+        for (int i = 1000; i < 1010; i++) {
+            byte[] data = jsonPayload(i);
+            ByteBuf raw = Unpooled.wrappedBuffer(data);
+            ByteBuf compressed = codec.encode(raw);
+            ByteBuf compressedWithoutDictionary = codecWithoutDictionary.encode(raw);
+            assertTrue(compressed.readableBytes() * 2 < compressedWithoutDictionary.readableBytes());
+
+            ByteBuf uncompressed = codec.decode(compressed, data.length);
+            assertEquals(uncompressed, raw);
+
+            raw.release();
+            compressed.release();
+            compressedWithoutDictionary.release();
+            uncompressed.release();
+        }
+    }
+
+    @Test
+    void testDecompressWithoutDictionary() {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            samples.add(jsonPayload(i));
+        }
+        CompressionCodecZLib codec = new CompressionCodecZLib(CompressionDictionaryTrainer.train(samples, 1024));
+        byte[] data = jsonPayload(100);
+        ByteBuf compressed = codec.encode(Unpooled.wrappedBuffer(data));
+        try {
+            CompressionCodecProvider.getCompressionCodec(CompressionType.ZLIB).decode(compressed, data.length);
+            fail("should have failed");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            compressed.release();
+        }
+    }
+
+    private static byte[] jsonPayload(int i) {
+        return ("{\"id\":" + i + ",\"type\":\"order-created\",\"customer\":{\"name\":\"customer-" + (i % 17)
+                + "\",\"country\":\"FR\"},\"amount\":" + (i * 31 % 1000) + ",\"currency\":\"EUR\",\"status\":\"PENDING\"}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -24,6 +24,8 @@ import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -535,4 +537,120 @@ public class OpenLongPairRangeSetTest {
         assertEquals(size.intValue(), set.size());
         assertEquals(size.intValue(), defaultRangeSet.size());
     }
+
+    @Test
+    public void testSnapshot() {
+        OpenLongPairRangeSet<LongPair> set = new OpenLongPairRangeSet<>(consumer);
+        set.addOpenClosed(1, 0, 1, 5);
+        set.addOpenClosed(1, 10, 1, 15);
+        set.addOpenClosed(2, 0, 2, 5);
+        List<Range<LongPair>> ranges = set.asRanges();
+
+        LongPairRangeSet<LongPair> snapshot = set.snapshot();
+        assertEquals(snapshot.asRanges(), ranges);
+
+        // The updates of the set are not visible in the snapshot
+        set.addOpenClosed(1, 5, 1, 8);
+        set.addOpenClosed(3, 0, 3, 5);
+        set.removeAtMost(1, 12);
+        assertEquals(snapshot.asRanges(), ranges);
+        assertEquals(snapshot.size(), 3);
+        assertTrue(snapshot.contains(1, 3));
+        assertFalse(set.contains(1, 3));
+
+        // Multiple snapshots can be taken while the set is updated
+        LongPairRangeSet<LongPair> snapshot2 = set.snapshot();
+        List<Range<LongPair>> ranges2 = set.asRanges();
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(snapshot.asRanges(), ranges);
+        assertEquals(snapshot2.asRanges(), ranges2);
+
+        // The updates of the snapshot are not visible in the set
+        set.addOpenClosed(2, 0, 2, 5);
+        LongPairRangeSet<LongPair> snapshot3 = set.snapshot();
+        snapshot3.addOpenClosed(2, 5, 2, 10);
+        assertEquals(set.asRanges(),
+                Collections.singletonList(Range.openClosed(new LongPair(2, 0), new LongPair(2, 5))));
+        assertEquals(snapshot3.asRanges(),
+                Collections.singletonList(Range.openClosed(new LongPair(2, 0), new LongPair(2, 10))));
+        assertEquals(snapshot.asRanges(), ranges);
+    }
+
+    @Test
+    public void testSnapshotAfterRemove() {
+        OpenLongPairRangeSet<LongPair> set = new OpenLongPairRangeSet<>(consumer);
+        set.add(Range.closed(new LongPair(1, 0), new LongPair(1, 20)));
+        set.add(Range.closed(new LongPair(2, 0), new LongPair(2, 20)));
+        LongPairRangeSet<LongPair> snapshot = set.snapshot();
+
+        set.remove(Range.closed(new LongPair(1, 5), new LongPair(1, 10)));
+        set.remove(Range.closed(new LongPair(2, 5), new LongPair(2, 30)));
+        assertEquals(set.size(), 3);
+        assertEquals(snapshot.size(), 2);
+        assertEquals(snapshot.cardinality(1, 0, 2, 20), 42);
+
+        set.build(snapshot.toRanges(100));
+        assertEquals(set.asRanges(), snapshot.asRanges());
+    }
+
+    @Test
+    public void testSnapshotsReadAfterUpdates() {
+        OpenLongPairRangeSet<LongPair> set = new OpenLongPairRangeSet<>(consumer);
+        set.addOpenClosed(1, 0, 1, 5);
+        set.addOpenClosed(2, 0, 2, 5);
+        List<Range<LongPair>> ranges = set.asRanges();
+        LongPairRangeSet<LongPair> snapshot = set.snapshot();
+
+        set.addOpenClosed(2, 10, 2, 15);
+        set.addOpenClosed(3, 0, 3, 5);
+        List<Range<LongPair>> ranges2 = set.asRanges();
+        LongPairRangeSet<LongPair> snapshot2 = set.snapshot();
+        // Not updated since the last snapshot
+        LongPairRangeSet<LongPair> snapshot3 = set.snapshot();
+
+        // Keys removed, updated and added after the snapshots were taken
+        set.removeAtMost(2, 12);
+        set.addOpenClosed(3, 5, 3, 8);
+        set.addOpenClosed(4, 0, 4, 5);
+
+        // The snapshots are only read now
+        assertEquals(snapshot.asRanges(), ranges);
+        assertEquals(snapshot2.asRanges(), ranges2);
+        assertEquals(snapshot3.asRanges(), ranges2);
+        assertEquals(set.asRanges(), Arrays.asList(
+                Range.openClosed(new LongPair(2, 12), new LongPair(2, 15)),
+                Range.openClosed(new LongPair(3, 0), new LongPair(3, 8)),
+                Range.openClosed(new LongPair(4, 0), new LongPair(4, 5))));
+    }
+
+    @Test
+    public void testSnapshotOfSnapshot() {
+        OpenLongPairRangeSet<LongPair> set = new OpenLongPairRangeSet<>(consumer);
+        set.addOpenClosed(1, 0, 1, 5);
+        OpenLongPairRangeSet<LongPair> snapshot = set.snapshot();
+        snapshot.addOpenClosed(1, 10, 1, 15);
+        List<Range<LongPair>> ranges = snapshot.asRanges();
+
+        LongPairRangeSet<LongPair> snapshot2 = snapshot.snapshot();
+        snapshot.removeAtMost(1, 12);
+        set.addOpenClosed(2, 0, 2, 5);
+
+        assertEquals(snapshot2.asRanges(), ranges);
+        assertEquals(snapshot.asRanges(),
+                Arrays.asList(Range.openClosed(new LongPair(1, 12), new LongPair(1, 15))));
+        assertEquals(set.asRanges(), Arrays.asList(
+                Range.openClosed(new LongPair(1, 0), new LongPair(1, 5)),
+                Range.openClosed(new LongPair(2, 0), new LongPair(2, 5))));
+    }
+
+    @Test
+    public void testDefaultRangeSetSnapshot() {
+        LongPairRangeSet<LongPair> set = new LongPairRangeSet.DefaultRangeSet<>(consumer, reverseConsumer);
+        set.addOpenClosed(1, 0, 1, 5);
+        LongPairRangeSet<LongPair> snapshot = set.snapshot();
+        set.addOpenClosed(1, 10, 1, 15);
+        assertEquals(set.size(), 2);
+        assertEquals(snapshot.size(), 1);
+    }
 }
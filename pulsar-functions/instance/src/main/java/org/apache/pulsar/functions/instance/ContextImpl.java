@@ -45,6 +45,7 @@ import org.apache.pulsar.client.api.CompressionType;
 import org.apache.pulsar.client.api.Consumer;
 import org.apache.pulsar.client.api.ConsumerBuilder;
 import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessagePayload;
 import org.apache.pulsar.client.api.Producer;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.PulsarClientException;
@@ -627,6 +628,12 @@ class ContextImpl implements Context, SinkContext, SourceContext, AutoCloseable
             return this;
         }
 
+        @Override
+        public TypedMessageBuilder<T> payload(MessagePayload payload) {
+            underlyingBuilder.payload(payload);
+            return this;
+        }
+
         @Override
         public TypedMessageBuilder<T> property(String name, String value) {
             underlyingBuilder.property(name, value);
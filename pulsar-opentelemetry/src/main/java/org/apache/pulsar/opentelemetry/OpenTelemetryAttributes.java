@@ -208,6 +208,17 @@ public interface OpenTelemetryAttributes {
         public final Attributes attributes = Attributes.of(ML_CURSOR_OPERATION_STATUS, name().toLowerCase());
     }
 
+    /**
+     * The result of a managed cursor prefetch.
+     */
+    AttributeKey<String> ML_CURSOR_PREFETCH_STATUS =
+            AttributeKey.stringKey("pulsar.managed_ledger.cursor.prefetch.status");
+    enum ManagedCursorPrefetchStatus {
+        HIT,
+        MISS;
+        public final Attributes attributes = Attributes.of(ML_CURSOR_PREFETCH_STATUS, name().toLowerCase());
+    }
+
     AttributeKey<String> MANAGED_LEDGER_READ_INFLIGHT_USAGE =
             AttributeKey.stringKey("pulsar.managed_ledger.inflight.read.usage.state");
     enum InflightReadLimiterUtilization {
@@ -284,7 +295,8 @@ public interface OpenTelemetryAttributes {
     enum CacheEntryStatus {
         ACTIVE,
         EVICTED,
-        INSERTED;
+        INSERTED,
+        REJECTED;
         public final Attributes attributes = Attributes.of(ML_CACHE_ENTRY_STATUS, name().toLowerCase());
     }
 